@@ -138,6 +138,7 @@ import io.onedev.server.entitymanager.LinkSpecManager;
 import io.onedev.server.entitymanager.MembershipManager;
 import io.onedev.server.entitymanager.MilestoneManager;
 import io.onedev.server.entitymanager.PendingSuggestionApplyManager;
+import io.onedev.server.entitymanager.ProjectCounterManager;
 import io.onedev.server.entitymanager.ProjectLabelManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestAssignmentManager;
@@ -197,6 +198,7 @@ import io.onedev.server.entitymanager.impl.DefaultLinkSpecManager;
 import io.onedev.server.entitymanager.impl.DefaultMembershipManager;
 import io.onedev.server.entitymanager.impl.DefaultMilestoneManager;
 import io.onedev.server.entitymanager.impl.DefaultPendingSuggestionApplyManager;
+import io.onedev.server.entitymanager.impl.DefaultProjectCounterManager;
 import io.onedev.server.entitymanager.impl.DefaultProjectLabelManager;
 import io.onedev.server.entitymanager.impl.DefaultProjectManager;
 import io.onedev.server.entitymanager.impl.DefaultPullRequestAssignmentManager;
@@ -227,12 +229,16 @@ import io.onedev.server.git.config.GitConfig;
 import io.onedev.server.git.exception.GitException;
 import io.onedev.server.git.hook.GitPostReceiveCallback;
 import io.onedev.server.git.hook.GitPreReceiveCallback;
+import io.onedev.server.git.maintenance.DefaultGitMaintenanceManager;
+import io.onedev.server.git.maintenance.GitMaintenanceManager;
 import io.onedev.server.git.service.DefaultGitService;
 import io.onedev.server.git.service.GitService;
 import io.onedev.server.git.signature.DefaultSignatureVerificationKeyLoader;
 import io.onedev.server.git.signature.SignatureVerificationKeyLoader;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.CompareInfoManager;
 import io.onedev.server.infomanager.DefaultCommitInfoManager;
+import io.onedev.server.infomanager.DefaultCompareInfoManager;
 import io.onedev.server.infomanager.DefaultIssueInfoManager;
 import io.onedev.server.infomanager.DefaultPullRequestInfoManager;
 import io.onedev.server.infomanager.DefaultUserInfoManager;
@@ -264,6 +270,7 @@ import io.onedev.server.notification.WebHookManager;
 import io.onedev.server.persistence.DataManager;
 import io.onedev.server.persistence.DefaultDataManager;
 import io.onedev.server.persistence.DefaultIdManager;
+import io.onedev.server.persistence.DefaultQueryStatsManager;
 import io.onedev.server.persistence.DefaultSessionFactoryManager;
 import io.onedev.server.persistence.DefaultSessionManager;
 import io.onedev.server.persistence.DefaultTransactionManager;
@@ -271,6 +278,7 @@ import io.onedev.server.persistence.HibernateInterceptor;
 import io.onedev.server.persistence.IdManager;
 import io.onedev.server.persistence.PersistListener;
 import io.onedev.server.persistence.PrefixedNamingStrategy;
+import io.onedev.server.persistence.QueryStatsManager;
 import io.onedev.server.persistence.SessionFactoryManager;
 import io.onedev.server.persistence.SessionFactoryProvider;
 import io.onedev.server.persistence.SessionInterceptor;
@@ -298,9 +306,11 @@ import io.onedev.server.search.entitytext.DefaultIssueTextManager;
 import io.onedev.server.search.entitytext.DefaultPullRequestTextManager;
 import io.onedev.server.search.entitytext.IssueTextManager;
 import io.onedev.server.search.entitytext.PullRequestTextManager;
+import io.onedev.server.security.AuthorizationManager;
 import io.onedev.server.security.BasicAuthenticationFilter;
 import io.onedev.server.security.BearerAuthenticationFilter;
 import io.onedev.server.security.CodePullAuthorizationSource;
+import io.onedev.server.security.DefaultAuthorizationManager;
 import io.onedev.server.security.DefaultFilterChainResolver;
 import io.onedev.server.security.DefaultPasswordService;
 import io.onedev.server.security.DefaultRememberMeManager;
@@ -314,8 +324,12 @@ import io.onedev.server.ssh.DefaultSshAuthenticator;
 import io.onedev.server.ssh.DefaultSshManager;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshManager;
+import io.onedev.server.storage.ArtifactStoreManager;
+import io.onedev.server.storage.DefaultArtifactStoreManager;
 import io.onedev.server.storage.DefaultStorageManager;
+import io.onedev.server.storage.DefaultStorageMigrationManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.terminal.DefaultTerminalManager;
 import io.onedev.server.terminal.TerminalManager;
 import io.onedev.server.util.concurrent.BatchWorkManager;
@@ -418,6 +432,8 @@ public class CoreModule extends AbstractPluginModule {
 		 */
 		bind(MarkdownManager.class).to(DefaultMarkdownManager.class);		
 		bind(StorageManager.class).to(DefaultStorageManager.class);
+		bind(ArtifactStoreManager.class).to(DefaultArtifactStoreManager.class);
+		bind(StorageMigrationManager.class).to(DefaultStorageMigrationManager.class);
 		bind(SettingManager.class).to(DefaultSettingManager.class);
 		bind(DataManager.class).to(DefaultDataManager.class);
 		bind(TaskScheduler.class).to(DefaultTaskScheduler.class);
@@ -453,6 +469,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(CodeCommentStatusChangeManager.class).to(DefaultCodeCommentStatusChangeManager.class);
 		bind(AttachmentManager.class).to(DefaultAttachmentManager.class);
 		bind(PullRequestInfoManager.class).to(DefaultPullRequestInfoManager.class);
+		bind(CompareInfoManager.class).to(DefaultCompareInfoManager.class);
 		bind(PullRequestNotificationManager.class);
 		bind(CommitNotificationManager.class);
 		bind(BuildNotificationManager.class);
@@ -472,6 +489,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestAssignmentManager.class).to(DefaultPullRequestAssignmentManager.class);
 		bind(SshKeyManager.class).to(DefaultSshKeyManager.class);
 		bind(BuildMetricManager.class).to(DefaultBuildMetricManager.class);
+		bind(ProjectCounterManager.class).to(DefaultProjectCounterManager.class);
 		bind(EntityReferenceManager.class).to(DefaultEntityReferenceManager.class);
 		bind(GitLfsLockManager.class).to(DefaultGitLfsLockManager.class);
 		bind(IssueScheduleManager.class).to(DefaultIssueScheduleManager.class);
@@ -641,6 +659,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(BasicAuthenticationFilter.class);
 		bind(BearerAuthenticationFilter.class);
 		bind(PasswordService.class).to(DefaultPasswordService.class);
+		bind(AuthorizationManager.class).to(DefaultAuthorizationManager.class);
 		bind(ShiroFilter.class);
 		install(new ShiroAopModule());
         contribute(FilterChainConfigurator.class, new FilterChainConfigurator() {
@@ -659,6 +678,7 @@ public class CoreModule extends AbstractPluginModule {
 	private void configureGit() {
 		contribute(ObjectMapperConfigurator.class, GitObjectMapperConfigurator.class);
 		bind(GitService.class).to(DefaultGitService.class);
+		bind(GitMaintenanceManager.class).to(DefaultGitMaintenanceManager.class);
 		bind(GitConfig.class).toProvider(GitConfigProvider.class);
 		bind(GitFilter.class);
 		bind(GoGetFilter.class);
@@ -810,6 +830,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(SessionManager.class).to(DefaultSessionManager.class);
 		bind(TransactionManager.class).to(DefaultTransactionManager.class);
 		bind(IdManager.class).to(DefaultIdManager.class);
+		bind(QueryStatsManager.class).to(DefaultQueryStatsManager.class);
 		bind(Dao.class).to(DefaultDao.class);
 		
 	    TransactionInterceptor transactionInterceptor = new TransactionInterceptor();
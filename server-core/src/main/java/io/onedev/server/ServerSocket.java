@@ -29,6 +29,8 @@ import io.onedev.server.exception.SystemNotReadyException;
 import io.onedev.server.job.JobContext;
 import io.onedev.server.job.JobManager;
 import io.onedev.server.job.ResourceAllocator;
+import io.onedev.server.job.log.BatchTaskLogger;
+import io.onedev.server.job.log.JobLogBatch;
 import io.onedev.server.job.log.LogManager;
 import io.onedev.server.terminal.RemoteSession;
 
@@ -92,6 +94,17 @@ public class ServerSocket {
     
     @OnWebSocketMessage
     public void onMessage(byte[] bytes, int offset, int count) {
+    	if (JobLogBatch.isBatch(bytes, offset, count)) {
+    		try {
+    			JobLogBatch batch = JobLogBatch.decode(bytes, offset, count);
+	    		TaskLogger logger = OneDev.getInstance(LogManager.class).getJobLogger(batch.getJobToken());
+	    		if (logger != null)
+	    			BatchTaskLogger.log(logger, batch.getLines());
+    		} catch (Exception e) {
+    			logger.error("Error processing job log batch", e);
+    		}
+    		return;
+    	}
     	Message message = Message.of(bytes, offset, count);
     	byte[] messageData = message.getData();
     	try {
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -55,6 +56,7 @@ import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.util.AttachmentTooLargeException;
 import io.onedev.server.util.FileInfo;
 import io.onedev.server.util.schedule.SchedulableTask;
@@ -83,18 +85,21 @@ public class DefaultAttachmentManager implements AttachmentManager, SchedulableT
 	
 	private final SettingManager settingManager;
 	
+	private final StorageMigrationManager storageMigrationManager;
+	
     private String taskId;
     
 	@Inject
 	public DefaultAttachmentManager(StorageManager storageManager, TransactionManager transactionManager, 
 			TaskScheduler taskScheduler, SettingManager settingManager, ProjectManager projectManager, 
-			ClusterManager clusterManager) {
+			ClusterManager clusterManager, StorageMigrationManager storageMigrationManager) {
 		this.storageManager = storageManager;
 		this.transactionManager = transactionManager;
 		this.taskScheduler = taskScheduler;
 		this.settingManager = settingManager;
 		this.projectManager = projectManager;
 		this.clusterManager = clusterManager;
+		this.storageMigrationManager = storageMigrationManager;
 	}
 	
 	public Object writeReplace() throws ObjectStreamException {
@@ -339,6 +344,18 @@ public class DefaultAttachmentManager implements AttachmentManager, SchedulableT
 	@Override
 	public String saveAttachmentLocal(Long projectId, String attachmentGroup, String suggestedAttachmentName, 
 			InputStream attachmentStream) {
+		return storageMigrationManager.writeStorage(projectId, new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return doSaveAttachmentLocal(projectId, attachmentGroup, suggestedAttachmentName, attachmentStream);
+			}
+			
+		});
+	}
+	
+	private String doSaveAttachmentLocal(Long projectId, String attachmentGroup, String suggestedAttachmentName, 
+			InputStream attachmentStream) {
 		suggestedAttachmentName = suggestedAttachmentName.replace("..", "-");
 		
 		String attachmentName = suggestedAttachmentName;
@@ -32,8 +32,12 @@ public class JobLogEntryEx implements Serializable {
 		this(entry.getDate(), Lists.newArrayList(new Message(new StyleBuilder().build(), entry.getMessage())));
 	}
 	
-	// Handle ANSI escape codes according to https://en.wikipedia.org/wiki/ANSI_escape_code
 	public static JobLogEntryEx parse(String text, StyleBuilder styleBuilder) {
+		return parse(text, styleBuilder, new Date());
+	}
+	
+	// Handle ANSI escape codes according to https://en.wikipedia.org/wiki/ANSI_escape_code
+	public static JobLogEntryEx parse(String text, StyleBuilder styleBuilder, Date date) {
 		AtomicInteger cursor = new AtomicInteger(0);
 		List<Message> messages = new ArrayList<>();
 
@@ -260,7 +264,7 @@ public class JobLogEntryEx implements Serializable {
         if (currentTextBuilder.length() != 0)
         	textAppender.apply(currentTextBuilder.toString());
         
-        return new JobLogEntryEx(new Date(), new ArrayList<>(messages));
+        return new JobLogEntryEx(date, new ArrayList<>(messages));
 	}
 
 	public Date getDate() {
@@ -128,6 +128,11 @@ public class BranchUpdateTrigger extends JobTrigger {
 		return null;
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return RefUpdated.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		String description;
@@ -57,6 +57,11 @@ public class DependencyFinishedTrigger extends JobTrigger {
 		return null;
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return BuildFinished.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		return "When dependency jobs finished";
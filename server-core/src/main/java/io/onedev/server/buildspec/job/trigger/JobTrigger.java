@@ -116,4 +116,10 @@ public abstract class JobTrigger implements Serializable {
 	
 	public abstract String getTriggerDescription();
 	
+	/**
+	 * @return
+	 * 			type of project event this trigger is able to match
+	 */
+	public abstract Class<? extends ProjectEvent> getEventClass();
+	
 }
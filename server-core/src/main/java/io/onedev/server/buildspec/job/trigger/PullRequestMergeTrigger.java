@@ -22,6 +22,11 @@ public class PullRequestMergeTrigger extends PullRequestTrigger {
 		return null;
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return PullRequestChanged.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		return getTriggerDescription("merge");
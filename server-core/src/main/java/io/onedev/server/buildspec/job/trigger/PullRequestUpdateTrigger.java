@@ -27,6 +27,11 @@ public class PullRequestUpdateTrigger extends PullRequestTrigger {
 		return null;
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return PullRequestMergePreviewCalculated.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		return getTriggerDescription("open/update");
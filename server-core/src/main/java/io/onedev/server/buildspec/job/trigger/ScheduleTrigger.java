@@ -56,6 +56,11 @@ public class ScheduleTrigger extends JobTrigger {
 		}
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return ScheduledTimeReaches.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		return "Schedule at " + cronExpression;
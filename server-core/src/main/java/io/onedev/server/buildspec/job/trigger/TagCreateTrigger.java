@@ -97,6 +97,11 @@ public class TagCreateTrigger extends JobTrigger {
 		return null;
 	}
 
+	@Override
+	public Class<? extends ProjectEvent> getEventClass() {
+		return RefUpdated.class;
+	}
+	
 	@Override
 	public String getTriggerDescription() {
 		String description = "When create tags";
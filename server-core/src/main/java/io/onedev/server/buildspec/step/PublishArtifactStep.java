@@ -8,13 +8,12 @@ import java.util.concurrent.Callable;
 import javax.validation.constraints.NotEmpty;
 
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.model.Build;
-import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.ArtifactStoreManager;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.util.validation.annotation.SafePath;
 import io.onedev.server.web.editable.annotation.Editable;
@@ -73,9 +72,8 @@ public class PublishArtifactStep extends ServerSideStep {
 
 			@Override
 			public Void call() throws Exception {
-				File artifactsDir = build.getArtifactsDir();
-				OneDev.getInstance(StorageManager.class).initArtifactsDir(build.getProject().getId(), build.getNumber());
-				FileUtils.copyDirectory(inputDir, artifactsDir);
+				OneDev.getInstance(ArtifactStoreManager.class).storeArtifacts(
+						build.getProject().getId(), build.getNumber(), inputDir);
 				return null;
 			}
 			
@@ -5,7 +5,6 @@ import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,6 +29,7 @@ import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.utils.FileUtils;
@@ -47,7 +47,9 @@ import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.Build;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.storage.ArtifactStoreManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
 import io.onedev.server.util.concurrent.WorkExecutor;
 import io.onedev.server.util.patternset.PatternSet;
@@ -64,19 +66,26 @@ public class ClusterResource {
 	
 	private final StorageManager storageManager;
 	
+	private final ArtifactStoreManager artifactStoreManager;
+	
 	private final CommitInfoManager commitInfoManager;
 	
 	private final WorkExecutor workExecutor;
 	
+	private final StorageMigrationManager storageMigrationManager;
+	
 	@Inject
 	public ClusterResource(ProjectManager projectManager, CommitInfoManager commitInfoManager, 
-			StorageManager storageManager, AttachmentManager attachmentManager, 
-			WorkExecutor workExecutor) {
+			StorageManager storageManager, ArtifactStoreManager artifactStoreManager, 
+			AttachmentManager attachmentManager, WorkExecutor workExecutor, 
+			StorageMigrationManager storageMigrationManager) {
 		this.projectManager = projectManager;
 		this.commitInfoManager = commitInfoManager;
 		this.storageManager = storageManager;
+		this.artifactStoreManager = artifactStoreManager;
 		this.workExecutor = workExecutor;
 		this.attachmentManager = attachmentManager;
+		this.storageMigrationManager = storageMigrationManager;
 	}
 	
 	@Path("/artifacts")
@@ -189,7 +198,15 @@ public class ClusterResource {
 							
 							@Override
 							public void run() {
-								CommandUtils.receivePack(gitDir, hookEnvs, protocol, is, output);
+								storageMigrationManager.writeStorage(projectId, new Callable<Void>() {
+
+									@Override
+									public Void call() throws Exception {
+										CommandUtils.receivePack(gitDir, hookEnvs, protocol, is, output);
+										return null;
+									}
+									
+								});
 							}
 							
 						}).get();
@@ -259,15 +276,21 @@ public class ClusterResource {
 		if (!SecurityUtils.getUser().isSystem()) 
 			throw new UnauthorizedException("This api can only be accessed via cluster credential");
 		
-		try (
-				InputStream is = new BufferedInputStream(input, BUFFER_SIZE);
-				OutputStream os = new BufferedOutputStream(
-						new LfsObject(projectId, objectId).getOutputStream(), 
-						BUFFER_SIZE);) {
-			IOUtils.copy(is, os);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		storageMigrationManager.writeStorage(projectId, new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				try (
+						InputStream is = new BufferedInputStream(input, BUFFER_SIZE);
+						OutputStream os = new BufferedOutputStream(
+								new LfsObject(projectId, objectId).getOutputStream(), 
+								BUFFER_SIZE);) {
+					IOUtils.copy(is, os);
+				}
+				return null;
+			}
+			
+		});
 		return Response.ok().build();
 	}
 
@@ -317,15 +340,8 @@ public class ClusterResource {
 
 			@Override
 			public Void call() throws Exception {
-				storageManager.initArtifactsDir(projectId, buildNumber);
-				File artifactFile = new File(Build.getArtifactsDir(projectId, buildNumber), artifactPath);
-				FileUtils.createDir(artifactFile.getParentFile());
-				try (
-						InputStream is = new BufferedInputStream(input, BUFFER_SIZE);
-						OutputStream os = new BufferedOutputStream(new FileOutputStream(artifactFile), BUFFER_SIZE);) {
-					IOUtils.copy(is, os);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+				try (InputStream is = new BufferedInputStream(input, BUFFER_SIZE)) {
+					artifactStoreManager.storeArtifact(projectId, buildNumber, artifactPath, is);
 				}
 				return null;
 			}
@@ -335,4 +351,23 @@ public class ClusterResource {
 		return Response.ok().build();
 	}
 	
+	@Path("/project-files")
+	@Produces(MediaType.APPLICATION_OCTET_STREAM)
+	@POST
+	public Response downloadProjectFiles(String paths, @QueryParam("projectId") Long projectId) {
+		if (!SecurityUtils.getUser().isSystem()) 
+			throw new UnauthorizedException("This api can only be accessed via cluster credential");
+		
+		StreamingOutput os = new StreamingOutput() {
+
+			@Override
+		   public void write(OutputStream output) throws IOException {
+				storageMigrationManager.sendFiles(projectId, 
+						Splitter.on('\n').omitEmptyStrings().splitToList(paths), output);
+		   }				   
+		   
+		};
+		return Response.ok(os).build();
+	}
+	
 }
@@ -69,6 +69,16 @@ public interface BuildManager extends EntityManager<Build> {
 
 	List<Build> query(@Nullable Project project, EntityQuery<Build> buildQuery, int firstResult, int maxResults);
 
+	/**
+	 * Query entities in descending order of id for cursor based pagination. Sorts specified 
+	 * in the query are ignored 
+	 * 
+	 * @param afterId
+	 * 			only entities with id less than this value will be returned, null to start 
+	 * 			from the first entity 
+	 */
+	List<Build> queryAfter(@Nullable Project project, EntityQuery<Build> buildQuery, @Nullable Long afterId, int count);
+
 	int count(@Nullable Project project, Criteria<Build> buildCriteria);
 
 	Collection<Long> queryIds(Project project, EntityQuery<Build> buildQuery, int firstResult, int maxResults);
@@ -93,7 +103,7 @@ public interface BuildManager extends EntityManager<Build> {
 	
 	List<ProjectBuildStats> queryStats(Collection<Project> projects);
 	
-	long getArtifactSize(Build build, String artifactPath);
+	FileInfo getArtifactInfo(Build build, String artifactPath);
 	
 	void deleteArtifact(Build build, String artifactPath);
 	
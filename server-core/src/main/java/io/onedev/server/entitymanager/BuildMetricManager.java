@@ -13,4 +13,13 @@ public interface BuildMetricManager {
 	
 	Map<String, Collection<String>> getAccessibleReportNames(Project project, Class<?> metricClass);
 	
+	/**
+	 * Mark daily rollup of metrics of builds finished on specified day as stale. Rollup will be 
+	 * recalculated after current transaction is committed
+	 * 
+	 * @param day
+	 * 			value of {@link io.onedev.server.util.Day}
+	 */
+	void invalidateStats(Project project, int day);
+	
 }
@@ -44,6 +44,17 @@ public interface IssueManager extends EntityManager<Issue> {
 	List<Issue> query(@Nullable ProjectScope projectScope, EntityQuery<Issue> issueQuery, 
 			boolean loadFieldsAndLinks, int firstResult, int maxResults);
 	
+	/**
+	 * Query entities in descending order of id for cursor based pagination. Sorts specified 
+	 * in the query are ignored 
+	 * 
+	 * @param afterId
+	 * 			only entities with id less than this value will be returned, null to start 
+	 * 			from the first entity 
+	 */
+	List<Issue> queryAfter(@Nullable ProjectScope projectScope, EntityQuery<Issue> issueQuery, 
+			@Nullable Long afterId, int count);
+	
 	int count(@Nullable ProjectScope projectScope, @Nullable Criteria<Issue> issueCriteria);
 	
 	List<Issue> query(@Nullable EntityQuery<Issue> scope, Project project, String term, int count);
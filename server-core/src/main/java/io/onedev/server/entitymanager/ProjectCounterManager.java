@@ -0,0 +1,28 @@
+package io.onedev.server.entitymanager;
+
+import java.util.Collection;
+import java.util.List;
+
+import io.onedev.server.model.Project;
+import io.onedev.server.model.ProjectCounter;
+
+public interface ProjectCounterManager {
+
+	/**
+	 * Query counters of specified type of specified projects
+	 */
+	List<ProjectCounter> query(Collection<Project> projects, ProjectCounter.Type type);
+	
+	/**
+	 * Mark counters of specified type of specified project as stale. Counters will be 
+	 * recalculated after current transaction is committed
+	 */
+	void invalidateCounters(Project project, ProjectCounter.Type type);
+	
+	/**
+	 * Mark counters of specified type of all projects as stale. This should be called after 
+	 * entities are updated in bulk without firing entity events
+	 */
+	void invalidateCounters(ProjectCounter.Type type);
+	
+}
@@ -3,6 +3,7 @@ package io.onedev.server.entitymanager;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Future;
 
@@ -15,6 +16,7 @@ import org.apache.shiro.authz.Permission;
 import org.eclipse.jgit.lib.Repository;
 
 import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.git.RepositoryCacheStats;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.dao.EntityManager;
 import io.onedev.server.search.entity.EntityQuery;
@@ -54,8 +56,43 @@ public interface ProjectManager extends EntityManager<Project> {
 	
 	Repository getRepository(Long projectId);
 	
+	/**
+	 * Get statistics of repository handles cached on current server
+	 */
+	RepositoryCacheStats getRepositoryCacheStats();
+	
+	/**
+	 * Get number of repository accesses of projects on current server since startup
+	 * 
+	 * @return
+	 * 			map of project id to number of repository accesses
+	 */
+	Map<Long, Long> getRepositoryAccesses();
+	
+	/**
+	 * Switch storage server of specified project atomically
+	 * 
+	 * @param storageVersion
+	 * 			storage version of the project on target server, used to tell stale copy of 
+	 * 			project storage at startup
+	 * @return
+	 * 			<tt>true</tt> if switched, or <tt>false</tt> if storage server of the project 
+	 * 			is no longer specified from server
+	 */
+	boolean switchStorageServer(Long projectId, UUID fromServerUUID, UUID toServerUUID, long storageVersion);
+	
 	List<Project> query(EntityQuery<Project> query, int firstResult, int maxResults);
 	
+	/**
+	 * Query entities in descending order of id for cursor based pagination. Sorts specified 
+	 * in the query are ignored 
+	 * 
+	 * @param afterId
+	 * 			only entities with id less than this value will be returned, null to start 
+	 * 			from the first entity 
+	 */
+	List<Project> queryAfter(EntityQuery<Project> query, @Nullable Long afterId, int count);
+	
 	int count(Criteria<Project> criteria);
 
 	Predicate getPathMatchPredicate(CriteriaBuilder builder, Path<Project> path, String pathPattern);
@@ -52,6 +52,12 @@ public interface PullRequestManager extends EntityManager<PullRequest> {
 
     void checkAsync(PullRequest request, boolean sourceUpdated);
     
+    /**
+     * Raise priority of pending check of specified request, for instance when it is being viewed. 
+     * Nothing will be done if there is no pending check of the request 
+     */
+    void expediteCheck(PullRequest request);
+    
     void merge(PullRequest request, @Nullable String commitMessage);
     
     void open(PullRequest request);
@@ -68,6 +74,17 @@ public interface PullRequestManager extends EntityManager<PullRequest> {
 	List<PullRequest> query(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
 			boolean loadReviewsAndBuilds, int firstResult, int maxResults);
 	
+	/**
+	 * Query entities in descending order of id for cursor based pagination. Sorts specified 
+	 * in the query are ignored 
+	 * 
+	 * @param afterId
+	 * 			only entities with id less than this value will be returned, null to start 
+	 * 			from the first entity 
+	 */
+	List<PullRequest> queryAfter(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			@Nullable Long afterId, int count);
+	
 	int count(@Nullable Project targetProject, Criteria<PullRequest> requestCriteria);
 	
 	List<PullRequest> query(Project targetProject, String term, int count);
@@ -5,6 +5,7 @@ import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -42,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.cp.IAtomicLong;
@@ -56,6 +58,7 @@ import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.BuildDependenceManager;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.BuildParamManager;
+import io.onedev.server.entitymanager.ProjectCounterManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.event.entity.EntityRemoved;
@@ -72,6 +75,7 @@ import io.onedev.server.model.Group;
 import io.onedev.server.model.GroupAuthorization;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.ProjectCounter;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.Role;
 import io.onedev.server.model.User;
@@ -126,6 +130,8 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private final ClusterManager clusterManager;
 	
+	private final ProjectCounterManager counterManager;
+	
 	private volatile Map<Long, BuildFacade> builds = new HashMap<>();
 	
 	private volatile Map<Long, Collection<String>> jobNames = new HashMap<>();
@@ -139,7 +145,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 			TaskScheduler taskScheduler, BuildDependenceManager buildDependenceManager,
 			ProjectManager projectManager, SessionManager sessionManager, 
 			TransactionManager transactionManager, SettingManager settingManager, 
-			ClusterManager clusterManager) {
+			ClusterManager clusterManager, ProjectCounterManager counterManager) {
 		super(dao);
 		this.buildParamManager = buildParamManager;
 		this.buildDependenceManager = buildDependenceManager;
@@ -149,6 +155,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 		this.transactionManager = transactionManager;
 		this.settingManager = settingManager;
 		this.clusterManager = clusterManager;
+		this.counterManager = counterManager;
 		
 		numberGenerator = new SequenceGenerator(Build.class, clusterManager, dao);
 	}
@@ -511,6 +518,27 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 		return query.getResultList();
 	}
 
+	@Sessional
+	@Override
+	public List<Build> queryAfter(@Nullable Project project, EntityQuery<Build> buildQuery, 
+			@Nullable Long afterId, int count) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Build> criteriaQuery = builder.createQuery(Build.class);
+		Root<Build> root = criteriaQuery.from(Build.class);
+		criteriaQuery.select(root);
+		
+		List<Predicate> predicates = Lists.newArrayList(
+				getPredicates(project, buildQuery.getCriteria(), criteriaQuery, root, builder));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(Build.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(Build.PROP_ID)));
+		
+		Query<Build> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(count);
+		return query.getResultList();
+	}
+	
 	private void applyOrders(From<Build, Build> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder builder, 
 			EntityQuery<Build> buildQuery) {
 		List<javax.persistence.criteria.Order> orders = new ArrayList<>();
@@ -926,23 +954,13 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	@Sessional
 	@Override
 	public List<ProjectBuildStats> queryStats(Collection<Project> projects) {
-		if (projects.isEmpty()) {
-			return new ArrayList<>();
-		} else {
-			CriteriaBuilder builder = getSession().getCriteriaBuilder();
-			CriteriaQuery<ProjectBuildStats> criteriaQuery = builder.createQuery(ProjectBuildStats.class);
-			Root<Build> root = criteriaQuery.from(Build.class);
-			criteriaQuery.multiselect(
-					root.get(Build.PROP_PROJECT).get(Project.PROP_ID), 
-					root.get(Build.PROP_STATUS), 
-					builder.count(root));
-			criteriaQuery.groupBy(root.get(Build.PROP_PROJECT), root.get(Build.PROP_STATUS));
-			
-			criteriaQuery.where(root.get(Build.PROP_PROJECT).in(projects));
-			criteriaQuery.orderBy(builder.asc(root.get(Build.PROP_STATUS)));
-			
-			return getSession().createQuery(criteriaQuery).getResultList();
+		List<ProjectBuildStats> stats = new ArrayList<>();
+		for (ProjectCounter counter: counterManager.query(projects, ProjectCounter.Type.BUILD)) {
+			stats.add(new ProjectBuildStats(counter.getProject().getId(), 
+					Status.valueOf(counter.getState()), counter.getCount()));
 		}
+		stats.sort(Comparator.comparing(ProjectBuildStats::getBuildStatus));
+		return stats;
 	}
 
 	@Override
@@ -954,20 +972,20 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	}
 
 	@Override
-	public long getArtifactSize(Build build, String artifactPath) {
+	public FileInfo getArtifactInfo(Build build, String artifactPath) {
 		Long projectId = build.getProject().getId();
 		Long buildNumber = build.getNumber();
-		return projectManager.runOnProjectServer(projectId, new ClusterTask<Long>() {
+		return projectManager.runOnProjectServer(projectId, new ClusterTask<FileInfo>() {
 
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public Long call() throws Exception {
+			public FileInfo call() throws Exception {
 				File artifactsDir = Build.getArtifactsDir(projectId, buildNumber);
 				File artifactFile = new File(artifactsDir, artifactPath);
 				
 				if (artifactFile.exists() && artifactFile.isFile()) {
-					return artifactFile.length();
+					return new FileInfo(artifactPath, artifactFile.length(), artifactFile.lastModified());
 				} else {
 					String errorMessage = String.format(
 							"Specified artifact path does not exist or is a directory (project: %s, build number: %d, path: %s)", 
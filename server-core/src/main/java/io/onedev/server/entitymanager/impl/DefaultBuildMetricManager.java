@@ -2,6 +2,8 @@ package io.onedev.server.entitymanager.impl;
 
 import static io.onedev.commons.utils.ExceptionUtils.unchecked;
 
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -10,16 +12,23 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
@@ -33,6 +42,10 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
@@ -40,6 +53,7 @@ import io.onedev.server.event.pubsub.Listen;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricStat;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.GroupAuthorization;
 import io.onedev.server.model.Project;
@@ -59,7 +73,9 @@ import io.onedev.server.util.BeanUtils;
 import io.onedev.server.util.MetricIndicator;
 
 @Singleton
-public class DefaultBuildMetricManager implements BuildMetricManager {
+public class DefaultBuildMetricManager implements BuildMetricManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBuildMetricManager.class);
 	
@@ -67,20 +83,111 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 	
 	private final TransactionManager transactionManager;
 	
+	private final ClusterManager clusterManager;
+	
+	private final ExecutorService executorService;
+	
 	private final Map<Key, Map<String, Collection<String>>> reportNames = new HashMap<>();
 	
 	private final ReadWriteLock reportNamesLock = new ReentrantReadWriteLock();
 	
+	private final Map<Class<?>, List<String>> metricIndicators = new ConcurrentHashMap<>();
+	
+	private final Set<StatKey> pendingStats = ConcurrentHashMap.newKeySet();
+	
 	@Inject
-	public DefaultBuildMetricManager(Dao dao, TransactionManager transactionManager) {
+	public DefaultBuildMetricManager(Dao dao, TransactionManager transactionManager, 
+			ClusterManager clusterManager, ExecutorService executorService) {
 		this.dao = dao;
 		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
+		this.executorService = executorService;
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(BuildMetricManager.class);
 	}
 	
-	@SuppressWarnings("resource")
 	@Sessional
 	@Override
 	public <T extends AbstractEntity> Map<Integer, T> queryStats(Project project, Class<T> metricClass, BuildMetricQuery query) {
+		Map<Integer, T> metrics = queryRolledUpStats(project, metricClass, query);
+		if (metrics == null)
+			metrics = queryBuildStats(project, metricClass, query);
+		return metrics;
+	}
+	
+	/*
+	 * Query stats from daily rollup of build metrics. Returns null if query criteria can not be 
+	 * evaluated against daily rollup
+	 */
+	@SuppressWarnings("resource")
+	@Nullable
+	private <T extends AbstractEntity> Map<Integer, T> queryRolledUpStats(Project project, Class<T> metricClass, 
+			BuildMetricQuery query) {
+		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
+		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
+		Root<BuildMetricStat> statRoot = criteriaQuery.from(BuildMetricStat.class);
+		
+		List<Predicate> predicates = new ArrayList<>();
+		predicates.add(builder.equal(statRoot.get(BuildMetricStat.PROP_PROJECT), project));
+		predicates.add(builder.equal(statRoot.get(BuildMetricStat.PROP_METRIC_TYPE), metricClass.getSimpleName()));
+		
+		if (query.getCriteria() != null) {
+			Predicate predicate = query.getCriteria().getStatPredicate(statRoot, builder);
+			if (predicate == null)
+				return null;
+			predicates.add(predicate);
+		}
+		
+		if (!SecurityUtils.canManageBuilds(project)) {
+			Predicate accessPredicate = getAccessPredicate(project, metricClass, 
+					statRoot.get(BuildMetricStat.PROP_JOB), statRoot.get(BuildMetricStat.PROP_REPORT), builder);
+			if (accessPredicate != null)
+				predicates.add(accessPredicate);
+		}
+		
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		
+		Path<Integer> dayPath = statRoot.get(BuildMetricStat.PROP_DAY);
+		Path<String> indicatorPath = statRoot.get(BuildMetricStat.PROP_INDICATOR);
+		criteriaQuery.groupBy(dayPath, indicatorPath);
+		criteriaQuery.multiselect(dayPath, indicatorPath, 
+				builder.sum(statRoot.<Long>get(BuildMetricStat.PROP_TOTAL)), 
+				builder.sum(statRoot.<Integer>get(BuildMetricStat.PROP_COUNT)));
+		
+		Map<String, Method> setters = new HashMap<>();
+		for (Method getter: BeanUtils.findGetters(metricClass)) {
+			if (getter.getAnnotation(MetricIndicator.class) != null) {
+				setters.put(BeanUtils.getPropertyName(getter), 
+						Preconditions.checkNotNull(BeanUtils.findSetter(getter)));
+			}
+		}
+		
+		Map<Integer, T> metrics = new HashMap<>();
+		for (Object[] fields: dao.getSession().createQuery(criteriaQuery).list()) {
+			Method setter = setters.get((String)fields[1]);
+			long count = ((Number)fields[3]).longValue();
+			if (setter != null && count != 0) {
+				try {
+					T metric = metrics.get((int)fields[0]);
+					if (metric == null) {
+						metric = metricClass.getDeclaredConstructor().newInstance();
+						metrics.put((int)fields[0], metric);
+					}
+					double value = ((Number)fields[2]).doubleValue() / count;
+					setter.invoke(metric, (int)value);
+				} catch (Exception e) {
+					throw unchecked(e);
+				}
+			}
+		}
+		return metrics;
+	}
+	
+	@SuppressWarnings("resource")
+	private <T extends AbstractEntity> Map<Integer, T> queryBuildStats(Project project, Class<T> metricClass, 
+			BuildMetricQuery query) {
 		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
 		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
 		Root<T> metricRoot = criteriaQuery.from(metricClass);
@@ -91,37 +198,10 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		predicates.add(builder.equal(buildJoin.get(Build.PROP_PROJECT), project));
 		
 		if (!SecurityUtils.canManageBuilds(project)) {
-			reportNamesLock.readLock().lock();
-			try {
-				Key key = new Key(project.getId(), metricClass);
-				Map<String, Collection<String>> availableReportNames = reportNames.get(key);
-				if (availableReportNames != null) {
-					List<Predicate> jobPredicates = new ArrayList<>();
-					Collection<String> jobsWithAllReports = new HashSet<>();
-					for (Map.Entry<String, Collection<String>> entry: getAccessibleReportNames(project, metricClass).entrySet()) {
-						Collection<String> availableReportNamesOfJob = availableReportNames.get(entry.getKey());
-						if (availableReportNamesOfJob != null) {
-							if (entry.getValue().containsAll(availableReportNamesOfJob)) {
-								jobsWithAllReports.add(entry.getKey());
-								jobPredicates.add(builder.equal(buildJoin.get(Build.PROP_JOB), entry.getKey()));
-							} else {
-								List<Predicate> reportPredicates = new ArrayList<>();
-								for (String reportName: entry.getValue()) 
-									reportPredicates.add(builder.equal(metricRoot.get(BuildMetric.PROP_REPORT), reportName));
-								jobPredicates.add(builder.and(
-										builder.equal(buildJoin.get(Build.PROP_JOB), entry.getKey()), 
-										builder.or(reportPredicates.toArray(new Predicate[reportPredicates.size()]))));
-							}
-						} else {
-							jobsWithAllReports.add(entry.getKey());
-						}
-					}
-					if (!jobsWithAllReports.containsAll(availableReportNames.keySet()))
-						predicates.add(builder.or(jobPredicates.toArray(new Predicate[jobPredicates.size()])));
-				}
-			} finally {
-				reportNamesLock.readLock().unlock();
-			}
+			Predicate accessPredicate = getAccessPredicate(project, metricClass, 
+					buildJoin.get(Build.PROP_JOB), metricRoot.get(BuildMetric.PROP_REPORT), builder);
+			if (accessPredicate != null)
+				predicates.add(accessPredicate);
 		}
 		
 		if (query.getCriteria() != null)
@@ -160,6 +240,47 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		}
 		return metrics;
 	}
+	
+	/*
+	 * Get predicate to only include metrics of reports accessible by current user, or null 
+	 * if all reports are accessible
+	 */
+	@Nullable
+	private Predicate getAccessPredicate(Project project, Class<?> metricClass, Expression<?> jobExpression, 
+			Expression<?> reportExpression, CriteriaBuilder builder) {
+		reportNamesLock.readLock().lock();
+		try {
+			Key key = new Key(project.getId(), metricClass);
+			Map<String, Collection<String>> availableReportNames = reportNames.get(key);
+			if (availableReportNames != null) {
+				List<Predicate> jobPredicates = new ArrayList<>();
+				Collection<String> jobsWithAllReports = new HashSet<>();
+				for (Map.Entry<String, Collection<String>> entry: getAccessibleReportNames(project, metricClass).entrySet()) {
+					Collection<String> availableReportNamesOfJob = availableReportNames.get(entry.getKey());
+					if (availableReportNamesOfJob != null) {
+						if (entry.getValue().containsAll(availableReportNamesOfJob)) {
+							jobsWithAllReports.add(entry.getKey());
+							jobPredicates.add(builder.equal(jobExpression, entry.getKey()));
+						} else {
+							List<Predicate> reportPredicates = new ArrayList<>();
+							for (String reportName: entry.getValue()) 
+								reportPredicates.add(builder.equal(reportExpression, reportName));
+							jobPredicates.add(builder.and(
+									builder.equal(jobExpression, entry.getKey()), 
+									builder.or(reportPredicates.toArray(new Predicate[reportPredicates.size()]))));
+						}
+					} else {
+						jobsWithAllReports.add(entry.getKey());
+					}
+				}
+				if (!jobsWithAllReports.containsAll(availableReportNames.keySet()))
+					return builder.or(jobPredicates.toArray(new Predicate[jobPredicates.size()]));
+			}
+			return null;
+		} finally {
+			reportNamesLock.readLock().unlock();
+		}
+	}
 
 	@SuppressWarnings("unchecked")
 	@Listen
@@ -175,10 +296,144 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 				Query<?> query = dao.getSession().createQuery(queryString);
 				for (Object[] fields: (List<Object[]>)query.list()) 
 					populateReportNames(new Key((Long)fields[0], entityClass), (String)fields[1], (String)fields[2]);
+				
+				List<String> indicators = new ArrayList<>();
+				for (Method getter: BeanUtils.findGetters(entityClass)) {
+					if (getter.getAnnotation(MetricIndicator.class) != null) 
+						indicators.add(BeanUtils.getPropertyName(getter));
+				}
+				metricIndicators.put(entityClass, indicators);
+			}
+		}
+		
+		if (clusterManager.isLeaderServer() && dao.count(BuildMetricStat.class) == 0) {
+			logger.info("Rolling up build metrics...");
+			transactionManager.run(new Runnable() {
+
+				@Override
+				public void run() {
+					populateStats(null, null);
+				}
+				
+			});
+		}
+	}
+	
+	/*
+	 * Roll up build metrics finished on specified day of specified project. All finished builds 
+	 * will be rolled up if project or day is not specified
+	 */
+	private void populateStats(@Nullable Project project, @Nullable Integer day) {
+		for (Map.Entry<Class<?>, List<String>> entry: metricIndicators.entrySet()) {
+			List<String> indicators = entry.getValue();
+			if (indicators.isEmpty())
+				continue;
+			
+			StringBuilder queryString = new StringBuilder(String.format("select build.%s.id, build.%s, build.%s, metric.%s, count(*)", 
+					Build.PROP_PROJECT, Build.PROP_FINISH_DAY, Build.PROP_JOB, BuildMetric.PROP_REPORT));
+			for (String indicator: indicators)
+				queryString.append(", sum(metric.").append(indicator).append(")");
+			queryString.append(String.format(" from %s metric inner join metric.%s build where build.%s is not null", 
+					entry.getKey().getSimpleName(), BuildMetric.PROP_BUILD, Build.PROP_FINISH_DAY));
+			if (project != null)
+				queryString.append(String.format(" and build.%s=:project", Build.PROP_PROJECT));
+			if (day != null)
+				queryString.append(String.format(" and build.%s=:day", Build.PROP_FINISH_DAY));
+			queryString.append(String.format(" group by build.%s.id, build.%s, build.%s, metric.%s", 
+					Build.PROP_PROJECT, Build.PROP_FINISH_DAY, Build.PROP_JOB, BuildMetric.PROP_REPORT));
+			
+			Query<?> query = dao.getSession().createQuery(queryString.toString());
+			if (project != null)
+				query.setParameter("project", project);
+			if (day != null)
+				query.setParameter("day", day);
+			
+			for (Object result: query.list()) {
+				Object[] fields = (Object[]) result;
+				for (int i=0; i<indicators.size(); i++) {
+					BuildMetricStat stat = new BuildMetricStat();
+					stat.setProject(dao.load(Project.class, (Long)fields[0]));
+					stat.setDay((int)fields[1]);
+					stat.setJobName((String)fields[2]);
+					stat.setReportName((String)fields[3]);
+					stat.setCount(((Number)fields[4]).intValue());
+					stat.setMetricType(entry.getKey().getSimpleName());
+					stat.setIndicator(indicators.get(i));
+					stat.setTotal(((Number)fields[5+i]).longValue());
+					dao.persist(stat);
+				}
 			}
 		}
 	}
 	
+	@Transactional
+	@Override
+	public void invalidateStats(Project project, int day) {
+		StatKey key = new StatKey(project.getId(), day);
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				// Coalesce invalidations of same day until update is started
+				if (pendingStats.add(key)) {
+					executorService.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							pendingStats.remove(key);
+							try {
+								// Update on leader server to avoid concurrent updates of same day
+								clusterManager.runOnServer(clusterManager.getLeaderServerUUID(), new ClusterTask<Void>() {
+
+									private static final long serialVersionUID = 1L;
+
+									@Override
+									public Void call() throws Exception {
+										updateStats(key);
+										return null;
+									}
+									
+								});
+							} catch (Exception e) {
+								logger.error("Error updating build metric stats", e);
+							}
+						}
+						
+					});
+				}
+			}
+			
+		});
+	}
+	
+	private void updateStats(StatKey key) {
+		LockUtils.write("build-metric-stats:" + key.projectId, new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				transactionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = dao.get(Project.class, key.projectId);
+						if (project != null) {
+							Query<?> query = dao.getSession().createQuery(String.format(
+									"delete from BuildMetricStat where %s=:project and %s=:day", 
+									BuildMetricStat.PROP_PROJECT, BuildMetricStat.PROP_DAY));
+							query.setParameter("project", project);
+							query.setParameter("day", key.day);
+							query.executeUpdate();
+							populateStats(project, key.day);
+						}
+					}
+					
+				});
+				return null;
+			}
+			
+		});
+	}
+	
 	@Transactional
 	@Listen
 	public void on(EntityRemoved event) {
@@ -199,6 +454,10 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 					}
 				}
 			});
+		} else if (event.getEntity() instanceof Build) {
+			Build build = (Build) event.getEntity();
+			if (build.getFinishDay() != null)
+				invalidateStats(build.getProject(), build.getFinishDay());
 		}
 	}
 	
@@ -223,6 +482,12 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 				}
 				
 			});
+			if (buildMetric.getBuild().getFinishDay() != null)
+				invalidateStats(buildMetric.getBuild().getProject(), buildMetric.getBuild().getFinishDay());
+		} else if (event.getEntity() instanceof Build) {
+			Build build = (Build) event.getEntity();
+			if (build.getFinishDay() != null)
+				invalidateStats(build.getProject(), build.getFinishDay());
 		}
 	}
 	
@@ -332,4 +597,40 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		
 	}
 	
+	private static class StatKey implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		private final Long projectId;
+		
+		private final int day;
+		
+		public StatKey(Long projectId, int day) {
+			this.projectId = projectId;
+			this.day = day;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof StatKey)) 
+				return false;
+			if (this == other)
+				return true;
+			StatKey otherKey = (StatKey) other;
+			return new EqualsBuilder()
+				.append(projectId, otherKey.projectId)
+				.append(day, otherKey.day)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+				.append(projectId)
+				.append(day)
+				.toHashCode();
+		}		
+		
+	}
+	
 }
@@ -5,13 +5,16 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -32,12 +35,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.wicket.util.lang.Objects;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.unbescape.java.JavaEscape;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
 
 import edu.emory.mathcs.backport.java.util.Collections;
 import io.onedev.commons.loader.ManagedSerializedForm;
@@ -53,6 +55,7 @@ import io.onedev.server.entitymanager.IssueLinkManager;
 import io.onedev.server.entitymanager.IssueManager;
 import io.onedev.server.entitymanager.IssueQueryPersonalizationManager;
 import io.onedev.server.entitymanager.LinkSpecManager;
+import io.onedev.server.entitymanager.ProjectCounterManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.RoleManager;
 import io.onedev.server.entitymanager.SettingManager;
@@ -66,7 +69,7 @@ import io.onedev.server.event.issue.IssueEvent;
 import io.onedev.server.event.issue.IssueOpened;
 import io.onedev.server.event.pubsub.Listen;
 import io.onedev.server.event.pubsub.ListenerRegistry;
-import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueAuthorization;
 import io.onedev.server.model.IssueComment;
@@ -76,6 +79,7 @@ import io.onedev.server.model.IssueSchedule;
 import io.onedev.server.model.LinkSpec;
 import io.onedev.server.model.Milestone;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.ProjectCounter;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.LastUpdate;
 import io.onedev.server.model.support.administration.GlobalIssueSetting;
@@ -100,6 +104,7 @@ import io.onedev.server.search.entity.issue.IssueQueryParseOption;
 import io.onedev.server.search.entity.issue.IssueQueryUpdater;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessProject;
+import io.onedev.server.util.LongLongHashMap;
 import io.onedev.server.util.MilestoneAndIssueState;
 import io.onedev.server.util.Pair;
 import io.onedev.server.util.ProjectIssueStats;
@@ -115,7 +120,9 @@ import io.onedev.server.web.component.issue.workflowreconcile.UndefinedStateReso
 @Singleton
 public class DefaultIssueManager extends BaseEntityManager<Issue> implements IssueManager, Serializable {
 
-	private static final Logger logger = LoggerFactory.getLogger(DefaultIssueManager.class);
+	private static final int ID_CACHE_LOCK_STRIPES = 64;
+	
+	private static final long MAX_CACHED_ISSUE_IDS = 1000000;
 	
 	private static final List<String> ISSUE_FIX_WORDS = Lists.newArrayList(
 			"fix", "fixed", "fixes", "fixing", 
@@ -163,11 +170,20 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	
 	private final SessionManager sessionManager;
 	
+	private final ClusterManager clusterManager;
+	
+	private final ProjectCounterManager counterManager;
+	
+	private final MarkdownManager markdownManager;
+	
 	private final SequenceGenerator numberGenerator;
 	
-	private final Map<Long, Map<Long, Long>> idCache = new HashMap<>();
+	// Issue ids by number of recently accessed projects, loaded on demand
+	private final LinkedHashMap<Long, LongLongHashMap> idCache = new LinkedHashMap<>(16, 0.75f, true);
 	
-	private final ReadWriteLock idCacheLock = new ReentrantReadWriteLock();
+	private final Striped<ReadWriteLock> idCacheLocks = Striped.lazyWeakReadWriteLock(ID_CACHE_LOCK_STRIPES);
+	
+	private long cachedIssueIds;
 	
 	@Inject
 	public DefaultIssueManager(Dao dao, IssueFieldManager fieldManager, 
@@ -177,7 +193,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 			RoleManager roleManager, AttachmentManager attachmentStorageManager, 
 			IssueCommentManager commentManager, EntityReferenceManager entityReferenceManager, 
 			LinkSpecManager linkSpecManager, IssueLinkManager linkManager, 
-			IssueAuthorizationManager authorizationManager, SessionManager sessionManager) {
+			IssueAuthorizationManager authorizationManager, SessionManager sessionManager, 
+			ProjectCounterManager counterManager, MarkdownManager markdownManager) {
 		super(dao);
 		this.fieldManager = fieldManager;
 		this.queryPersonalizationManager = queryPersonalizationManager;
@@ -194,6 +211,9 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		this.entityReferenceManager = entityReferenceManager;
 		this.authorizationManager = authorizationManager;
 		this.sessionManager = sessionManager;
+		this.clusterManager = clusterManager;
+		this.counterManager = counterManager;
+		this.markdownManager = markdownManager;
 		
 		numberGenerator = new SequenceGenerator(Issue.class, clusterManager, dao);
 	}
@@ -202,28 +222,101 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		return new ManagedSerializedForm(IssueManager.class);
 	}
 	
+	@Nullable
+	private LongLongHashMap getCachedIssueIds(Long projectId) {
+		synchronized (idCache) {
+			return idCache.get(projectId);
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
-	@Sessional
-	@Listen
-	public void on(SystemStarted event) {
-		logger.info("Caching issue info...");
-		
-		Query<?> query = dao.getSession().createQuery("select id, project.id, number from Issue");
-		for (Object[] fields: (List<Object[]>)query.list()) {
-			Long issueId = (Long) fields[0];
-			Long projectId = (Long) fields[1];
-			Long issueNumber = (Long) fields[2];
-			getIdCacheInProject(projectId).put(issueNumber, issueId);
+	private LongLongHashMap loadIssueIds(Long projectId) {
+		Query<?> query = dao.getSession().createQuery("select number, id from Issue where project.id=:projectId");
+		query.setParameter("projectId", projectId);
+		List<Object[]> results = (List<Object[]>) query.list();
+		LongLongHashMap issueIds = new LongLongHashMap(results.size());
+		for (Object[] fields: results) 
+			issueIds.put((Long) fields[0], (Long) fields[1]);
+		
+		synchronized (idCache) {
+			idCache.put(projectId, issueIds);
+			cachedIssueIds += issueIds.size();
+			
+			// Keep issue ids of current project even if it exceeds the limit alone
+			Iterator<LongLongHashMap> it = idCache.values().iterator();
+			while (cachedIssueIds > MAX_CACHED_ISSUE_IDS && idCache.size() > 1) {
+				cachedIssueIds -= it.next().size();
+				it.remove();
+			}
 		}
+		return issueIds;
 	}
 	
-	private Map<Long, Long> getIdCacheInProject(Long projectId) {
-		Map<Long, Long> idCacheOfProject = idCache.get(projectId);
-		if (idCacheOfProject == null) {
-			idCacheOfProject = new HashMap<>();
-			idCache.put(projectId, idCacheOfProject);
+	/*
+	 * Issue ids of a project are only updated when they are cached, as they will be loaded 
+	 * from database otherwise. Caller should hold write lock of the project
+	 */
+	private void updateCachedIssueIds(Long projectId, Consumer<LongLongHashMap> updater) {
+		synchronized (idCache) {
+			LongLongHashMap issueIds = idCache.get(projectId);
+			if (issueIds != null) {
+				cachedIssueIds -= issueIds.size();
+				updater.accept(issueIds);
+				cachedIssueIds += issueIds.size();
+			}
+		}
+	}
+	
+	private void cacheIssueId(Long projectId, Long issueNumber, Long issueId) {
+		ReadWriteLock lock = idCacheLocks.get(projectId);
+		lock.writeLock().lock();
+		try {
+			updateCachedIssueIds(projectId, it -> it.put(issueNumber, issueId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private void uncacheIssueIds(Long projectId) {
+		ReadWriteLock lock = idCacheLocks.get(projectId);
+		lock.writeLock().lock();
+		try {
+			synchronized (idCache) {
+				LongLongHashMap issueIds = idCache.remove(projectId);
+				if (issueIds != null)
+					cachedIssueIds -= issueIds.size();
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
-		return idCacheOfProject;
+	}
+	
+	/*
+	 * Issue ids are cached on every server resolving issue numbers, so changes of number 
+	 * mapping should be applied on all servers 
+	 */
+	private void uncacheIssueIdsOnAllServers(Collection<Long> projectIds) {
+		transactionManager.runAfterCommit(new ClusterRunnable() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						for (Long projectId: projectIds)
+							uncacheIssueIds(projectId);
+						return null;
+					}
+					
+				});
+			}
+			
+		});
 	}
 	
 	@Sessional
@@ -292,21 +385,35 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Override
 	public void save(Issue issue) {
+		boolean isNew = issue.isNew();
 		super.save(issue);
 		
 		Long projectId = issue.getProject().getId();
 		Long issueId = issue.getId();
 		Long issueNumber = issue.getNumber();
 		
-		transactionManager.runAfterCommit(new Runnable() {
+		transactionManager.runAfterCommit(new ClusterRunnable() {
+
+			private static final long serialVersionUID = 1L;
 
 			@Override
 			public void run() {
-				idCacheLock.writeLock().lock();
-				try {
-					getIdCacheInProject(projectId).put(issueNumber, issueId);
-				} finally {
-					idCacheLock.writeLock().unlock();
+				// Number mapping of existing issues only changes when moved, which is handled 
+				// separately
+				if (isNew) {
+					clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						public Void call() throws Exception {
+							cacheIssueId(projectId, issueNumber, issueId);
+							return null;
+						}
+						
+					});
+				} else {
+					cacheIssueId(projectId, issueNumber, issueId);
 				}
 			}
 			
@@ -364,6 +471,26 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		return issues;
 	}
 	
+	@Sessional
+	@Override
+	public List<Issue> queryAfter(@Nullable ProjectScope projectScope, EntityQuery<Issue> issueQuery, 
+			@Nullable Long afterId, int count) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Issue> criteriaQuery = builder.createQuery(Issue.class);
+		Root<Issue> root = criteriaQuery.from(Issue.class);
+		
+		List<Predicate> predicates = Lists.newArrayList(
+				getPredicates(projectScope, issueQuery.getCriteria(), criteriaQuery, builder, root));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(Issue.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(Issue.PROP_ID)));
+		
+		Query<Issue> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(count);
+		return query.getResultList();
+	}
+	
 	@Transactional
 	@Listen
 	public void on(IssueEvent event) {
@@ -690,6 +817,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 			project.getBuildSetting().fixUndefinedStates(resolutions);
 		}
 		
+		counterManager.invalidateCounters(ProjectCounter.Type.ISSUE);
+		
 		for (LinkSpec link: linkSpecManager.query()) {
 			for (IssueQueryUpdater updater: link.getQueryUpdaters())
 				updater.fixUndefinedStates(resolutions);
@@ -952,16 +1081,29 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		
 		Long projectId = issue.getProject().getId();
 		Long issueNumber = issue.getNumber();
-		transactionManager.runAfterCommit(new Runnable() {
+		transactionManager.runAfterCommit(new ClusterRunnable() {
+
+			private static final long serialVersionUID = 1L;
 
 			@Override
 			public void run() {
-				idCacheLock.writeLock().lock();
-				try {
-					getIdCacheInProject(projectId).remove(issueNumber);
-				} finally {
-					idCacheLock.writeLock().unlock();
-				}
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						ReadWriteLock lock = idCacheLocks.get(projectId);
+						lock.writeLock().lock();
+						try {
+							updateCachedIssueIds(projectId, it -> it.remove(issueNumber));
+						} finally {
+							lock.writeLock().unlock();
+						}
+						return null;
+					}
+					
+				});
 			}
 		});
 	}
@@ -974,29 +1116,35 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	    	if (project.getForkRoot().equals(project))
 	    		numberGenerator.removeNextSequence(project);
 			
-			Long projectId = project.getId();
-			transactionManager.runAfterCommit(new Runnable() {
-
-				@Override
-				public void run() {
-					idCacheLock.writeLock().lock();
-					try {
-						idCache.remove(projectId);
-					} finally {
-						idCacheLock.writeLock().unlock();
-					}
-				}
-			});
+			uncacheIssueIdsOnAllServers(Lists.newArrayList(project.getId()));
 		}
 	}
 
+	@Sessional
 	@Override
 	public Long getIssueId(Long projectId, Long issueNumber) {
-		idCacheLock.readLock().lock();
+		ReadWriteLock lock = idCacheLocks.get(projectId);
+		lock.readLock().lock();
+		try {
+			LongLongHashMap issueIds = getCachedIssueIds(projectId);
+			if (issueIds != null)
+				return issueIds.containsKey(issueNumber)? issueIds.get(issueNumber, 0): null;
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		/*
+		 * Load under write lock of the project, so that issue saved or deleted after the 
+		 * load query will update loaded issue ids after they are cached
+		 */
+		lock.writeLock().lock();
 		try {
-			return getIdCacheInProject(projectId).get(issueNumber);
+			LongLongHashMap issueIds = getCachedIssueIds(projectId);
+			if (issueIds == null)
+				issueIds = loadIssueIds(projectId);
+			return issueIds.containsKey(issueNumber)? issueIds.get(issueNumber, 0): null;
 		} finally {
-			idCacheLock.readLock().unlock();
+			lock.writeLock().unlock();
 		}
 	}
 	
@@ -1050,6 +1198,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	public void move(Project targetProject, Collection<Issue> issues) {
 		List<Pair<Long, String>> attachmentGroupInfos = new ArrayList<>();
 		Map<Long, Long> numberMapping = new HashMap<>();
+		Set<Long> sourceProjectIds = new HashSet<>();
 		List<Issue> issueList = new ArrayList<>(issues);
 		Collections.sort(issueList);
 		for (Issue issue: issueList) {
@@ -1068,6 +1217,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 
 			Project numberScope = targetProject.getForkRoot();
 			Long nextNumber = getNextNumber(numberScope);
+			counterManager.invalidateCounters(issue.getProject(), ProjectCounter.Type.ISSUE);
+			sourceProjectIds.add(issue.getProject().getId());
 			issue.setProject(targetProject);
 			issue.setNumberScope(numberScope);
 			Long oldNumber = issue.getNumber();
@@ -1098,6 +1249,14 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		}
 		
 		Long targetProjectId = targetProject.getId();
+		
+		Collection<Long> uncacheProjectIds = new HashSet<>(sourceProjectIds);
+		uncacheProjectIds.add(targetProjectId);
+		uncacheIssueIdsOnAllServers(uncacheProjectIds);
+		
+		// Moved issues are renumbered, and may be referenced from other projects
+		markdownManager.invalidateProcessCache(null);
+		
 		transactionManager.runAfterCommit(new ClusterRunnable() {
 
 			private static final long serialVersionUID = 1L;
@@ -1175,41 +1334,56 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		if (projects.isEmpty()) {
 			return new ArrayList<>();
 		} else {
-			CriteriaBuilder builder = getSession().getCriteriaBuilder();
-			CriteriaQuery<ProjectIssueStats> criteriaQuery = builder.createQuery(ProjectIssueStats.class);
-			Root<Issue> root = criteriaQuery.from(Issue.class);
-			
-			criteriaQuery.multiselect(
-					root.get(Issue.PROP_PROJECT).get(Project.PROP_ID), 
-					root.get(Issue.PROP_STATE_ORDINAL), 
-					builder.count(root));
-			criteriaQuery.groupBy(root.get(Issue.PROP_PROJECT), root.get(Issue.PROP_STATE_ORDINAL));
-			
-			Collection<Project> projectsWithConfidentialIssuePermission = new ArrayList<>();
-			Collection<Project> projectsWithoutConfidentialIssuePermission = new ArrayList<>();
-			List<Long> projectIds = new ArrayList<>();
+			Set<Long> projectIdsWithConfidentialIssuePermission = new HashSet<>();
+			List<Long> projectIdsWithoutConfidentialIssuePermission = new ArrayList<>();
 			for (Project project: projects) {
 				if (SecurityUtils.canAccessConfidentialIssues(project))
-					projectsWithConfidentialIssuePermission.add(project);
+					projectIdsWithConfidentialIssuePermission.add(project.getId());
 				else
-					projectsWithoutConfidentialIssuePermission.add(project);
-				projectIds.add(project.getId());
+					projectIdsWithoutConfidentialIssuePermission.add(project.getId());
 			}
 			
-			List<Predicate> predicates = new ArrayList<>();
-			if (!projectsWithConfidentialIssuePermission.isEmpty())
-				predicates.add(root.get(Issue.PROP_PROJECT).in(projectsWithConfidentialIssuePermission));
-			if (!projectsWithoutConfidentialIssuePermission.isEmpty()) {
-				predicates.add(builder.and(
-						builder.equal(root.get(Issue.PROP_CONFIDENTIAL), false),
-						root.get(Issue.PROP_PROJECT).in(projectsWithoutConfidentialIssuePermission)));
+			Map<Pair<Long, Integer>, Long> stateCounts = new HashMap<>();
+			for (ProjectCounter counter: counterManager.query(projects, ProjectCounter.Type.ISSUE)) {
+				Long projectId = counter.getProject().getId();
+				if (!counter.isConfidential() || projectIdsWithConfidentialIssuePermission.contains(projectId)) {
+					int stateOrdinal = getIssueSetting().getStateOrdinal(counter.getState());
+					if (stateOrdinal != -1)
+						stateCounts.merge(new Pair<>(projectId, stateOrdinal), counter.getCount(), Long::sum);
+				}
 			}
-			predicates.add(getAuthorizationPredicate(criteriaQuery, builder, root, projectIds));
 			
-			criteriaQuery.where(builder.or(predicates.toArray(new Predicate[0])));
-			criteriaQuery.orderBy(builder.asc(root.get(Issue.PROP_STATE_ORDINAL)));
+			/*
+			 * Counters do not know about issue authorizations. Confidential issues authorized 
+			 * to current user are normally few, and are counted directly
+			 */
+			if (!projectIdsWithoutConfidentialIssuePermission.isEmpty() && SecurityUtils.getUser() != null) {
+				CriteriaBuilder builder = getSession().getCriteriaBuilder();
+				CriteriaQuery<ProjectIssueStats> criteriaQuery = builder.createQuery(ProjectIssueStats.class);
+				Root<Issue> root = criteriaQuery.from(Issue.class);
+				
+				criteriaQuery.multiselect(
+						root.get(Issue.PROP_PROJECT).get(Project.PROP_ID), 
+						root.get(Issue.PROP_STATE_ORDINAL), 
+						builder.count(root));
+				criteriaQuery.groupBy(root.get(Issue.PROP_PROJECT), root.get(Issue.PROP_STATE_ORDINAL));
+				criteriaQuery.where(
+						builder.equal(root.get(Issue.PROP_CONFIDENTIAL), true), 
+						getAuthorizationPredicate(criteriaQuery, builder, root, projectIdsWithoutConfidentialIssuePermission));
+				
+				for (ProjectIssueStats stats: getSession().createQuery(criteriaQuery).getResultList()) {
+					stateCounts.merge(new Pair<>(stats.getProjectId(), stats.getStateOrdinal()), 
+							stats.getStateCount(), Long::sum);
+				}
+			}
 			
-			return getSession().createQuery(criteriaQuery).getResultList();
+			List<ProjectIssueStats> stats = new ArrayList<>();
+			for (Map.Entry<Pair<Long, Integer>, Long> entry: stateCounts.entrySet()) {
+				stats.add(new ProjectIssueStats(entry.getKey().getFirst(), 
+						entry.getKey().getSecond(), entry.getValue()));
+			}
+			stats.sort(Comparator.comparing(ProjectIssueStats::getStateOrdinal));
+			return stats;
 		}
 	}
 
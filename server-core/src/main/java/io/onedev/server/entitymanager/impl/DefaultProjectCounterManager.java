@@ -0,0 +1,338 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.query.Query;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.ProjectCounterManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.ProjectCounter;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultProjectCounterManager implements ProjectCounterManager, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultProjectCounterManager.class);
+	
+	private final Dao dao;
+	
+	private final TransactionManager transactionManager;
+	
+	private final ClusterManager clusterManager;
+	
+	private final ExecutorService executorService;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final Set<CounterKey> pendingCounters = ConcurrentHashMap.newKeySet();
+	
+	private volatile String taskId;
+	
+	@Inject
+	public DefaultProjectCounterManager(Dao dao, TransactionManager transactionManager, 
+			ClusterManager clusterManager, ExecutorService executorService, TaskScheduler taskScheduler) {
+		this.dao = dao;
+		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
+		this.executorService = executorService;
+		this.taskScheduler = taskScheduler;
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(ProjectCounterManager.class);
+	}
+	
+	@Sessional
+	@Override
+	public List<ProjectCounter> query(Collection<Project> projects, ProjectCounter.Type type) {
+		if (projects.isEmpty()) 
+			return new ArrayList<>();
+		
+		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
+		CriteriaQuery<ProjectCounter> criteriaQuery = builder.createQuery(ProjectCounter.class);
+		Root<ProjectCounter> root = criteriaQuery.from(ProjectCounter.class);
+		criteriaQuery.where(
+				builder.equal(root.get(ProjectCounter.PROP_TYPE), type), 
+				root.get(ProjectCounter.PROP_PROJECT).in(projects));
+		return dao.getSession().createQuery(criteriaQuery).getResultList();
+	}
+	
+	@Transactional
+	@Override
+	public void invalidateCounters(Project project, ProjectCounter.Type type) {
+		invalidateCounters(new CounterKey(project.getId(), type));
+	}
+
+	@Transactional
+	@Override
+	public void invalidateCounters(ProjectCounter.Type type) {
+		invalidateCounters(new CounterKey(null, type));
+	}
+	
+	private void invalidateCounters(CounterKey key) {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				// Coalesce invalidations of same counters until update is started
+				if (pendingCounters.add(key)) {
+					executorService.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							pendingCounters.remove(key);
+							try {
+								// Update on leader server to avoid concurrent updates of same counters
+								clusterManager.runOnServer(clusterManager.getLeaderServerUUID(), new ClusterTask<Void>() {
+
+									private static final long serialVersionUID = 1L;
+
+									@Override
+									public Void call() throws Exception {
+										updateCounters(key);
+										return null;
+									}
+									
+								});
+							} catch (Exception e) {
+								logger.error("Error updating project counters", e);
+							}
+						}
+						
+					});
+				}
+			}
+			
+		});
+	}
+	
+	/*
+	 * Counters of same type are updated serially, so that recalculation of all projects 
+	 * does not race with recalculation of a single project 
+	 */
+	private void updateCounters(CounterKey key) {
+		LockUtils.write("project-counters:" + key.type.name(), new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				transactionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project;
+						if (key.projectId != null) {
+							project = dao.get(Project.class, key.projectId);
+							if (project == null)
+								return;
+						} else {
+							project = null;
+						}
+						String queryString = String.format("delete from ProjectCounter where %s=:type", 
+								ProjectCounter.PROP_TYPE);
+						if (project != null)
+							queryString += String.format(" and %s=:project", ProjectCounter.PROP_PROJECT);
+						Query<?> query = dao.getSession().createQuery(queryString);
+						query.setParameter("type", key.type);
+						if (project != null)
+							query.setParameter("project", project);
+						query.executeUpdate();
+						populateCounters(project, key.type);
+					}
+					
+				});
+				return null;
+			}
+			
+		});
+	}
+	
+	/*
+	 * Count entities of specified type of specified project. Entities of all projects will be 
+	 * counted if project is not specified
+	 */
+	private void populateCounters(@Nullable Project project, ProjectCounter.Type type) {
+		String queryString;
+		switch (type) {
+		case ISSUE:
+			queryString = String.format("select entity.%s.id, entity.%s, entity.%s, count(*) from Issue entity", 
+					Issue.PROP_PROJECT, Issue.PROP_STATE, Issue.PROP_CONFIDENTIAL);
+			if (project != null)
+				queryString += String.format(" where entity.%s=:project", Issue.PROP_PROJECT);
+			queryString += String.format(" group by entity.%s.id, entity.%s, entity.%s", 
+					Issue.PROP_PROJECT, Issue.PROP_STATE, Issue.PROP_CONFIDENTIAL);
+			break;
+		case PULL_REQUEST:
+			queryString = String.format("select entity.%s.id, entity.%s, count(*) from PullRequest entity", 
+					PullRequest.PROP_TARGET_PROJECT, PullRequest.PROP_STATUS);
+			if (project != null)
+				queryString += String.format(" where entity.%s=:project", PullRequest.PROP_TARGET_PROJECT);
+			queryString += String.format(" group by entity.%s.id, entity.%s", 
+					PullRequest.PROP_TARGET_PROJECT, PullRequest.PROP_STATUS);
+			break;
+		default:
+			queryString = String.format("select entity.%s.id, entity.%s, count(*) from Build entity", 
+					Build.PROP_PROJECT, Build.PROP_STATUS);
+			if (project != null)
+				queryString += String.format(" where entity.%s=:project", Build.PROP_PROJECT);
+			queryString += String.format(" group by entity.%s.id, entity.%s", 
+					Build.PROP_PROJECT, Build.PROP_STATUS);
+		}
+		
+		Query<?> query = dao.getSession().createQuery(queryString);
+		if (project != null)
+			query.setParameter("project", project);
+		
+		for (Object result: query.list()) {
+			Object[] fields = (Object[]) result;
+			ProjectCounter counter = new ProjectCounter();
+			counter.setProject(dao.load(Project.class, (Long)fields[0]));
+			counter.setType(type);
+			if (fields[1] instanceof Enum)
+				counter.setState(((Enum<?>)fields[1]).name());
+			else
+				counter.setState((String)fields[1]);
+			if (type == ProjectCounter.Type.ISSUE) 
+				counter.setConfidential((boolean)fields[2]);
+			counter.setCount(((Number)fields[fields.length-1]).longValue());
+			dao.persist(counter);
+		}
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		invalidateCounters(event.getEntity());
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		invalidateCounters(event.getEntity());
+	}
+	
+	private void invalidateCounters(Object entity) {
+		if (entity instanceof Issue) 
+			invalidateCounters(((Issue) entity).getProject(), ProjectCounter.Type.ISSUE);
+		else if (entity instanceof PullRequest) 
+			invalidateCounters(((PullRequest) entity).getTargetProject(), ProjectCounter.Type.PULL_REQUEST);
+		else if (entity instanceof Build) 
+			invalidateCounters(((Build) entity).getProject(), ProjectCounter.Type.BUILD);
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		if (clusterManager.isLeaderServer() && dao.count(ProjectCounter.class) == 0) {
+			logger.info("Populating project counters...");
+			transactionManager.run(new Runnable() {
+
+				@Override
+				public void run() {
+					for (ProjectCounter.Type type: ProjectCounter.Type.values())
+						populateCounters(null, type);
+				}
+				
+			});
+		}
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+	
+	/*
+	 * Reconcile counters periodically in case some changes are not captured, for instance 
+	 * when server crashes before counters are recalculated
+	 */
+	@Override
+	public void execute() {
+		if (clusterManager.isLeaderServer()) {
+			for (ProjectCounter.Type type: ProjectCounter.Type.values()) 
+				updateCounters(new CounterKey(null, type));
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.dailyAtHourAndMinute(2, 0);
+	}
+	
+	private static class CounterKey implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		private final Long projectId;
+		
+		private final ProjectCounter.Type type;
+		
+		public CounterKey(@Nullable Long projectId, ProjectCounter.Type type) {
+			this.projectId = projectId;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof CounterKey)) 
+				return false;
+			if (this == other)
+				return true;
+			CounterKey otherKey = (CounterKey) other;
+			return new EqualsBuilder()
+				.append(projectId, otherKey.projectId)
+				.append(type, otherKey.type)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+				.append(projectId)
+				.append(type)
+				.toHashCode();
+		}		
+		
+	}
+	
+}
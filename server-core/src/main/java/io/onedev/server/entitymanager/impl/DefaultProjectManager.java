@@ -6,6 +6,7 @@ import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -15,7 +16,10 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -34,18 +38,25 @@ import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.WindowCache;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
 import org.hibernate.Session;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.beust.jcommander.internal.Lists;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 import com.hazelcast.cluster.Member;
 import com.hazelcast.cluster.MembershipEvent;
 import com.hazelcast.cluster.MembershipListener;
@@ -73,6 +84,7 @@ import io.onedev.server.entitymanager.RoleManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserAuthorizationManager;
 import io.onedev.server.event.ProjectCreated;
+import io.onedev.server.event.ProjectStorageReleased;
 import io.onedev.server.event.RefUpdated;
 import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
@@ -83,6 +95,7 @@ import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.git.CommandUtils;
 import io.onedev.server.git.GitTask;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.RepositoryCacheStats;
 import io.onedev.server.git.command.CloneCommand;
 import io.onedev.server.git.command.LfsFetchAllCommand;
 import io.onedev.server.git.hook.HookUtils;
@@ -90,6 +103,7 @@ import io.onedev.server.git.service.GitService;
 import io.onedev.server.git.service.RefFacade;
 import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.job.JobManager;
+import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.GroupAuthorization;
@@ -99,11 +113,13 @@ import io.onedev.server.model.Milestone;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
 import io.onedev.server.model.User;
 import io.onedev.server.model.UserAuthorization;
 import io.onedev.server.model.support.BranchProtection;
 import io.onedev.server.model.support.TagProtection;
 import io.onedev.server.model.support.administration.GlobalProjectSetting;
+import io.onedev.server.model.support.administration.PerformanceSetting;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
@@ -132,6 +148,12 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultProjectManager.class);
 	
+	private static final long MIN_GIT_CACHE_SIZE = 10*1024*1024L;
+	
+	private static final long MAX_GIT_PACK_CACHE_SIZE = 1024*1024*1024L;
+	
+	private static final long MAX_GIT_DELTA_CACHE_SIZE = 256*1024*1024L;
+	
     private final CommitInfoManager commitInfoManager;
     
     private final BuildManager buildManager;
@@ -162,10 +184,26 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
     
     private final GitService gitService;
     
-	private final Map<Long, Repository> repositoryCache = new ConcurrentHashMap<>();
+    private final MarkdownManager markdownManager;
+    
+	private final AtomicLong repositoryHits = new AtomicLong();
+	
+	private final AtomicLong repositoryMisses = new AtomicLong();
+	
+	private final AtomicLong repositoryEvictions = new AtomicLong();
+	
+	// Rebuilt when max number of cached repositories is changed in performance setting
+	private volatile Cache<Long, Repository> repositoryCache = 
+			newRepositoryCache(new PerformanceSetting().getMaxCachedRepositories());
+	
+	private volatile int maxCachedRepositories = new PerformanceSetting().getMaxCachedRepositories();
+	
+	private final Map<Long, LongAdder> repositoryAccesses = new ConcurrentHashMap<>();
 
 	private volatile IMap<Long, ProjectServer> storageServers;
 	
+	private volatile IMap<Long, Long> storageVersions;
+	
 	private volatile ProjectCache cache;
 	
     @Inject
@@ -175,7 +213,8 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
     		SessionManager sessionManager, ListenerRegistry listenerRegistry, 
     		UserAuthorizationManager userAuthorizationManager, RoleManager roleManager, 
     		JobManager jobManager, IssueManager issueManager, LinkSpecManager linkSpecManager, 
-    		StorageManager storageManager, ClusterManager clusterManager, GitService gitService) {
+    		StorageManager storageManager, ClusterManager clusterManager, GitService gitService, 
+    		MarkdownManager markdownManager) {
     	super(dao);
     	
         this.commitInfoManager = commitInfoManager;
@@ -193,29 +232,99 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
         this.storageManager = storageManager;
         this.clusterManager = clusterManager;
         this.gitService = gitService;
+        this.markdownManager = markdownManager;
     }
     
 	public Object writeReplace() throws ObjectStreamException {
 		return new ManagedSerializedForm(ProjectManager.class);
 	}
 
+    /*
+     * Evicted repository handles are closed to release pack files. This is safe even if the 
+     * handle is still being used elsewhere, as JGit reopens pack files of a closed repository 
+     * on demand
+     */
+    private Cache<Long, Repository> newRepositoryCache(int maxCachedRepositories) {
+    	return CacheBuilder.newBuilder()
+    			.maximumSize(maxCachedRepositories)
+    			.removalListener((RemovalListener<Long, Repository>) notification -> {
+    				if (notification.wasEvicted())
+    					repositoryEvictions.incrementAndGet();
+    				notification.getValue().close();
+    			})
+    			.build();
+    }
+    
     @Override
     public Repository getRepository(Long projectId) {
-    	Repository repository = repositoryCache.get(projectId);
-    	if (repository == null) {
-    		synchronized (repositoryCache) {
-    			repository = repositoryCache.get(projectId);
-    			if (repository == null) {
-    				try {
-						repository = new FileRepository(storageManager.getProjectGitDir(projectId));
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-    				repositoryCache.put(projectId, repository);
-    			}
-    		}
+    	repositoryAccesses.computeIfAbsent(projectId, k -> new LongAdder()).increment();
+    	Cache<Long, Repository> repositoryCache = this.repositoryCache;
+    	Repository repository = repositoryCache.getIfPresent(projectId);
+    	if (repository != null) {
+    		repositoryHits.incrementAndGet();
+    		return repository;
+    	}
+    	
+    	// Repository is opened only once even if requested concurrently, without blocking 
+    	// access to other repositories
+    	try {
+    		return repositoryCache.get(projectId, () -> {
+    			repositoryMisses.incrementAndGet();
+    			return new FileRepository(storageManager.getProjectGitDir(projectId));
+    		});
+    	} catch (ExecutionException e) {
+    		throw new RuntimeException(e.getCause());
+    	}
+    }
+    
+    @Override
+    public RepositoryCacheStats getRepositoryCacheStats() {
+    	int cachedRepositories = (int) repositoryCache.size();
+    	WindowCacheStats packStats = WindowCache.getInstance().getStats();
+    	return new RepositoryCacheStats(cachedRepositories, repositoryHits.get(), repositoryMisses.get(), 
+    			repositoryEvictions.get(), packStats.getHitRatio(), packStats.getOpenFileCount(), 
+    			packStats.getOpenByteCount());
+    }
+    
+    @Override
+    public Map<Long, Long> getRepositoryAccesses() {
+    	Map<Long, Long> accesses = new HashMap<>();
+    	for (Map.Entry<Long, LongAdder> entry: repositoryAccesses.entrySet())
+    		accesses.put(entry.getKey(), entry.getValue().sum());
+    	return accesses;
+    }
+    
+    private void configureGitCache() {
+    	PerformanceSetting performanceSetting = settingManager.getPerformanceSetting();
+    	long maxMemory = Runtime.getRuntime().maxMemory();
+    	
+    	WindowCacheConfig config = new WindowCacheConfig();
+    	if (performanceSetting.getGitPackCacheSize() != null) {
+    		config.setPackedGitLimit(performanceSetting.getGitPackCacheSize()*1024*1024L);
+    	} else {
+    		config.setPackedGitLimit(Math.max(MIN_GIT_CACHE_SIZE, 
+    				Math.min(MAX_GIT_PACK_CACHE_SIZE, maxMemory/8)));
+    	}
+    	if (performanceSetting.getGitDeltaCacheSize() != null) {
+    		config.setDeltaBaseCacheLimit(Ints.saturatedCast(performanceSetting.getGitDeltaCacheSize()*1024*1024L));
+    	} else {
+    		config.setDeltaBaseCacheLimit(Ints.saturatedCast(Math.max(MIN_GIT_CACHE_SIZE, 
+    				Math.min(MAX_GIT_DELTA_CACHE_SIZE, maxMemory/64))));
+    	}
+    	config.setPackedGitMMAP(performanceSetting.isGitPackMmap());
+    	config.install();
+    	
+    	logger.debug("Git cache configured (pack cache: {}MB, delta cache: {}MB, mmap: {})", 
+    			config.getPackedGitLimit()/1024/1024, config.getDeltaBaseCacheLimit()/1024/1024, 
+    			config.isPackedGitMMAP());
+    	
+    	int maxCachedRepositories = performanceSetting.getMaxCachedRepositories();
+    	if (maxCachedRepositories != this.maxCachedRepositories) {
+    		Cache<Long, Repository> repositoryCache = newRepositoryCache(maxCachedRepositories);
+    		repositoryCache.putAll(this.repositoryCache.asMap());
+    		this.repositoryCache = repositoryCache;
+    		this.maxCachedRepositories = maxCachedRepositories;
     	}
-    	return repository;
     }
     
     @Transactional
@@ -241,6 +350,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
     		}
     		issueManager.clearSchedules(project, milestones);
     		settingManager.onMoveProject(oldPath, project.getPath());
+    		markdownManager.invalidateProcessCache(null);
     		
     		for (LinkSpec link: linkSpecManager.query()) {
     			for (IssueQueryUpdater updater: link.getQueryUpdaters())
@@ -316,6 +426,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 				public void run() {
 					cache.remove(projectId);
 					storageServers.remove(projectId);
+					storageVersions.remove(projectId);
 				}
     			
     		});
@@ -325,7 +436,27 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
     @Transactional
     @Listen
     public void on(EntityPersisted event) {
-    	if (event.getEntity() instanceof Project) {
+    	if (event.getEntity() instanceof Setting 
+    			&& ((Setting) event.getEntity()).getKey() == Setting.Key.PERFORMANCE) {
+    		transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					clusterManager.runOnAllServers(new ClusterTask<Void>() {
+
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						public Void call() throws Exception {
+							configureGitCache();
+							return null;
+						}
+						
+					});
+				}
+    			
+    		});
+    	} else if (event.getEntity() instanceof Project) {
     		ProjectFacade facade = ((Project)event.getEntity()).getFacade();
     		transactionManager.runAfterCommit(new Runnable() {
 
@@ -393,11 +524,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
     	
     	dao.remove(project);
     	
-    	synchronized (repositoryCache) {
-			Repository repository = repositoryCache.remove(project.getId());
-			if (repository != null) 
-				repository.close();
-		}
+    	repositoryCache.invalidate(project.getId());
     }
     
     @Override
@@ -673,18 +800,22 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		}
 	}
 	
+	@Listen
+	public void on(ProjectStorageReleased event) {
+		repositoryCache.invalidate(event.getProjectId());
+		repositoryAccesses.remove(event.getProjectId());
+	}
+	
 	@Listen
 	public void on(SystemStopping event) {
-		synchronized(repositoryCache) {
-			for (Repository repository: repositoryCache.values()) {
-				repository.close();
-			}
-		}
+		repositoryCache.invalidateAll();
 	}
 
 	@Transactional
 	@Listen(1)
 	public void on(SystemStarted event) {
+		configureGitCache();
+		
 		HazelcastInstance hazelcastInstance = clusterManager.getHazelcastInstance();
         cache = new ProjectCache(hazelcastInstance.getMap("projectCache"));
         IAtomicLong projectCacheLoaded = hazelcastInstance.getCPSubsystem().getAtomicLong("projectCacheLoaded");
@@ -706,15 +837,14 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		logger.info("Checking projects...");
 		
 		storageServers = hazelcastInstance.getMap("projectStorageServers");
+		storageVersions = hazelcastInstance.getMap("projectStorageVersions");
 		
 		storageServers.addEntryListener(new StorageEntryListener(), true);
-		UUID localServerUUID = clusterManager.getLocalServerUUID();
 		for (File file: storageManager.getProjectsDir().listFiles()) {
 			Long projectId = Long.valueOf(file.getName());
-			if (cache.get(projectId) != null) {
+			if (cache.get(projectId) != null && claimStorage(projectId)) {
 				checkGitDir(projectId);
 				checkGitHooksAndConfig(projectId);
-				storageServers.put(projectId, new ProjectServer(localServerUUID, Lists.newArrayList()));
 			}
 		}
 		
@@ -916,6 +1046,26 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		return projectQuery.getResultList();
 	}
 
+	@Sessional
+	@Override
+	public List<Project> queryAfter(EntityQuery<Project> query, @Nullable Long afterId, int count) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Project> criteriaQuery = builder.createQuery(Project.class);
+		Root<Project> root = criteriaQuery.from(Project.class);
+		criteriaQuery.select(root);
+		
+		List<Predicate> predicates = Lists.newArrayList(
+				getPredicates(query.getCriteria(), criteriaQuery, root, builder));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(Project.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(Project.PROP_ID)));
+		
+		Query<Project> projectQuery = getSession().createQuery(criteriaQuery);
+		projectQuery.setMaxResults(count);
+		return projectQuery.getResultList();
+	}
+	
 	@Sessional
 	@Override
 	public int count(Criteria<Project> projectCriteria) {
@@ -1005,6 +1155,88 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 			return null;
 	}
 
+	@Override
+	public boolean switchStorageServer(Long projectId, UUID fromServerUUID, UUID toServerUUID, 
+			long storageVersion) {
+		storageServers.lock(projectId);
+		try {
+			ProjectServer server = storageServers.get(projectId);
+			if (server == null || !server.getPrimary().equals(fromServerUUID))
+				return false;
+			List<UUID> backups = new ArrayList<>(server.getBackups());
+			backups.remove(toServerUUID);
+			if (storageServers.replace(projectId, server, new ProjectServer(toServerUUID, backups))) {
+				storageVersions.put(projectId, storageVersion);
+				return true;
+			} else {
+				return false;
+			}
+		} finally {
+			storageServers.unlock(projectId);
+		}
+	}
+	
+	/**
+	 * Claim storage of specified project found on this server at startup. Copy of project 
+	 * storage left on previous storage server may survive a migration if it fails to be 
+	 * deleted there, and it should never be claimed over newer copy on other servers
+	 * 
+	 * @return
+	 * 			<tt>true</tt> if claimed, <tt>false</tt> if storage on this server is stale, or 
+	 * 			storage on other server is claimed already 
+	 */
+	private boolean claimStorage(Long projectId) {
+		UUID localServerUUID = clusterManager.getLocalServerUUID();
+		long localVersion = storageManager.getProjectStorageVersion(projectId);
+		storageServers.lock(projectId);
+		try {
+			ProjectServer server = storageServers.get(projectId);
+			Long version = storageVersions.get(projectId);
+			if (version == null)
+				version = 0L;
+			if (server == null 
+					|| localVersion > version 
+					|| localVersion == version && clusterManager.getServer(server.getPrimary(), false) == null) {
+				if (server != null && localVersion > version && !server.getPrimary().equals(localServerUUID)) 
+					markStaleStorage(projectId, server.getPrimary());
+				storageServers.put(projectId, new ProjectServer(localServerUUID, Lists.newArrayList()));
+				storageVersions.put(projectId, localVersion);
+				return true;
+			} else {
+				if (localVersion < version) {
+					logger.warn("Removing stale storage of project (id: {})", projectId);
+					storageManager.deleteProjectDir(projectId);
+					FileUtils.deleteDir(storageManager.getProjectDir(projectId));
+				} else if (!server.getPrimary().equals(localServerUUID)) {
+					logger.warn("Storage of project (id: {}) is claimed by server {}, ignoring local copy", 
+							projectId, clusterManager.getServerAddress(server.getPrimary()));
+				}
+				return false;
+			}
+		} finally {
+			storageServers.unlock(projectId);
+		}
+	}
+	
+	private void markStaleStorage(Long projectId, UUID serverUUID) {
+		try {
+			clusterManager.runOnServer(serverUUID, new ClusterTask<Void>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Void call() throws Exception {
+					storageManager.deleteProjectDir(projectId);
+					return null;
+				}
+				
+			});
+		} catch (Exception e) {
+			logger.error("Error marking stale storage of project (id: " + projectId + ") on server " 
+					+ clusterManager.getServerAddress(serverUUID), e);
+		}
+	}
+	
 	@Override
 	public <T> T runOnProjectServer(Long projectId, ClusterTask<T> task) {
 		return clusterManager.runOnServer(getStorageServerUUID(projectId, true), task);
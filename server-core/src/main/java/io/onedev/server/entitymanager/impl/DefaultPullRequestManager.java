@@ -14,9 +14,11 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -40,6 +42,8 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 import org.joda.time.DateTime;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +60,7 @@ import io.onedev.server.cluster.ClusterRunnable;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.PendingSuggestionApplyManager;
+import io.onedev.server.entitymanager.ProjectCounterManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestChangeManager;
 import io.onedev.server.entitymanager.PullRequestManager;
@@ -81,6 +86,8 @@ import io.onedev.server.event.pullrequest.PullRequestReviewRequested;
 import io.onedev.server.event.pullrequest.PullRequestReviewerRemoved;
 import io.onedev.server.event.pullrequest.PullRequestUnassigned;
 import io.onedev.server.event.pullrequest.PullRequestUpdated;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.service.GitService;
 import io.onedev.server.infomanager.CommitInfoManager;
@@ -92,6 +99,7 @@ import io.onedev.server.model.CodeCommentReply;
 import io.onedev.server.model.CodeCommentStatusChange;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.ProjectCounter;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequest.Status;
 import io.onedev.server.model.PullRequestAssignment;
@@ -130,9 +138,14 @@ import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.util.ProjectAndBranch;
 import io.onedev.server.util.ProjectPullRequestStats;
 import io.onedev.server.util.ProjectScopedNumber;
+import io.onedev.server.util.concurrent.BatchWorkManager;
+import io.onedev.server.util.concurrent.BatchWorker;
+import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.criteria.Criteria;
 import io.onedev.server.util.facade.EmailAddressFacade;
 import io.onedev.server.util.reviewrequirement.ReviewRequirement;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 
 @Singleton
 public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> 
@@ -142,6 +155,15 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPullRequestManager.class);
 	
+	private static final int UI_CHECK_PRIORITY = 10;
+	
+	private static final int BACKEND_CHECK_PRIORITY = 50;
+	
+	private static final long CHECK_DEBOUNCE_MILLIS = 5000;
+	
+	// Debounced check is submitted at latest after this delay even if target branch keeps changing
+	private static final long MAX_CHECK_DELAY_MILLIS = 60000;
+	
 	private final PullRequestUpdateManager updateManager;
 	
 	private final ProjectManager projectManager;
@@ -170,6 +192,18 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	
 	private final SequenceGenerator numberGenerator;
 	
+	private final BatchWorkManager batchWorkManager;
+	
+	private final ProjectCounterManager counterManager;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final Map<Long, Boolean> pendingChecks = new HashMap<>();
+	
+	private final Map<Long, DelayedCheck> delayedChecks = new HashMap<>();
+	
+	private String delayedCheckTaskId;
+	
 	@Inject
 	public DefaultPullRequestManager(Dao dao, PullRequestUpdateManager updateManager,  
 			PullRequestReviewManager reviewManager, MarkdownManager markdownManager, 
@@ -179,7 +213,8 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 			EntityReferenceManager referenceManager, ClusterManager clusterManager, 
 			UserManager userManager, GitService gitService,
 			PendingSuggestionApplyManager pendingSuggestionApplyManager, 
-			PullRequestInfoManager pullRequestInfoManager) {
+			PullRequestInfoManager pullRequestInfoManager, BatchWorkManager batchWorkManager, 
+			ProjectCounterManager counterManager, TaskScheduler taskScheduler) {
 		super(dao);
 		
 		this.updateManager = updateManager;
@@ -195,6 +230,9 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 		this.userManager = userManager;
 		this.gitService = gitService;
 		this.pullRequestInfoManager = pullRequestInfoManager;
+		this.batchWorkManager = batchWorkManager;
+		this.counterManager = counterManager;
+		this.taskScheduler = taskScheduler;
 		
 		numberGenerator = new SequenceGenerator(PullRequest.class, clusterManager, dao);
 	}
@@ -514,7 +552,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 			for (PullRequest request: query(EntityCriteria.of(PullRequest.class).add(criterion))) {
 				boolean sourceUpdated = request.getSource() != null 
 						&& request.getSource().equals(projectAndBranch);
-				checkAsync(request, sourceUpdated);
+				submitCheck(request, sourceUpdated, BACKEND_CHECK_PRIORITY, !sourceUpdated);
 			}
 		}
 	}
@@ -650,7 +688,28 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	}
 	
 	@Sessional
+	@Override
 	public void checkAsync(PullRequest request, boolean sourceUpdated) {
+		submitCheck(request, sourceUpdated, BACKEND_CHECK_PRIORITY, false);
+	}
+	
+	@Sessional
+	@Override
+	public void expediteCheck(PullRequest request) {
+		submitCheck(request, null, UI_CHECK_PRIORITY, false);
+	}
+	
+	/*
+	 * Checks are queued per target project and coalesced by request: a request already 
+	 * waiting to be checked is not queued again, and will be checked only once against 
+	 * latest state of source and target branches. Debounced checks (caused by target branch 
+	 * updates) are queued only after target branch stays quiet for a while, so that a burst 
+	 * of pushes results in a single check, however no later than MAX_CHECK_DELAY_MILLIS since 
+	 * first of them. Passing a null sourceUpdated only expedites an existing pending or 
+	 * delayed check 
+	 */
+	private void submitCheck(PullRequest request, @Nullable Boolean sourceUpdated, int priority, 
+			boolean debounced) {
 		Long projectId = request.getTargetProject().getId();
 		Long requestId = request.getId();
 		
@@ -666,34 +725,128 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 
 					@Override
 					public Void call() throws Exception {
-			        	return LockUtils.call(PullRequest.getSerialLockName(requestId), true, new ClusterTask<Void>() {
-
-							private static final long serialVersionUID = 1L;
-
-							@Override
-							public Void call() throws Exception {
-								transactionManager.run(new ClusterRunnable() {
-
-									private static final long serialVersionUID = 1L;
-
-									@Override
-									public void run() {
-										PullRequest request = load(requestId);
-							        	check(request, sourceUpdated);
-									}
-									
-								});
+						synchronized (pendingChecks) {
+							Boolean pendingSourceUpdated = pendingChecks.get(requestId);
+							DelayedCheck delayedCheck = delayedChecks.get(requestId);
+							if (sourceUpdated != null) {
+								if (pendingSourceUpdated != null) {
+									if (sourceUpdated)
+										pendingChecks.put(requestId, true);
+									if (priority >= BACKEND_CHECK_PRIORITY)
+										return null;
+								} else if (debounced) {
+									long now = System.currentTimeMillis();
+									long maxDueTime;
+									if (delayedCheck != null)
+										maxDueTime = delayedCheck.getMaxDueTime();
+									else
+										maxDueTime = now + MAX_CHECK_DELAY_MILLIS;
+									long dueTime = Math.min(now + CHECK_DEBOUNCE_MILLIS, maxDueTime);
+									delayedChecks.put(requestId, new DelayedCheck(projectId, dueTime, maxDueTime));
+									return null;
+								} else {
+									delayedChecks.remove(requestId);
+									pendingChecks.put(requestId, sourceUpdated);
+								}
+							} else if (delayedCheck != null) {
+								delayedChecks.remove(requestId);
+								pendingChecks.put(requestId, false);
+							} else if (pendingSourceUpdated == null) {
 								return null;
 							}
-			        		
-			        	});
+						}
+						batchWorkManager.submit(getCheckWorker(projectId), new CheckWork(priority, requestId));
+						return null;
 					}
 					
 				});
 			}
 			
 		});
-		
+	}
+	
+	private void submitDelayedChecks() {
+		Map<Long, Long> dueChecks = new HashMap<>();
+		long now = System.currentTimeMillis();
+		synchronized (pendingChecks) {
+			for (Iterator<Map.Entry<Long, DelayedCheck>> it = delayedChecks.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Long, DelayedCheck> entry = it.next();
+				if (entry.getValue().getDueTime() <= now) {
+					it.remove();
+					if (!pendingChecks.containsKey(entry.getKey())) {
+						pendingChecks.put(entry.getKey(), false);
+						dueChecks.put(entry.getKey(), entry.getValue().getProjectId());
+					}
+				}
+			}
+		}
+		for (Map.Entry<Long, Long> entry: dueChecks.entrySet()) {
+			batchWorkManager.submit(getCheckWorker(entry.getValue()), 
+					new CheckWork(BACKEND_CHECK_PRIORITY, entry.getKey()));
+		}
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		delayedCheckTaskId = taskScheduler.schedule(new SchedulableTask() {
+			
+			@Override
+			public ScheduleBuilder<?> getScheduleBuilder() {
+				return SimpleScheduleBuilder.repeatSecondlyForever();
+			}
+			
+			@Override
+			public void execute() {
+				submitDelayedChecks();
+			}
+			
+		});
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		if (delayedCheckTaskId != null)
+			taskScheduler.unschedule(delayedCheckTaskId);
+	}
+	
+	private BatchWorker getCheckWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-checkPullRequests", 1) {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				Preconditions.checkState(works.size() == 1);
+				Long requestId = ((CheckWork) works.iterator().next()).getRequestId();
+				
+				Boolean sourceUpdated;
+				synchronized (pendingChecks) {
+					sourceUpdated = pendingChecks.remove(requestId);
+				}
+				
+				// Already checked by a work submitted with higher priority 
+				if (sourceUpdated == null) 
+					return;
+				
+				LockUtils.call(PullRequest.getSerialLockName(requestId), true, new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						transactionManager.run(new Runnable() {
+
+							@Override
+							public void run() {
+								PullRequest request = get(requestId);
+								if (request != null)
+									check(request, sourceUpdated);
+							}
+							
+						});
+						return null;
+					}
+	        		
+	        	});
+			}
+			
+		};
 	}
 	
 	@Transactional
@@ -887,6 +1040,27 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 		return requests;
 	}
 	
+	@Sessional
+	@Override
+	public List<PullRequest> queryAfter(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			@Nullable Long afterId, int count) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<PullRequest> criteriaQuery = builder.createQuery(PullRequest.class);
+		criteriaQuery.distinct(true);
+		Root<PullRequest> root = criteriaQuery.from(PullRequest.class);
+		
+		List<Predicate> predicates = Lists.newArrayList(
+				getPredicates(targetProject, requestQuery.getCriteria(), criteriaQuery, root, builder));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(PullRequest.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(PullRequest.PROP_ID)));
+		
+		Query<PullRequest> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(count);
+		return query.getResultList();
+	}
+	
 	@Sessional
 	@Override
 	public int count(@Nullable Project targetProject,  Criteria<PullRequest> requestCriteria) {
@@ -1001,21 +1175,13 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	@Sessional
 	@Override
 	public List<ProjectPullRequestStats> queryStats(Collection<Project> projects) {
-		if (projects.isEmpty()) {
-			return new ArrayList<>();
-		} else {
-			CriteriaBuilder builder = getSession().getCriteriaBuilder();
-			CriteriaQuery<ProjectPullRequestStats> criteriaQuery = builder.createQuery(ProjectPullRequestStats.class);
-			Root<PullRequest> root = criteriaQuery.from(PullRequest.class);
-			criteriaQuery.multiselect(
-					root.get(PullRequest.PROP_TARGET_PROJECT).get(Project.PROP_ID), 
-					root.get(PullRequest.PROP_STATUS), builder.count(root));
-			criteriaQuery.groupBy(root.get(PullRequest.PROP_TARGET_PROJECT), root.get(PullRequest.PROP_STATUS));
-			
-			criteriaQuery.where(root.get(PullRequest.PROP_TARGET_PROJECT).in(projects));
-			criteriaQuery.orderBy(builder.asc(root.get(PullRequest.PROP_STATUS)));
-			return getSession().createQuery(criteriaQuery).getResultList();
+		List<ProjectPullRequestStats> stats = new ArrayList<>();
+		for (ProjectCounter counter: counterManager.query(projects, ProjectCounter.Type.PULL_REQUEST)) {
+			stats.add(new ProjectPullRequestStats(counter.getProject().getId(), 
+					Status.valueOf(counter.getState()), counter.getCount()));
 		}
+		stats.sort(Comparator.comparing(ProjectPullRequestStats::getPullRequestStatus));
+		return stats;
 	}
 
 	private Criterion ofOpen() {
@@ -1085,4 +1251,47 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 		return comparisonBase;
 	}
 	
+	private static class DelayedCheck {
+		
+		private final Long projectId;
+		
+		private final long dueTime;
+		
+		private final long maxDueTime;
+		
+		public DelayedCheck(Long projectId, long dueTime, long maxDueTime) {
+			this.projectId = projectId;
+			this.dueTime = dueTime;
+			this.maxDueTime = maxDueTime;
+		}
+
+		public Long getProjectId() {
+			return projectId;
+		}
+
+		public long getDueTime() {
+			return dueTime;
+		}
+
+		public long getMaxDueTime() {
+			return maxDueTime;
+		}
+		
+	}
+	
+	private static class CheckWork extends Prioritized {
+
+		private final Long requestId;
+		
+		public CheckWork(int priority, Long requestId) {
+			super(priority);
+			this.requestId = requestId;
+		}
+
+		public Long getRequestId() {
+			return requestId;
+		}
+		
+	}
+	
 }
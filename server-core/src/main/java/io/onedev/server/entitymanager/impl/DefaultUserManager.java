@@ -33,6 +33,7 @@ import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.pubsub.Listen;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.EmailAddress;
 import io.onedev.server.model.Group;
@@ -72,6 +73,8 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
     
     private final TransactionManager transactionManager;
     
+    private final MarkdownManager markdownManager;
+    
 	private final UserCache cache = new UserCache();
 	
 	private final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
@@ -79,7 +82,8 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
 	@Inject
     public DefaultUserManager(Dao dao, ProjectManager projectManager, SettingManager settingManager, 
     		IssueFieldManager issueFieldManager, IdManager idManager, GroupManager groupManager,
-    		EmailAddressManager emailAddressManager, TransactionManager transactionManager) {
+    		EmailAddressManager emailAddressManager, TransactionManager transactionManager, 
+    		MarkdownManager markdownManager) {
         super(dao);
         
         this.projectManager = projectManager;
@@ -89,6 +93,7 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
         this.emailAddressManager = emailAddressManager;
         this.transactionManager = transactionManager;
         this.groupManager = groupManager;
+        this.markdownManager = markdownManager;
     }
 
 	@Transactional
@@ -118,6 +123,8 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
     		settingManager.onRenameUser(oldName, user.getName());
     		
     		issueFieldManager.onRenameUser(oldName, user.getName());
+    		
+    		markdownManager.invalidateProcessCache(null);
     	}
     }
     
@@ -0,0 +1,20 @@
+package io.onedev.server.event;
+
+/**
+ * Posted locally on a server before storage directory of a project is removed from it, for 
+ * instance after the project is migrated to another server. Listeners should release all 
+ * resources held for the project, such as opened repositories, environments and searchers
+ */
+public class ProjectStorageReleased {
+
+	private final Long projectId;
+	
+	public ProjectStorageReleased(Long projectId) {
+		this.projectId = projectId;
+	}
+
+	public Long getProjectId() {
+		return projectId;
+	}
+	
+}
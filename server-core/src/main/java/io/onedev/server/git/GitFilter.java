@@ -6,8 +6,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
@@ -56,6 +58,7 @@ import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.util.InputStreamWrapper;
 import io.onedev.server.util.OutputStreamWrapper;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
@@ -83,11 +86,14 @@ public class GitFilter implements Filter {
 	
 	private final ClusterManager clusterManager;
 	
+	private final StorageMigrationManager storageMigrationManager;
+	
 	private final Set<CodePullAuthorizationSource> codePullAuthorizationSources;
 	
 	@Inject
 	public GitFilter(OneDev oneDev, StorageManager storageManager, ProjectManager projectManager, 
 			WorkExecutor workExecutor, SessionManager sessionManager, ClusterManager clusterManager, 
+			StorageMigrationManager storageMigrationManager, 
 			Set<CodePullAuthorizationSource> codePullAuthorizationSources) {
 		this.onedev = oneDev;
 		this.storageManager = storageManager;
@@ -95,6 +101,7 @@ public class GitFilter implements Filter {
 		this.workExecutor = workExecutor;
 		this.sessionManager = sessionManager;
 		this.clusterManager = clusterManager;
+		this.storageMigrationManager = storageMigrationManager;
 		this.codePullAuthorizationSources = codePullAuthorizationSources;
 	}
 	
@@ -189,7 +196,7 @@ public class GitFilter implements Filter {
 						
 						@Override
 						public void run() {
-							CommandUtils.receivePack(gitDir, hookEnvs, protocol, stdin, stdout);
+							receivePack(projectId, gitDir, hookEnvs, protocol, stdin, stdout);
 						}
 						
 					}).get();
@@ -253,11 +260,24 @@ public class GitFilter implements Filter {
 				CommandUtils.uploadPack(gitDir, hookEnvs, protocol, stdin, stdout);
 			} else {
 				// Run immediately. See above for reason
-				CommandUtils.receivePack(gitDir, hookEnvs, protocol, stdin, stdout);
+				receivePack(projectId, gitDir, hookEnvs, protocol, stdin, stdout);
 			}			
 		}
 	}
 	
+	private void receivePack(Long projectId, File gitDir, Map<String, String> hookEnvs, String protocol, 
+			InputStream stdin, OutputStream stdout) {
+		storageMigrationManager.writeStorage(projectId, new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				CommandUtils.receivePack(gitDir, hookEnvs, protocol, stdin, stdout);
+				return null;
+			}
+			
+		});
+	}
+	
 	private void writeInitial(HttpServletResponse response, String service) throws IOException {
 		doNotCache(response);
 		response.setHeader("Content-Type", "application/x-" + service + "-advertisement");			
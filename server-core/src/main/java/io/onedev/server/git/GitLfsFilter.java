@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 
@@ -72,6 +73,7 @@ import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.util.facade.ProjectFacade;
 
 @Singleton
@@ -97,11 +99,14 @@ public class GitLfsFilter implements Filter {
 	
 	private final ClusterManager clusterManager;
 	
+	private final StorageMigrationManager storageMigrationManager;
+	
 	private final Set<CodePullAuthorizationSource> codePullAuthorizationSources;
 	
 	@Inject
 	public GitLfsFilter(ProjectManager projectManager, ObjectMapper objectMapper, SessionManager sessionManager, 
 			SettingManager settingManager, GitLfsLockManager lockManager, ClusterManager clusterManager,
+			StorageMigrationManager storageMigrationManager, 
 			Set<CodePullAuthorizationSource> codePullAuthorizationSources) {
 		this.projectManager = projectManager;
 		this.objectMapper = objectMapper;
@@ -109,6 +114,7 @@ public class GitLfsFilter implements Filter {
 		this.settingManager = settingManager;
 		this.lockManager = lockManager;
 		this.clusterManager = clusterManager;
+		this.storageMigrationManager = storageMigrationManager;
 		this.codePullAuthorizationSources = codePullAuthorizationSources;
 	}
 	
@@ -240,15 +246,24 @@ public class GitLfsFilter implements Filter {
 					
 					var hash = new AtomicReference<String>(null);
 					if (storageServerUUID == null) {
-						try (
-								HashingInputStream is = new HashingInputStream(
-										Hashing.sha256(), 
-										new BufferedInputStream(httpRequest.getInputStream(), BUFFER_SIZE));
-								OutputStream os = new BufferedOutputStream(
-										lfsObject.getOutputStream(), BUFFER_SIZE);) {
-							IOUtils.copy(is, os);
-							hash.set(Hex.encodeHexString(is.hash().asBytes()));
-						}
+						LfsObject localLfsObject = lfsObject;
+						storageMigrationManager.writeStorage(lfsObject.getProjectId(), new Callable<Void>() {
+
+							@Override
+							public Void call() throws Exception {
+								try (
+										HashingInputStream is = new HashingInputStream(
+												Hashing.sha256(), 
+												new BufferedInputStream(httpRequest.getInputStream(), BUFFER_SIZE));
+										OutputStream os = new BufferedOutputStream(
+												localLfsObject.getOutputStream(), BUFFER_SIZE);) {
+									IOUtils.copy(is, os);
+									hash.set(Hex.encodeHexString(is.hash().asBytes()));
+								}
+								return null;
+							}
+							
+						});
 					} else {
 						Client client = ClientBuilder.newClient();
 						client.property(ClientProperties.REQUEST_ENTITY_PROCESSING, "CHUNKED");
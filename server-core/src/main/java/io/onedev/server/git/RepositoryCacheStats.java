@@ -0,0 +1,108 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of repository handles cached on current server since startup, together with 
+ * statistics of JGit pack window cache shared by all repositories
+ */
+public class RepositoryCacheStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int cachedRepositories;
+	
+	private final long hits;
+	
+	private final long misses;
+	
+	private final long evictions;
+	
+	private final double packHitRatio;
+	
+	private final long openPackFiles;
+	
+	private final long openPackBytes;
+	
+	public RepositoryCacheStats(int cachedRepositories, long hits, long misses, long evictions, 
+			double packHitRatio, long openPackFiles, long openPackBytes) {
+		this.cachedRepositories = cachedRepositories;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.packHitRatio = packHitRatio;
+		this.openPackFiles = openPackFiles;
+		this.openPackBytes = openPackBytes;
+	}
+
+	/**
+	 * @return
+	 * 			number of projects with repository handle currently cached
+	 */
+	public int getCachedRepositories() {
+		return cachedRepositories;
+	}
+
+	/**
+	 * @return
+	 * 			number of times a cached repository handle is returned
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return
+	 * 			number of times a repository handle has to be opened, including reopening of 
+	 * 			evicted handles
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return
+	 * 			number of repository handles closed due to exceeding max cached repositories
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public double getHitRatio() {
+		long requests = hits + misses;
+		return requests != 0? hits * 1.0 / requests: 0;
+	}
+	
+	/**
+	 * @return
+	 * 			hit ratio of JGit pack window cache
+	 */
+	public double getPackHitRatio() {
+		return packHitRatio;
+	}
+
+	/**
+	 * @return
+	 * 			number of pack files currently opened by JGit window cache
+	 */
+	public long getOpenPackFiles() {
+		return openPackFiles;
+	}
+
+	/**
+	 * @return
+	 * 			number of bytes of pack files currently cached by JGit window cache
+	 */
+	public long getOpenPackBytes() {
+		return openPackBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("cached repositories: %d, hits: %d, misses: %d, evictions: %d, hit ratio: %.1f%%, "
+				+ "pack hit ratio: %.1f%%, open pack files: %d, open pack bytes: %dMB", 
+				cachedRepositories, hits, misses, evictions, getHitRatio()*100, packHitRatio*100, 
+				openPackFiles, openPackBytes/1024/1024);
+	}
+	
+}
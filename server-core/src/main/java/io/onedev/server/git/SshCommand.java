@@ -7,6 +7,7 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -39,6 +40,7 @@ import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 import io.onedev.server.util.InputStreamWrapper;
 import io.onedev.server.util.OutputStreamWrapper;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
@@ -125,7 +127,8 @@ class SshCommand implements Command, ServerSessionAware {
 		        }
 	        }
 			
-	        String groupId = "git-over-ssh-" + projectFacade.getId() + "-" + SecurityUtils.getUserId();
+	        Long projectId = projectFacade.getId();
+	        String groupId = "git-over-ssh-" + projectId + "-" + SecurityUtils.getUserId();
 	        
 	        WorkExecutor workExecutor = OneDev.getInstance(WorkExecutor.class);
 			future = workExecutor.submit(groupId, new PrioritizedRunnable(PRIORITY) {
@@ -139,9 +142,18 @@ class SshCommand implements Command, ServerSessionAware {
 				            		.protocol(protocol)
 				            		.run();
 						} else {
-							result = new ReceivePackCommand(gitDir, in, out, err, hookEnvs)
-				            		.protocol(protocol)
-				            		.run();
+							StorageMigrationManager storageMigrationManager = 
+									OneDev.getInstance(StorageMigrationManager.class);
+							result = storageMigrationManager.writeStorage(projectId, new Callable<ExecutionResult>() {
+
+								@Override
+								public ExecutionResult call() throws Exception {
+									return new ReceivePackCommand(gitDir, in, out, err, hookEnvs)
+						            		.protocol(protocol)
+						            		.run();
+								}
+								
+							});
 						}
 						onExit(result.getReturnCode(), null);
 					} catch (Exception e) {
@@ -0,0 +1,75 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.git.CommandUtils;
+
+/**
+ * Write commit-graph file of all reachable commits. Requires git 2.18 or higher
+ */
+public class CommitGraphCommand {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommitGraphCommand.class);
+	
+	private final File workingDir;
+	
+	private boolean split;
+	
+	private boolean changedPaths;
+	
+	public CommitGraphCommand(File workingDir) {
+		this.workingDir = workingDir;
+	}
+	
+	/**
+	 * Write incremental commit-graph chain instead of rewriting the whole file. Requires 
+	 * git 2.24 or higher
+	 */
+	public CommitGraphCommand split(boolean split) {
+		this.split = split;
+		return this;
+	}
+	
+	/**
+	 * Compute Bloom filters of changed paths to speed up path limited history walk. Requires 
+	 * git 2.27 or higher
+	 */
+	public CommitGraphCommand changedPaths(boolean changedPaths) {
+		this.changedPaths = changedPaths;
+		return this;
+	}
+	
+	protected Commandline newGit() {
+		return CommandUtils.newGit();
+	}
+	
+	public void run() {
+		Commandline git = newGit().workingDir(workingDir).addArgs("commit-graph", "write", "--reachable");
+		if (split)
+			git.addArgs("--split");
+		if (changedPaths)
+			git.addArgs("--changed-paths");
+		
+		git.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+			
+		}).checkReturnCode();
+	}
+
+}
@@ -0,0 +1,56 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.git.CommandUtils;
+
+public class PruneCommand {
+
+	// Same as default of gc.pruneExpire, so that objects being written by concurrent pushes are kept 
+	public static final String DEFAULT_EXPIRE = "2.weeks.ago";
+	
+	private static final Logger logger = LoggerFactory.getLogger(PruneCommand.class);
+	
+	private final File workingDir;
+	
+	private String expire = DEFAULT_EXPIRE;
+	
+	public PruneCommand(File workingDir) {
+		this.workingDir = workingDir;
+	}
+	
+	public PruneCommand expire(String expire) {
+		this.expire = expire;
+		return this;
+	}
+	
+	protected Commandline newGit() {
+		return CommandUtils.newGit();
+	}
+	
+	public void run() {
+		Commandline git = newGit().workingDir(workingDir).addArgs("prune", "--expire=" + expire);
+		
+		git.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+			
+		}).checkReturnCode();
+	}
+
+}
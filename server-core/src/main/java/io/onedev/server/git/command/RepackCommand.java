@@ -0,0 +1,82 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.git.CommandUtils;
+
+public class RepackCommand {
+
+	private static final Logger logger = LoggerFactory.getLogger(RepackCommand.class);
+	
+	private final File workingDir;
+	
+	private boolean geometric;
+	
+	private boolean writeMidx;
+	
+	private boolean writeBitmapIndex;
+	
+	public RepackCommand(File workingDir) {
+		this.workingDir = workingDir;
+	}
+	
+	/**
+	 * Only combine packs to maintain a geometric progression of pack sizes, instead of 
+	 * repacking everything into a single pack. Requires git 2.33 or higher
+	 */
+	public RepackCommand geometric(boolean geometric) {
+		this.geometric = geometric;
+		return this;
+	}
+	
+	/**
+	 * Requires git 2.34 or higher
+	 */
+	public RepackCommand writeMidx(boolean writeMidx) {
+		this.writeMidx = writeMidx;
+		return this;
+	}
+	
+	public RepackCommand writeBitmapIndex(boolean writeBitmapIndex) {
+		this.writeBitmapIndex = writeBitmapIndex;
+		return this;
+	}
+	
+	protected Commandline newGit() {
+		return CommandUtils.newGit();
+	}
+	
+	public void run() {
+		Commandline git = newGit().workingDir(workingDir).addArgs("repack", "-d", "-q");
+		if (geometric) 
+			git.addArgs("--geometric=2");
+		else 
+			git.addArgs("-A", "--unpack-unreachable=" + PruneCommand.DEFAULT_EXPIRE);
+		if (writeMidx)
+			git.addArgs("--write-midx");
+		if (writeBitmapIndex)
+			git.addArgs("--write-bitmap-index");
+		
+		git.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+			
+		}).checkReturnCode();
+	}
+
+}
@@ -0,0 +1,407 @@
+package io.onedev.server.git.maintenance;
+
+import java.io.File;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.CommandUtils;
+import io.onedev.server.git.command.CommitGraphCommand;
+import io.onedev.server.git.command.PruneCommand;
+import io.onedev.server.git.command.RepackCommand;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultGitMaintenanceManager implements GitMaintenanceManager, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultGitMaintenanceManager.class);
+
+	private static final int CHECK_INTERVAL = 10; // in minutes
+
+	// A project will not be maintained again within this period regardless of push activity
+	private static final int MIN_MAINTENANCE_INTERVAL = 60; // in minutes
+
+	// Max number of maintenances running at the same time in whole cluster
+	private static final int MAX_CONCURRENT_MAINTENANCES = 2;
+
+	private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)\\.(\\d+)");
+
+	private final ClusterManager clusterManager;
+
+	private final ProjectManager projectManager;
+
+	private final StorageManager storageManager;
+
+	private final TaskScheduler taskScheduler;
+
+	private final ExecutorService executorService;
+
+	private final StorageMigrationManager storageMigrationManager;
+
+	// Number of ref updates since last maintenance of projects stored on this server
+	private final Map<Long, Integer> pushCounts = new ConcurrentHashMap<>();
+
+	private final Map<Long, GitMaintenanceStats> stats = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean maintaining = new AtomicBoolean(false);
+
+	private String taskId;
+
+	@Inject
+	public DefaultGitMaintenanceManager(ClusterManager clusterManager, ProjectManager projectManager,
+			StorageManager storageManager, TaskScheduler taskScheduler, ExecutorService executorService,
+			StorageMigrationManager storageMigrationManager) {
+		this.clusterManager = clusterManager;
+		this.projectManager = projectManager;
+		this.storageManager = storageManager;
+		this.taskScheduler = taskScheduler;
+		this.executorService = executorService;
+		this.storageMigrationManager = storageMigrationManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(GitMaintenanceManager.class);
+	}
+
+	@Override
+	public void maintain(Long projectId) {
+		projectManager.runOnProjectServer(projectId, new ClusterTask<Void>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Void call() throws Exception {
+				maintainLocal(projectId);
+				return null;
+			}
+
+		});
+	}
+
+	@Override
+	public GitMaintenanceStats getStats(Long projectId) {
+		return projectManager.runOnProjectServer(projectId, new ClusterTask<GitMaintenanceStats>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public GitMaintenanceStats call() throws Exception {
+				return stats.get(projectId);
+			}
+
+		});
+	}
+
+	private void maintainLocal(Long projectId) {
+		// Repack rewrites repository files, and should be drained before storage migration switches
+		storageMigrationManager.writeStorage(projectId, () -> LockUtils.call(getLockName(projectId), true, () -> {
+			File gitDir = storageManager.getProjectGitDir(projectId);
+			if (!gitDir.exists()) {
+				pushCounts.remove(projectId);
+				stats.remove(projectId);
+				return null;
+			}
+
+			// Pushes during maintenance will be counted for next maintenance
+			pushCounts.remove(projectId);
+
+			File objectsDir = new File(gitDir, "objects");
+			int looseObjectsBefore = countLooseObjects(objectsDir);
+			int packsBefore = countPacks(objectsDir);
+			long time = System.currentTimeMillis();
+			String error = null;
+			try {
+				int gitVersion = getGitVersion();
+
+				// Geometric repack avoids rewriting all objects of large repositories on every
+				// maintenance, however bitmaps can only be written into multi-pack index then
+				if (gitVersion >= 234) {
+					new RepackCommand(gitDir).geometric(true).writeMidx(true).writeBitmapIndex(true).run();
+				} else if (looseObjectsBefore != 0 || packsBefore > 1) {
+					new RepackCommand(gitDir).writeBitmapIndex(true).run();
+				}
+
+				if (gitVersion >= 218) {
+					new CommitGraphCommand(gitDir)
+							.split(gitVersion >= 224)
+							.changedPaths(gitVersion >= 227)
+							.run();
+				}
+
+				new PruneCommand(gitDir).run();
+			} catch (Exception e) {
+				logger.error("Error maintaining git repository (project id: " + projectId + ")", e);
+				error = e.getMessage();
+			}
+			time = System.currentTimeMillis() - time;
+
+			GitMaintenanceStats prevStats = stats.get(projectId);
+			int maintenances = prevStats != null? prevStats.getMaintenances() + 1: 1;
+			stats.put(projectId, new GitMaintenanceStats(new Date(), time, looseObjectsBefore, packsBefore,
+					countLooseObjects(objectsDir), countPacks(objectsDir), maintenances, error));
+			logger.debug("Maintained git repository (project id: {}, duration: {}ms, loose objects: {}->{}, packs: {}->{})",
+					projectId, time, looseObjectsBefore, countLooseObjects(objectsDir), packsBefore, countPacks(objectsDir));
+			return null;
+		}));
+	}
+
+	private static String getLockName(Long projectId) {
+		return "git-maintenance:" + projectId;
+	}
+
+	/**
+	 * @return
+	 * 			git version as major*100+minor, for instance 233 for git 2.33.x
+	 */
+	private int getGitVersion() {
+		AtomicReference<String> versionRef = new AtomicReference<>(null);
+		CommandUtils.newGit().addArgs("version").execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				if (versionRef.get() == null)
+					versionRef.set(line);
+			}
+
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+
+		}).checkReturnCode();
+
+		String version = versionRef.get();
+		Matcher matcher = version != null? VERSION_PATTERN.matcher(version): null;
+		if (matcher != null && matcher.find())
+			return Integer.parseInt(matcher.group(1))*100 + Integer.parseInt(matcher.group(2));
+		else
+			throw new ExplicitException("Unable to parse git version: " + version);
+	}
+
+	private static int countLooseObjects(File objectsDir) {
+		int count = 0;
+		File[] dirs = objectsDir.listFiles();
+		if (dirs != null) {
+			for (File dir: dirs) {
+				if (dir.getName().length() == 2 && dir.isDirectory()) {
+					String[] names = dir.list();
+					if (names != null)
+						count += names.length;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int countPacks(File objectsDir) {
+		String[] names = new File(objectsDir, "pack").list((dir, name) -> name.endsWith(".pack"));
+		return names != null? names.length: 0;
+	}
+
+	private static boolean hasLooseObjects(File objectsDir) {
+		File[] dirs = objectsDir.listFiles();
+		if (dirs != null) {
+			for (File dir: dirs) {
+				if (dir.getName().length() == 2 && dir.isDirectory()) {
+					String[] names = dir.list();
+					if (names != null && names.length != 0)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return
+	 * 			map of project id to maintenance priority for projects on this server which
+	 * 			should be maintained
+	 */
+	private Map<Long, Integer> getCandidates() {
+		Map<Long, Integer> candidates = new HashMap<>();
+		long now = System.currentTimeMillis();
+		UUID localServerUUID = clusterManager.getLocalServerUUID();
+		for (Long projectId: projectManager.getIds()) {
+			if (!localServerUUID.equals(projectManager.getStorageServerUUID(projectId, false)))
+				continue;
+			Integer pushCount = pushCounts.get(projectId);
+			GitMaintenanceStats projectStats = stats.get(projectId);
+			if (projectStats != null) {
+				if (pushCount != null && now - projectStats.getDate().getTime() > MIN_MAINTENANCE_INTERVAL*60000L)
+					candidates.put(projectId, pushCount);
+			} else if (pushCount != null) {
+				candidates.put(projectId, pushCount);
+			} else {
+				// Not maintained since server startup, check repository directly
+				File objectsDir = new File(storageManager.getProjectGitDir(projectId), "objects");
+				if (countPacks(objectsDir) > 1 || hasLooseObjects(objectsDir))
+					candidates.put(projectId, 0);
+			}
+		}
+		return candidates;
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		pushCounts.merge(event.getProject().getId(), 1, Integer::sum);
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+
+	@Override
+	public void execute() {
+		// Leader decides maintenance order of all projects so that concurrency can be limited cluster-wide
+		if (clusterManager.isLeaderServer() && maintaining.compareAndSet(false, true)) {
+			executorService.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						maintainCandidates();
+					} catch (Exception e) {
+						logger.error("Error maintaining git repositories", e);
+					} finally {
+						maintaining.set(false);
+					}
+				}
+
+			});
+		}
+	}
+
+	private void maintainCandidates() {
+		List<Candidate> candidates = new ArrayList<>();
+		Map<UUID, Map<Long, Integer>> candidatesOfServers = clusterManager.runOnAllServers(new ClusterTask<Map<Long, Integer>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Map<Long, Integer> call() throws Exception {
+				return getCandidates();
+			}
+
+		});
+		for (Map.Entry<UUID, Map<Long, Integer>> entry: candidatesOfServers.entrySet()) {
+			for (Map.Entry<Long, Integer> candidateEntry: entry.getValue().entrySet())
+				candidates.add(new Candidate(entry.getKey(), candidateEntry.getKey(), candidateEntry.getValue()));
+		}
+		if (candidates.isEmpty())
+			return;
+
+		Collections.sort(candidates, (o1, o2) -> o2.priority - o1.priority);
+		logger.debug("Maintaining {} git repositories...", candidates.size());
+
+		Queue<Candidate> queue = new ConcurrentLinkedQueue<>(candidates);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < Math.min(MAX_CONCURRENT_MAINTENANCES, candidates.size()); i++) {
+			futures.add(executorService.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					Candidate candidate;
+					while ((candidate = queue.poll()) != null) {
+						Long projectId = candidate.projectId;
+						try {
+							clusterManager.runOnServer(candidate.serverUUID, new ClusterTask<Void>() {
+
+								private static final long serialVersionUID = 1L;
+
+								@Override
+								public Void call() throws Exception {
+									maintainLocal(projectId);
+									return null;
+								}
+
+							});
+						} catch (Exception e) {
+							logger.error("Error maintaining git repository (project id: " + projectId + ")", e);
+						}
+					}
+				}
+
+			}));
+		}
+		for (Future<?> future: futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatMinutelyForever(CHECK_INTERVAL);
+	}
+
+	private static class Candidate {
+
+		private final UUID serverUUID;
+
+		private final Long projectId;
+
+		private final int priority;
+
+		private Candidate(UUID serverUUID, Long projectId, int priority) {
+			this.serverUUID = serverUUID;
+			this.projectId = projectId;
+			this.priority = priority;
+		}
+
+	}
+
+}
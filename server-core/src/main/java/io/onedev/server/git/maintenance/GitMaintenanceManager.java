@@ -0,0 +1,27 @@
+package io.onedev.server.git.maintenance;
+
+import javax.annotation.Nullable;
+
+/**
+ * Maintains git repositories in background by repacking objects with reachability bitmaps, 
+ * writing commit-graph files and pruning unreachable loose objects. Projects are picked in 
+ * order of push activity since last maintenance, and number of concurrent maintenances is 
+ * limited across the cluster. Features not supported by installed git are skipped.
+ */
+public interface GitMaintenanceManager {
+
+	/**
+	 * Maintain repository of specified project immediately. This method can be called on any 
+	 * server, and will block until maintenance finishes on storage server of the project 
+	 */
+	void maintain(Long projectId);
+	
+	/**
+	 * @return
+	 * 			stats of last maintenance of specified project, or <tt>null</tt> if the project is 
+	 * 			not maintained since its storage server starts
+	 */
+	@Nullable
+	GitMaintenanceStats getStats(Long projectId);
+	
+}
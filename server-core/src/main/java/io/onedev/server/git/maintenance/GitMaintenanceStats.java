@@ -0,0 +1,89 @@
+package io.onedev.server.git.maintenance;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+public class GitMaintenanceStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Date date;
+	
+	private final long duration;
+	
+	private final int looseObjectsBefore;
+	
+	private final int packsBefore;
+	
+	private final int looseObjectsAfter;
+	
+	private final int packsAfter;
+	
+	private final int maintenances;
+	
+	private final String error;
+	
+	public GitMaintenanceStats(Date date, long duration, int looseObjectsBefore, int packsBefore, 
+			int looseObjectsAfter, int packsAfter, int maintenances, @Nullable String error) {
+		this.date = date;
+		this.duration = duration;
+		this.looseObjectsBefore = looseObjectsBefore;
+		this.packsBefore = packsBefore;
+		this.looseObjectsAfter = looseObjectsAfter;
+		this.packsAfter = packsAfter;
+		this.maintenances = maintenances;
+		this.error = error;
+	}
+
+	/**
+	 * @return
+	 * 			date of last maintenance
+	 */
+	public Date getDate() {
+		return date;
+	}
+
+	/**
+	 * @return
+	 * 			duration of last maintenance in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public int getLooseObjectsBefore() {
+		return looseObjectsBefore;
+	}
+
+	public int getPacksBefore() {
+		return packsBefore;
+	}
+
+	public int getLooseObjectsAfter() {
+		return looseObjectsAfter;
+	}
+
+	public int getPacksAfter() {
+		return packsAfter;
+	}
+
+	/**
+	 * @return
+	 * 			number of maintenances run since server startup
+	 */
+	public int getMaintenances() {
+		return maintenances;
+	}
+
+	/**
+	 * @return
+	 * 			error message of last maintenance, or <tt>null</tt> if it succeeded
+	 */
+	@Nullable
+	public String getError() {
+		return error;
+	}
+	
+}
@@ -0,0 +1,90 @@
+package io.onedev.server.git.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+import io.onedev.server.util.Pair;
+
+/**
+ * Ahead/behind counts of a project keyed by (base commit, compare commit). Keys are also
+ * indexed by each of their commits, so that entries affected by a ref update can be found
+ * without scanning the whole cache
+ */
+class AheadBehindCache {
+
+	private final Map<ObjectId, Set<Pair<ObjectId, ObjectId>>> index = new ConcurrentHashMap<>();
+
+	private final Cache<Pair<ObjectId, ObjectId>, AheadBehind> entries;
+
+	AheadBehindCache(int maxSize) {
+		entries = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.removalListener(new RemovalListener<Pair<ObjectId, ObjectId>, AheadBehind>() {
+
+					@Override
+					public void onRemoval(RemovalNotification<Pair<ObjectId, ObjectId>, AheadBehind> notification) {
+						if (notification.getCause() != RemovalCause.REPLACED) {
+							Pair<ObjectId, ObjectId> key = notification.getKey();
+							unindex(key.getFirst(), key);
+							unindex(key.getSecond(), key);
+						}
+					}
+
+				})
+				.build();
+	}
+
+	@Nullable
+	AheadBehind get(ObjectId baseId, ObjectId compareId) {
+		return entries.getIfPresent(new Pair<>(baseId.copy(), compareId.copy()));
+	}
+
+	void put(ObjectId baseId, ObjectId compareId, AheadBehind aheadBehind) {
+		Pair<ObjectId, ObjectId> key = new Pair<>(baseId.copy(), compareId.copy());
+		index(key.getFirst(), key);
+		index(key.getSecond(), key);
+		entries.put(key, aheadBehind);
+	}
+
+	/**
+	 * @return
+	 * 			cached entries whose base commit or compare commit is specified commit
+	 */
+	Map<Pair<ObjectId, ObjectId>, AheadBehind> getEntriesOf(ObjectId commitId) {
+		Set<Pair<ObjectId, ObjectId>> keys = index.get(commitId);
+		if (keys == null)
+			return Collections.emptyMap();
+		Map<Pair<ObjectId, ObjectId>, AheadBehind> entriesOfCommit = new HashMap<>();
+		for (Pair<ObjectId, ObjectId> key: keys) {
+			AheadBehind aheadBehind = entries.getIfPresent(key);
+			if (aheadBehind != null)
+				entriesOfCommit.put(key, aheadBehind);
+		}
+		return entriesOfCommit;
+	}
+
+	private void index(ObjectId commitId, Pair<ObjectId, ObjectId> key) {
+		index.computeIfAbsent(commitId, it -> ConcurrentHashMap.newKeySet()).add(key);
+	}
+
+	private void unindex(ObjectId commitId, Pair<ObjectId, ObjectId> key) {
+		index.computeIfPresent(commitId, (it, keys) -> {
+			keys.remove(key);
+			return keys.isEmpty()? null: keys;
+		});
+	}
+
+}
@@ -16,6 +16,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.stream.Collectors;
 
@@ -46,15 +48,21 @@ import org.eclipse.jgit.lib.TreeFormatter;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.RevWalkUtils;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.loader.ManagedSerializedForm;
@@ -72,6 +80,7 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.event.DefaultBranchChanged;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.pubsub.Listen;
 import io.onedev.server.event.pubsub.ListenerRegistry;
 import io.onedev.server.git.BlameBlock;
 import io.onedev.server.git.Blob;
@@ -93,10 +102,13 @@ import io.onedev.server.git.exception.NotFileException;
 import io.onedev.server.git.exception.NotTreeException;
 import io.onedev.server.git.exception.ObjectAlreadyExistsException;
 import io.onedev.server.git.exception.ObjectNotFoundException;
+import io.onedev.server.infomanager.CompareInfoManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
+import io.onedev.server.util.Pair;
 
 @Singleton
 public class DefaultGitService implements GitService, Serializable {
@@ -105,6 +117,14 @@ public class DefaultGitService implements GitService, Serializable {
 	
 	private static final int LAST_COMMITS_CACHE_THRESHOLD = 1000;
 	
+	private static final int AHEAD_BEHIND_BATCH_SIZE = 16;
+	
+	private static final int AHEAD_BEHIND_CACHE_PROJECTS = 1000;
+	
+	private static final int AHEAD_BEHIND_CACHE_SIZE = 10000;
+	
+	private static final int MAX_PINNED_BRANCHES = 100;
+	
 	private final ProjectManager projectManager;
 	
 	private final SettingManager settingManager;
@@ -117,16 +137,38 @@ public class DefaultGitService implements GitService, Serializable {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final CompareInfoManager compareInfoManager;
+	
+	private final ExecutorService executorService;
+	
+	private final StorageMigrationManager storageMigrationManager;
+	
+	private final LoadingCache<Long, AheadBehindCache> aheadBehindCache = 
+			CacheBuilder.newBuilder().maximumSize(AHEAD_BEHIND_CACHE_PROJECTS).build(
+					new CacheLoader<Long, AheadBehindCache>() {
+
+		@Override
+		public AheadBehindCache load(Long key) {
+			return new AheadBehindCache(AHEAD_BEHIND_CACHE_SIZE);
+		}
+		
+	});
+	
 	@Inject
 	public DefaultGitService(ProjectManager projectManager, SettingManager settingManager,
 			SessionManager sessionManager, ClusterManager clusterManager, 
-			StorageManager storageManager, ListenerRegistry listenerRegistry) {
+			StorageManager storageManager, ListenerRegistry listenerRegistry, 
+			CompareInfoManager compareInfoManager, ExecutorService executorService, 
+			StorageMigrationManager storageMigrationManager) {
 		this.projectManager = projectManager;
 		this.sessionManager = sessionManager;
 		this.settingManager = settingManager;
 		this.clusterManager = clusterManager;
 		this.storageManager = storageManager;
 		this.listenerRegistry = listenerRegistry;
+		this.compareInfoManager = compareInfoManager;
+		this.executorService = executorService;
+		this.storageMigrationManager = storageMigrationManager;
 	}
 
 	public Object writeReplace() throws ObjectStreamException {
@@ -145,6 +187,19 @@ public class DefaultGitService implements GitService, Serializable {
 		return projectManager.runOnProjectServer(projectId, task);
 	}
 	
+	private <T> T writeOnProjectServer(Long projectId, ClusterTask<T> task) {
+		return projectManager.runOnProjectServer(projectId, new ClusterTask<T>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public T call() throws Exception {
+				return storageMigrationManager.writeStorage(projectId, task);
+			}
+			
+		});
+	}
+	
 	private LineConsumer newInfoLogger() {
 		return new LineConsumer() {
 
@@ -185,7 +240,7 @@ public class DefaultGitService implements GitService, Serializable {
 	@Override
 	public void setDefaultBranch(Project project, String defaultBranch) {
 		Long projectId = project.getId();
-		runOnProjectServer(projectId, new ClusterTask<Void>() {
+		writeOnProjectServer(projectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -274,12 +329,51 @@ public class DefaultGitService implements GitService, Serializable {
 		});
 	}
 
+	@Override
+	public Set<String> filterFiles(Project project, ObjectId revId, Collection<String> paths) {
+		Set<String> validPaths = new HashSet<>();
+		for (String path: paths) {
+			if (path.length() != 0 && !path.startsWith("/") && !path.endsWith("/"))
+				validPaths.add(path);
+		}
+		if (validPaths.isEmpty())
+			return new HashSet<>();
+		
+		Long projectId = project.getId();
+		return runOnProjectServer(projectId, new ClusterTask<Set<String>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Set<String> call() throws Exception {
+				Set<String> files = new HashSet<>();
+				Repository repository = getRepository(projectId);
+				try (	RevWalk revWalk = new RevWalk(repository);
+						TreeWalk treeWalk = new TreeWalk(repository)) {
+					treeWalk.addTree(revWalk.parseCommit(revId).getTree());
+					treeWalk.setRecursive(true);
+					treeWalk.setFilter(PathFilterGroup.createFromStrings(validPaths));
+					while (treeWalk.next()) {
+						int type = treeWalk.getRawMode(0) & FileMode.TYPE_MASK;
+						if (type == FileMode.TYPE_FILE || type == FileMode.TYPE_SYMLINK) { 
+							String path = treeWalk.getPathString();
+							if (validPaths.contains(path))
+								files.add(path);
+						}
+					}
+				}
+				return files;
+			}
+			
+		});
+	}
+
 	@Sessional
 	@Override
 	public ObjectId createBranch(Project project, String branchName, String branchRevision) {
 		ObjectId revId = project.getObjectId(branchRevision, true);
 		Long projectId = project.getId();
-		ObjectId commitId = runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		ObjectId commitId = writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -313,7 +407,7 @@ public class DefaultGitService implements GitService, Serializable {
 		Long projectId = project.getId();
 		ObjectId revId = project.getObjectId(tagRevision, true);
 		
-		TaggingResult tagAndCommitId = runOnProjectServer(projectId, new ClusterTask<TaggingResult>() {
+		TaggingResult tagAndCommitId = writeOnProjectServer(projectId, new ClusterTask<TaggingResult>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -459,7 +553,7 @@ public class DefaultGitService implements GitService, Serializable {
 	public void deleteBranch(Project project, String branchName) {
 		Long projectId = project.getId();
 		
-		runOnProjectServer(projectId, new ClusterTask<Void>() {
+		writeOnProjectServer(projectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -495,7 +589,7 @@ public class DefaultGitService implements GitService, Serializable {
 	public void deleteTag(Project project, String tagName) {
 		Long projectId = project.getId();
 		
-		runOnProjectServer(projectId, new ClusterTask<Void>() {
+		writeOnProjectServer(projectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -534,7 +628,7 @@ public class DefaultGitService implements GitService, Serializable {
 		Long targetProjectId = targetProject.getId();
 		String sourceProjectPath = sourceProject.getPath();
 		
-		runOnProjectServer(targetProjectId, new ClusterTask<Void>() {
+		writeOnProjectServer(targetProjectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -597,7 +691,15 @@ public class DefaultGitService implements GitService, Serializable {
 			public Void call() throws Exception {
 				UUID targetStorageServerUUID = projectManager.getStorageServerUUID(targetProjectId, true);
 				if (targetStorageServerUUID.equals(clusterManager.getLocalServerUUID())) {
-					push(CommandUtils.newGit(), getGitDir(targetProjectId).getAbsolutePath());
+					storageMigrationManager.writeStorage(targetProjectId, new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							push(CommandUtils.newGit(), getGitDir(targetProjectId).getAbsolutePath());
+							return null;
+						}
+						
+					});
 				} else {
 					CommandUtils.callWithClusterCredential(new GitTask<Void>() {
 
@@ -619,7 +721,7 @@ public class DefaultGitService implements GitService, Serializable {
 	@Override
 	public void updateRef(Project project, String refName, ObjectId newObjectId, ObjectId expectedOldObjectId) {
 		Long projectId = project.getId();
-		runOnProjectServer(projectId, new ClusterTask<Void>() {
+		writeOnProjectServer(projectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -715,7 +817,7 @@ public class DefaultGitService implements GitService, Serializable {
 			ObjectId expectedOldCommitId, ObjectId parentCommitId, PersonIdent authorAndCommitter, 
 			String commitMessage, boolean signRequired) {
 		Long projectId = project.getId();
-		ObjectId commitId = runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		ObjectId commitId = writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1009,7 +1111,7 @@ public class DefaultGitService implements GitService, Serializable {
 	@Override
 	public void deleteRefs(Project project, Collection<String> refs) {
 		Long projectId = project.getId();
-		runOnProjectServer(projectId, new ClusterTask<Void>() {
+		writeOnProjectServer(projectId, new ClusterTask<Void>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1028,7 +1130,7 @@ public class DefaultGitService implements GitService, Serializable {
 	public ObjectId merge(Project project, ObjectId targetCommitId, ObjectId sourceCommitId, boolean squash,
 			PersonIdent committer, PersonIdent author, String commitMessage, boolean useOursOnConflict) {
 		Long projectId = project.getId();
-		return runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		return writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1059,7 +1161,7 @@ public class DefaultGitService implements GitService, Serializable {
 	@Override
 	public ObjectId rebase(Project project, ObjectId source, ObjectId target, PersonIdent committer) {
 		Long projectId = project.getId();
-		return runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		return writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1075,7 +1177,7 @@ public class DefaultGitService implements GitService, Serializable {
 	public ObjectId amendCommits(Project project, ObjectId startCommitId, ObjectId endCommitId, 
 			String oldCommitterName, PersonIdent newCommitter) {
 		Long projectId = project.getId();
-		return runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		return writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1121,7 +1223,7 @@ public class DefaultGitService implements GitService, Serializable {
 	public ObjectId amendCommit(Project project, ObjectId commitId, PersonIdent author, PersonIdent committer,
 			String commitMessage) {
 		Long projectId = project.getId();
-		return runOnProjectServer(projectId, new ClusterTask<ObjectId>() {
+		return writeOnProjectServer(projectId, new ClusterTask<ObjectId>() {
 
 			private static final long serialVersionUID = 1L;
 
@@ -1191,13 +1293,22 @@ public class DefaultGitService implements GitService, Serializable {
 
 			@Override
 			public Collection<String> call() throws Exception {
-				if (gitEnvs != null && !gitEnvs.isEmpty()) {
-					return new ListChangedFilesCommand(getGitDir(projectId), oldCommitId.name(), newCommitId.name(), gitEnvs)
-							.run();
-				} else {
-					Repository repository = getRepository(projectId);
-					return GitUtils.getChangedFiles(repository, oldCommitId, newCommitId);
+				boolean cacheable = !oldCommitId.equals(ObjectId.zeroId()) && !newCommitId.equals(ObjectId.zeroId());
+				Collection<String> changedFiles = null;
+				if (cacheable)
+					changedFiles = compareInfoManager.getChangedFiles(projectId, oldCommitId, newCommitId);
+				if (changedFiles == null) {
+					if (gitEnvs != null && !gitEnvs.isEmpty()) {
+						changedFiles = new ListChangedFilesCommand(getGitDir(projectId), oldCommitId.name(), 
+								newCommitId.name(), gitEnvs).run();
+					} else {
+						Repository repository = getRepository(projectId);
+						changedFiles = GitUtils.getChangedFiles(repository, oldCommitId, newCommitId);
+					}
+					if (cacheable)
+						compareInfoManager.cacheChangedFiles(projectId, oldCommitId, newCommitId, changedFiles);
 				}
+				return changedFiles;
 			}
 			
 		});
@@ -1216,7 +1327,13 @@ public class DefaultGitService implements GitService, Serializable {
 			public ObjectId call() throws Exception {
 				if (!projectId1.equals(projectId2))
 					fetch(projectId1, projectId2, projectPath2, commitId2.name());
-				return GitUtils.getMergeBase(getRepository(projectId1), commitId1, commitId2);
+				ObjectId mergeBase = compareInfoManager.getMergeBase(projectId1, commitId1, commitId2);
+				if (mergeBase == null) {
+					mergeBase = GitUtils.getMergeBase(getRepository(projectId1), commitId1, commitId2);
+					if (mergeBase != null)
+						compareInfoManager.cacheMergeBase(projectId1, commitId1, commitId2, mergeBase);
+				}
+				return mergeBase;
 			}
 			
 		});
@@ -1423,74 +1540,191 @@ public class DefaultGitService implements GitService, Serializable {
 
 			@Override
 			public Map<ObjectId, AheadBehind> call() throws Exception {
-				try (RevWalk revWalk = new RevWalk(getRepository(projectId))) {
-					Map<ObjectId, AheadBehind> aheadBehinds = new HashMap<>();
-					RevCommit baseCommit = revWalk.lookupCommit(baseId);
-					revWalk.markStart(baseCommit);
-					Map<ObjectId, RevCommit> compareCommits = new HashMap<>();
-					for (ObjectId compareId: compareIds) {
-						RevCommit compareCommit = revWalk.lookupCommit(compareId);
-						compareCommits.put(compareId, compareCommit);
-						revWalk.markStart(compareCommit);
+				AheadBehindCache cache = aheadBehindCache.get(projectId);
+				Map<ObjectId, AheadBehind> aheadBehinds = new HashMap<>();
+				List<ObjectId> uncachedIds = new ArrayList<>();
+				for (ObjectId compareId: compareIds) {
+					AheadBehind aheadBehind = cache.get(baseId, compareId);
+					if (aheadBehind != null)
+						aheadBehinds.put(compareId, aheadBehind);
+					else
+						uncachedIds.add(compareId);
+				}
+				if (!uncachedIds.isEmpty()) {
+					try (RevWalk revWalk = new RevWalk(getRepository(projectId))) {
+						for (List<ObjectId> batch: Lists.partition(uncachedIds, AHEAD_BEHIND_BATCH_SIZE)) {
+							Map<ObjectId, AheadBehind> batchAheadBehinds = calcAheadBehinds(revWalk, baseId, batch);
+							for (Map.Entry<ObjectId, AheadBehind> entry: batchAheadBehinds.entrySet()) 
+								cache.put(baseId, entry.getKey(), entry.getValue());
+							aheadBehinds.putAll(batchAheadBehinds);
+						}
+					} catch (IOException e) {
+						throw new RuntimeException(e);
 					}
-					revWalk.setRevFilter(RevFilter.MERGE_BASE);
-					RevCommit mergeBase = revWalk.next();
-					
-					revWalk.reset();
-					revWalk.setRevFilter(RevFilter.ALL);
-
-					if (mergeBase != null) {
-						revWalk.markStart(baseCommit);
-						revWalk.markUninteresting(mergeBase);
-						Set<ObjectId> baseSet = new HashSet<>();
-						for (RevCommit commit: revWalk) 
-							baseSet.add(commit.copy());
-						revWalk.reset();
-						
-						for (ObjectId compareId: compareIds) {
-							RevCommit compareCommit = Preconditions.checkNotNull(compareCommits.get(compareId));
-							revWalk.markStart(compareCommit);
-							revWalk.markUninteresting(mergeBase);
-							Set<ObjectId> compareSet = new HashSet<>();
-							for (RevCommit commit: revWalk) 
-								compareSet.add(commit.copy());
-							revWalk.reset();
-							
-							int ahead = 0;
-							for (ObjectId each: compareSet) {
-								if (!baseSet.contains(each))
-									ahead++;
-							}
-							int behind = 0;
-							for (ObjectId each: baseSet) {
-								if (!compareSet.contains(each))
-									behind++;
-							}
-							aheadBehinds.put(compareId, new AheadBehind(ahead, behind));
-						}					
-					} else {
-						for (ObjectId compareId: compareIds) {
-							RevCommit compareCommit = Preconditions.checkNotNull(compareCommits.get(compareId));
-							revWalk.markUninteresting(baseCommit);
-							revWalk.markStart(compareCommit);
-							int ahead = 0;
-							for (@SuppressWarnings("unused") var commit: revWalk)
-								ahead++;
-							revWalk.reset();
-							
-							revWalk.markUninteresting(compareCommit);
-							revWalk.markStart(baseCommit);
-							int behind = 0;
-							for (@SuppressWarnings("unused") var commit: revWalk)
-								behind++;
-							revWalk.reset();
-							
-							aheadBehinds.put(compareId, new AheadBehind(ahead, behind));
-						}					
+				}
+				return aheadBehinds;
+			}
+			
+		});
+	}
+	
+	/*
+	 * Calculate ahead/behind of specified compare commits against base commit with a single 
+	 * walk. Each compare commit gets its own flag carried down to ancestors, so that 
+	 * membership can be checked on the commit itself instead of collecting reachable 
+	 * commits into sets. Number of compare commits should not exceed available flags of 
+	 * the walk 
+	 */
+	private Map<ObjectId, AheadBehind> calcAheadBehinds(RevWalk revWalk, ObjectId baseId, 
+			List<ObjectId> compareIds) throws IOException {
+		revWalk.reset();
+		revWalk.markStart(revWalk.parseCommit(baseId));
+		for (ObjectId compareId: compareIds) 
+			revWalk.markStart(revWalk.parseCommit(compareId));
+		revWalk.setRevFilter(RevFilter.MERGE_BASE);
+		RevCommit mergeBase = revWalk.next();
+		
+		revWalk.reset();
+		revWalk.setRevFilter(RevFilter.ALL);
+		
+		List<RevFlag> flags = new ArrayList<>();
+		try {
+			RevFlag baseFlag = revWalk.newFlag("base");
+			flags.add(baseFlag);
+			RevCommit baseCommit = revWalk.parseCommit(baseId);
+			baseCommit.add(baseFlag);
+			revWalk.markStart(baseCommit);
+			
+			List<RevFlag> compareFlags = new ArrayList<>();
+			for (ObjectId compareId: compareIds) {
+				RevFlag compareFlag = revWalk.newFlag("compare-" + compareFlags.size());
+				flags.add(compareFlag);
+				compareFlags.add(compareFlag);
+				RevCommit compareCommit = revWalk.parseCommit(compareId);
+				compareCommit.add(compareFlag);
+				revWalk.markStart(compareCommit);
+			}
+			revWalk.carry(flags);
+			if (mergeBase != null)
+				revWalk.markUninteresting(revWalk.lookupCommit(mergeBase));
+			
+			/*
+			 * Flags are only guaranteed to be fully carried after the walk finishes, 
+			 * so collect commits first and count them afterwards 
+			 */
+			List<RevCommit> commits = new ArrayList<>();
+			for (RevCommit commit: revWalk)
+				commits.add(commit);
+			
+			int[] aheads = new int[compareIds.size()];
+			int[] behinds = new int[compareIds.size()];
+			for (RevCommit commit: commits) {
+				boolean inBase = commit.has(baseFlag);
+				for (int i=0; i<compareFlags.size(); i++) {
+					boolean inCompare = commit.has(compareFlags.get(i));
+					if (inCompare && !inBase)
+						aheads[i]++;
+					else if (inBase && !inCompare)
+						behinds[i]++;
+				}
+			}
+			
+			Map<ObjectId, AheadBehind> aheadBehinds = new HashMap<>();
+			for (int i=0; i<compareIds.size(); i++)
+				aheadBehinds.put(compareIds.get(i), new AheadBehind(aheads[i], behinds[i]));
+			return aheadBehinds;
+		} finally {
+			revWalk.reset();
+			for (RevFlag flag: flags)
+				revWalk.disposeFlag(flag);
+		}
+	}
+	
+	/*
+	 * Count commits reachable from new commit but not from old commit, split by whether 
+	 * they are also reachable from the other commit. Old commit should be an ancestor of 
+	 * new commit
+	 */
+	private int[] countForwardCommits(RevWalk revWalk, ObjectId oldId, ObjectId newId, 
+			ObjectId otherId) throws IOException {
+		revWalk.reset();
+		RevFlag newFlag = revWalk.newFlag("new");
+		RevFlag otherFlag = revWalk.newFlag("other");
+		try {
+			revWalk.carry(newFlag);
+			revWalk.carry(otherFlag);
+			RevCommit newCommit = revWalk.parseCommit(newId);
+			newCommit.add(newFlag);
+			revWalk.markStart(newCommit);
+			RevCommit otherCommit = revWalk.parseCommit(otherId);
+			otherCommit.add(otherFlag);
+			revWalk.markStart(otherCommit);
+			revWalk.markUninteresting(revWalk.parseCommit(oldId));
+			
+			List<RevCommit> commits = new ArrayList<>();
+			for (RevCommit commit: revWalk)
+				commits.add(commit);
+			
+			int onlyNew = 0;
+			int both = 0;
+			for (RevCommit commit: commits) {
+				if (commit.has(newFlag)) {
+					if (commit.has(otherFlag))
+						both++;
+					else
+						onlyNew++;
+				}
+			}
+			return new int[] {onlyNew, both};
+		} finally {
+			revWalk.reset();
+			revWalk.disposeFlag(newFlag);
+			revWalk.disposeFlag(otherFlag);
+		}
+	}
+	
+	@Listen
+	public void on(RefUpdated event) {
+		ObjectId oldId = event.getOldCommitId();
+		ObjectId newId = event.getNewCommitId();
+		if (oldId.equals(ObjectId.zeroId()) || newId.equals(ObjectId.zeroId()))
+			return;
+		
+		Long projectId = event.getProject().getId();
+		AheadBehindCache cache = aheadBehindCache.getIfPresent(projectId);
+		if (cache == null)
+			return;
+		
+		Map<Pair<ObjectId, ObjectId>, AheadBehind> affected = cache.getEntriesOf(oldId);
+		if (affected.isEmpty())
+			return;
+		
+		executorService.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				// Only fast-forward updates can be applied incrementally, other ref updates 
+				// are calculated from scratch on next access
+				try (RevWalk revWalk = new RevWalk(getRepository(projectId))) {
+					if (!revWalk.isMergedInto(revWalk.parseCommit(oldId), revWalk.parseCommit(newId)))
+						return;
+					for (Map.Entry<Pair<ObjectId, ObjectId>, AheadBehind> entry: affected.entrySet()) {
+						ObjectId baseId = entry.getKey().getFirst();
+						ObjectId compareId = entry.getKey().getSecond();
+						AheadBehind aheadBehind = entry.getValue();
+						if (compareId.equals(oldId)) {
+							int[] counts = countForwardCommits(revWalk, oldId, newId, baseId);
+							cache.put(baseId, newId, new AheadBehind(
+									aheadBehind.getAhead() + counts[0], aheadBehind.getBehind() - counts[1]));
+						} 
+						if (baseId.equals(oldId)) {
+							int[] counts = countForwardCommits(revWalk, oldId, newId, compareId);
+							cache.put(newId, compareId, new AheadBehind(
+									aheadBehind.getAhead() - counts[1], aheadBehind.getBehind() + counts[0]));
+						}
 					}
-					return aheadBehinds;
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+				} catch (Exception e) {
+					logger.error("Error updating ahead/behind cache", e);
 				}
 			}
 			
@@ -1560,4 +1794,75 @@ public class DefaultGitService implements GitService, Serializable {
 		});
 	}
 	
+	@Override
+	public RevListCursor newRevListCursor(Project project, RevListOptions options) {
+		Long projectId = project.getId();
+		return runOnProjectServer(projectId, new ClusterTask<RevListCursor>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public RevListCursor call() throws Exception {
+				Repository repository = getRepository(projectId);
+				// Count of specified options is kept to limit total number of listed commits
+				RevListOptions pinnedOptions = SerializationUtils.clone(options);
+				pinnedOptions.skip(0);
+				
+				List<String> revisions = new ArrayList<>();
+				boolean hasRevisions = false;
+				for (String revision: options.revisions()) {
+					// Ranges and other revisions which can not be resolved directly are kept as is  
+					if (revision.startsWith("^")) {
+						ObjectId commitId = GitUtils.resolve(repository, revision.substring(1), false);
+						revisions.add(commitId != null? "^" + commitId.name(): revision);
+					} else {
+						hasRevisions = true;
+						ObjectId commitId = GitUtils.resolve(repository, revision, false);
+						revisions.add(commitId != null? commitId.name(): revision);
+					}
+				}
+				if (!hasRevisions) {
+					// Pin branches listed by rev-list command when there is no positive revision, 
+					// unless there are too many of them to be passed as arguments
+					List<Ref> branchRefs = repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS);
+					if (!branchRefs.isEmpty() && branchRefs.size() <= MAX_PINNED_BRANCHES) {
+						for (Ref ref: branchRefs) 
+							revisions.add(ref.getObjectId().name());
+					} else {
+						revisions.add("--branches");
+					}
+				}
+				pinnedOptions.revisions(revisions);
+				return new RevListCursor(pinnedOptions);
+			}
+			
+		});
+	}
+	
+	@Override
+	public List<String> revList(Project project, RevListCursor cursor, int count) {
+		Long projectId = project.getId();
+		int limit = cursor.getOptions().count();
+		if (limit != 0) {
+			count = Math.min(count, limit - cursor.getOffset());
+			if (count <= 0)
+				return new ArrayList<>();
+		}
+		RevListOptions options = SerializationUtils.clone(cursor.getOptions());
+		options.count(count);
+		options.skip(cursor.getOffset());
+		List<String> commitHashes = runOnProjectServer(projectId, new ClusterTask<List<String>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public List<String> call() throws Exception {
+				return new RevListCommand(getGitDir(projectId)).options(options).run();
+			}
+			
+		});
+		cursor.advance(commitHashes.size());
+		return commitHashes;
+	}
+	
 }
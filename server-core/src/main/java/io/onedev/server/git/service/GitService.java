@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -39,6 +40,16 @@ public interface GitService {
 	
 	int getMode(Project project, ObjectId revId, String path);
 	
+	/**
+	 * Filter specified paths to keep only those pointing to files in specified revision. 
+	 * All paths are checked with a single tree walk, which is much faster than checking 
+	 * them one by one when there are many paths
+	 * 
+	 * @return
+	 * 			subset of specified paths pointing to files in specified revision
+	 */
+	Set<String> filterFiles(Project project, ObjectId revId, Collection<String> paths);
+	
 	ObjectId createBranch(Project project, String branchName, String branchRevision);
 	
 	TaggingResult createTag(Project project, String tagName, String tagRevision, 
@@ -71,6 +82,25 @@ public interface GitService {
 	
 	List<String> revList(Project project, RevListOptions options);
 	
+	/**
+	 * Create a cursor to list commits matching specified options page by page via 
+	 * {@link #revList(Project, RevListCursor, int)}. Tips of the walk are resolved to commits 
+	 * when cursor is created, so that subsequent pages are consistent with previous ones even 
+	 * if refs are updated in the meantime. Skip of specified options is ignored, and count of 
+	 * specified options, if not 0, limits total number of commits listed via the cursor
+	 */
+	RevListCursor newRevListCursor(Project project, RevListOptions options);
+	
+	/**
+	 * List next page of commits of specified cursor, and advance the cursor. Commits of previous 
+	 * pages are not returned or parsed again
+	 * 
+	 * @return
+	 * 			hashes of commits in next page. Size of the list will be less than specified 
+	 * 			count if there are no more commits
+	 */
+	List<String> revList(Project project, RevListCursor cursor, int count);
+	
 	ObjectId commit(Project project, BlobEdits blobEdits, String refName, 
 			ObjectId expectedOldCommitId, ObjectId parentCommitId, 
 			PersonIdent authorAndCommitter, String commitMessage, 
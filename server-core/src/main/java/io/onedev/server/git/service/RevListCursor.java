@@ -0,0 +1,39 @@
+package io.onedev.server.git.service;
+
+import java.io.Serializable;
+
+import io.onedev.server.git.command.RevListOptions;
+
+/**
+ * Continuation state of listing commits page by page. It is opaque to callers, and can only 
+ * be created and advanced via {@link GitService}
+ */
+public class RevListCursor implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final RevListOptions options;
+	
+	private int offset;
+	
+	RevListCursor(RevListOptions options) {
+		this.options = options;
+	}
+	
+	/**
+	 * @return
+	 * 			options with tips of the walk resolved to commits
+	 */
+	RevListOptions getOptions() {
+		return options;
+	}
+	
+	int getOffset() {
+		return offset;
+	}
+	
+	void advance(int count) {
+		offset += count;
+	}
+	
+}
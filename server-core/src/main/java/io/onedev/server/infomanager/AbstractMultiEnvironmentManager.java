@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import io.onedev.server.event.ProjectStorageReleased;
 import io.onedev.server.event.pubsub.Listen;
 import io.onedev.server.event.system.SystemStopping;
 import jetbrains.exodus.env.Environment;
@@ -34,6 +35,11 @@ public abstract class AbstractMultiEnvironmentManager extends AbstractEnvironmen
 		}
 	}
 
+	@Listen
+	public void on(ProjectStorageReleased event) {
+		removeEnv(event.getProjectId().toString());
+	}
+	
 	@Listen
 	public void on(SystemStopping event) {
 		synchronized (envs) {
@@ -0,0 +1,33 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Persistent cache of merge bases and changed files of commit pairs. As commits never change, 
+ * cached results never expire and are only evicted when number of cached commit pairs of a 
+ * project exceeds a limit. 
+ * 
+ * All methods should be called on storage server of the project.
+ */
+public interface CompareInfoManager {
+
+	@Nullable
+	ObjectId getMergeBase(Long projectId, ObjectId commitId1, ObjectId commitId2);
+	
+	void cacheMergeBase(Long projectId, ObjectId commitId1, ObjectId commitId2, ObjectId mergeBase);
+	
+	/**
+	 * @return
+	 * 			changed files between specified commits, or <tt>null</tt> if not cached
+	 */
+	@Nullable
+	Collection<String> getChangedFiles(Long projectId, ObjectId oldCommitId, ObjectId newCommitId);
+	
+	void cacheChangedFiles(Long projectId, ObjectId oldCommitId, ObjectId newCommitId, 
+			Collection<String> changedFiles);
+	
+}
@@ -0,0 +1,303 @@
+package io.onedev.server.infomanager;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Cached commit pairs of a project are numbered in order of caching in the order store, and 
+ * the earliest ones are evicted when total bytes of cached keys and values exceeds 
+ * {@link #MAX_CACHED_BYTES}, or number of cached pairs exceeds {@link #MAX_CACHED_PAIRS}. 
+ * Changed files are stored as deflated UTF-8 paths separated by NUL, which never appears in 
+ * git paths
+ */
+@Singleton
+public class DefaultCompareInfoManager extends AbstractMultiEnvironmentManager 
+		implements CompareInfoManager, Serializable {
+
+	private static final int INFO_VERSION = 2;
+	
+	private static final long MAX_CACHED_BYTES = 64L*1024*1024;
+	
+	private static final int MAX_CACHED_PAIRS = 10000;
+	
+	private static final int MAX_CHANGED_FILES_BYTES = 1024*1024;
+	
+	private static final String INFO_DIR = "compare";
+	
+	private static final String DEFAULT_STORE = "default";
+	
+	private static final String MERGE_BASES_STORE = "mergeBases";
+	
+	private static final String CHANGED_FILES_STORE = "changedFiles";
+	
+	private static final String ORDER_STORE = "order";
+	
+	private static final ByteIterable FIRST_ORDER_KEY = new StringByteIterable("firstOrder");
+	
+	private static final ByteIterable NEXT_ORDER_KEY = new StringByteIterable("nextOrder");
+	
+	private static final ByteIterable CACHED_BYTES_KEY = new StringByteIterable("cachedBytes");
+	
+	private static final byte TYPE_MERGE_BASE = 0;
+	
+	private static final byte TYPE_CHANGED_FILES = 1;
+	
+	private final StorageManager storageManager;
+	
+	private final ProjectManager projectManager;
+	
+	private final ClusterManager clusterManager;
+	
+	@Inject
+	public DefaultCompareInfoManager(StorageManager storageManager, ProjectManager projectManager, 
+			ClusterManager clusterManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.clusterManager = clusterManager;
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(CompareInfoManager.class);
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			UUID storageServerUUID = projectManager.getStorageServerUUID(projectId, false);
+			if (storageServerUUID != null) {
+				clusterManager.runOnServer(storageServerUUID, new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						removeEnv(projectId.toString());
+						return null;
+					}
+					
+				});
+			}
+		}
+	}
+	
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+	
+	protected long getMaxCachedBytes() {
+		return MAX_CACHED_BYTES;
+	}
+	
+	protected int getMaxCachedPairs() {
+		return MAX_CACHED_PAIRS;
+	}
+	
+	private static byte[] getPairKey(ObjectId commitId1, ObjectId commitId2) {
+		byte[] keyBytes = new byte[40];
+		commitId1.copyRawTo(keyBytes, 0);
+		commitId2.copyRawTo(keyBytes, 20);
+		return keyBytes;
+	}
+	
+	// Merge base does not depend on order of commits
+	static byte[] getMergeBaseKey(ObjectId commitId1, ObjectId commitId2) {
+		if (commitId1.compareTo(commitId2) <= 0)
+			return getPairKey(commitId1, commitId2);
+		else
+			return getPairKey(commitId2, commitId1);
+	}
+	
+	@Nullable
+	private byte[] read(Long projectId, String storeName, byte[] key) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, storeName);
+		return env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+			
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, new ArrayByteIterable(key));
+			}
+			
+		});
+	}
+	
+	private void write(Long projectId, byte type, byte[] key, byte[] value) {
+		Environment env = getEnv(projectId.toString());
+		Store defaultStore = getStore(env, DEFAULT_STORE);
+		Store mergeBasesStore = getStore(env, MERGE_BASES_STORE);
+		Store changedFilesStore = getStore(env, CHANGED_FILES_STORE);
+		Store orderStore = getStore(env, ORDER_STORE);
+		Store store = type == TYPE_MERGE_BASE? mergeBasesStore: changedFilesStore;
+		
+		env.executeInTransaction(new TransactionalExecutable() {
+
+			@Override
+			public void execute(Transaction txn) {
+				ByteIterable keyIterable = new ArrayByteIterable(key);
+				if (store.get(txn, keyIterable) != null)
+					return;
+				store.put(txn, keyIterable, new ArrayByteIterable(value));
+				
+				long firstOrder = readLong(defaultStore, txn, FIRST_ORDER_KEY, 0);
+				long nextOrder = readLong(defaultStore, txn, NEXT_ORDER_KEY, 0);
+				long cachedBytes = readLong(defaultStore, txn, CACHED_BYTES_KEY, 0);
+				
+				byte[] orderValue = new byte[key.length + 1];
+				orderValue[0] = type;
+				System.arraycopy(key, 0, orderValue, 1, key.length);
+				orderStore.put(txn, new LongByteIterable(nextOrder++), new ArrayByteIterable(orderValue));
+				cachedBytes += key.length + value.length;
+				
+				while (nextOrder - firstOrder > getMaxCachedPairs() || cachedBytes > getMaxCachedBytes()) {
+					ByteIterable orderKey = new LongByteIterable(firstOrder++);
+					byte[] evicted = readBytes(orderStore, txn, orderKey);
+					if (evicted != null) {
+						ByteIterable evictedKey = new ArrayByteIterable(Arrays.copyOfRange(evicted, 1, evicted.length));
+						Store evictedStore = evicted[0] == TYPE_MERGE_BASE? mergeBasesStore: changedFilesStore;
+						ByteIterable evictedValue = evictedStore.get(txn, evictedKey);
+						if (evictedValue != null) {
+							cachedBytes -= evictedKey.getLength() + evictedValue.getLength();
+							evictedStore.delete(txn, evictedKey);
+						}
+						orderStore.delete(txn, orderKey);
+					}
+				}
+				
+				writeLong(defaultStore, txn, FIRST_ORDER_KEY, firstOrder);
+				writeLong(defaultStore, txn, NEXT_ORDER_KEY, nextOrder);
+				writeLong(defaultStore, txn, CACHED_BYTES_KEY, cachedBytes);
+			}
+			
+		});
+	}
+	
+	@Override
+	public ObjectId getMergeBase(Long projectId, ObjectId commitId1, ObjectId commitId2) {
+		byte[] value = read(projectId, MERGE_BASES_STORE, getMergeBaseKey(commitId1, commitId2));
+		if (value != null)
+			return ObjectId.fromRaw(value);
+		else
+			return null;
+	}
+
+	@Override
+	public void cacheMergeBase(Long projectId, ObjectId commitId1, ObjectId commitId2, ObjectId mergeBase) {
+		byte[] value = new byte[20];
+		mergeBase.copyRawTo(value, 0);
+		write(projectId, TYPE_MERGE_BASE, getMergeBaseKey(commitId1, commitId2), value);
+	}
+
+	@Override
+	public Collection<String> getChangedFiles(Long projectId, ObjectId oldCommitId, ObjectId newCommitId) {
+		byte[] value = read(projectId, CHANGED_FILES_STORE, getPairKey(oldCommitId, newCommitId));
+		if (value != null) 
+			return decodeChangedFiles(value);
+		else 
+			return null;
+	}
+
+	@Override
+	public void cacheChangedFiles(Long projectId, ObjectId oldCommitId, ObjectId newCommitId,
+			Collection<String> changedFiles) {
+		byte[] value = encodeChangedFiles(changedFiles);
+		if (value.length <= MAX_CHANGED_FILES_BYTES)
+			write(projectId, TYPE_CHANGED_FILES, getPairKey(oldCommitId, newCommitId), value);
+	}
+	
+	static byte[] encodeChangedFiles(Collection<String> paths) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream os = new DeflaterOutputStream(baos, deflater)) {
+			for (String path: paths) {
+				os.write(path.getBytes(UTF_8));
+				os.write(0);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			deflater.end();
+		}
+		return baos.toByteArray();
+	}
+	
+	static Collection<String> decodeChangedFiles(byte[] value) {
+		Collection<String> changedFiles = new HashSet<>();
+		byte[] bytes = inflate(value);
+		int start = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] == 0) {
+				changedFiles.add(new String(bytes, start, i - start, UTF_8));
+				start = i + 1;
+			}
+		}
+		return changedFiles;
+	}
+	
+	private static byte[] inflate(byte[] bytes) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length * 4);
+			byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && !inflater.finished() && inflater.needsInput())
+					throw new DataFormatException("Unexpected end of changed files");
+				baos.write(buffer, 0, count);
+			}
+			return baos.toByteArray();
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+	
+}
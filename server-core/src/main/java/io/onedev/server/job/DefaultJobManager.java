@@ -47,6 +47,7 @@ import javax.ws.rs.core.Response;
 
 import org.apache.shiro.subject.Subject;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.ScheduleBuilder;
 import org.slf4j.Logger;
@@ -54,6 +55,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -74,6 +77,7 @@ import io.onedev.k8shelper.ServerSideFacade;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.buildspec.BuildSpecParseException;
+import io.onedev.server.buildspec.Import;
 import io.onedev.server.buildspec.Service;
 import io.onedev.server.buildspec.job.CacheSpec;
 import io.onedev.server.buildspec.job.Job;
@@ -97,6 +101,7 @@ import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.AgentManager;
 import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.entitymanager.BuildParamManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
@@ -121,6 +126,9 @@ import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.service.RefFacade;
 import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.job.authorization.JobAuthorization;
+import io.onedev.server.job.log.BatchTaskLogger;
+import io.onedev.server.job.log.JobLogLine;
+import io.onedev.server.job.log.LogBatchTask;
 import io.onedev.server.job.log.LogManager;
 import io.onedev.server.job.log.LogTask;
 import io.onedev.server.model.Build;
@@ -141,6 +149,7 @@ import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessBuild;
 import io.onedev.server.security.permission.JobPermission;
 import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.storage.ArtifactStoreManager;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.CommitAware;
 import io.onedev.server.util.JobSecretAuthorizationContext;
@@ -161,6 +170,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 
 	private static final int CHECK_INTERVAL = 1000; // check internal in milli-seconds
 	
+	private static final int TRIGGER_INDEX_CACHE_SIZE = 1000;
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultJobManager.class);
 	
 	private final Map<Long, JobExecution> jobExecutions = new ConcurrentHashMap<>();
@@ -171,6 +182,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	
 	private final Map<Long, Collection<String>> scheduledTasks = new ConcurrentHashMap<>();
 	
+	private final Cache<String, TriggerIndex> triggerIndexCache = 
+			CacheBuilder.newBuilder().maximumSize(TRIGGER_INDEX_CACHE_SIZE).build();
+	
 	private final ProjectManager projectManager;
 	
 	private final BuildManager buildManager;
@@ -203,6 +217,10 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	
 	private final StorageManager storageManager;
 	
+	private final ArtifactStoreManager artifactStoreManager;
+	
+	private final BuildMetricManager buildMetricManager;
+	
 	private final ResourceAllocator resourceAllocator;
 	
 	private volatile Thread thread;
@@ -217,6 +235,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 			ExecutorService executorService, SessionManager sessionManager, BuildParamManager buildParamManager, 
 			ProjectManager projectManager, Validator validator, TaskScheduler taskScheduler, AgentManager agentManager, 
 			ClusterManager clusterManager, CodeIndexManager codeIndexManager, StorageManager storageManager,
+			ArtifactStoreManager artifactStoreManager, BuildMetricManager buildMetricManager, 
 			ResourceAllocator resourceAllocator) {
 		this.settingManager = settingManager;
 		this.buildManager = buildManager;
@@ -235,6 +254,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		this.clusterManager = clusterManager;
 		this.resourceAllocator = resourceAllocator;
 		this.storageManager = storageManager;
+		this.artifactStoreManager = artifactStoreManager;
+		this.buildMetricManager = buildMetricManager;
 	}
 	
 	public Object writeReplace() throws ObjectStreamException {
@@ -254,6 +275,70 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}
 	}
 	
+	/*
+	 * Validated build specs are cached by project, build spec blob id and commits of 
+	 * imported build specs, so that trigger evaluation for unchanged build specs does 
+	 * not need to validate again. Only successful validations are cached, and build 
+	 * spec will be validated again anyway when a build is submitted 
+	 */
+	@Nullable
+	private TriggerIndex getTriggerIndex(Project project, ObjectId commitId) {
+		BuildSpec buildSpec = project.getBuildSpec(commitId);
+		if (buildSpec != null) {
+			String cacheKey = getTriggerIndexCacheKey(project, commitId, buildSpec);
+			TriggerIndex triggerIndex = cacheKey != null? triggerIndexCache.getIfPresent(cacheKey): null;
+			if (triggerIndex == null) {
+				validateBuildSpec(project, commitId, buildSpec);
+				triggerIndex = new TriggerIndex(buildSpec);
+				if (cacheKey != null)
+					triggerIndexCache.put(cacheKey, triggerIndex);
+			}
+			return triggerIndex;
+		} else {
+			return null;
+		}
+	}
+	
+	@Nullable
+	private String getTriggerIndexCacheKey(Project project, ObjectId commitId, BuildSpec buildSpec) {
+		ObjectId blobId = project.getBuildSpecBlobId(commitId);
+		if (blobId != null) {
+			StringBuilder builder = new StringBuilder(project.getId() + ":" + blobId.name());
+			if (appendImportCommits(builder, buildSpec, new HashSet<>()))
+				return builder.toString();
+		} 
+		return null;
+	}
+	
+	private boolean appendImportCommits(StringBuilder builder, BuildSpec buildSpec, 
+			Collection<String> projectChain) {
+		for (Import aImport: buildSpec.getImports()) {
+			if (!projectChain.contains(aImport.getProjectPath())) {
+				Project importProject = projectManager.findByPath(aImport.getProjectPath());
+				if (importProject == null)
+					return false;
+				RevCommit importCommit = importProject.getRevCommit(aImport.getTag(), false);
+				if (importCommit == null)
+					return false;
+				builder.append(":").append(aImport.getProjectPath()).append("@").append(importCommit.name());
+				
+				BuildSpec importBuildSpec;
+				try {
+					importBuildSpec = importProject.getBuildSpec(importCommit);
+				} catch (BuildSpecParseException e) {
+					return false;
+				}
+				if (importBuildSpec != null) {
+					Collection<String> newProjectChain = new HashSet<>(projectChain);
+					newProjectChain.add(aImport.getProjectPath());
+					if (!appendImportCommits(builder, importBuildSpec, newProjectChain))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+	
 	@Transactional
 	@Override
 	public Build submit(Project project, ObjectId commitId, String jobName, 
@@ -430,6 +515,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 			@Override
 			public Void call() throws Exception {
 				FileUtils.cleanDir(storageManager.getBuildDir(projectId, buildNumber));
+				artifactStoreManager.releaseArtifacts(projectId, buildNumber);
 				return null;
 			}
 			
@@ -713,10 +799,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 				JobSecretAuthorizationContext.push(new JobSecretAuthorizationContext(event.getProject(), commitId, request));
 				ScriptIdentity.push(new JobIdentity(event.getProject(), commitId));
 				try {
-					BuildSpec buildSpec = event.getProject().getBuildSpec(commitId);
-					if (buildSpec != null) {
-						validateBuildSpec(event.getProject(), commitId, buildSpec);
-						for (Job job: buildSpec.getJobMap().values()) {
+					TriggerIndex triggerIndex = getTriggerIndex(event.getProject(), commitId);
+					if (triggerIndex != null) {
+						for (Job job: triggerIndex.getCandidateJobs(event.getClass())) {
 							JobTriggerMatch match = job.getTriggerMatch(event);
 							if (match != null) {
 								Map<String, List<List<String>>> paramMatrix = 
@@ -785,6 +870,10 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	        				build.getProject().getPath(), build.getCommitId().name(), build.getJobName()));
 	        	}
 				
+				// Metrics of the build will no longer be counted on previous finish day
+				if (build.getFinishDay() != null)
+					buildMetricManager.invalidateStats(build.getProject(), build.getFinishDay());
+				
 				build.setStatus(Build.Status.WAITING);
 				build.setFinishDate(null);
 				build.setPendingDate(null);
@@ -929,11 +1018,10 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 				if (commitId != null) {
 					JobSecretAuthorizationContext.push(new JobSecretAuthorizationContext(project, commitId, null));
 					try {
-						BuildSpec buildSpec = project.getBuildSpec(commitId);
-						if (buildSpec != null) {
-							validateBuildSpec(project, commitId, buildSpec);
+						TriggerIndex triggerIndex = getTriggerIndex(project, commitId);
+						if (triggerIndex != null) {
 							ScheduledTimeReaches event = new ScheduledTimeReaches(project);
-							for (Job job: buildSpec.getJobMap().values()) {
+							for (Job job: triggerIndex.getCandidateJobs(ScheduledTimeReaches.class)) {
 								for (JobTrigger trigger: job.getTriggers()) {
 									if (trigger instanceof ScheduleTrigger) {
 										ScheduleTrigger scheduledTrigger = (ScheduleTrigger) trigger;
@@ -1304,12 +1392,17 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 
 		TaskLogger jobLogger = logManager.getJobLogger(jobToken);
 		if (jobLogger == null) {
-			jobLogger = new TaskLogger() {
+			jobLogger = new BatchTaskLogger() {
 
 				@Override
 				public void log(String message, String sessionId) {
 					projectManager.runOnProjectServer(jobContext.getProjectId(), new LogTask(jobToken, message, sessionId)); 
 				}
+
+				@Override
+				public void log(List<JobLogLine> lines) {
+					projectManager.runOnProjectServer(jobContext.getProjectId(), new LogBatchTask(jobToken, lines)); 
+				}
 				
 			};
 			logManager.addJobLogger(jobToken, jobLogger);
@@ -1482,4 +1575,31 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		
 	}
 	
-}
\ No newline at end of file
+	private static class TriggerIndex {
+		
+		private final Collection<Job> jobs;
+		
+		private final Map<Class<?>, Collection<Job>> candidateJobs = new ConcurrentHashMap<>();
+		
+		TriggerIndex(BuildSpec buildSpec) {
+			jobs = new ArrayList<>(buildSpec.getJobMap().values());
+		}
+		
+		Collection<Job> getCandidateJobs(Class<? extends ProjectEvent> eventClass) {
+			return candidateJobs.computeIfAbsent(eventClass, it -> {
+				Collection<Job> candidateJobsOfEvent = new ArrayList<>();
+				for (Job job: jobs) {
+					for (JobTrigger trigger: job.getTriggers()) {
+						if (trigger.getEventClass().isAssignableFrom(eventClass)) {
+							candidateJobsOfEvent.add(job);
+							break;
+						}
+					}
+				}
+				return candidateJobsOfEvent;
+			});
+		}
+		
+	}
+	
+}
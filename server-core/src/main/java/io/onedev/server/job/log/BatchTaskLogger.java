@@ -0,0 +1,28 @@
+package io.onedev.server.job.log;
+
+import java.util.List;
+
+import io.onedev.commons.utils.TaskLogger;
+
+/**
+ * Task logger able to append many log lines at once. Implementations should override 
+ * {@link #log(List)} to append the whole batch with a single lock acquisition and a 
+ * single change notification
+ */
+public abstract class BatchTaskLogger extends TaskLogger {
+
+	public void log(List<JobLogLine> lines) {
+		for (JobLogLine line: lines)
+			log(line.getMessage(), line.getSessionId());
+	}
+	
+	public static void log(TaskLogger logger, List<JobLogLine> lines) {
+		if (logger instanceof BatchTaskLogger) {
+			((BatchTaskLogger) logger).log(lines);
+		} else {
+			for (JobLogLine line: lines)
+				logger.log(line.getMessage(), line.getSessionId());
+		}
+	}
+	
+}
@@ -15,6 +15,7 @@ import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -35,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.loader.ManagedSerializedForm;
 import io.onedev.commons.utils.ExceptionUtils;
@@ -115,15 +118,23 @@ public class DefaultLogManager implements LogManager, Serializable {
 		Long buildNumber = build.getNumber();
 		Collection<String> secretValuesToMask = build.getSecretValuesToMask();
 		secretValuesToMask.addAll(jobSecretsToMask);
-		return new TaskLogger() {
+		return new BatchTaskLogger() {
 			
 			private final Map<String, StyleBuilder> styleBuilders = new ConcurrentHashMap<>();
 			
 			private void doLog(String message, StyleBuilder styleBuilder) {
-				for (String maskSecret: secretValuesToMask)
-					message = StringUtils.replace(message, maskSecret, SecretInput.MASK);
+				doLog(Lists.newArrayList(new PendingEntry(message, styleBuilder, new Date())));
+			}
+			
+			private void doLog(List<PendingEntry> pendingEntries) {
+				if (pendingEntries.isEmpty())
+					return;
+				
+				for (PendingEntry pendingEntry: pendingEntries) {
+					for (String maskSecret: secretValuesToMask)
+						pendingEntry.message = StringUtils.replace(pendingEntry.message, maskSecret, SecretInput.MASK);
+				}
 				
-				String maskedMessage = message;
 				LockUtils.write(getLockName(buildId), new Callable<Void>() {
 
 					@Override
@@ -138,11 +149,14 @@ public class DefaultLogManager implements LogManager, Serializable {
 						}
 						if (snippet != null) {
 							boolean entryAdded = false;
-							try {
-								snippet.entries.add(JobLogEntryEx.parse(maskedMessage, styleBuilder));
-								entryAdded = true;
-							} catch (Exception e) {
-								logger.error("Failed to parse job log message: " +  maskedMessage, e);
+							for (PendingEntry pendingEntry: pendingEntries) {
+								try {
+									snippet.entries.add(JobLogEntryEx.parse(pendingEntry.message, 
+											pendingEntry.styleBuilder, pendingEntry.date));
+									entryAdded = true;
+								} catch (Exception e) {
+									logger.error("Failed to parse job log message: " +  pendingEntry.message, e);
+								}
 							}
 							if (entryAdded) {
 								if (snippet.entries.size() > MAX_CACHE_ENTRIES) {
@@ -165,19 +179,23 @@ public class DefaultLogManager implements LogManager, Serializable {
 				});
 			}
 			
+			private StyleBuilder getStyleBuilder(@Nullable String sessionId) {
+				if (sessionId != null) {
+					StyleBuilder styleBuilder = styleBuilders.get(sessionId);
+					if (styleBuilder == null) {
+						styleBuilder = new StyleBuilder();
+						styleBuilders.put(sessionId, styleBuilder);
+					}
+					return styleBuilder;
+				} else {
+					return new StyleBuilder();
+				}
+			}
+			
 			@Override
 			public void log(String message, String sessionId) {
 				try {
-					StyleBuilder styleBuilder;
-					if (sessionId != null) {
-						styleBuilder = styleBuilders.get(sessionId);
-						if (styleBuilder == null) {
-							styleBuilder = new StyleBuilder();
-							styleBuilders.put(sessionId, styleBuilder);
-						}
-					} else {
-						styleBuilder = new StyleBuilder();
-					}
+					StyleBuilder styleBuilder = getStyleBuilder(sessionId);
 					if (message.startsWith(LogInstruction.PREFIX)) {
 						InstructionContext instructionContext = LogInstruction.parse(message);
 						String name = instructionContext.Identifier().getText();
@@ -214,6 +232,27 @@ public class DefaultLogManager implements LogManager, Serializable {
 					logger.error("Error logging", e);
 				}
 			}
+
+			@Override
+			public void log(List<JobLogLine> lines) {
+				try {
+					List<PendingEntry> pendingEntries = new ArrayList<>();
+					for (JobLogLine line: lines) {
+						if (line.getMessage().startsWith(LogInstruction.PREFIX)) {
+							// Instructions may log by themselves, flush pending entries to keep order
+							doLog(pendingEntries);
+							pendingEntries = new ArrayList<>();
+							log(line.getMessage(), line.getSessionId());
+						} else {
+							pendingEntries.add(new PendingEntry(line.getMessage(), 
+									getStyleBuilder(line.getSessionId()), line.getDate()));
+						}
+					}
+					doLog(pendingEntries);
+				} catch (Exception e) {
+					logger.error("Error logging", e);
+				}
+			}
 			
 		};
 	}
@@ -570,4 +609,21 @@ public class DefaultLogManager implements LogManager, Serializable {
 	public void removeJobLogger(String jobToken) {
 		jobLoggers.remove(jobToken);
 	}
+	
+	private static class PendingEntry {
+		
+		String message;
+		
+		final StyleBuilder styleBuilder;
+		
+		final Date date;
+		
+		PendingEntry(String message, StyleBuilder styleBuilder, Date date) {
+			this.message = message;
+			this.styleBuilder = styleBuilder;
+			this.date = date;
+		}
+		
+	}
+	
 }
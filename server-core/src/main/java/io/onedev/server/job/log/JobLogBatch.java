@@ -0,0 +1,139 @@
+package io.onedev.server.job.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.onedev.commons.utils.ExplicitException;
+
+/**
+ * Batched job log frame sent by agents over websocket in place of one <tt>JOB_LOG</tt> 
+ * message per line. Layout of the frame (all integers are big endian):
+ * <pre>
+ * magic (5 bytes) | version (1 byte) | job token (string) | line count (int) | lines
+ * line: timestamp in millis (long) | session id (string, length -1 for null) | message (string)
+ * string: length in bytes (int) | UTF-8 bytes
+ * </pre>
+ * Frames are distinguished from regular agent messages by the magic header, whose first 
+ * byte never appears as the leading byte of a regular message. Per-line <tt>JOB_LOG</tt> 
+ * messages are still accepted, so agents not sending this frame keep working. Lengths in 
+ * the frame are checked against remaining bytes before anything is allocated, and frames 
+ * not fitting are rejected
+ */
+public class JobLogBatch {
+
+	private static final byte[] MAGIC = new byte[] {(byte)0xFF, 'O', 'D', 'L', 'B'};
+	
+	private static final int VERSION = 1;
+	
+	// timestamp, session id length and message length
+	private static final int MIN_LINE_BYTES = Long.BYTES + 2*Integer.BYTES;
+	
+	private final String jobToken;
+	
+	private final List<JobLogLine> lines;
+	
+	public JobLogBatch(String jobToken, List<JobLogLine> lines) {
+		this.jobToken = jobToken;
+		this.lines = lines;
+	}
+
+	public String getJobToken() {
+		return jobToken;
+	}
+
+	public List<JobLogLine> getLines() {
+		return lines;
+	}
+
+	public static boolean isBatch(byte[] bytes, int offset, int count) {
+		if (count < MAGIC.length + 1)
+			return false;
+		for (int i=0; i<MAGIC.length; i++) {
+			if (bytes[offset+i] != MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+	
+	public static JobLogBatch decode(byte[] bytes, int offset, int count) {
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes, offset, count))) {
+			is.skipBytes(MAGIC.length);
+			int version = is.readUnsignedByte();
+			if (version != VERSION)
+				throw new ExplicitException("Unsupported job log batch version: " + version);
+			String jobToken = readString(is);
+			if (jobToken == null)
+				throw new ExplicitException("Job token is missing in job log batch");
+			int lineCount = is.readInt();
+			if (lineCount < 0 || lineCount > is.available() / MIN_LINE_BYTES)
+				throw new ExplicitException("Invalid line count in job log batch: " + lineCount);
+			List<JobLogLine> lines = new ArrayList<>(lineCount);
+			for (int i=0; i<lineCount; i++) {
+				Date date = new Date(is.readLong());
+				String sessionId = readString(is);
+				String message = readString(is);
+				if (message == null)
+					message = "";
+				lines.add(new JobLogLine(date, sessionId, message));
+			}
+			if (is.available() != 0)
+				throw new ExplicitException("Unexpected trailing bytes in job log batch");
+			return new JobLogBatch(jobToken, lines);
+		} catch (EOFException e) {
+			throw new ExplicitException("Truncated job log batch");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public byte[] encode() {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(baos)) {
+			os.write(MAGIC);
+			os.writeByte(VERSION);
+			writeString(os, jobToken);
+			os.writeInt(lines.size());
+			for (JobLogLine line: lines) {
+				os.writeLong(line.getDate().getTime());
+				writeString(os, line.getSessionId());
+				writeString(os, line.getMessage());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+	
+	@Nullable
+	private static String readString(DataInputStream is) throws IOException {
+		int length = is.readInt();
+		if (length == -1)
+			return null;
+		if (length < 0 || length > is.available())
+			throw new ExplicitException("Invalid string length in job log batch: " + length);
+		byte[] bytes = new byte[length];
+		is.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static void writeString(DataOutputStream os, @Nullable String value) throws IOException {
+		if (value != null) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			os.writeInt(bytes.length);
+			os.write(bytes);
+		} else {
+			os.writeInt(-1);
+		}
+	}
+	
+}
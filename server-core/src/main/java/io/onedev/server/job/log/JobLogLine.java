@@ -0,0 +1,37 @@
+package io.onedev.server.job.log;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+public class JobLogLine implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Date date;
+	
+	private final String sessionId;
+	
+	private final String message;
+	
+	public JobLogLine(Date date, @Nullable String sessionId, String message) {
+		this.date = date;
+		this.sessionId = sessionId;
+		this.message = message;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	@Nullable
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+	
+}
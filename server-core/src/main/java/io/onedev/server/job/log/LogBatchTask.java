@@ -0,0 +1,31 @@
+package io.onedev.server.job.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.onedev.commons.utils.TaskLogger;
+import io.onedev.server.OneDev;
+import io.onedev.server.cluster.ClusterTask;
+
+public class LogBatchTask implements ClusterTask<Void> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String jobToken;
+	
+	private final ArrayList<JobLogLine> lines;
+	
+	public LogBatchTask(String jobToken, List<JobLogLine> lines) {
+		this.jobToken = jobToken;
+		this.lines = new ArrayList<>(lines);
+	}
+	
+	@Override
+	public Void call() {
+		TaskLogger logger = OneDev.getInstance(LogManager.class).getJobLogger(jobToken);
+		if (logger != null) 
+			BatchTaskLogger.log(logger, lines);
+		return null;
+	}
+	
+}
@@ -1,5 +1,7 @@
 package io.onedev.server.markdown;
 
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -9,10 +11,16 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
 import com.vladsch.flexmark.ext.autolink.AutolinkExtension;
 import com.vladsch.flexmark.ext.definition.DefinitionExtension;
@@ -35,28 +43,93 @@ import com.vladsch.flexmark.util.data.MutableDataHolder;
 import com.vladsch.flexmark.util.data.MutableDataSet;
 import com.vladsch.flexmark.util.misc.Extension;
 
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterRunnable;
+import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.build.BuildUpdated;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.util.HtmlUtils;
 import io.onedev.server.web.component.markdown.SuggestionSupport;
 import io.onedev.server.web.page.project.blob.render.BlobRenderContext;
 import io.onedev.server.web.resource.AttachmentResource;
 
 @Singleton
-public class DefaultMarkdownManager implements MarkdownManager {
+public class DefaultMarkdownManager implements MarkdownManager, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+
+	private static final int RENDER_CACHE_SIZE = 10000;
+	
+	private static final int PROCESS_CACHE_PROJECTS = 1000;
+	
+	private static final int PROCESS_CACHE_SIZE = 1000;
+	
+	private static final Long NO_PROJECT = 0L;
 	
 	private final SettingManager settingManager;
 	
+	private final ClusterManager clusterManager;
+	
+	private final TransactionManager transactionManager;
+	
 	private final Set<Extension> contributedExtensions;
 	
 	private final Set<MarkdownProcessor> htmlTransformers;
 	
+	private final Parser parser;
+	
+	private final HtmlRenderer htmlRenderer;
+	
+	private final Cache<String, String> renderCache = CacheBuilder.newBuilder()
+			.maximumSize(RENDER_CACHE_SIZE)
+			.softValues()
+			.build();
+	
+	private final LoadingCache<Long, Cache<String, String>> processCache = CacheBuilder.newBuilder()
+			.maximumSize(PROCESS_CACHE_PROJECTS)
+			.build(new CacheLoader<Long, Cache<String, String>>() {
+
+				@Override
+				public Cache<String, String> load(Long projectId) {
+					return CacheBuilder.newBuilder().maximumSize(PROCESS_CACHE_SIZE).softValues().build();
+				}
+				
+			});
+	
 	@Inject
-	public DefaultMarkdownManager(SettingManager settingManager, Set<Extension> contributedExtensions, 
+	public DefaultMarkdownManager(SettingManager settingManager, ClusterManager clusterManager, 
+			TransactionManager transactionManager, Set<Extension> contributedExtensions, 
 			Set<MarkdownProcessor> htmlTransformers) {
 		this.settingManager = settingManager;
+		this.clusterManager = clusterManager;
+		this.transactionManager = transactionManager;
 		this.contributedExtensions = contributedExtensions;
 		this.htmlTransformers = htmlTransformers;
+		
+		// Parser and renderer are immutable and thread-safe, and options do not depend 
+		// on any setting, so build them once 
+		MutableDataHolder options = setupOptions();
+		parser = Parser.builder(options).build();
+		htmlRenderer = HtmlRenderer.builder(options).softBreak("<br>").build();
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(MarkdownManager.class);
 	}
 
 	private MutableDataHolder setupOptions() {
@@ -87,8 +160,13 @@ public class DefaultMarkdownManager implements MarkdownManager {
 	
 	@Override
 	public String render(String markdown) {
-		Node node = parse(markdown);
-		return HtmlRenderer.builder(setupOptions()).softBreak("<br>").build().render(node);
+		String cacheKey = DigestUtils.sha256Hex(markdown);
+		String html = renderCache.getIfPresent(cacheKey);
+		if (html == null) {
+			html = htmlRenderer.render(parse(markdown));
+			renderCache.put(cacheKey, html);
+		}
+		return html;
 	}
 
 	@Override
@@ -119,13 +197,31 @@ public class DefaultMarkdownManager implements MarkdownManager {
 			@Nullable BlobRenderContext blobRenderContext, 
 			@Nullable SuggestionSupport suggestionSupport, 
 			boolean forExternal) {
-		return process(HtmlUtils.parse(html), project, blobRenderContext, suggestionSupport, forExternal).body().html();
+		// Processed html depends on blob render context and suggestion support, as well as 
+		// current user in these cases, so only cache when they are absent
+		if (blobRenderContext == null && suggestionSupport == null) {
+			Cache<String, String> processCacheOfProject = processCache.getUnchecked(
+					project != null? project.getId(): NO_PROJECT);
+			// Urls generated by Wicket are relative to base url of current request 
+			String baseUrl;
+			if (RequestCycle.get() != null)
+				baseUrl = RequestCycle.get().getUrlRenderer().getBaseUrl().toString();
+			else
+				baseUrl = null;
+			String cacheKey = forExternal + ":" + baseUrl + ":" + DigestUtils.sha256Hex(html);
+			String processed = processCacheOfProject.getIfPresent(cacheKey);
+			if (processed == null) {
+				processed = process(HtmlUtils.parse(html), project, null, null, forExternal).body().html();
+				processCacheOfProject.put(cacheKey, processed);
+			}
+			return processed;
+		} else {
+			return process(HtmlUtils.parse(html), project, blobRenderContext, suggestionSupport, forExternal).body().html();
+		}
 	}
 
 	@Override
 	public Node parse(String markdown) {
-		MutableDataHolder options = setupOptions();
-		Parser parser = Parser.builder(options).build();
 		return parser.parse(markdown);
 	}
 
@@ -177,4 +273,78 @@ public class DefaultMarkdownManager implements MarkdownManager {
 		return Formatter.builder().extensions(extensions).build().render(node);	
 	}
 	
+	@Listen
+	public void on(RefUpdated event) {
+		// Commit references are rendered as links only if commit exists
+		invalidateProcessCache(event.getProject().getId());
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		AbstractEntity entity = event.getEntity();
+		if (event.isNew()) {
+			onEntityChange(entity);
+		} else if (entity instanceof Setting && ((Setting) entity).getKey() == Setting.Key.SYSTEM) {
+			// Processed html for external use embeds server url
+			invalidateProcessCache(null);
+		}
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		onEntityChange(event.getEntity());
+	}
+	
+	private void onEntityChange(AbstractEntity entity) {
+		/*
+		 * Project, user, issue, pull request and build references are rendered as links only if 
+		 * they exist. Renaming of projects and users, as well as renumbering of moved issues 
+		 * invalidate the cache explicitly, so only creation and deletion are handled here 
+		 */
+		if (entity instanceof Project || entity instanceof User)
+			invalidateProcessCache(null);
+		else if (entity instanceof Issue)
+			invalidateProcessCache(((Issue) entity).getProject().getId());
+		else if (entity instanceof PullRequest)
+			invalidateProcessCache(((PullRequest) entity).getTargetProject().getId());
+		else if (entity instanceof Build)
+			invalidateProcessCache(((Build) entity).getProject().getId());
+	}
+	
+	@Sessional
+	@Listen
+	public void on(BuildUpdated event) {
+		// Build references embed build version
+		invalidateProcessCache(event.getProject().getId());
+	}
+	
+	@Override
+	public void invalidateProcessCache(@Nullable Long projectId) {
+		transactionManager.runAfterCommit(new ClusterRunnable() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						if (projectId != null)
+							processCache.invalidate(projectId);
+						else
+							processCache.invalidateAll();
+						return null;
+					}
+					
+				});
+			}
+			
+		});
+	}
+	
 }
@@ -40,6 +40,16 @@ public interface MarkdownManager {
 	
 	String toExternalUrl(String url);
 	
+	/**
+	 * Invalidate cached result of html processing after current transaction is committed, 
+	 * for instance when entities referenced in html are renamed or renumbered
+	 * 
+	 * @param projectId
+	 * 			id of project to invalidate cached result of, or <tt>null</tt> to invalidate 
+	 * 			cached result of all projects
+	 */
+	void invalidateProcessCache(@Nullable Long projectId);
+	
 	String format(String markdown, Set<NodeFormattingHandler<?>> handlers);
 	
 }
@@ -4418,4 +4418,30 @@ public class DataMigrator {
 		}
 	}
 	
+	// Introduced daily rollup of build metrics, which is populated when system starts
+	private void migrate104(File dataDir, Stack<Integer> versions) {
+	}
+	
+	// Introduced project counters, which are populated when system starts
+	private void migrate105(File dataDir, Stack<Integer> versions) {
+	}
+	
+	private void migrate106(File dataDir, Stack<Integer> versions) {
+		for (File file: dataDir.listFiles()) {
+			if (file.getName().startsWith("Settings.xml")) {
+				VersionedXmlDoc dom = VersionedXmlDoc.fromFile(file);
+				for (Element element: dom.getRootElement().elements()) {
+					if (element.elementTextTrim("key").equals("PERFORMANCE")) {
+						Element valueElement = element.element("value");
+						if (valueElement != null) {
+							valueElement.addElement("maxCachedRepositories").setText("1000");
+							valueElement.addElement("gitPackMmap").setText("false");
+						}
+					}
+				}
+				dom.writeToFile(file, false);
+			}
+		}
+	}
+	
 }
@@ -0,0 +1,148 @@
+package io.onedev.server.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import io.onedev.server.model.support.BuildMetric;
+
+/**
+ * Daily rollup of an indicator of build metrics, grouped by job and report. Rows of a project
+ * day are recalculated from build metrics whenever metrics or builds finished on that day change,
+ * so that metric statistics over long periods can be queried without touching all builds
+ */
+@Entity
+@Table(indexes={
+		@Index(columnList="o_project_id"), @Index(columnList=BuildMetricStat.PROP_METRIC_TYPE),
+		@Index(columnList=BuildMetricStat.PROP_DAY)})
+public class BuildMetricStat extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PROP_PROJECT = "project";
+
+	public static final String PROP_METRIC_TYPE = "metricType";
+
+	public static final String PROP_JOB = Build.PROP_JOB;
+
+	public static final String PROP_REPORT = BuildMetric.PROP_REPORT;
+
+	public static final String PROP_DAY = "day";
+
+	public static final String PROP_INDICATOR = "indicator";
+
+	public static final String PROP_TOTAL = "total";
+
+	public static final String PROP_COUNT = "count";
+
+	@ManyToOne(fetch=FetchType.LAZY)
+	@JoinColumn(nullable=false)
+	private Project project;
+
+	@Column(nullable=false)
+	private String metricType;
+
+	@Column(nullable=false)
+	private String jobName;
+
+	@Column(nullable=false)
+	private String reportName;
+
+	private int day;
+
+	@Column(nullable=false)
+	private String indicator;
+
+	private long total;
+
+	private int count;
+
+	public Project getProject() {
+		return project;
+	}
+
+	public void setProject(Project project) {
+		this.project = project;
+	}
+
+	/**
+	 * @return
+	 * 			simple name of metric class
+	 */
+	public String getMetricType() {
+		return metricType;
+	}
+
+	public void setMetricType(String metricType) {
+		this.metricType = metricType;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public void setJobName(String jobName) {
+		this.jobName = jobName;
+	}
+
+	public String getReportName() {
+		return reportName;
+	}
+
+	public void setReportName(String reportName) {
+		this.reportName = reportName;
+	}
+
+	/**
+	 * @return
+	 * 			value of {@link io.onedev.server.util.Day} builds finished on
+	 */
+	public int getDay() {
+		return day;
+	}
+
+	public void setDay(int day) {
+		this.day = day;
+	}
+
+	/**
+	 * @return
+	 * 			property name of the indicator in metric class
+	 */
+	public String getIndicator() {
+		return indicator;
+	}
+
+	public void setIndicator(String indicator) {
+		this.indicator = indicator;
+	}
+
+	/**
+	 * @return
+	 * 			sum of indicator values of all metrics in this rollup
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * @return
+	 * 			number of metrics in this rollup
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+}
@@ -201,6 +201,9 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 	
 	private static final ReferenceMap<ObjectId, Optional<BuildSpec>> buildSpecCache = 
 			new ReferenceMap<>(ReferenceStrength.HARD, ReferenceStrength.SOFT);
+	
+	private static final ReferenceMap<ObjectId, Optional<ObjectId>> buildSpecBlobIdCache = 
+			new ReferenceMap<>(ReferenceStrength.HARD, ReferenceStrength.SOFT);
     
 	@ManyToOne(fetch=FetchType.LAZY)
 	@JoinColumn(nullable=true)
@@ -298,6 +301,12 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
 	private Collection<BuildQueryPersonalization> buildQueryPersonalizations = new ArrayList<>();
 	
+	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
+	private Collection<BuildMetricStat> buildMetricStats = new ArrayList<>();
+	
+	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
+	private Collection<ProjectCounter> counters = new ArrayList<>();
+	
 	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
 	@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
 	private Collection<Milestone> milestones = new ArrayList<>();
@@ -761,16 +770,11 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 			buildSpec = buildSpecCache.get(commitId);
 		}
 		if (buildSpec == null) {
-			Blob blob = getBlob(new BlobIdent(commitId.name(), BuildSpec.BLOB_PATH, FileMode.TYPE_FILE), false);
-			if (blob != null) {  
+			Blob blob = getBuildSpecBlob(commitId);
+			if (blob != null)  
 				buildSpec = Optional.fromNullable(BuildSpec.parse(blob.getBytes()));
-			} else { 
-				Blob oldBlob = getBlob(new BlobIdent(commitId.name(), ".onedev-buildspec", FileMode.TYPE_FILE), false);
-				if (oldBlob != null)
-					buildSpec = Optional.fromNullable(BuildSpec.parse(oldBlob.getBytes()));
-				else
-					buildSpec = Optional.absent();
-			}
+			else 
+				buildSpec = Optional.absent();
 			synchronized (buildSpecCache) {
 				buildSpecCache.put(commitId, buildSpec);
 			}
@@ -778,6 +782,42 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 		return buildSpec.orNull();
 	}
 	
+	/**
+	 * Get blob id of build spec file at specified commit. Build specs with same blob id 
+	 * have same content, and this can be used to cache results derived from build spec 
+	 * without parsing it again
+	 * 
+	 * @param commitId
+	 * 			commit id to get build spec blob id for
+	 * @return
+	 * 			blob id of build spec file, or <tt>null</tt> if build spec file does not exist
+	 */
+	@Nullable
+	public ObjectId getBuildSpecBlobId(ObjectId commitId) {
+		Optional<ObjectId> blobId;
+		synchronized (buildSpecBlobIdCache) {
+			blobId = buildSpecBlobIdCache.get(commitId);
+		}
+		if (blobId != null) {
+			return blobId.orNull();
+		} else {
+			Blob blob = getBuildSpecBlob(commitId);
+			return blob != null? blob.getBlobId(): null;
+		}
+	}
+	
+	@Nullable
+	private Blob getBuildSpecBlob(ObjectId commitId) {
+		Blob blob = getBlob(new BlobIdent(commitId.name(), BuildSpec.BLOB_PATH, FileMode.TYPE_FILE), false);
+		if (blob == null) 
+			blob = getBlob(new BlobIdent(commitId.name(), ".onedev-buildspec", FileMode.TYPE_FILE), false);
+		Optional<ObjectId> blobId = Optional.fromNullable(blob != null? blob.getBlobId(): null);
+		synchronized (buildSpecBlobIdCache) {
+			buildSpecBlobIdCache.put(commitId, blobId);
+		}
+		return blob;
+	}
+	
 	public List<String> getJobNames() {
 		List<String> jobNames = new ArrayList<>();
 		if (getDefaultBranch() != null) {
@@ -1035,6 +1075,22 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 		this.buildQueryPersonalizations = buildQueryPersonalizations;
 	}
 
+	public Collection<BuildMetricStat> getBuildMetricStats() {
+		return buildMetricStats;
+	}
+
+	public void setBuildMetricStats(Collection<BuildMetricStat> buildMetricStats) {
+		this.buildMetricStats = buildMetricStats;
+	}
+
+	public Collection<ProjectCounter> getCounters() {
+		return counters;
+	}
+
+	public void setCounters(Collection<ProjectCounter> counters) {
+		this.counters = counters;
+	}
+
 	public Collection<Build> getBuilds() {
 		return builds;
 	}
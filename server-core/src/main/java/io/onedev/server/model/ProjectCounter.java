@@ -0,0 +1,97 @@
+package io.onedev.server.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * Number of issues, pull requests or builds of a project in a particular state. Counters of a 
+ * project are recalculated whenever its issues, pull requests or builds change, so that project 
+ * list can display statistics without counting entities of all listed projects
+ */
+@Entity
+@Table(indexes={@Index(columnList="o_project_id"), @Index(columnList=ProjectCounter.PROP_TYPE)})
+public class ProjectCounter extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PROP_PROJECT = "project";
+	
+	public static final String PROP_TYPE = "type";
+	
+	public static final String PROP_STATE = "state";
+	
+	public static final String PROP_CONFIDENTIAL = "confidential";
+	
+	public static final String PROP_COUNT = "count";
+	
+	public enum Type {ISSUE, PULL_REQUEST, BUILD};
+	
+	@ManyToOne(fetch=FetchType.LAZY)
+	@JoinColumn(nullable=false)
+	private Project project;
+	
+	@Column(nullable=false)
+	private Type type;
+	
+	@Column(nullable=false)
+	private String state;
+	
+	private boolean confidential;
+	
+	private long count;
+
+	public Project getProject() {
+		return project;
+	}
+
+	public void setProject(Project project) {
+		this.project = project;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return
+	 * 			issue state, or name of pull request or build status
+	 */
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return
+	 * 			whether or not this counter is for confidential issues. Always false for pull 
+	 * 			requests and builds
+	 */
+	public boolean isConfidential() {
+		return confidential;
+	}
+
+	public void setConfidential(boolean confidential) {
+		this.confidential = confidential;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+}
@@ -2,6 +2,9 @@ package io.onedev.server.model.support.administration;
 
 import java.io.Serializable;
 
+import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
+
 import io.onedev.server.web.editable.annotation.Editable;
 
 @Editable
@@ -15,6 +18,18 @@ public class PerformanceSetting implements Serializable {
 	
 	private int maxCodeSearchEntries = 100;
 	
+	private boolean deduplicateArtifacts;
+	
+	private int maxCachedRepositories = 1000;
+	
+	private Integer gitPackCacheSize;
+	
+	private Integer gitDeltaCacheSize;
+	
+	private boolean gitPackMmap;
+	
+	private Integer storageMigrationBandwidth;
+	
 	@Editable(order=600, name="Max Git LFS File Size (MB)", description="Specify max git LFS file size in mega bytes")
 	public int getMaxGitLFSFileSize() {
 		return maxGitLFSFileSize;
@@ -44,4 +59,76 @@ public class PerformanceSetting implements Serializable {
 		this.maxCodeSearchEntries = maxCodeSearchEntries;
 	}
 
+	@Editable(order=900, description="If enabled, identical build artifacts of a project will be stored only once, "
+			+ "and artifact files of builds will be hard links to stored content. This only applies to artifacts "
+			+ "published afterwards, and requires a file system supporting hard links")
+	public boolean isDeduplicateArtifacts() {
+		return deduplicateArtifacts;
+	}
+
+	public void setDeduplicateArtifacts(boolean deduplicateArtifacts) {
+		this.deduplicateArtifacts = deduplicateArtifacts;
+	}
+
+	@Editable(order=1000, description="Maximum number of git repositories to keep open on each server. "
+			+ "Least recently used repositories will be closed to release file handles and memory when "
+			+ "this number is exceeded")
+	@Min(1)
+	public int getMaxCachedRepositories() {
+		return maxCachedRepositories;
+	}
+
+	public void setMaxCachedRepositories(int maxCachedRepositories) {
+		this.maxCachedRepositories = maxCachedRepositories;
+	}
+
+	@Editable(order=1100, name="Git Pack Cache Size (MB)", placeholder="Auto", description="Optionally specify "
+			+ "size of cache for git pack file content in mega bytes. If not specified, it will be sized "
+			+ "according to max heap memory of the server")
+	@Min(1)
+	@Nullable
+	public Integer getGitPackCacheSize() {
+		return gitPackCacheSize;
+	}
+
+	public void setGitPackCacheSize(@Nullable Integer gitPackCacheSize) {
+		this.gitPackCacheSize = gitPackCacheSize;
+	}
+
+	@Editable(order=1200, name="Git Delta Cache Size (MB)", placeholder="Auto", description="Optionally specify "
+			+ "size of cache for git delta bases in mega bytes. If not specified, it will be sized according "
+			+ "to max heap memory of the server")
+	@Min(1)
+	@Nullable
+	public Integer getGitDeltaCacheSize() {
+		return gitDeltaCacheSize;
+	}
+
+	public void setGitDeltaCacheSize(@Nullable Integer gitDeltaCacheSize) {
+		this.gitDeltaCacheSize = gitDeltaCacheSize;
+	}
+
+	@Editable(order=1300, name="Memory Map Git Pack Files", description="If enabled, git pack files will be "
+			+ "accessed via memory mapping instead of being read into heap memory. This reduces heap usage "
+			+ "of large repositories, but may keep pack files locked on Windows")
+	public boolean isGitPackMmap() {
+		return gitPackMmap;
+	}
+
+	public void setGitPackMmap(boolean gitPackMmap) {
+		this.gitPackMmap = gitPackMmap;
+	}
+
+	@Editable(order=1400, name="Storage Migration Bandwidth (MB/s)", placeholder="Unlimited", description="Optionally "
+			+ "limit bandwidth used to copy project storage between servers when migrating projects in a cluster")
+	@Min(1)
+	@Nullable
+	public Integer getStorageMigrationBandwidth() {
+		return storageMigrationBandwidth;
+	}
+
+	public void setStorageMigrationBandwidth(@Nullable Integer storageMigrationBandwidth) {
+		this.storageMigrationBandwidth = storageMigrationBandwidth;
+	}
+
 }
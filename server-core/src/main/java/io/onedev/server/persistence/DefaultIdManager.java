@@ -19,6 +19,9 @@ import io.onedev.server.model.AbstractEntity;
 @Singleton
 public class DefaultIdManager implements IdManager {
 
+	// Ids are leased from cluster wide counter in blocks to avoid a round trip for every entity
+	private static final int ID_BLOCK_SIZE = 100;
+	
 	private final DataManager dataManager;
 	
 	private final ClusterManager clusterManager;
@@ -27,6 +30,8 @@ public class DefaultIdManager implements IdManager {
 	
 	private final Map<Class<?>, IAtomicLong> nextIds = new HashMap<>();
 	
+	private final Map<Class<?>, IdBlock> idBlocks = new HashMap<>();
+	
 	@Inject
 	public DefaultIdManager(DataManager dataManager, ClusterManager clusterManager, 
 			SessionFactoryManager sessionFactoryManager) {
@@ -70,6 +75,7 @@ public class DefaultIdManager implements IdManager {
 						
 					});
 					nextIds.put(entityClass, nextId);
+					idBlocks.put(entityClass, new IdBlock());
 				}
 				return null;
 			}
@@ -79,7 +85,14 @@ public class DefaultIdManager implements IdManager {
 
 	@Override
 	public long nextId(Class<?> entityClass) {
-		return nextIds.get(entityClass).getAndIncrement();
+		IdBlock idBlock = idBlocks.get(entityClass);
+		synchronized (idBlock) {
+			if (idBlock.next >= idBlock.limit) {
+				idBlock.next = nextIds.get(entityClass).getAndAdd(ID_BLOCK_SIZE);
+				idBlock.limit = idBlock.next + ID_BLOCK_SIZE;
+			}
+			return idBlock.next++;
+		}
 	}
 
 	@Override
@@ -94,6 +107,21 @@ public class DefaultIdManager implements IdManager {
 				break;
 			}
 		}
+		
+		// Discard leased block if it may contain ids used explicitly 
+		IdBlock idBlock = idBlocks.get(entityClass);
+		synchronized (idBlock) {
+			if (id >= idBlock.next)
+				idBlock.next = idBlock.limit;
+		}
+	}
+	
+	private static class IdBlock {
+		
+		long next;
+		
+		long limit;
+		
 	}
 
 }
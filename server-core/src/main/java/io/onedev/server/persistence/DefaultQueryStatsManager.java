@@ -0,0 +1,300 @@
+package io.onedev.server.persistence;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Singleton
+public class DefaultQueryStatsManager implements QueryStatsManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultQueryStatsManager.class);
+	
+	private static final long SLOW_QUERY_THRESHOLD = 1000;
+	
+	private static final long SLOW_REQUEST_QUERY_TIME = 5000;
+	
+	// A request issuing this many queries is likely to load entities one by one
+	private static final int MANY_REQUEST_QUERIES = 500;
+	
+	private static final int MAX_TRACKED_QUERIES = 2000;
+	
+	// Number of queries taking least time to evict when tracked queries reach the limit
+	private static final int EVICTED_QUERIES = 200;
+	
+	// Batched statements more than this are summarized in batch label
+	private static final int MAX_BATCH_LABEL_QUERIES = 5;
+	
+	private static final Pattern LITERALS_PATTERN = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+	
+	private static final Pattern PARAMS_PATTERN = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+	
+	private static final String BATCH_PREFIX = "[batch] ";
+	
+	private static final ThreadLocal<String> currentSql = new ThreadLocal<>();
+	
+	// Statements prepared but not executed directly, they are executed later in a JDBC batch 
+	private static final ThreadLocal<Set<String>> batchedSqls = ThreadLocal.withInitial(LinkedHashSet::new);
+	
+	private final ThreadLocal<RequestStats> currentRequest = new ThreadLocal<>();
+	
+	private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+	
+	@Override
+	public void startRequest(String origin) {
+		currentRequest.set(new RequestStats(origin));
+	}
+
+	@Override
+	public void endRequest() {
+		RequestStats request = currentRequest.get();
+		if (request != null) {
+			currentRequest.remove();
+			long queryTime = TimeUnit.NANOSECONDS.toMillis(request.queryTime);
+			if (request.queryCount >= MANY_REQUEST_QUERIES || queryTime >= SLOW_REQUEST_QUERY_TIME) {
+				logger.warn("Request issued {} queries taking {} ms (origin: {})", 
+						request.queryCount, queryTime, request.origin);
+			} else if (logger.isDebugEnabled() && request.queryCount != 0) {
+				logger.debug("Request issued {} queries taking {} ms (origin: {})", 
+						request.queryCount, queryTime, request.origin);
+			}
+		}
+	}
+
+	@Override
+	public StatementInspector getStatementInspector() {
+		return new QueryInspector();
+	}
+
+	@Override
+	public SessionEventListener newSessionEventListener() {
+		return new QueryListener();
+	}
+	
+	@Nullable
+	private String getCurrentOrigin() {
+		RequestStats request = currentRequest.get();
+		return request != null? request.origin: null;
+	}
+	
+	/*
+	 * Avoid tracking same query separately for different literals or different number of 
+	 * parameters
+	 */
+	private static String normalize(String sql) {
+		sql = LITERALS_PATTERN.matcher(sql).replaceAll("?");
+		return PARAMS_PATTERN.matcher(sql).replaceAll("(?...)");
+	}
+	
+	private void record(@Nullable String sql, long time) {
+		if (sql == null)
+			sql = "<unknown>";
+		else 
+			sql = normalize(sql);
+		
+		RequestStats request = currentRequest.get();
+		String origin = null;
+		if (request != null) {
+			request.queryCount++;
+			request.queryTime += time;
+			origin = request.origin;
+		}
+		
+		Stats statsOfSql = stats.get(sql);
+		if (statsOfSql == null) {
+			if (stats.size() >= MAX_TRACKED_QUERIES)
+				evictQueries();
+			statsOfSql = stats.computeIfAbsent(sql, it -> new Stats());
+		}
+		statsOfSql.record(time, origin);
+		
+		long millis = TimeUnit.NANOSECONDS.toMillis(time);
+		if (millis >= SLOW_QUERY_THRESHOLD)
+			logger.warn("Slow query taking {} ms (origin: {}): {}", millis, origin, sql);
+	}
+
+	/*
+	 * Evict a batch of queries taking least total time, so that new queries can still be 
+	 * tracked without sorting all queries each time
+	 */
+	private void evictQueries() {
+		synchronized (stats) {
+			if (stats.size() >= MAX_TRACKED_QUERIES) {
+				List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+				entries.sort(Comparator.comparingLong(it -> it.getValue().totalTime.sum()));
+				for (Map.Entry<String, Stats> entry: entries.subList(0, Math.min(EVICTED_QUERIES, entries.size())))
+					stats.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
+	@Override
+	public List<QueryStats> getTopQueries(int count) {
+		List<QueryStats> topQueries = new ArrayList<>();
+		for (Map.Entry<String, Stats> entry: stats.entrySet()) {
+			Stats value = entry.getValue();
+			synchronized (value) {
+				topQueries.add(new QueryStats(entry.getKey(), value.count.sum(), 
+						TimeUnit.NANOSECONDS.toMillis(value.totalTime.sum()), 
+						TimeUnit.NANOSECONDS.toMillis(value.maxTime), value.slowestOrigin));
+			}
+		}
+		return topQueries.stream()
+				.sorted(Comparator.comparing(QueryStats::getTotalTime).reversed())
+				.limit(count)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public void resetStats() {
+		stats.clear();
+	}
+	
+	private static class QueryInspector implements StatementInspector {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String inspect(String sql) {
+			// Remember the statement for timing, as session event listener does not know it
+			currentSql.set(sql);
+			batchedSqls.get().add(sql);
+			return sql;
+		}
+		
+	}
+	
+	private class QueryListener extends BaseSessionEventListener {
+
+		private static final long serialVersionUID = 1L;
+		
+		private long executeStart;
+		
+		private String batchSql;
+		
+		private int transactionQueryCount;
+		
+		private long transactionQueryTime;
+
+		@Override
+		public void jdbcExecuteStatementStart() {
+			executeStart = System.nanoTime();
+		}
+
+		@Override
+		public void jdbcExecuteStatementEnd() {
+			String sql = currentSql.get();
+			batchedSqls.get().remove(sql);
+			executed(sql);
+		}
+
+		/*
+		 * A flush may execute several batched statements one after another. They are labeled 
+		 * with all statements prepared for batching since last flush, as the listener is not 
+		 * told which statement is being executed. Statements are normalized and sorted so that 
+		 * same set of statements results in same label
+		 */
+		@Override
+		public void jdbcExecuteBatchStart() {
+			Set<String> sqls = batchedSqls.get();
+			if (!sqls.isEmpty()) {
+				List<String> normalizedSqls = sqls.stream()
+						.map(DefaultQueryStatsManager::normalize)
+						.distinct()
+						.sorted()
+						.collect(Collectors.toList());
+				batchSql = BATCH_PREFIX + normalizedSqls.stream()
+						.limit(MAX_BATCH_LABEL_QUERIES)
+						.collect(Collectors.joining("; "));
+				if (normalizedSqls.size() > MAX_BATCH_LABEL_QUERIES)
+					batchSql += "; ...";
+				sqls.clear();
+			} else if (batchSql == null) {
+				batchSql = BATCH_PREFIX + "<unknown>";
+			}
+			executeStart = System.nanoTime();
+		}
+
+		@Override
+		public void jdbcExecuteBatchEnd() {
+			executed(batchSql);
+		}
+		
+		private void executed(@Nullable String sql) {
+			long time = System.nanoTime() - executeStart;
+			transactionQueryCount++;
+			transactionQueryTime += time;
+			record(sql, time);
+		}
+
+		@Override
+		public void transactionCompletion(boolean successful) {
+			if (logger.isDebugEnabled() && transactionQueryCount != 0) {
+				logger.debug("Transaction issued {} queries taking {} ms (origin: {})", 
+						transactionQueryCount, TimeUnit.NANOSECONDS.toMillis(transactionQueryTime), 
+						getCurrentOrigin());
+			}
+			transactionQueryCount = 0;
+			transactionQueryTime = 0;
+			batchSql = null;
+			batchedSqls.get().clear();
+		}
+		
+	}
+	
+	private static class RequestStats {
+		
+		final String origin;
+		
+		int queryCount;
+		
+		long queryTime;
+		
+		RequestStats(String origin) {
+			this.origin = origin;
+		}
+		
+	}
+	
+	private static class Stats {
+		
+		final LongAdder count = new LongAdder();
+		
+		final LongAdder totalTime = new LongAdder();
+		
+		volatile long maxTime;
+		
+		String slowestOrigin;
+		
+		void record(long time, @Nullable String origin) {
+			count.increment();
+			totalTime.add(time);
+			if (time > maxTime) {
+				synchronized (this) {
+					if (time > maxTime) {
+						maxTime = time;
+						slowestOrigin = origin;
+					}
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -31,6 +31,8 @@ public class DefaultSessionFactoryManager implements SessionFactoryManager {
 	
 	private final Interceptor interceptor;
 	
+	private final QueryStatsManager queryStatsManager;
+	
 	private volatile Metadata metadata;
 	
 	private volatile SessionFactory sessionFactory;
@@ -38,11 +40,13 @@ public class DefaultSessionFactoryManager implements SessionFactoryManager {
 	@Inject
 	public DefaultSessionFactoryManager(HibernateConfig hibernateConfig, ClusterManager clusterManager, 
 			PhysicalNamingStrategy physicalNamingStrategy, Interceptor interceptor, 
-			ExecutorService executorService, TransactionManager transactionManager) {
+			ExecutorService executorService, TransactionManager transactionManager, 
+			QueryStatsManager queryStatsManager) {
 		this.hibernateConfig = hibernateConfig;
 		this.physicalNamingStrategy = physicalNamingStrategy;
 		this.clusterManager = clusterManager;
 		this.interceptor = interceptor;
+		this.queryStatsManager = queryStatsManager;
 	}
 
 	@Override
@@ -67,7 +71,10 @@ public class DefaultSessionFactoryManager implements SessionFactoryManager {
 
 		MetadataBuilder builder = metadataSources.getMetadataBuilder();
 		metadata = builder.applyPhysicalNamingStrategy(physicalNamingStrategy).build();
-		sessionFactory = metadata.getSessionFactoryBuilder().applyInterceptor(interceptor).build();
+		sessionFactory = metadata.getSessionFactoryBuilder()
+				.applyInterceptor(interceptor)
+				.applyStatementInspector(queryStatsManager.getStatementInspector())
+				.build();
 	}
 
 	@Override
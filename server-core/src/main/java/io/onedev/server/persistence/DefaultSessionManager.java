@@ -27,6 +27,8 @@ public class DefaultSessionManager implements SessionManager {
 	
 	private final SessionFactoryManager sessionFactoryManager;
 	
+	private final QueryStatsManager queryStatsManager;
+	
 	private final ThreadLocal<ObjectReference<Session>> sessionReferenceHolder = new ThreadLocal<ObjectReference<Session>>() {
 
 		@Override
@@ -37,7 +39,9 @@ public class DefaultSessionManager implements SessionManager {
 				protected Session openObject() {
 					SessionFactory sessionFactory = sessionFactoryManager.getSessionFactory();
 					if (sessionFactory != null) {
-						Session session = sessionFactory.openSession();
+						Session session = sessionFactory.withOptions()
+								.eventListeners(queryStatsManager.newSessionEventListener())
+								.openSession();
 						// Session is supposed to be able to write only in transactional methods
 						session.setHibernateFlushMode(FlushMode.MANUAL);
 						return session;
@@ -58,10 +62,11 @@ public class DefaultSessionManager implements SessionManager {
 	
 	@Inject
 	public DefaultSessionManager(ExecutorService executorService, TransactionManager transactionManager, 
-			SessionFactoryManager sessionFactoryManager) {
+			SessionFactoryManager sessionFactoryManager, QueryStatsManager queryStatsManager) {
 		this.executorService = executorService;
 		this.transactionManager = transactionManager;
 		this.sessionFactoryManager = sessionFactoryManager;
+		this.queryStatsManager = queryStatsManager;
 	}
 
 	@Override
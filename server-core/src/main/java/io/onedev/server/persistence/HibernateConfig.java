@@ -9,10 +9,23 @@ public class HibernateConfig extends Properties {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final int DEFAULT_JDBC_BATCH_SIZE = 50;
+	
 	public HibernateConfig(Properties properties) {
 		for (Map.Entry<Object, Object> entry: properties.entrySet()) 
 			put(entry.getKey(), entry.getValue());
 		put("hibernate.cache.hazelcast.shutdown_on_session_factory_close", "false");
+		
+		/*
+		 * Entity ids are assigned by IdManager instead of database, so inserts can be sent in 
+		 * JDBC batches. Ordering inserts and updates by entity type keeps batches from being 
+		 * broken by interleaved statements of different tables, for instance builds and their 
+		 * params when submitting a job matrix 
+		 */
+		putIfAbsent(Environment.STATEMENT_BATCH_SIZE, String.valueOf(DEFAULT_JDBC_BATCH_SIZE));
+		putIfAbsent(Environment.ORDER_INSERTS, "true");
+		putIfAbsent(Environment.ORDER_UPDATES, "true");
+		putIfAbsent(Environment.BATCH_VERSIONED_DATA, "true");
 	}
 
 	public String getDialect() {
@@ -0,0 +1,62 @@
+package io.onedev.server.persistence;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+public class QueryStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String sql;
+	
+	private final long count;
+	
+	private final long totalTime;
+	
+	private final long maxTime;
+	
+	private final String slowestOrigin;
+	
+	public QueryStats(String sql, long count, long totalTime, long maxTime, @Nullable String slowestOrigin) {
+		this.sql = sql;
+		this.count = count;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+		this.slowestOrigin = slowestOrigin;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return
+	 * 			total execution time in milliseconds
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return
+	 * 			max execution time in milliseconds
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * @return
+	 * 			origin of the slowest execution, or <tt>null</tt> if unknown
+	 */
+	@Nullable
+	public String getSlowestOrigin() {
+		return slowestOrigin;
+	}
+	
+}
@@ -0,0 +1,48 @@
+package io.onedev.server.persistence;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Attribute database queries issued while serving a request to path of the request
+ */
+@Singleton
+public class QueryStatsFilter implements Filter {
+
+	private final QueryStatsManager queryStatsManager;
+	
+	@Inject
+	public QueryStatsFilter(QueryStatsManager queryStatsManager) {
+		this.queryStatsManager = queryStatsManager;
+	}
+	
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, 
+			FilterChain chain) throws IOException, ServletException {
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+		queryStatsManager.startRequest(httpRequest.getMethod() + " " + httpRequest.getRequestURI());
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			queryStatsManager.endRequest();
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+	
+}
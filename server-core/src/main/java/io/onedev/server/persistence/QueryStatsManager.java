@@ -0,0 +1,40 @@
+package io.onedev.server.persistence;
+
+import java.util.List;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts and times database queries issued on this server. Statistics are kept per SQL 
+ * statement, per request, and per transaction. Queries and requests taking too long are 
+ * logged together with their origin
+ */
+public interface QueryStatsManager {
+
+	/**
+	 * Attribute queries issued by current thread to specified origin until {@link #endRequest()} 
+	 * is called
+	 * 
+	 * @param origin
+	 * 			origin of the queries, for instance path of the requested page or REST resource
+	 */
+	void startRequest(String origin);
+	
+	void endRequest();
+	
+	StatementInspector getStatementInspector();
+	
+	/**
+	 * Create a listener to time queries issued by a new Hibernate session
+	 */
+	SessionEventListener newSessionEventListener();
+	
+	/**
+	 * Get statistics of queries taking most time in total since server start or last reset
+	 */
+	List<QueryStats> getTopQueries(int count);
+	
+	void resetStats();
+	
+}
@@ -4,6 +4,7 @@ import java.util.Map;
 
 import org.hibernate.query.Query;
 
+import com.hazelcast.map.EntryProcessor;
 import com.hazelcast.map.IMap;
 
 import io.onedev.server.cluster.ClusterManager;
@@ -28,7 +29,7 @@ public class SequenceGenerator {
 		this.clusterManager = clusterManager;
 	}
 
-	private synchronized Map<Long, Long> getNextSequences() {
+	private synchronized IMap<Long, Long> getNextSequences() {
 		if (nextSequences == null) 
 			nextSequences = clusterManager.getHazelcastInstance().getMap("nextSequences:" + sequenceClass.getName());
 		return nextSequences;
@@ -41,27 +42,43 @@ public class SequenceGenerator {
 	public Long getNextSequence(Project sequenceScope) {
 		Long key = sequenceScope.getId();
 		while (true) {
-			Long nextSequence = getNextSequences().get(key);
-			if (nextSequence == null) {
-				Query<?> query = dao.getSession().createQuery(String.format("select max(%s) from %s where %s=:numberScope", 
-						AbstractEntity.PROP_NUMBER, sequenceClass.getSimpleName(), AbstractEntity.PROP_NUMBER_SCOPE));
-				query.setParameter(AbstractEntity.PROP_NUMBER_SCOPE, sequenceScope);
-				
-				Object result = query.uniqueResult();
-				if (result != null) 
-					nextSequence = (Long)result + 1;
-				else 
-					nextSequence = 1L;
-				if (getNextSequences().putIfAbsent(key, nextSequence) == null)
-					return nextSequence;
-			} else if (getNextSequences().replace(key, nextSequence, nextSequence + 1)) {
-				return nextSequence + 1;
-			}
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
+			/*
+			 * Increase the sequence on owner of the entry, which takes a single round trip 
+			 * regardless of contention. Sequences are still allocated one by one, as they are 
+			 * visible to users and should not have gaps
+			 */
+			Long nextSequence = getNextSequences().executeOnKey(key, new IncreaseSequence());
+			if (nextSequence != null)
+				return nextSequence;
+			
+			Query<?> query = dao.getSession().createQuery(String.format("select max(%s) from %s where %s=:numberScope", 
+					AbstractEntity.PROP_NUMBER, sequenceClass.getSimpleName(), AbstractEntity.PROP_NUMBER_SCOPE));
+			query.setParameter(AbstractEntity.PROP_NUMBER_SCOPE, sequenceScope);
+			
+			Object result = query.uniqueResult();
+			if (result != null) 
+				nextSequence = (Long)result + 1;
+			else 
+				nextSequence = 1L;
+			if (getNextSequences().putIfAbsent(key, nextSequence) == null)
+				return nextSequence;
+		}
+	}
+	
+	private static class IncreaseSequence implements EntryProcessor<Long, Long, Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long process(Map.Entry<Long, Long> entry) {
+			Long sequence = entry.getValue();
+			if (sequence != null) {
+				sequence++;
+				entry.setValue(sequence);
 			}
+			return sequence;
 		}
+		
 	}
 
 }
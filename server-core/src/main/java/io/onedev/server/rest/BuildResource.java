@@ -5,8 +5,10 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -14,6 +16,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -28,6 +31,8 @@ import io.onedev.server.model.BuildParam;
 import io.onedev.server.model.support.inputspec.SecretInput;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.rest.support.EntityExport;
+import io.onedev.server.rest.support.QueryCursor;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.build.BuildQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -115,16 +120,53 @@ public class BuildResource {
     	if (count > RestConstants.MAX_PAGE_SIZE)
     		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
 
-    	BuildQuery parsedQuery;
-		try {
-			parsedQuery = BuildQuery.parse(null, query, true, true);
-		} catch (Exception e) {
-			throw new InvalidParamException("Error parsing query", e);
-		}
+    	BuildQuery parsedQuery = parseQuery(query);
     	
     	return buildManager.query(null, parsedQuery, offset, count);
     }
 	
+	@Api(order=610, description="Query builds with cursor based pagination, which is much faster than offset based "
+			+ "pagination when reading deep pages. Builds are returned in descending order of id, and cursor of next "
+			+ "page is returned via response header <code>" + QueryCursor.NEXT_CURSOR_HEADER + "</code> if there "
+			+ "might be more builds")
+	@Path("/cursor-query")
+	@GET
+    public List<Build> queryBasicInfoByCursor(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/builds'>builds page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query, 
+    		@QueryParam("cursor") @Api(description="Cursor returned by previous query. Leave empty to query first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count, 
+    		@Context HttpServletResponse response) {
+		
+    	if (count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
+
+    	BuildQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	Long afterId = QueryCursor.decode(cursor);
+    	
+    	return QueryCursor.addNextCursor(buildManager.queryAfter(null, parsedQuery, afterId, count), count, response);
+    }
+	
+	@Api(order=620, description="Export builds matching specified query as newline delimited JSON, one per line. "
+			+ "Builds are streamed in descending order of id without page size limit, which is suitable for bulk consumers")
+	@Path("/export")
+	@GET
+	@Produces(EntityExport.MEDIA_TYPE)
+    public Response export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/builds'>builds page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query) {
+    	BuildQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	
+    	return Response.ok(new EntityExport<Build>() {
+
+			@Override
+			protected List<Build> query(Long afterId, int count) {
+				return buildManager.queryAfter(null, parsedQuery, afterId, count);
+			}
+    		
+    	}).build();
+    }
+	
 	@Api(order=700)
 	@Path("/{buildId}")
     @DELETE
@@ -136,4 +178,12 @@ public class BuildResource {
     	return Response.ok().build();
     }
 	
+	private BuildQuery parseQuery(@Nullable String query) {
+		try {
+			return BuildQuery.parse(null, query, true, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+	}
+	
 }
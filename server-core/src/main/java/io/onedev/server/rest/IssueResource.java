@@ -9,8 +9,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
@@ -21,6 +23,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -47,6 +50,8 @@ import io.onedev.server.model.support.issue.field.spec.FieldSpec;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.annotation.EntityCreate;
 import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.rest.support.EntityExport;
+import io.onedev.server.rest.support.QueryCursor;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.search.entity.issue.IssueQueryParseOption;
@@ -190,17 +195,53 @@ public class IssueResource {
     	if (count > RestConstants.MAX_PAGE_SIZE)
     		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
 
-    	IssueQuery parsedQuery;
-		try {
-			IssueQueryParseOption option = new IssueQueryParseOption().withCurrentUserCriteria(true);
-			parsedQuery = IssueQuery.parse(null, query, option, true);
-		} catch (Exception e) {
-			throw new InvalidParamException("Error parsing query", e);
-		}
+    	IssueQuery parsedQuery = parseQuery(query);
     	
     	return issueManager.query(null, parsedQuery, false, offset, count);
     }
 	
+	@Api(order=910, description="Query issues with cursor based pagination, which is much faster than offset based "
+			+ "pagination when reading deep pages. Issues are returned in descending order of id, and cursor of next "
+			+ "page is returned via response header <code>" + QueryCursor.NEXT_CURSOR_HEADER + "</code> if there "
+			+ "might be more issues")
+	@Path("/cursor-query")
+	@GET
+    public List<Issue> queryBasicInfoByCursor(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/issues'>issues page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query, 
+    		@QueryParam("cursor") @Api(description="Cursor returned by previous query. Leave empty to query first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count, 
+    		@Context HttpServletResponse response) {
+		
+    	if (count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
+
+    	IssueQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	Long afterId = QueryCursor.decode(cursor);
+    	
+    	return QueryCursor.addNextCursor(issueManager.queryAfter(null, parsedQuery, afterId, count), count, response);
+    }
+	
+	@Api(order=920, description="Export issues matching specified query as newline delimited JSON, one per line. "
+			+ "Issues are streamed in descending order of id without page size limit, which is suitable for bulk consumers")
+	@Path("/export")
+	@GET
+	@Produces(EntityExport.MEDIA_TYPE)
+    public Response export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/issues'>issues page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query) {
+    	IssueQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	
+    	return Response.ok(new EntityExport<Issue>() {
+
+			@Override
+			protected List<Issue> query(Long afterId, int count) {
+				return issueManager.queryAfter(null, parsedQuery, afterId, count);
+			}
+    		
+    	}).build();
+    }
+	
 	@Api(order=1000)
     @POST
     public Long create(@NotNull @Valid IssueOpenData data) {
@@ -520,4 +561,13 @@ public class IssueResource {
 		
 	}
 	
+	private IssueQuery parseQuery(@Nullable String query) {
+		try {
+			IssueQueryParseOption option = new IssueQueryParseOption().withCurrentUserCriteria(true);
+			return IssueQuery.parse(null, query, option, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+	}
+	
 }
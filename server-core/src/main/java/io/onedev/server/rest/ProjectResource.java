@@ -9,8 +9,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
@@ -21,6 +23,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -49,6 +52,8 @@ import io.onedev.server.model.support.pullrequest.ProjectPullRequestSetting;
 import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.rest.support.EntityExport;
+import io.onedev.server.rest.support.QueryCursor;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.project.ProjectQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -177,16 +182,53 @@ public class ProjectResource {
     	if (count > RestConstants.MAX_PAGE_SIZE)
     		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
 
-    	ProjectQuery parsedQuery;
-		try {
-			parsedQuery = ProjectQuery.parse(query);
-		} catch (Exception e) {
-			throw new InvalidParamException("Error parsing query", e);
-		}
+    	ProjectQuery parsedQuery = parseQuery(query);
     	
     	return projectManager.query(parsedQuery, offset, count);
     }
 	
+	@Api(order=710, description="Query projects with cursor based pagination, which is much faster than offset based "
+			+ "pagination when reading deep pages. Projects are returned in descending order of id, and cursor of next "
+			+ "page is returned via response header <code>" + QueryCursor.NEXT_CURSOR_HEADER + "</code> if there "
+			+ "might be more projects")
+	@Path("/cursor-query")
+	@GET
+    public List<Project> queryBasicInfoByCursor(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/projects'>projects page</a>, except that order by clause is not supported", example="\"Name\" is \"projectName\"") String query, 
+    		@QueryParam("cursor") @Api(description="Cursor returned by previous query. Leave empty to query first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count, 
+    		@Context HttpServletResponse response) {
+		
+    	if (count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
+
+    	ProjectQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	Long afterId = QueryCursor.decode(cursor);
+    	
+    	return QueryCursor.addNextCursor(projectManager.queryAfter(parsedQuery, afterId, count), count, response);
+    }
+	
+	@Api(order=720, description="Export projects matching specified query as newline delimited JSON, one per line. "
+			+ "Projects are streamed in descending order of id without page size limit, which is suitable for bulk consumers")
+	@Path("/export")
+	@GET
+	@Produces(EntityExport.MEDIA_TYPE)
+    public Response export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/projects'>projects page</a>, except that order by clause is not supported", example="\"Name\" is \"projectName\"") String query) {
+    	ProjectQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	
+    	return Response.ok(new EntityExport<Project>() {
+
+			@Override
+			protected List<Project> query(Long afterId, int count) {
+				return projectManager.queryAfter(parsedQuery, afterId, count);
+			}
+    		
+    	}).build();
+    }
+	
 	@Api(order=750)
 	@Path("/{projectId}/milestones")
     @GET
@@ -453,4 +495,12 @@ public class ProjectResource {
 		
 	}
 	
+	private ProjectQuery parseQuery(@Nullable String query) {
+		try {
+			return ProjectQuery.parse(query);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+	}
+	
 }
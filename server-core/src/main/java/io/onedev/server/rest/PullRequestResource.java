@@ -6,8 +6,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
@@ -18,6 +20,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -45,6 +48,8 @@ import io.onedev.server.model.support.pullrequest.MergeStrategy;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.annotation.EntityCreate;
 import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.rest.support.EntityExport;
+import io.onedev.server.rest.support.QueryCursor;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.pullrequest.PullRequestQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -189,15 +194,52 @@ public class PullRequestResource {
     	if (count > RestConstants.MAX_PAGE_SIZE)
     		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
 
-    	PullRequestQuery parsedQuery;
-		try {
-			parsedQuery = PullRequestQuery.parse(null, query, true);
-		} catch (Exception e) {
-			throw new InvalidParamException("Error parsing query", e);
-		}
+    	PullRequestQuery parsedQuery = parseQuery(query);
     	
     	return pullRequestManager.query(null, parsedQuery, false, offset, count);
     }
+	
+	@Api(order=1110, description="Query pull requests with cursor based pagination, which is much faster than offset based "
+			+ "pagination when reading deep pages. Pull requests are returned in descending order of id, and cursor of next "
+			+ "page is returned via response header <code>" + QueryCursor.NEXT_CURSOR_HEADER + "</code> if there "
+			+ "might be more pull requests")
+	@Path("/cursor-query")
+	@GET
+    public List<PullRequest> queryBasicInfoByCursor(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/pull-requests'>pull requests page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query, 
+    		@QueryParam("cursor") @Api(description="Cursor returned by previous query. Leave empty to query first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count, 
+    		@Context HttpServletResponse response) {
+		
+    	if (count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should not be greater than " + RestConstants.MAX_PAGE_SIZE);
+
+    	PullRequestQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	Long afterId = QueryCursor.decode(cursor);
+    	
+    	return QueryCursor.addNextCursor(pullRequestManager.queryAfter(null, parsedQuery, afterId, count), count, response);
+    }
+	
+	@Api(order=1120, description="Export pull requests matching specified query as newline delimited JSON, one per line. "
+			+ "Pull requests are streamed in descending order of id without page size limit, which is suitable for bulk consumers")
+	@Path("/export")
+	@GET
+	@Produces(EntityExport.MEDIA_TYPE)
+    public Response export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/pull-requests'>pull requests page</a>, except that order by clause is not supported", example="\"Number\" is \"projectName#100\"") String query) {
+    	PullRequestQuery parsedQuery = parseQuery(query);
+    	QueryCursor.checkQuery(parsedQuery);
+    	
+    	return Response.ok(new EntityExport<PullRequest>() {
+
+			@Override
+			protected List<PullRequest> query(Long afterId, int count) {
+				return pullRequestManager.queryAfter(null, parsedQuery, afterId, count);
+			}
+    		
+    	}).build();
+    }
 
 	@Api(order=1200)
 	@POST
@@ -509,4 +551,13 @@ public class PullRequestResource {
 		}
 
 	}
+	
+	private PullRequestQuery parseQuery(@Nullable String query) {
+		try {
+			return PullRequestQuery.parse(null, query, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+	}
+	
 }
@@ -1,6 +1,9 @@
 package io.onedev.server.rest;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,6 +27,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.shiro.authz.UnauthorizedException;
@@ -32,6 +36,7 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Splitter;
 
 import io.onedev.commons.utils.ExplicitException;
@@ -45,15 +50,27 @@ import io.onedev.server.git.BlobIdentFilter;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.RevListOptions;
 import io.onedev.server.git.exception.ObjectNotFoundException;
+import io.onedev.server.git.maintenance.GitMaintenanceManager;
+import io.onedev.server.git.maintenance.GitMaintenanceStats;
 import io.onedev.server.git.service.GitService;
 import io.onedev.server.git.service.RefFacade;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.rest.support.EntityExport;
 import io.onedev.server.rest.support.FileCreateOrUpdateRequest;
 import io.onedev.server.rest.support.FileEditRequest;
+import io.onedev.server.search.code.CodeSearchManager;
+import io.onedev.server.search.code.hit.QueryHit;
+import io.onedev.server.search.code.hit.TextHit;
+import io.onedev.server.search.code.query.BlobQuery;
+import io.onedev.server.search.code.query.FileQuery;
+import io.onedev.server.search.code.query.SymbolQuery;
+import io.onedev.server.search.code.query.TextQuery;
+import io.onedev.server.search.code.query.TooGeneralQueryException;
 import io.onedev.server.search.commit.CommitQuery;
+import io.onedev.server.search.entity.project.ProjectQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.RevisionAndPath;
 
@@ -66,14 +83,27 @@ public class RepositoryResource {
 
 	private static final int MAX_COMMITS = 10000;
 	
+	private static final int MAX_CODE_SEARCH_HITS = 10000;
+	
 	private final ProjectManager projectManager;
 
 	private final GitService gitService;
 	
+	private final CodeSearchManager codeSearchManager;
+	
+	private final ObjectMapper objectMapper;
+	
+	private final GitMaintenanceManager gitMaintenanceManager;
+	
 	@Inject
-	public RepositoryResource(ProjectManager projectManager, GitService gitService) {
+	public RepositoryResource(ProjectManager projectManager, GitService gitService, 
+			CodeSearchManager codeSearchManager, ObjectMapper objectMapper, 
+			GitMaintenanceManager gitMaintenanceManager) {
 		this.projectManager = projectManager;
 		this.gitService = gitService;
+		this.codeSearchManager = codeSearchManager;
+		this.objectMapper = objectMapper;
+		this.gitMaintenanceManager = gitMaintenanceManager;
 	}
 
 	@Api(order=10, description="List all branches")
@@ -239,6 +269,34 @@ public class RepositoryResource {
 
 		return Response.ok().build();
 	}
+	
+	@Api(order=81, description="Get stats of last git maintenance of specified project, including object "
+			+ "and pack counts before and after maintenance. Return status code 204 if the repository is not "
+			+ "maintained since its storage server starts")
+	@Path("/{projectId}/maintenance")
+	@GET
+	@Nullable
+	public GitMaintenanceStats getMaintenanceStats(@PathParam("projectId") Long projectId) {
+		Project project = projectManager.load(projectId);
+		if (!SecurityUtils.canManage(project)) 
+			throw new UnauthorizedException();
+		
+		return gitMaintenanceManager.getStats(projectId);
+	}
+	
+	@Api(order=82, description="Maintain git repository of specified project immediately. Return after "
+			+ "maintenance finishes. As this bypasses limit of concurrent maintenances, only administrator "
+			+ "is allowed to do this")
+	@Path("/{projectId}/maintenance")
+	@POST
+	public GitMaintenanceStats maintain(@PathParam("projectId") Long projectId) {
+		projectManager.load(projectId);
+		if (!SecurityUtils.isAdministrator()) 
+			throw new UnauthorizedException();
+		
+		gitMaintenanceManager.maintain(projectId);
+		return gitMaintenanceManager.getStats(projectId);
+	}
 
 	@Api(order=83, description="Query commits of specified project. Will return list of matching commit hashes")
 	@Path("/{projectId}/commits")
@@ -417,6 +475,98 @@ public class RepositoryResource {
 		return response;
 	}
 
+	@Api(order=120, description="Search code in default branches of projects matching specified project query. "
+			+ "Projects whose code can not be read are ignored. Hits are streamed as newline delimited JSON "
+			+ "as soon as they are found, one line per project, and lines are not sorted by relevance")
+	@Path("/code-search")
+	@GET
+	@Produces(EntityExport.MEDIA_TYPE)
+	public Response searchCode(
+			@QueryParam("projectQuery") @Api(description="Syntax of this query is the same as query box in <a href='/projects'>projects page</a>. Leave empty to search all projects", example="\"Name\" is \"projectName\"") String projectQuery, 
+			@QueryParam("type") @Api(description="One of <code>text</code>, <code>symbol</code> and <code>file</code>", example="symbol") String type, 
+			@QueryParam("term") @Api(description="Text, symbol name or file name to search. Wildcards are supported for symbol and file search", example="SomeClass") String term, 
+			@QueryParam("regex") @Api(description="Whether or not the term is a regular expression. Only applicable for text search") boolean regex, 
+			@QueryParam("wholeWord") @Api(description="Only applicable for text search") boolean wholeWord, 
+			@QueryParam("caseSensitive") boolean caseSensitive, 
+			@QueryParam("fileNames") @Api(description="Comma separated file name patterns to search in. Not applicable for file search", example="*.java") String fileNames, 
+			@QueryParam("count") @Api(example="100", description="Maximum number of hits to return across all projects") int count) {
+		if (count <= 0)
+			throw new InvalidParamException("Count should be specified and greater than 0");
+		if (count > MAX_CODE_SEARCH_HITS)
+			throw new InvalidParamException("Count should not be greater than " + MAX_CODE_SEARCH_HITS);
+		if (StringUtils.isBlank(term))
+			throw new InvalidParamException("Search term should be specified");
+		
+		BlobQuery query;
+		if ("text".equals(type)) {
+			query = new TextQuery.Builder().term(term).regex(regex).wholeWord(wholeWord)
+					.caseSensitive(caseSensitive).fileNames(fileNames).count(count).build();
+		} else if ("symbol".equals(type)) {
+			query = new SymbolQuery.Builder().term(term).caseSensitive(caseSensitive)
+					.fileNames(fileNames).count(count).build();
+		} else if ("file".equals(type)) {
+			query = new FileQuery.Builder().fileNames(term).caseSensitive(caseSensitive).count(count).build();
+		} else {
+			throw new InvalidParamException("Unexpected search type: " + type);
+		}
+		
+		try {
+			query.asLuceneQuery();
+		} catch (TooGeneralQueryException e) {
+			throw new InvalidParamException("Search term is too general");
+		}
+		
+		ProjectQuery parsedProjectQuery;
+		try {
+			parsedProjectQuery = ProjectQuery.parse(projectQuery);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing project query", e);
+		}
+		
+		return Response.ok(new StreamingOutput() {
+
+			@Override
+			public void write(OutputStream os) throws IOException {
+				List<Project> projects = projectManager.query(parsedProjectQuery, 0, Integer.MAX_VALUE);
+				Map<Long, String> projectPaths = new HashMap<>();
+				for (Project project: projects)
+					projectPaths.put(project.getId(), project.getPath());
+				try {
+					codeSearchManager.search(projects, query, it -> {
+						CodeSearchResponse response = new CodeSearchResponse();
+						response.projectId = it.getProjectId();
+						response.projectPath = projectPaths.get(it.getProjectId());
+						response.commitHash = it.getCommitId().name();
+						response.hits = new ArrayList<>();
+						for (QueryHit hit: it.getHits()) {
+							CodeSearchHit searchHit = new CodeSearchHit();
+							searchHit.blobPath = hit.getBlobPath();
+							if (hit.getTokenPos() != null)
+								searchHit.line = hit.getTokenPos().getFromRow() + 1;
+							if (hit instanceof TextHit)
+								searchHit.description = ((TextHit) hit).getLineContent();
+							else
+								searchHit.description = hit.toString();
+							response.hits.add(searchHit);
+						}
+						try {
+							os.write(objectMapper.writeValueAsBytes(response));
+							os.write('\n');
+							os.flush();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			
+		}).build();
+	}
+	
 	// Wrap string inside an object to make return value a valid json for some third party 
 	// applications to consume
 	public static class FileEditResponse implements Serializable {
@@ -537,6 +687,35 @@ public class RepositoryResource {
 
 	}
 	
+	public static class CodeSearchResponse implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		Long projectId;
+		
+		String projectPath;
+		
+		@Api(description="Commit of default branch being searched", example="46c001b04cba0ca41588841f1ca32f50b582ee9b")
+		String commitHash;
+		
+		List<CodeSearchHit> hits;
+		
+	}
+	
+	public static class CodeSearchHit implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		String blobPath;
+		
+		@Api(description="Line number of the hit starting from 1, or null if hit is not inside file content")
+		Integer line;
+		
+		@Api(description="Matched line content for text search, symbol signature for symbol search, and file path for file search")
+		String description;
+		
+	}
+	
 	public static class CommitResponse implements Serializable {
 
 		private static final long serialVersionUID = 1L;
@@ -0,0 +1,48 @@
+package io.onedev.server.rest.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.persistence.SessionManager;
+
+/**
+ * Streams entities as newline delimited JSON. Entities are loaded batch by batch with 
+ * cursor based query, and the hibernate session is cleared after each batch so that 
+ * memory usage does not grow with number of exported entities 
+ */
+public abstract class EntityExport<T extends AbstractEntity> implements StreamingOutput {
+
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+	
+	private static final int BATCH_SIZE = 500;
+	
+	@Override
+	public void write(OutputStream os) throws IOException {
+		ObjectMapper objectMapper = OneDev.getInstance(ObjectMapper.class);
+		SessionManager sessionManager = OneDev.getInstance(SessionManager.class);
+		Long afterId = null;
+		while (true) {
+			List<T> entities = query(afterId, BATCH_SIZE);
+			for (T entity: entities) {
+				os.write(objectMapper.writeValueAsBytes(entity));
+				os.write('\n');
+			}
+			os.flush();
+			if (entities.size() < BATCH_SIZE)
+				break;
+			afterId = entities.get(entities.size()-1).getId();
+			sessionManager.getSession().clear();
+		}
+	}
+	
+	protected abstract List<T> query(@Nullable Long afterId, int count);
+	
+}
@@ -0,0 +1,60 @@
+package io.onedev.server.rest.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.rest.exception.InvalidParamException;
+import io.onedev.server.search.entity.EntityQuery;
+
+/**
+ * Opaque continuation token of cursor based query operations. Entities are returned in 
+ * descending order of id when queried with cursor, and the token records id of last 
+ * returned entity, so that next page can be located via index instead of skipping 
+ * previous rows
+ */
+public class QueryCursor {
+
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	
+	private static final String ID_PREFIX = "id:";
+	
+	public static String encode(Long lastId) {
+		byte[] bytes = (ID_PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+	
+	@Nullable
+	public static Long decode(@Nullable String cursor) {
+		if (StringUtils.isBlank(cursor))
+			return null;
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if (decoded.startsWith(ID_PREFIX))
+				return Long.valueOf(decoded.substring(ID_PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+		}
+		throw new InvalidParamException("Invalid cursor: " + cursor);
+	}
+	
+	public static void checkQuery(EntityQuery<?> query) {
+		if (!query.getSorts().isEmpty()) {
+			throw new InvalidParamException("Order by clause is not supported when querying with cursor, "
+					+ "entities are always returned in descending order of id");
+		}
+	}
+	
+	public static <T extends AbstractEntity> List<T> addNextCursor(List<T> entities, int count, 
+			HttpServletResponse response) {
+		if (!entities.isEmpty() && entities.size() == count) 
+			response.setHeader(NEXT_CURSOR_HEADER, encode(entities.get(entities.size()-1).getId()));
+		return entities;
+	}
+	
+}
@@ -8,6 +8,8 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricStat;
+
 public class AndBuildMetricCriteria extends BuildMetricCriteria {
 	
 	private static final long serialVersionUID = 1L;
@@ -26,6 +28,18 @@ public class AndBuildMetricCriteria extends BuildMetricCriteria {
 		return builder.and(predicates.toArray(new Predicate[0]));
 	}
 
+	@Override
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		List<Predicate> predicates = new ArrayList<>();
+		for (BuildMetricCriteria criteria: criterias) {
+			Predicate predicate = criteria.getStatPredicate(statRoot, builder);
+			if (predicate == null)
+				return null;
+			predicates.add(predicate);
+		}
+		return builder.and(predicates.toArray(new Predicate[0]));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return new AndBuildMetricCriteria(criterias).toStringWithoutParens();
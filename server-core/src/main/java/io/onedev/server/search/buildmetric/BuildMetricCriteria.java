@@ -2,12 +2,14 @@ package io.onedev.server.search.buildmetric;
 
 import java.io.Serializable;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.model.BuildMetricStat;
 
 public abstract class BuildMetricCriteria implements Serializable {
 
@@ -22,6 +24,18 @@ public abstract class BuildMetricCriteria implements Serializable {
 
 	public abstract Predicate getPredicate(Root<?> metrixRoot, Join<?, ?> buildJoin, CriteriaBuilder builder);
 	
+	/**
+	 * Get predicate against daily rollup of build metrics
+	 * 
+	 * @return
+	 * 			predicate against daily rollup, or <tt>null</tt> if this criteria can not be 
+	 * 			evaluated against daily rollup
+	 */
+	@Nullable
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		return null;
+	}
+	
 	public static String quote(String value) {
 		return "\"" + StringUtils.escape(value, "\"") + "\"";
 	}
@@ -9,7 +9,9 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricStat;
 import io.onedev.server.search.entity.EntityQuery;
+import io.onedev.server.util.Day;
 
 public class DateCriteria extends BuildMetricCriteria {
 
@@ -36,6 +38,21 @@ public class DateCriteria extends BuildMetricCriteria {
 			return builder.greaterThan(attribute, date);
 	}
 
+	@Override
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		Day day = new Day(date);
+		// Daily rollup can only be filtered with dates at start of day
+		if (day.getDate().toDate().equals(date)) {
+			Path<Integer> attribute = statRoot.get(BuildMetricStat.PROP_DAY);
+			if (operator == BuildMetricQueryLexer.Until)
+				return builder.lessThan(attribute, day.getValue());
+			else
+				return builder.greaterThanOrEqualTo(attribute, day.getValue());
+		} else {
+			return null;
+		}
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return BuildMetricQuery.getRuleName(operator) + " " + quote(value);
@@ -7,6 +7,7 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricStat;
 
 public class JobCriteria extends BuildMetricCriteria {
 
@@ -25,6 +26,13 @@ public class JobCriteria extends BuildMetricCriteria {
 		return builder.like(builder.lower(attribute), normalized);
 	}
 
+	@Override
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		Path<String> attribute = statRoot.get(BuildMetricStat.PROP_JOB);
+		String normalized = jobName.toLowerCase().replace("*", "%");
+		return builder.like(builder.lower(attribute), normalized);
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(Build.NAME_JOB) + " " 
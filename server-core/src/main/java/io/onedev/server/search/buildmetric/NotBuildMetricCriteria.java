@@ -5,6 +5,8 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricStat;
+
 public class NotBuildMetricCriteria extends BuildMetricCriteria {
 	
 	private static final long serialVersionUID = 1L;
@@ -20,6 +22,12 @@ public class NotBuildMetricCriteria extends BuildMetricCriteria {
 		return criteria.getPredicate(metricRoot, buildJoin, builder).not();
 	}
 
+	@Override
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		Predicate predicate = criteria.getStatPredicate(statRoot, builder);
+		return predicate != null? predicate.not(): null;
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return new NotBuildMetricCriteria(criteria).toStringWithoutParens();
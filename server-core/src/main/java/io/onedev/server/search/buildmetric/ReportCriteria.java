@@ -6,6 +6,7 @@ import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricStat;
 import io.onedev.server.model.support.BuildMetric;
 
 public class ReportCriteria extends BuildMetricCriteria {
@@ -25,6 +26,13 @@ public class ReportCriteria extends BuildMetricCriteria {
 		return builder.like(builder.lower(attribute), normalized);
 	}
 
+	@Override
+	public Predicate getStatPredicate(Root<BuildMetricStat> statRoot, CriteriaBuilder builder) {
+		Path<String> attribute = statRoot.get(BuildMetricStat.PROP_REPORT);
+		String normalized = value.toLowerCase().replace("*", "%");
+		return builder.like(builder.lower(attribute), normalized);
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(BuildMetric.PROP_REPORT) + " " 
@@ -1,6 +1,8 @@
 package io.onedev.server.search.code;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
@@ -9,6 +11,7 @@ import org.eclipse.jgit.lib.ObjectId;
 
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.server.model.Project;
+import io.onedev.server.search.code.hit.ProjectQueryHits;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.query.BlobQuery;
 import io.onedev.server.search.code.query.TooGeneralQueryException;
@@ -27,6 +30,23 @@ public interface CodeSearchManager {
 	List<QueryHit> search(Project project, ObjectId commitId, BlobQuery query) 
 			throws InterruptedException, TooGeneralQueryException;
 	
+	/**
+	 * Search default branches of specified projects with specified query. Projects are searched 
+	 * in parallel on their storage servers, and projects whose code can not be read by current 
+	 * user are ignored. Total number of hits will not exceed count of the query.
+	 * 
+	 * @param hitsConsumer
+	 * 			consumer to receive hits of each project progressively. It is called in calling 
+	 * 			thread as soon as search of a project with hits finishes
+	 * @return
+	 * 			hits of projects ranked by relevance, with projects having more hits coming first
+	 * @throws 
+	 * 			TooGeneralQueryException if supplied query term is too general to possibly cause query slow
+	 * 			InterruptedException if the search process is interrupted
+	 */
+	List<ProjectQueryHits> search(Collection<Project> projects, BlobQuery query, 
+			@Nullable Consumer<ProjectQueryHits> hitsConsumer) throws InterruptedException, TooGeneralQueryException;
+	
 	@Nullable
 	List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath);
 	
@@ -35,4 +55,9 @@ public interface CodeSearchManager {
 	
 	String findBlobPath(Project project, ObjectId commit, String fileName, @Nullable String partialBlobPath);
 	
+	/**
+	 * Get statistics of index searchers pooled on current server
+	 */
+	SearcherStats getSearcherStats();
+	
 }
\ No newline at end of file
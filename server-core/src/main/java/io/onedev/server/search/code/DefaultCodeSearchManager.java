@@ -10,13 +10,23 @@ import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -33,6 +43,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
@@ -41,10 +52,13 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
@@ -54,27 +68,55 @@ import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.CommitIndexed;
+import io.onedev.server.event.ProjectStorageReleased;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.search.code.hit.ProjectQueryHits;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.query.BlobQuery;
 import io.onedev.server.search.code.query.FileQuery;
 import io.onedev.server.search.code.query.TooGeneralQueryException;
+import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 
 @Singleton
-public class DefaultCodeSearchManager implements CodeSearchManager, Serializable {
+public class DefaultCodeSearchManager implements CodeSearchManager, SchedulableTask, Serializable {
 
 	private static final int MAX_BLOB_PATH_QUERY_COUNT = 5;
 	
+	// Number of projects searched by a single cluster task when searching multiple projects
+	private static final int PROJECT_BATCH_SIZE = 20;
+	
+	private static final long POLL_INTERVAL = 100;
+	
+	// Searchers of least recently used projects will be closed if exceeding this limit
+	private static final int MAX_OPEN_SEARCHERS = 500;
+	
+	private static final int SEARCHER_IDLE_TIMEOUT = 30; // in minutes
+	
+	private static final int EVICTION_INTERVAL = 5; // in minutes
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultCodeSearchManager.class);
 	
 	private final StorageManager storageManager;
 	
-	private final Map<Long, SearcherManager> searcherManagers = new ConcurrentHashMap<>();
+	// Access ordered so that least recently used searcher manager comes first
+	private final LinkedHashMap<Long, PooledSearcherManager> searcherManagers = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private final AtomicLong searcherOpens = new AtomicLong();
+	
+	private final AtomicLong searcherEvictions = new AtomicLong();
+	
+	private final AtomicLong searcherOpenTime = new AtomicLong();
+	
+	private final AtomicLong maxSearcherOpenTime = new AtomicLong();
 	
 	private final CodeIndexManager indexManager;
 	
@@ -82,13 +124,18 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 	
 	private final ClusterManager clusterManager;
 	
+	private final TaskScheduler taskScheduler;
+	
+	private String taskId;
+	
 	@Inject
 	public DefaultCodeSearchManager(StorageManager storageManager, CodeIndexManager indexManager, 
-			ProjectManager projectManager, ClusterManager clusterManager) {
+			ProjectManager projectManager, ClusterManager clusterManager, TaskScheduler taskScheduler) {
 		this.storageManager = storageManager;
 		this.indexManager = indexManager;
 		this.projectManager = projectManager;
 		this.clusterManager = clusterManager;
+		this.taskScheduler = taskScheduler;
 	}
 	
 	public Object writeReplace() throws ObjectStreamException {
@@ -97,19 +144,28 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 	
 	@Nullable
 	private SearcherManager getSearcherManager(Long projectId) throws InterruptedException {
+		synchronized (searcherManagers) {
+			PooledSearcherManager pooled = searcherManagers.get(projectId);
+			if (pooled != null) {
+				pooled.lastAccessTime = System.currentTimeMillis();
+				return pooled.searcherManager;
+			}
+		}
+		
+		// Open index outside of the lock, as it may take a while for large index 
+		SearcherManager searcherManager;
 		try {
-			SearcherManager searcherManager = searcherManagers.get(projectId);
-			if (searcherManager == null) synchronized (searcherManagers) {
-				searcherManager = searcherManagers.get(projectId);
-				if (searcherManager == null) {
-					Directory directory = FSDirectory.open(storageManager.getProjectIndexDir(projectId).toPath());
-					if (DirectoryReader.indexExists(directory)) {
-						searcherManager = new SearcherManager(directory, null);
-						searcherManagers.put(projectId, searcherManager);
-					}
-				}
+			Directory directory = FSDirectory.open(storageManager.getProjectIndexDir(projectId).toPath());
+			if (DirectoryReader.indexExists(directory)) {
+				long time = System.currentTimeMillis();
+				searcherManager = new SearcherManager(directory, null);
+				time = System.currentTimeMillis() - time;
+				searcherOpens.incrementAndGet();
+				searcherOpenTime.addAndGet(time);
+				maxSearcherOpenTime.accumulateAndGet(time, Math::max);
+			} else {
+				return null;
 			}
-			return searcherManager;
 		} catch (ClosedByInterruptException e) {
 			// catch this exception and convert to normal InterruptedException as 
 			// we do not want to throw the original exception to surprise the user
@@ -120,6 +176,63 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 		} catch (IOException e) {
 			throw ExceptionUtils.unchecked(e);
 		}
+		
+		synchronized (searcherManagers) {
+			PooledSearcherManager pooled = searcherManagers.get(projectId);
+			if (pooled != null) {
+				// Opened by another thread in the meantime
+				close(searcherManager);
+				return pooled.searcherManager;
+			}
+			searcherManagers.put(projectId, new PooledSearcherManager(searcherManager));
+			
+			Iterator<PooledSearcherManager> it = searcherManagers.values().iterator();
+			while (searcherManagers.size() > MAX_OPEN_SEARCHERS) {
+				close(it.next().searcherManager);
+				it.remove();
+				searcherEvictions.incrementAndGet();
+			}
+			return searcherManager;
+		}
+	}
+	
+	/**
+	 * Acquired searcher should be released via {@link #releaseSearcher(IndexSearcher)}. It remains 
+	 * usable even if its searcher manager is evicted and closed before released 
+	 */
+	@Nullable
+	private IndexSearcher acquireSearcher(Long projectId) throws InterruptedException {
+		while (true) {
+			SearcherManager searcherManager = getSearcherManager(projectId);
+			if (searcherManager != null) {
+				try {
+					return searcherManager.acquire();
+				} catch (AlreadyClosedException e) {
+					// Evicted after got from the pool, try again
+				} catch (IOException e) {
+					throw ExceptionUtils.unchecked(e);
+				}
+			} else {
+				return null;
+			}
+		}
+	}
+	
+	private void releaseSearcher(IndexSearcher searcher) {
+		try {
+			// Same as SearcherManager.release, except that searcher manager is not required 
+			searcher.getIndexReader().decRef();
+		} catch (IOException e) {
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+	
+	private void close(SearcherManager searcherManager) {
+		try {
+			searcherManager.close();
+		} catch (IOException e) {
+			throw ExceptionUtils.unchecked(e);
+		}
 	}
 	
 	@Override
@@ -139,56 +252,160 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 
 	}
 	
+	@Override
+	public List<ProjectQueryHits> search(Collection<Project> projects, BlobQuery query, 
+			@Nullable Consumer<ProjectQueryHits> hitsConsumer) throws InterruptedException {
+		// Fail fast in calling thread instead of failing on every storage server
+		query.asLuceneQuery();
+		
+		Map<Long, String> projectPaths = new HashMap<>();
+		Map<UUID, List<Long>> projectIdsOfServers = new HashMap<>();
+		for (Project project: projects) {
+			if (SecurityUtils.canReadCode(project)) {
+				UUID storageServerUUID = projectManager.getStorageServerUUID(project.getId(), false);
+				if (storageServerUUID != null) {
+					projectPaths.put(project.getId(), project.getPath());
+					projectIdsOfServers.computeIfAbsent(storageServerUUID, k -> new ArrayList<>()).add(project.getId());
+				}
+			}
+		}
+		
+		/*
+		 * Projects of each storage server are searched in batches, so that a large number of 
+		 * projects are searched in parallel, and hits can be delivered as soon as a batch finishes 
+		 */
+		List<Future<List<ProjectQueryHits>>> futures = new ArrayList<>();
+		for (Map.Entry<UUID, List<Long>> entry: projectIdsOfServers.entrySet()) {
+			for (List<Long> batch: Lists.partition(entry.getValue(), PROJECT_BATCH_SIZE)) {
+				ArrayList<Long> projectIds = new ArrayList<>(batch);
+				futures.add(clusterManager.submitToServer(entry.getKey(), new ClusterTask<List<ProjectQueryHits>>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public List<ProjectQueryHits> call() throws Exception {
+						return searchDefaultBranches(projectIds, query);
+					}
+					
+				}));
+			}
+		}
+		
+		List<ProjectQueryHits> result = new ArrayList<>();
+		int hitCount = 0;
+		try {
+			while (!futures.isEmpty() && hitCount < query.getCount()) {
+				Future<List<ProjectQueryHits>> doneFuture = null;
+				for (Future<List<ProjectQueryHits>> future: futures) {
+					if (future.isDone()) {
+						doneFuture = future;
+						break;
+					}
+				}
+				if (doneFuture != null) {
+					futures.remove(doneFuture);
+					for (ProjectQueryHits projectHits: doneFuture.get()) {
+						int remaining = query.getCount() - hitCount;
+						if (remaining <= 0)
+							break;
+						if (projectHits.getHits().size() > remaining) {
+							projectHits = new ProjectQueryHits(projectHits.getProjectId(), projectHits.getCommitId(), 
+									new ArrayList<>(projectHits.getHits().subList(0, remaining)));
+						}
+						hitCount += projectHits.getHits().size();
+						result.add(projectHits);
+						if (hitsConsumer != null)
+							hitsConsumer.accept(projectHits);
+					}
+				} else {
+					try {
+						futures.get(0).get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			// Batches still running are not needed if search is interrupted or enough hits are found 
+			for (Future<List<ProjectQueryHits>> future: futures)
+				future.cancel(true);
+		}
+		
+		result.sort(Comparator.<ProjectQueryHits>comparingInt(it -> -it.getHits().size())
+				.thenComparing(it -> projectPaths.get(it.getProjectId())));
+		return result;
+	}
+	
+	private List<ProjectQueryHits> searchDefaultBranches(Collection<Long> projectIds, BlobQuery query) 
+			throws InterruptedException {
+		List<ProjectQueryHits> result = new ArrayList<>();
+		for (Long projectId: projectIds) {
+			// Project may be deleted or moved to other server after the search is submitted
+			if (!clusterManager.getLocalServerUUID().equals(projectManager.getStorageServerUUID(projectId, false)))
+				continue;
+			
+			Repository repository = projectManager.getRepository(projectId);
+			String defaultBranch = GitUtils.getDefaultBranch(repository);
+			if (defaultBranch != null) {
+				ObjectId commitId = GitUtils.resolve(repository, GitUtils.branch2ref(defaultBranch), false);
+				if (commitId != null) {
+					List<QueryHit> hits = search(projectId, commitId, query);
+					if (!hits.isEmpty())
+						result.add(new ProjectQueryHits(projectId, commitId, hits));
+				}
+			}
+		}
+		return result;
+	}
+	
 	private List<QueryHit> search(Long projectId, ObjectId commitId, final BlobQuery query) 
 			throws InterruptedException {
 		List<QueryHit> hits = new ArrayList<>();
 
-		SearcherManager searcherManager = getSearcherManager(projectId);
-		if (searcherManager != null) {
+		final IndexSearcher searcher = acquireSearcher(projectId);
+		if (searcher != null) {
 			try {
-				final IndexSearcher searcher = searcherManager.acquire();
-				try {
-					Repository repository = projectManager.getRepository(projectId);
-					try (RevWalk revWalk = new RevWalk(repository)){
-						final RevTree revTree = revWalk.parseCommit(commitId).getTree();
-						final Set<String> checkedBlobPaths = new HashSet<>();
+				Repository repository = projectManager.getRepository(projectId);
+				try (RevWalk revWalk = new RevWalk(repository)){
+					final RevTree revTree = revWalk.parseCommit(commitId).getTree();
+					final Set<String> checkedBlobPaths = new HashSet<>();
+					
+					searcher.search(query.asLuceneQuery(), new SimpleCollector() {
+
+						private BinaryDocValues blobPathValues;
 						
-						searcher.search(query.asLuceneQuery(), new SimpleCollector() {
-	
-							private BinaryDocValues blobPathValues;
-							
-							@Override
-							public void collect(int doc) throws IOException {
-								if (hits.size() < query.getCount() && !Thread.currentThread().isInterrupted()) {
-									Preconditions.checkState(blobPathValues.advanceExact(doc));
-									String blobPath = blobPathValues.binaryValue().utf8ToString();
-									
-									if (!checkedBlobPaths.contains(blobPath)) {
-										TreeWalk treeWalk = TreeWalk.forPath(repository, blobPath, revTree);									
-										if (treeWalk != null)
-											query.collect(searcher, treeWalk, hits);
-										checkedBlobPaths.add(blobPath);
-									}
+						@Override
+						public void collect(int doc) throws IOException {
+							if (hits.size() < query.getCount() && !Thread.currentThread().isInterrupted()) {
+								Preconditions.checkState(blobPathValues.advanceExact(doc));
+								String blobPath = blobPathValues.binaryValue().utf8ToString();
+								
+								if (!checkedBlobPaths.contains(blobPath)) {
+									TreeWalk treeWalk = TreeWalk.forPath(repository, blobPath, revTree);									
+									if (treeWalk != null)
+										query.collect(searcher, treeWalk, hits);
+									checkedBlobPaths.add(blobPath);
 								}
 							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								blobPathValues  = context.reader().getBinaryDocValues(FieldConstants.BLOB_PATH.name());
-							}
+						}
 
-							@Override
-							public ScoreMode scoreMode() {
-								return ScoreMode.COMPLETE_NO_SCORES;
-							}
-	
-						});
-					}
-				} finally {
-					searcherManager.release(searcher);
+						@Override
+						protected void doSetNextReader(LeafReaderContext context) throws IOException {
+							blobPathValues  = context.reader().getBinaryDocValues(FieldConstants.BLOB_PATH.name());
+						}
+
+						@Override
+						public ScoreMode scoreMode() {
+							return ScoreMode.COMPLETE_NO_SCORES;
+						}
+
+					});
 				}
 			} catch (IOException e) {
 				throw ExceptionUtils.unchecked(e);
+			} finally {
+				releaseSearcher(searcher);
 			}
 		}
 		if (Thread.interrupted())
@@ -209,17 +426,12 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 			@Override
 			public byte[] call() throws Exception {
 				try {
-					SearcherManager searcherManager = getSearcherManager(projectId);
-					if (searcherManager != null) {
+					IndexSearcher searcher = acquireSearcher(projectId);
+					if (searcher != null) {
 						try {
-							IndexSearcher searcher = searcherManager.acquire();
-							try {
-								return SerializationUtils.serialize((Serializable) getSymbols(searcher, blobId, blobPath));
-							} finally {
-								searcherManager.release(searcher);
-							}
-						} catch (IOException e) {
-							throw ExceptionUtils.unchecked(e);
+							return SerializationUtils.serialize((Serializable) getSymbols(searcher, blobId, blobPath));
+						} finally {
+							releaseSearcher(searcher);
 						}
 					} else {
 						return null;
@@ -289,10 +501,13 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 	
 	@Listen
 	public void on(CommitIndexed event) {
+		// Warm up searcher of the project so that subsequent searches do not need to open or refresh it 
 		try {
 			SearcherManager searcherManager = getSearcherManager(event.getProject().getId()); 
 			if (searcherManager != null)
 				searcherManager.maybeRefresh();
+		} catch (AlreadyClosedException e) {
+			// Evicted in the meantime
 		} catch (InterruptedException | IOException e) {
 			throw ExceptionUtils.unchecked(e);
 		}
@@ -312,14 +527,9 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 					@Override
 					public Void call() throws Exception {
 						synchronized (searcherManagers) {
-							SearcherManager searcherManager = searcherManagers.remove(projectId);
-							if (searcherManager != null) {
-								try {
-									searcherManager.close();
-								} catch (IOException e) {
-									throw ExceptionUtils.unchecked(e);
-								}
-							}
+							PooledSearcherManager pooled = searcherManagers.remove(projectId);
+							if (pooled != null) 
+								close(pooled.searcherManager);
 						}
 						return null;
 					}
@@ -329,20 +539,63 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 		}
 	}
 
+	@Listen
+	public void on(ProjectStorageReleased event) {
+		synchronized (searcherManagers) {
+			PooledSearcherManager pooled = searcherManagers.remove(event.getProjectId());
+			if (pooled != null) 
+				close(pooled.searcherManager);
+		}
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+	
 	@Listen
 	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
 		synchronized (searcherManagers) {
-			for (SearcherManager searcherManager: searcherManagers.values()) {
-				try {
-					searcherManager.close();
-				} catch (IOException e) {
-					throw ExceptionUtils.unchecked(e);
+			for (PooledSearcherManager pooled: searcherManagers.values()) 
+				close(pooled.searcherManager);
+			searcherManagers.clear();
+		}
+	}
+
+	@Override
+	public void execute() {
+		long now = System.currentTimeMillis();
+		synchronized (searcherManagers) {
+			for (Iterator<PooledSearcherManager> it = searcherManagers.values().iterator(); it.hasNext();) {
+				PooledSearcherManager pooled = it.next();
+				if (now - pooled.lastAccessTime > SEARCHER_IDLE_TIMEOUT*60000L) {
+					close(pooled.searcherManager);
+					it.remove();
+					searcherEvictions.incrementAndGet();
 				}
 			}
-			searcherManagers.clear();
 		}
+		logger.debug("Code searcher stats: {}", getSearcherStats());
 	}
 
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatMinutelyForever(EVICTION_INTERVAL);
+	}
+	
+	@Override
+	public SearcherStats getSearcherStats() {
+		int openSearchers;
+		synchronized (searcherManagers) {
+			openSearchers = searcherManagers.size();
+		}
+		return new SearcherStats(openSearchers, searcherOpens.get(), searcherEvictions.get(), 
+				searcherOpenTime.get(), maxSearcherOpenTime.get());
+	}
+	
+
 	@Override
 	public String findBlobPath(Project project, ObjectId commit, String fileName, String partialBlobPath) {
 		Long projectId = project.getId();
@@ -379,4 +632,16 @@ public class DefaultCodeSearchManager implements CodeSearchManager, Serializable
 		});
 	}
 
+	private static class PooledSearcherManager {
+		
+		private final SearcherManager searcherManager;
+		
+		private long lastAccessTime = System.currentTimeMillis();
+		
+		private PooledSearcherManager(SearcherManager searcherManager) {
+			this.searcherManager = searcherManager;
+		}
+		
+	}
+	
 }
@@ -0,0 +1,80 @@
+package io.onedev.server.search.code;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of index searchers opened on current server since startup
+ */
+public class SearcherStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int openSearchers;
+	
+	private final long opens;
+	
+	private final long evictions;
+	
+	private final long totalOpenTime;
+	
+	private final long maxOpenTime;
+	
+	public SearcherStats(int openSearchers, long opens, long evictions, long totalOpenTime, long maxOpenTime) {
+		this.openSearchers = openSearchers;
+		this.opens = opens;
+		this.evictions = evictions;
+		this.totalOpenTime = totalOpenTime;
+		this.maxOpenTime = maxOpenTime;
+	}
+
+	/**
+	 * @return
+	 * 			number of projects with searcher currently open
+	 */
+	public int getOpenSearchers() {
+		return openSearchers;
+	}
+
+	/**
+	 * @return
+	 * 			number of times searchers are opened, including reopening of evicted searchers
+	 */
+	public long getOpens() {
+		return opens;
+	}
+
+	/**
+	 * @return
+	 * 			number of searchers closed due to exceeding pool size or being idle for too long
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return
+	 * 			total time spent on opening searchers in milliseconds
+	 */
+	public long getTotalOpenTime() {
+		return totalOpenTime;
+	}
+
+	/**
+	 * @return
+	 * 			max time spent on opening a searcher in milliseconds
+	 */
+	public long getMaxOpenTime() {
+		return maxOpenTime;
+	}
+	
+	public long getAverageOpenTime() {
+		return opens != 0? totalOpenTime / opens: 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("open searchers: %d, opens: %d, evictions: %d, average open time: %dms, max open time: %dms", 
+				openSearchers, opens, evictions, getAverageOpenTime(), maxOpenTime);
+	}
+	
+}
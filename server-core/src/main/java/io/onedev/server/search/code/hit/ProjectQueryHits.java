@@ -0,0 +1,43 @@
+package io.onedev.server.search.code.hit;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Query hits of a project found when searching multiple projects
+ */
+public class ProjectQueryHits implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long projectId;
+	
+	private final ObjectId commitId;
+	
+	private final List<QueryHit> hits;
+	
+	public ProjectQueryHits(Long projectId, ObjectId commitId, List<QueryHit> hits) {
+		this.projectId = projectId;
+		this.commitId = commitId;
+		this.hits = hits;
+	}
+
+	public Long getProjectId() {
+		return projectId;
+	}
+
+	/**
+	 * @return
+	 * 			commit of default branch being searched
+	 */
+	public ObjectId getCommitId() {
+		return commitId;
+	}
+
+	public List<QueryHit> getHits() {
+		return hits;
+	}
+	
+}
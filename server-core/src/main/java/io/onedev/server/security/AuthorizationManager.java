@@ -0,0 +1,23 @@
+package io.onedev.server.security;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+
+import com.google.common.cache.CacheStats;
+
+public interface AuthorizationManager {
+
+	/**
+	 * Get authorization info of specified user. Authorization info is compiled from
+	 * user, group, membership and authorization entities, and is cached until any of
+	 * them is changed
+	 *
+	 * @param userId
+	 * 			id of user to get authorization info for, <tt>0</tt> for anonymous user
+	 * @return
+	 * 			authorization info of specified user
+	 */
+	AuthorizationInfo getAuthorizationInfo(Long userId);
+
+	CacheStats getCacheStats();
+
+}
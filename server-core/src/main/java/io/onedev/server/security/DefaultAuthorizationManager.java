@@ -0,0 +1,305 @@
+package io.onedev.server.security;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterRunnable;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.RoleManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityEvent;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Group;
+import io.onedev.server.model.GroupAuthorization;
+import io.onedev.server.model.IssueAuthorization;
+import io.onedev.server.model.Membership;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+import io.onedev.server.model.UserAuthorization;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.security.permission.ConfidentialIssuePermission;
+import io.onedev.server.security.permission.CreateRootProjects;
+import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.security.permission.UserAdministration;
+
+@Singleton
+public class DefaultAuthorizationManager implements AuthorizationManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int CACHE_SIZE = 10000;
+
+	private static final int CACHE_EXPIRE_MINUTES = 30;
+
+	private final UserManager userManager;
+
+	private final RoleManager roleManager;
+
+	private final SettingManager settingManager;
+
+	private final SessionManager sessionManager;
+
+	private final TransactionManager transactionManager;
+
+	private final ClusterManager clusterManager;
+
+	private final LoadingCache<Long, AuthorizationInfo> authorizationInfos;
+
+	@Inject
+	public DefaultAuthorizationManager(UserManager userManager, RoleManager roleManager,
+			SettingManager settingManager, SessionManager sessionManager,
+			TransactionManager transactionManager, ClusterManager clusterManager) {
+		this.userManager = userManager;
+		this.roleManager = roleManager;
+		this.settingManager = settingManager;
+		this.sessionManager = sessionManager;
+		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
+
+		authorizationInfos = CacheBuilder.newBuilder()
+				.maximumSize(CACHE_SIZE)
+				.expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+				.recordStats()
+				.build(new CacheLoader<Long, AuthorizationInfo>() {
+
+					@Override
+					public AuthorizationInfo load(Long userId) {
+						return newAuthorizationInfo(compile(userId));
+					}
+
+				});
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(AuthorizationManager.class);
+	}
+
+	private CompiledPermission compile(Long userId) {
+		return sessionManager.call(() -> {
+			CompiledPermission permission = new CompiledPermission(userId);
+			if (userId != 0L) {
+				User user = userManager.load(userId);
+				if (user.isRoot() || user.isSystem()) {
+					permission.administrator = true;
+					return permission;
+				}
+
+				List<Group> groups = new ArrayList<>(user.getGroups());
+				Group defaultLoginGroup = settingManager.getSecuritySetting().getDefaultLoginGroup();
+				if (defaultLoginGroup != null)
+					groups.add(defaultLoginGroup);
+
+				for (Group group: groups) {
+					if (group.isAdministrator()) {
+						permission.administrator = true;
+						return permission;
+					}
+					if (group.isCreateRootProjects())
+						permission.createRootProjects = true;
+					for (GroupAuthorization authorization: group.getAuthorizations())
+						permission.addRole(authorization.getProject().getId(), authorization.getRole().getId());
+				}
+
+				for (UserAuthorization authorization: user.getProjectAuthorizations())
+					permission.addRole(authorization.getProject().getId(), authorization.getRole().getId());
+				for (IssueAuthorization authorization: user.getIssueAuthorizations()) {
+					permission.addConfidentialIssue(authorization.getIssue().getProject().getId(),
+							authorization.getIssue().getId());
+				}
+			}
+			permission.defaultRoles = userId != 0L || settingManager.getSecuritySetting().isEnableAnonymousAccess();
+			return permission;
+		});
+	}
+
+	private AuthorizationInfo newAuthorizationInfo(CompiledPermission permission) {
+		Collection<Permission> permissions = Lists.newArrayList(permission);
+		return new AuthorizationInfo() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Collection<String> getStringPermissions() {
+				return new HashSet<>();
+			}
+
+			@Override
+			public Collection<String> getRoles() {
+				return new HashSet<>();
+			}
+
+			@Override
+			public Collection<Permission> getObjectPermissions() {
+				return permissions;
+			}
+
+		};
+	}
+
+	@Override
+	public AuthorizationInfo getAuthorizationInfo(Long userId) {
+		return authorizationInfos.getUnchecked(userId);
+	}
+
+	@Override
+	public CacheStats getCacheStats() {
+		return authorizationInfos.stats();
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		onEntityChange(event);
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		onEntityChange(event);
+	}
+
+	private void onEntityChange(EntityEvent event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof User)
+			invalidate(entity.getId());
+		else if (entity instanceof Membership)
+			invalidate(((Membership) entity).getUser().getId());
+		else if (entity instanceof UserAuthorization)
+			invalidate(((UserAuthorization) entity).getUser().getId());
+		else if (entity instanceof IssueAuthorization)
+			invalidate(((IssueAuthorization) entity).getUser().getId());
+		else if (entity instanceof Group || entity instanceof GroupAuthorization 
+				|| entity instanceof Role || entity instanceof Setting) {
+			// Removing a role deletes its authorizations via cascade without firing events
+			invalidate(null);
+		}
+	}
+
+	private void invalidate(@Nullable Long userId) {
+		transactionManager.runAfterCommit(new ClusterRunnable() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						if (userId != null)
+							authorizationInfos.invalidate(userId);
+						else
+							authorizationInfos.invalidateAll();
+						return null;
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/*
+	 * Permissions of a user compiled into ids, so that it does not hold any entity and can
+	 * be cached across sessions. Roles and project hierarchy are still resolved when checking
+	 * permissions, as they are served from second level cache of Hibernate
+	 */
+	private class CompiledPermission implements Permission {
+
+		private final Long userId;
+
+		private boolean administrator;
+
+		private boolean createRootProjects;
+
+		private boolean defaultRoles;
+
+		private final Map<Long, Collection<Long>> roleIds = new HashMap<>();
+
+		private final Map<Long, Collection<Long>> confidentialIssueIds = new HashMap<>();
+
+		CompiledPermission(Long userId) {
+			this.userId = userId;
+		}
+
+		void addRole(Long projectId, Long roleId) {
+			roleIds.computeIfAbsent(projectId, it -> new HashSet<>()).add(roleId);
+		}
+
+		void addConfidentialIssue(Long projectId, Long issueId) {
+			confidentialIssueIds.computeIfAbsent(projectId, it -> new HashSet<>()).add(issueId);
+		}
+
+		@Override
+		public boolean implies(Permission p) {
+			if (administrator)
+				return true;
+			if (createRootProjects && new CreateRootProjects().implies(p))
+				return true;
+			if (p instanceof UserAdministration)
+				return userId.equals(((UserAdministration) p).getUser().getId());
+			if (p instanceof ProjectPermission) {
+				ProjectPermission projectPermission = (ProjectPermission) p;
+				Permission privilege = projectPermission.getPrivilege();
+				return sessionManager.call(() -> {
+					Project project = projectPermission.getProject();
+					do {
+						Collection<Long> roleIdsOfProject = roleIds.get(project.getId());
+						if (roleIdsOfProject != null) {
+							for (Long roleId: roleIdsOfProject) {
+								Role role = roleManager.get(roleId);
+								if (role != null && role.implies(privilege))
+									return true;
+							}
+						}
+						if (privilege instanceof ConfidentialIssuePermission) {
+							Collection<Long> issueIdsOfProject = confidentialIssueIds.get(project.getId());
+							Long issueId = ((ConfidentialIssuePermission) privilege).getIssue().getId();
+							if (issueIdsOfProject != null && issueIdsOfProject.contains(issueId))
+								return true;
+						}
+						if (defaultRoles && project.getDefaultRole() != null && project.getDefaultRole().implies(privilege))
+							return true;
+						project = project.getParent();
+					} while (project != null);
+					return false;
+				});
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -13,6 +13,7 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.security.AuthorizationManager;
 import io.onedev.server.security.BearerAuthenticationToken;
 
 @Singleton
@@ -20,8 +21,10 @@ public class BearerAuthorizingRealm extends AbstractAuthorizingRealm {
 
 	@Inject
     public BearerAuthorizingRealm(UserManager userManager, GroupManager groupManager, 
-    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager) {
-		super(userManager, groupManager, projectManager, sessionManager, settingManager);
+    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager, 
+    		AuthorizationManager authorizationManager) {
+		super(userManager, groupManager, projectManager, sessionManager, settingManager, 
+				authorizationManager);
 		setCredentialsMatcher(new AllowAllCredentialsMatcher());
     }
 
@@ -33,6 +33,7 @@ import io.onedev.server.model.support.administration.authenticator.Authenticated
 import io.onedev.server.model.support.administration.authenticator.Authenticator;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.security.AuthorizationManager;
 
 @Singleton
 public class PasswordAuthorizingRealm extends AbstractAuthorizingRealm {
@@ -52,8 +53,10 @@ public class PasswordAuthorizingRealm extends AbstractAuthorizingRealm {
     		MembershipManager membershipManager, GroupManager groupManager, 
     		ProjectManager projectManager, SessionManager sessionManager, 
     		TransactionManager transactionManager, SshKeyManager sshKeyManager, 
-    		PasswordService passwordService, EmailAddressManager emailAddressManager) {
-		super(userManager, groupManager, projectManager, sessionManager, settingManager);
+    		PasswordService passwordService, EmailAddressManager emailAddressManager, 
+    		AuthorizationManager authorizationManager) {
+		super(userManager, groupManager, projectManager, sessionManager, settingManager, 
+				authorizationManager);
 		
 	    PasswordMatcher passwordMatcher = new PasswordMatcher();
 	    passwordMatcher.setPasswordService(passwordService);
@@ -0,0 +1,35 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Writes build artifacts. When artifact deduplication is enabled in performance setting,
+ * artifact content is stored once per project under its hash, and artifact files of builds
+ * are hard links to stored content. Artifacts directory of builds can still be read as
+ * usual, however artifact files should never be modified in place, and should always be
+ * written via this manager.
+ *
+ * All methods should be called on storage server of the project, and caller should hold
+ * write lock of build artifacts while writing them.
+ */
+public interface ArtifactStoreManager {
+
+	/**
+	 * Copy all files under specified directory into artifacts directory of specified build
+	 */
+	void storeArtifacts(Long projectId, Long buildNumber, File fromDir);
+
+	/**
+	 * Write content of specified input stream as specified artifact of specified build.
+	 * Input stream will not be closed
+	 */
+	void storeArtifact(Long projectId, Long buildNumber, String artifactPath, InputStream is);
+
+	/**
+	 * Release stored content referenced by specified build. This should be called after
+	 * directory of the build is deleted
+	 */
+	void releaseArtifacts(Long projectId, Long buildNumber);
+
+}
@@ -0,0 +1,205 @@
+package io.onedev.server.storage;
+
+import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.model.Build;
+
+/**
+ * Stored content of a project lives under "blobs/<first two chars of hash>/<sha256 hash>" of
+ * artifact store directory of the project, and artifact files of builds are hard links to
+ * it. File system link count serves as reference count of stored content. Hashes stored by
+ * each build are appended to "manifests/<build number>", so that only content possibly
+ * referenced by a deleted build needs to be checked when releasing artifacts of the build.
+ * Content is stored per project instead of globally, as project directory is the unit of
+ * storage placement in cluster, and hard links can not cross file systems
+ */
+@Singleton
+public class DefaultArtifactStoreManager implements ArtifactStoreManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArtifactStoreManager.class);
+
+	private static final String BLOBS_DIR = "blobs";
+
+	private static final String MANIFESTS_DIR = "manifests";
+
+	private static final String TEMP_DIR = "temp";
+
+	private final StorageManager storageManager;
+
+	private final SettingManager settingManager;
+
+	@Inject
+	public DefaultArtifactStoreManager(StorageManager storageManager, SettingManager settingManager) {
+		this.storageManager = storageManager;
+		this.settingManager = settingManager;
+	}
+
+	private static boolean isLinkCountSupported() {
+		return FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+	}
+
+	private boolean isDeduplicate() {
+		return settingManager.getPerformanceSetting().isDeduplicateArtifacts() && isLinkCountSupported();
+	}
+
+	private static String getLockName(Long projectId) {
+		return "artifact-store:" + projectId;
+	}
+
+	private static File getBlobFile(File storeDir, String hash) {
+		return new File(storeDir, BLOBS_DIR + "/" + hash.substring(0, 2) + "/" + hash);
+	}
+
+	private static File getManifestFile(File storeDir, Long buildNumber) {
+		return new File(storeDir, MANIFESTS_DIR + "/" + buildNumber);
+	}
+
+	@Override
+	public void storeArtifacts(Long projectId, Long buildNumber, File fromDir) {
+		storageManager.initArtifactsDir(projectId, buildNumber);
+		Path fromPath = fromDir.toPath();
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(fromPath)) {
+			paths = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (Path path: paths) {
+			String artifactPath = fromPath.relativize(path).toString().replace('\\', '/');
+			try (InputStream is = Files.newInputStream(path)) {
+				storeArtifact(projectId, buildNumber, artifactPath, is);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public void storeArtifact(Long projectId, Long buildNumber, String artifactPath, InputStream is) {
+		storageManager.initArtifactsDir(projectId, buildNumber);
+		File artifactFile = new File(Build.getArtifactsDir(projectId, buildNumber), artifactPath);
+		FileUtils.createDir(artifactFile.getParentFile());
+		try {
+			if (isDeduplicate()) {
+				File storeDir = storageManager.getProjectArtifactStoreDir(projectId);
+				File tempDir = new File(storeDir, TEMP_DIR);
+				FileUtils.createDir(tempDir);
+				File tempFile = new File(tempDir, UUID.randomUUID().toString());
+				try {
+					MessageDigest digest = DigestUtils.getSha256Digest();
+					try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE)) {
+						IOUtils.copy(new DigestInputStream(is, digest), os, BUFFER_SIZE);
+					}
+					String hash = Hex.encodeHexString(digest.digest());
+
+					LockUtils.write(getLockName(projectId), new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							File blobFile = getBlobFile(storeDir, hash);
+							if (!blobFile.exists()) {
+								FileUtils.createDir(blobFile.getParentFile());
+								Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+							}
+
+							Path linkPath = new File(tempDir, UUID.randomUUID().toString()).toPath();
+							try {
+								Files.createLink(linkPath, blobFile.toPath());
+							} catch (UnsupportedOperationException | FileSystemException e) {
+								// Link count of stored content may exceed limit of the file system
+								logger.debug("Unable to link stored artifact, copying instead", e);
+								Files.copy(blobFile.toPath(), linkPath);
+							}
+							// Replace existing file instead of writing into it, as it may be shared with other builds
+							Files.move(linkPath, artifactFile.toPath(),
+									StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+							File manifestFile = getManifestFile(storeDir, buildNumber);
+							FileUtils.createDir(manifestFile.getParentFile());
+							Files.write(manifestFile.toPath(), (hash + " " + artifactPath + "\n").getBytes(UTF_8),
+									StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+							return null;
+						}
+
+					});
+				} finally {
+					if (tempFile.exists())
+						FileUtils.deleteFile(tempFile);
+				}
+			} else {
+				// Existing file is deleted before copying, so that content shared with other builds is not touched
+				Files.copy(is, artifactFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void releaseArtifacts(Long projectId, Long buildNumber) {
+		if (!isLinkCountSupported() || !storageManager.getProjectDir(projectId).exists())
+			return;
+
+		File storeDir = storageManager.getProjectArtifactStoreDir(projectId);
+		File manifestFile = getManifestFile(storeDir, buildNumber);
+		if (manifestFile.exists()) {
+			LockUtils.write(getLockName(projectId), new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					Set<String> hashes = new HashSet<>();
+					for (String line: Files.readAllLines(manifestFile.toPath(), UTF_8)) {
+						if (line.length() != 0)
+							hashes.add(StringUtils.substringBefore(line, " "));
+					}
+					for (String hash: hashes) {
+						Path blobPath = getBlobFile(storeDir, hash).toPath();
+						// Only link left is the stored content itself
+						if (Files.exists(blobPath) && (Integer) Files.getAttribute(blobPath, "unix:nlink") == 1)
+							Files.delete(blobPath);
+					}
+					FileUtils.deleteFile(manifestFile);
+					return null;
+				}
+
+			});
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package io.onedev.server.storage;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectStreamException;
@@ -16,6 +18,7 @@ import io.onedev.commons.bootstrap.Bootstrap;
 import io.onedev.commons.loader.ManagedSerializedForm;
 import io.onedev.commons.utils.ExplicitException;
 import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.cluster.ClusterRunnable;
 import io.onedev.server.cluster.ClusterTask;
@@ -39,6 +42,8 @@ public class DefaultStorageManager implements StorageManager, Serializable {
 	private static final String OLD_DELETE_MARK2 = "to_be_deleted_when_turbodev_is_restarted";
 	
 	private static final String DELETE_MARK = "to-be-deleted-when-onedev-is-restarted";
+	
+	private static final String STORAGE_VERSION_FILE = "storage-version";
 
 	private final ProjectManager projectManager;
 	
@@ -107,6 +112,11 @@ public class DefaultStorageManager implements StorageManager, Serializable {
         return getProjectSubdir(projectId, "attachment");
 	}
 
+	@Override
+	public File getProjectArtifactStoreDir(Long projectId) {
+        return getProjectSubdir(projectId, "artifact-store");
+	}
+
 	private File getBuildsDir(Long projectId) {
         return getProjectSubdir(projectId, "builds");
 	}
@@ -223,6 +233,7 @@ public class DefaultStorageManager implements StorageManager, Serializable {
 							@Override
 							public Void call() throws Exception {
 						    	FileUtils.deleteDir(getBuildDir(projectId, buildNumber));
+						    	OneDev.getInstance(ArtifactStoreManager.class).releaseArtifacts(projectId, buildNumber);
 								return null;
 							}
 				    		
@@ -262,6 +273,25 @@ public class DefaultStorageManager implements StorageManager, Serializable {
 		}
 	}
 
+	@Override
+	public long getProjectStorageVersion(Long projectId) {
+		File versionFile = new File(getProjectDir(projectId), STORAGE_VERSION_FILE);
+		if (versionFile.exists()) {
+			try {
+				return Long.parseLong(FileUtils.readFileToString(versionFile, UTF_8).trim());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return 0;
+		}
+	}
+
+	@Override
+	public void setProjectStorageVersion(Long projectId, long version) {
+		FileUtils.writeFile(new File(getProjectDir(projectId), STORAGE_VERSION_FILE), String.valueOf(version));
+	}
+
     private File getUsersDir() {
     	File usersDir = new File(Bootstrap.getSiteDir(), "users");
     	FileUtils.createDir(usersDir);
@@ -0,0 +1,827 @@
+package io.onedev.server.storage;
+
+import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.RateLimiter;
+import com.hazelcast.map.IMap;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.k8shelper.KubernetesHelper;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.ProjectStorageReleased;
+import io.onedev.server.event.pubsub.Listen;
+import io.onedev.server.event.pubsub.ListenerRegistry;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.git.hook.HookUtils;
+import io.onedev.server.storage.StorageMigration.Status;
+
+/**
+ * Migration is driven by target server. Files of the project are copied into a staging 
+ * directory of target server, and each pass copies files whose size or modification time 
+ * differs from the copied version. Before switching, writes to the project are blocked on 
+ * source server, and final passes also compare content digest of small files and Xodus logs, 
+ * as a ref rewritten within modification time resolution keeps both size and time. Staging 
+ * directory is moved into projects directory only right before switching storage server, 
+ * so that an incomplete copy is never picked up as project storage when target server 
+ * restarts
+ */
+@Singleton
+public class DefaultStorageMigrationManager implements StorageMigrationManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultStorageMigrationManager.class);
+	
+	private static final String STAGING_DIR = "migrating";
+	
+	private static final int PARALLELISM = 4;
+	
+	// Stop catching up and try switching once a pass copies less than this
+	private static final long CATCH_UP_BYTES = 1024*1024L;
+	
+	private static final int MAX_COPY_PASSES = 10;
+	
+	private static final int MAX_SWITCH_PASSES = 5;
+	
+	static final int MAX_PROPOSALS = 20;
+	
+	private static final long MAX_DIGESTED_LENGTH = 64*1024L;
+	
+	private static final long WRITES_WAIT_MILLIS = 60000L;
+	
+	// Servers are considered balanced if their loads differ less than this
+	private static final double BALANCE_THRESHOLD = 0.1;
+	
+	private final ProjectManager projectManager;
+	
+	private final StorageManager storageManager;
+	
+	private final SettingManager settingManager;
+	
+	private final ClusterManager clusterManager;
+	
+	private final ListenerRegistry listenerRegistry;
+	
+	private final ExecutorService executorService;
+	
+	private final BuildManager buildManager;
+	
+	private volatile IMap<Long, StorageMigration> migrations;
+	
+	// Number of running writers of project storage on this server
+	private final Map<Long, Integer> writerCounts = new HashMap<>();
+	
+	// Projects with writes blocked on this server, mapped to migration target server
+	private final Map<Long, UUID> blockedProjects = new HashMap<>();
+	
+	@Inject
+	public DefaultStorageMigrationManager(ProjectManager projectManager, StorageManager storageManager, 
+			SettingManager settingManager, ClusterManager clusterManager, ListenerRegistry listenerRegistry, 
+			ExecutorService executorService, BuildManager buildManager) {
+		this.projectManager = projectManager;
+		this.storageManager = storageManager;
+		this.settingManager = settingManager;
+		this.clusterManager = clusterManager;
+		this.listenerRegistry = listenerRegistry;
+		this.executorService = executorService;
+		this.buildManager = buildManager;
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(StorageMigrationManager.class);
+	}
+	
+	private File getStagingDir(Long projectId) {
+		return new File(Bootstrap.getSiteDir(), STAGING_DIR + "/" + projectId);
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		migrations = clusterManager.getHazelcastInstance().getMap("storageMigrations");
+		
+		// Migrations to this server are interrupted by previous shutdown
+		File stagingDir = new File(Bootstrap.getSiteDir(), STAGING_DIR);
+		if (stagingDir.exists())
+			FileUtils.deleteDir(stagingDir);
+	}
+	
+	@Override
+	public void migrate(Long projectId, UUID toServerUUID) {
+		UUID fromServerUUID = projectManager.getStorageServerUUID(projectId, true);
+		if (fromServerUUID.equals(toServerUUID))
+			throw new ExplicitException("Project is already stored on target server");
+		clusterManager.getServer(toServerUUID, true);
+		checkNoUnfinishedBuilds(projectId);
+		
+		StorageMigration migration = new StorageMigration(projectId, fromServerUUID, toServerUUID);
+		StorageMigration existing = migrations.get(projectId);
+		boolean started;
+		if (existing == null) 
+			started = migrations.putIfAbsent(projectId, migration) == null;
+		else if (existing.isFinished() || clusterManager.getServer(existing.getToServerUUID(), false) == null) 
+			started = migrations.replace(projectId, existing, migration);
+		else 
+			started = false;
+		if (!started)
+			throw new ExplicitException("Storage of this project is being migrated");
+		
+		clusterManager.submitToServer(toServerUUID, new ClusterTask<Void>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Void call() throws Exception {
+				executorService.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						migrateLocal(migration);
+					}
+					
+				});
+				return null;
+			}
+			
+		});
+	}
+	
+	private void migrateLocal(StorageMigration migration) {
+		Long projectId = migration.getProjectId();
+		UUID fromServerUUID = migration.getFromServerUUID();
+		String fromServerAddress = clusterManager.getServerAddress(fromServerUUID);
+		File stagingDir = getStagingDir(projectId);
+		File projectDir = storageManager.getProjectDir(projectId);
+		
+		logger.info("Migrating storage of project (id: {}) from server {}...", projectId, fromServerAddress);
+		try {
+			// Remove leftover of previous migrations of the project to this server
+			listenerRegistry.invokeListeners(new ProjectStorageReleased(projectId));
+			if (projectDir.exists())
+				FileUtils.deleteDir(projectDir);
+			if (stagingDir.exists())
+				FileUtils.deleteDir(stagingDir);
+			FileUtils.createDir(stagingDir);
+			
+			RateLimiter rateLimiter = null;
+			Integer bandwidth = settingManager.getPerformanceSetting().getStorageMigrationBandwidth();
+			if (bandwidth != null)
+				rateLimiter = RateLimiter.create(bandwidth * 1024.0 * 1024.0);
+			
+			Map<String, FileStamp> copiedFiles = new HashMap<>();
+			long copiedBytes;
+			do {
+				copiedBytes = migration.getCopiedBytes();
+				copyChanges(migration, copiedFiles, rateLimiter);
+				copiedBytes = migration.getCopiedBytes() - copiedBytes;
+			} while (copiedBytes > CATCH_UP_BYTES && migration.getPasses() < MAX_COPY_PASSES);
+			
+			migration.setStatus(Status.SWITCHING);
+			migrations.put(projectId, migration);
+			
+			UUID localServerUUID = clusterManager.getLocalServerUUID();
+			clusterManager.runOnServer(fromServerUUID, new ClusterTask<Void>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Void call() throws Exception {
+					blockWrites(projectId, localServerUUID);
+					return null;
+				}
+				
+			});
+			try {
+				/*
+				 * Build logs, artifacts and reports are written to storage server of the project 
+				 * without going through writeStorage, so we make sure no build runs while switching 
+				 */
+				checkNoUnfinishedBuilds(projectId);
+				Collection<Long> buildNumbers = new HashSet<>(buildManager.getNumbersByProject(projectId));
+				
+				int switchPasses = 0;
+				while (copyChanges(migration, copiedFiles, rateLimiter) != 0) {
+					if (++switchPasses >= MAX_SWITCH_PASSES) 
+						throw new ExplicitException("Project storage keeps changing, please try again later");
+				}
+				
+				checkNoUnfinishedBuilds(projectId);
+				if (!buildNumbers.equals(new HashSet<>(buildManager.getNumbersByProject(projectId))))
+					throw new ExplicitException("Builds of project changed during migration, please try again later");
+				
+				long storageVersion = clusterManager.runOnServer(fromServerUUID, new ClusterTask<Long>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Long call() throws Exception {
+						return storageManager.getProjectStorageVersion(projectId);
+					}
+					
+				}) + 1;
+				Files.move(stagingDir.toPath(), projectDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				storageManager.setProjectStorageVersion(projectId, storageVersion);
+				HookUtils.checkHooks(storageManager.getProjectGitDir(projectId));
+				if (!projectManager.switchStorageServer(projectId, fromServerUUID, localServerUUID, storageVersion)) 
+					throw new ExplicitException("Storage server of project changed during migration");
+			} finally {
+				try {
+					clusterManager.runOnServer(fromServerUUID, new ClusterTask<Void>() {
+	
+						private static final long serialVersionUID = 1L;
+	
+						@Override
+						public Void call() throws Exception {
+							unblockWrites(projectId);
+							return null;
+						}
+						
+					});
+				} catch (Exception e) {
+					logger.error("Error unblocking writes to project (id: " + projectId + ") on server " 
+							+ fromServerAddress, e);
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Error migrating storage of project (id: " + projectId + ")", e);
+			migration.setStatus(Status.FAILED);
+			migration.setErrorMessage(e.getMessage());
+			migrations.put(projectId, migration);
+			
+			listenerRegistry.invokeListeners(new ProjectStorageReleased(projectId));
+			if (projectDir.exists())
+				FileUtils.deleteDir(projectDir);
+			if (stagingDir.exists())
+				FileUtils.deleteDir(stagingDir);
+			return;
+		} 
+		
+		migration.setStatus(Status.SUCCESSFUL);
+		migrations.put(projectId, migration);
+		logger.info("Migrated storage of project (id: {}) from server {}", projectId, fromServerAddress);
+		
+		try {
+			clusterManager.runOnServer(fromServerUUID, new ClusterTask<Void>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Void call() throws Exception {
+					// Mark first so that stale copy is still removed at restart if deletion fails here 
+					storageManager.deleteProjectDir(projectId);
+					listenerRegistry.invokeListeners(new ProjectStorageReleased(projectId));
+					File projectDir = storageManager.getProjectDir(projectId);
+					if (projectDir.exists())
+						FileUtils.deleteDir(projectDir);
+					return null;
+				}
+				
+			});
+		} catch (Exception e) {
+			logger.error("Error removing migrated storage of project (id: " + projectId + ") from server " 
+					+ fromServerAddress, e);
+		}
+	}
+	
+	/**
+	 * Copy files changed since last pass into staging directory
+	 * 
+	 * @param copiedFiles
+	 * 			stamps of source files copied in previous passes, will be updated with this pass
+	 * @return
+	 * 			number of files copied or deleted in this pass
+	 */
+	private int copyChanges(StorageMigration migration, Map<String, FileStamp> copiedFiles, 
+			@Nullable RateLimiter rateLimiter) throws InterruptedException {
+		Long projectId = migration.getProjectId();
+		File stagingDir = getStagingDir(projectId);
+		
+		boolean digested = migration.getStatus() == Status.SWITCHING;
+		Map<String, FileStamp> sourceFiles = clusterManager.runOnServer(migration.getFromServerUUID(), 
+				new ClusterTask<HashMap<String, FileStamp>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public HashMap<String, FileStamp> call() throws Exception {
+				return listFiles(storageManager.getProjectDir(projectId), digested);
+			}
+			
+		});
+		
+		int changes = 0;
+		for (String path: new ArrayList<>(copiedFiles.keySet())) {
+			if (!sourceFiles.containsKey(path)) {
+				FileUtils.deleteFile(new File(stagingDir, path));
+				copiedFiles.remove(path);
+				changes++;
+			}
+		}
+		
+		List<Map.Entry<String, FileStamp>> changedFiles = new ArrayList<>();
+		for (Map.Entry<String, FileStamp> entry: sourceFiles.entrySet()) {
+			if (!entry.getValue().matches(copiedFiles.get(entry.getKey())))
+				changedFiles.add(entry);
+		}
+		changes += changedFiles.size();
+		
+		// Distribute files to parallel downloads with largest files first to balance their sizes
+		changedFiles.sort(Comparator.comparingLong(it -> -it.getValue().getLength()));
+		List<List<String>> batches = new ArrayList<>();
+		long[] batchSizes = new long[PARALLELISM];
+		for (int i = 0; i < PARALLELISM; i++)
+			batches.add(new ArrayList<>());
+		for (Map.Entry<String, FileStamp> entry: changedFiles) {
+			int smallest = 0;
+			for (int i = 1; i < PARALLELISM; i++) {
+				if (batchSizes[i] < batchSizes[smallest])
+					smallest = i;
+			}
+			batches.get(smallest).add(entry.getKey());
+			batchSizes[smallest] += entry.getValue().getLength();
+		}
+		
+		List<Future<Map<String, FileStamp>>> futures = new ArrayList<>();
+		for (List<String> batch: batches) {
+			if (!batch.isEmpty()) {
+				futures.add(executorService.submit(new Callable<Map<String, FileStamp>>() {
+
+					@Override
+					public Map<String, FileStamp> call() throws Exception {
+						return download(migration, batch, rateLimiter);
+					}
+					
+				}));
+			}
+		}
+		
+		long copiedBytes = 0;
+		for (Future<Map<String, FileStamp>> future: futures) {
+			try {
+				for (Map.Entry<String, FileStamp> entry: future.get().entrySet()) {
+					copiedFiles.put(entry.getKey(), entry.getValue());
+					copiedBytes += entry.getValue().getLength();
+				}
+			} catch (ExecutionException e) {
+				throw ExceptionUtils.unchecked(e.getCause());
+			}
+		}
+		
+		migration.setPasses(migration.getPasses() + 1);
+		migration.setCopiedBytes(migration.getCopiedBytes() + copiedBytes);
+		migrations.put(projectId, migration);
+		
+		return changes;
+	}
+	
+	private Map<String, FileStamp> download(StorageMigration migration, List<String> paths, 
+			@Nullable RateLimiter rateLimiter) throws IOException {
+		Long projectId = migration.getProjectId();
+		File stagingDir = getStagingDir(projectId);
+		Map<String, FileStamp> copiedFiles = new HashMap<>();
+		
+		Client client = ClientBuilder.newClient();
+		try {
+			String serverUrl = clusterManager.getServerUrl(migration.getFromServerUUID());
+			WebTarget target = client.target(serverUrl)
+					.path("api/cluster/project-files")
+					.queryParam("projectId", projectId);
+			Invocation.Builder builder =  target.request();
+			builder.header(HttpHeaders.AUTHORIZATION, 
+					KubernetesHelper.BEARER + " " + clusterManager.getCredentialValue());
+			try (Response response = builder.post(Entity.entity(Joiner.on('\n').join(paths), MediaType.TEXT_PLAIN))) {
+				KubernetesHelper.checkStatus(response);
+				try (DataInputStream is = new DataInputStream(new BufferedInputStream(
+						response.readEntity(InputStream.class), BUFFER_SIZE))) {
+					byte[] buffer = new byte[BUFFER_SIZE];
+					for (int i = 0; i < paths.size(); i++) {
+						String path = is.readUTF();
+						long length = is.readLong();
+						File file = new File(stagingDir, path);
+						if (length == -1) {
+							// Removed from source after listing, will be handled in next pass
+							if (file.exists())
+								FileUtils.deleteFile(file);
+							continue;
+						}
+						long lastModified = is.readLong();
+						MessageDigest digest = isDigestible(path, length)? DigestUtils.getSha1Digest(): null;
+						FileUtils.createDir(file.getParentFile());
+						try (OutputStream os = new FileOutputStream(file)) {
+							long remaining = length;
+							while (remaining > 0) {
+								int count = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+								if (count == -1)
+									throw new EOFException("Unexpected end of project files");
+								if (rateLimiter != null)
+									rateLimiter.acquire(count);
+								os.write(buffer, 0, count);
+								if (digest != null)
+									digest.update(buffer, 0, count);
+								remaining -= count;
+							}
+						}
+						file.setLastModified(lastModified);
+						copiedFiles.put(path, new FileStamp(length, lastModified, 
+								digest != null? digest.digest(): null));
+					}
+				}
+			}
+		} finally {
+			client.close();
+		}
+		return copiedFiles;
+	}
+	
+	@Override
+	public void sendFiles(Long projectId, Collection<String> paths, OutputStream os) {
+		File projectDir = storageManager.getProjectDir(projectId);
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (String path: paths) {
+				for (String segment: Splitter.on('/').split(path)) {
+					if (segment.equals(".."))
+						throw new ExplicitException("Invalid project file path: " + path);
+				}
+				File file = new File(projectDir, path);
+				dos.writeUTF(path);
+				
+				// Get modification time before reading so that modifications during reading 
+				// will be detected in next pass
+				long lastModified = file.lastModified();
+				FileInputStream is;
+				try {
+					is = new FileInputStream(file);
+				} catch (FileNotFoundException e) {
+					dos.writeLong(-1);
+					continue;
+				}
+				try {
+					long length = is.getChannel().size();
+					dos.writeLong(length);
+					dos.writeLong(lastModified);
+					long remaining = length;
+					while (remaining > 0) {
+						int count = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+						if (count == -1) {
+							// Truncated while reading. Pad to announced length, and it will be 
+							// copied again in next pass as its modification time changes
+							Arrays.fill(buffer, (byte) 0);
+							while (remaining > 0) {
+								count = (int) Math.min(buffer.length, remaining);
+								dos.write(buffer, 0, count);
+								remaining -= count;
+							}
+						} else {
+							dos.write(buffer, 0, count);
+							remaining -= count;
+						}
+					}
+				} finally {
+					is.close();
+				}
+			}
+			dos.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public <T> T writeStorage(Long projectId, Callable<T> writer) {
+		synchronized (writerCounts) {
+			UUID toServerUUID = blockedProjects.get(projectId);
+			// Ignore the block if target server is gone without unblocking
+			if (toServerUUID != null && clusterManager.getServer(toServerUUID, false) != null) 
+				throw new ExplicitException("Project storage is being migrated, please retry later");
+			writerCounts.merge(projectId, 1, Integer::sum);
+		}
+		try {
+			// Checked after counting the writer, as storage server is only switched after 
+			// running writers finish
+			UUID storageServerUUID = projectManager.getStorageServerUUID(projectId, false);
+			if (!clusterManager.getLocalServerUUID().equals(storageServerUUID)) 
+				throw new ExplicitException("Project storage is migrated to another server, please retry");
+			return writer.call();
+		} catch (Exception e) {
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			synchronized (writerCounts) {
+				int count = writerCounts.get(projectId) - 1;
+				if (count != 0) {
+					writerCounts.put(projectId, count);
+				} else {
+					writerCounts.remove(projectId);
+					writerCounts.notifyAll();
+				}
+			}
+		}
+	}
+	
+	private void checkNoUnfinishedBuilds(Long projectId) {
+		if (buildManager.queryUnfinished().containsValue(projectId))
+			throw new ExplicitException("Project has unfinished builds, please try again after they finish");
+	}
+	
+	private void blockWrites(Long projectId, UUID toServerUUID) throws InterruptedException {
+		synchronized (writerCounts) {
+			blockedProjects.put(projectId, toServerUUID);
+			long deadline = System.currentTimeMillis() + WRITES_WAIT_MILLIS;
+			while (writerCounts.containsKey(projectId)) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					blockedProjects.remove(projectId);
+					throw new ExplicitException("Timed out waiting for running writes to project storage");
+				}
+				writerCounts.wait(remaining);
+			}
+		}
+	}
+	
+	private void unblockWrites(Long projectId) {
+		synchronized (writerCounts) {
+			blockedProjects.remove(projectId);
+		}
+	}
+	
+	// Loose refs and packed refs are small files, and Xodus log files are appended in place
+	private static boolean isDigestible(String path, long length) {
+		return length <= MAX_DIGESTED_LENGTH || path.endsWith(".xd");
+	}
+	
+	private static HashMap<String, FileStamp> listFiles(File dir, boolean digested) throws IOException {
+		HashMap<String, FileStamp> files = new HashMap<>();
+		if (dir.exists()) {
+			Path basePath = dir.toPath();
+			Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					if (attrs.isRegularFile()) {
+						String path = basePath.relativize(file).toString().replace('\\', '/');
+						byte[] digest = null;
+						if (digested && isDigestible(path, attrs.size())) {
+							try (InputStream is = new FileInputStream(file.toFile())) {
+								digest = DigestUtils.sha1(is);
+							} catch (FileNotFoundException e) {
+								return FileVisitResult.CONTINUE;
+							}
+						}
+						files.put(path, new FileStamp(attrs.size(), attrs.lastModifiedTime().toMillis(), digest));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+					// File removed while walking
+					return FileVisitResult.CONTINUE;
+				}
+				
+			});
+		}
+		return files;
+	}
+	
+	@Override
+	public Collection<StorageMigration> getMigrations() {
+		List<StorageMigration> migrations = new ArrayList<>(this.migrations.values());
+		migrations.sort(Comparator.comparingLong(it -> -it.getBeginTime()));
+		return migrations;
+	}
+
+	@Override
+	public List<StorageMove> proposeMoves() {
+		Map<UUID, ArrayList<ProjectLoad>> loads = new HashMap<>(clusterManager.runOnAllServers(
+				new ClusterTask<ArrayList<ProjectLoad>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public ArrayList<ProjectLoad> call() throws Exception {
+				UUID localServerUUID = clusterManager.getLocalServerUUID();
+				double uptimeMinutes = Math.max(1, ManagementFactory.getRuntimeMXBean().getUptime() / 60000.0);
+				Map<Long, Long> accesses = projectManager.getRepositoryAccesses();
+				
+				ArrayList<ProjectLoad> loads = new ArrayList<>();
+				for (File file: storageManager.getProjectsDir().listFiles()) {
+					Long projectId = Long.valueOf(file.getName());
+					if (localServerUUID.equals(projectManager.getStorageServerUUID(projectId, false))) {
+						long size = 0;
+						for (FileStamp stamp: listFiles(file, false).values())
+							size += stamp.getLength();
+						long accessCount = accesses.getOrDefault(projectId, 0L);
+						loads.add(new ProjectLoad(projectId, size, accessCount / uptimeMinutes));
+					}
+				}
+				return loads;
+			}
+			
+		}));
+		
+		Set<Long> excludedProjectIds = new HashSet<>();
+		for (StorageMigration migration: migrations.values()) {
+			if (!migration.isFinished())
+				excludedProjectIds.add(migration.getProjectId());
+		}
+		return proposeMoves(loads, excludedProjectIds);
+	}
+	
+	/**
+	 * Greedily move projects from heaviest server to lightest server until their loads 
+	 * differ less than {@link #BALANCE_THRESHOLD}, or {@link #MAX_PROPOSALS} moves are 
+	 * proposed
+	 * 
+	 * @param loads
+	 * 			loads of projects on each server, will be updated with proposed moves
+	 * @param excludedProjectIds
+	 * 			projects not to be moved, will be updated with proposed moves
+	 */
+	static List<StorageMove> proposeMoves(Map<UUID, ? extends List<ProjectLoad>> loads, 
+			Set<Long> excludedProjectIds) {
+		List<StorageMove> moves = new ArrayList<>();
+		if (loads.size() < 2)
+			return moves;
+		
+		long totalSize = 0;
+		double totalAccessRate = 0;
+		for (List<ProjectLoad> loadsOfServer: loads.values()) {
+			for (ProjectLoad load: loadsOfServer) {
+				totalSize += load.size;
+				totalAccessRate += load.accessRate;
+			}
+		}
+		
+		// Weight of a project is its share of total size plus its share of total access rate
+		Map<Long, Double> projectWeights = new HashMap<>();
+		Map<UUID, Double> serverWeights = new HashMap<>();
+		for (Map.Entry<UUID, ? extends List<ProjectLoad>> entry: loads.entrySet()) {
+			double serverWeight = 0;
+			for (ProjectLoad load: entry.getValue()) {
+				double weight = 0;
+				if (totalSize != 0)
+					weight += load.size * 1.0 / totalSize;
+				if (totalAccessRate != 0)
+					weight += load.accessRate / totalAccessRate;
+				projectWeights.put(load.projectId, weight);
+				serverWeight += weight;
+			}
+			serverWeights.put(entry.getKey(), serverWeight);
+		}
+		
+		while (moves.size() < MAX_PROPOSALS) {
+			UUID heaviestServerUUID = null;
+			UUID lightestServerUUID = null;
+			for (UUID serverUUID: serverWeights.keySet()) {
+				if (heaviestServerUUID == null || serverWeights.get(serverUUID) > serverWeights.get(heaviestServerUUID))
+					heaviestServerUUID = serverUUID;
+				if (lightestServerUUID == null || serverWeights.get(serverUUID) < serverWeights.get(lightestServerUUID))
+					lightestServerUUID = serverUUID;
+			}
+			double gap = serverWeights.get(heaviestServerUUID) - serverWeights.get(lightestServerUUID);
+			if (gap < BALANCE_THRESHOLD)
+				break;
+			
+			// Moving a project narrows the gap only if its weight is less than the gap, and 
+			// narrows it most if its weight is half of the gap 
+			ProjectLoad bestLoad = null;
+			for (ProjectLoad load: loads.get(heaviestServerUUID)) {
+				double weight = projectWeights.get(load.projectId);
+				if (!excludedProjectIds.contains(load.projectId) && weight < gap 
+						&& (bestLoad == null || Math.abs(gap - 2*weight) < Math.abs(gap - 2*projectWeights.get(bestLoad.projectId)))) {
+					bestLoad = load;
+				}
+			}
+			if (bestLoad == null)
+				break;
+			
+			double weight = projectWeights.get(bestLoad.projectId);
+			loads.get(heaviestServerUUID).remove(bestLoad);
+			loads.get(lightestServerUUID).add(bestLoad);
+			serverWeights.put(heaviestServerUUID, serverWeights.get(heaviestServerUUID) - weight);
+			serverWeights.put(lightestServerUUID, serverWeights.get(lightestServerUUID) + weight);
+			excludedProjectIds.add(bestLoad.projectId);
+			moves.add(new StorageMove(bestLoad.projectId, heaviestServerUUID, lightestServerUUID, 
+					bestLoad.size, bestLoad.accessRate));
+		}
+		return moves;
+	}
+	
+	private static class FileStamp implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long length;
+		
+		private final long lastModified;
+		
+		private final byte[] digest;
+		
+		FileStamp(long length, long lastModified, @Nullable byte[] digest) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+		
+		long getLength() {
+			return length;
+		}
+
+		/**
+		 * @param copied
+		 * 			stamp of copied version of the file, <tt>null</tt> if not copied yet
+		 * @return
+		 * 			whether copied version is up to date with this stamp. Content digest is 
+		 * 			compared only if this stamp has one
+		 */
+		boolean matches(@Nullable FileStamp copied) {
+			return copied != null 
+					&& length == copied.length 
+					&& lastModified == copied.lastModified 
+					&& (digest == null || Arrays.equals(digest, copied.digest));
+		}
+		
+	}
+	
+	static class ProjectLoad implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		private final Long projectId;
+		
+		private final long size;
+		
+		private final double accessRate;
+		
+		ProjectLoad(Long projectId, long size, double accessRate) {
+			this.projectId = projectId;
+			this.size = size;
+			this.accessRate = accessRate;
+		}
+		
+	}
+	
+}
@@ -48,6 +48,14 @@ public interface StorageManager {
      */
     File getProjectAttachmentDir(Long projectId);
     
+    /**
+     * Get directory to store deduplicated build artifacts of specified project
+     * 
+     * @return
+     * 			directory to store deduplicated build artifacts. The directory will be exist after calling this method
+     */
+    File getProjectArtifactStoreDir(Long projectId);
+    
     File getUserInfoDir(Long userId);
     
     /**
@@ -60,4 +68,17 @@ public interface StorageManager {
     File getBuildDir(Long projectId, Long buildNumber);
     
     void deleteProjectDir(Long projectId);
+    
+    /**
+     * Get storage version of specified project on this server. The version is increased each 
+     * time storage of the project is migrated to another server, so that a copy left on 
+     * previous storage server can be told stale
+     * 
+     * @return
+     * 			storage version of specified project, or <tt>0</tt> if never migrated
+     */
+    long getProjectStorageVersion(Long projectId);
+    
+    void setProjectStorageVersion(Long projectId, long version);
+    
 }
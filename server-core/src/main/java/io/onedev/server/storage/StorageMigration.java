@@ -0,0 +1,98 @@
+package io.onedev.server.storage;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Status of migrating storage of a project from one server to another
+ */
+public class StorageMigration implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Status {COPYING, SWITCHING, SUCCESSFUL, FAILED};
+	
+	private final Long projectId;
+	
+	private final UUID fromServerUUID;
+	
+	private final UUID toServerUUID;
+	
+	private final long beginTime;
+	
+	private Status status = Status.COPYING;
+	
+	private int passes;
+	
+	private long copiedBytes;
+	
+	private String errorMessage;
+	
+	public StorageMigration(Long projectId, UUID fromServerUUID, UUID toServerUUID) {
+		this.projectId = projectId;
+		this.fromServerUUID = fromServerUUID;
+		this.toServerUUID = toServerUUID;
+		beginTime = System.currentTimeMillis();
+	}
+
+	public Long getProjectId() {
+		return projectId;
+	}
+
+	public UUID getFromServerUUID() {
+		return fromServerUUID;
+	}
+
+	public UUID getToServerUUID() {
+		return toServerUUID;
+	}
+
+	public long getBeginTime() {
+		return beginTime;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return
+	 * 			number of copy passes performed so far. Each pass copies files changed 
+	 * 			since previous pass
+	 */
+	public int getPasses() {
+		return passes;
+	}
+
+	public void setPasses(int passes) {
+		this.passes = passes;
+	}
+
+	public long getCopiedBytes() {
+		return copiedBytes;
+	}
+
+	public void setCopiedBytes(long copiedBytes) {
+		this.copiedBytes = copiedBytes;
+	}
+
+	@Nullable
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public void setErrorMessage(@Nullable String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+	
+	public boolean isFinished() {
+		return status == Status.SUCCESSFUL || status == Status.FAILED;
+	}
+	
+}
@@ -0,0 +1,50 @@
+package io.onedev.server.storage;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Migrates storage of projects between servers while projects remain accessible. Storage 
+ * directory of the project is copied to target server in several passes, each copying files 
+ * changed since previous pass. Storage server of the project is switched to target server 
+ * once a pass finds nothing changed with writes to the project blocked on source server, and 
+ * storage directory is then removed from source server
+ */
+public interface StorageMigrationManager {
+
+	/**
+	 * Start migrating storage of specified project to specified server in background
+	 */
+	void migrate(Long projectId, UUID toServerUUID);
+	
+	/**
+	 * Get migrations started since cluster start, including finished ones
+	 */
+	Collection<StorageMigration> getMigrations();
+	
+	/**
+	 * Propose storage moves to balance disk usage and repository access rate of projects 
+	 * among servers. This walks storage directories of all projects and may take a while
+	 */
+	List<StorageMove> proposeMoves();
+	
+	/**
+	 * Write specified files under storage directory of specified project to specified 
+	 * output stream. This should be called on current storage server of the project
+	 * 
+	 * @param paths
+	 * 			paths relative to storage directory of the project
+	 */
+	void sendFiles(Long projectId, Collection<String> paths, OutputStream os);
+	
+	/**
+	 * Run specified writer against storage of specified project on current server. Writers 
+	 * are rejected while storage of the project is switching to another server, and switching 
+	 * waits for running writers to finish
+	 */
+	<T> T writeStorage(Long projectId, Callable<T> writer);
+	
+}
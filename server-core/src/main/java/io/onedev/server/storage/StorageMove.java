@@ -0,0 +1,60 @@
+package io.onedev.server.storage;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Move of project storage proposed to balance storage servers
+ */
+public class StorageMove implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long projectId;
+	
+	private final UUID fromServerUUID;
+	
+	private final UUID toServerUUID;
+	
+	private final long size;
+	
+	private final double accessRate;
+	
+	public StorageMove(Long projectId, UUID fromServerUUID, UUID toServerUUID, long size, double accessRate) {
+		this.projectId = projectId;
+		this.fromServerUUID = fromServerUUID;
+		this.toServerUUID = toServerUUID;
+		this.size = size;
+		this.accessRate = accessRate;
+	}
+
+	public Long getProjectId() {
+		return projectId;
+	}
+
+	public UUID getFromServerUUID() {
+		return fromServerUUID;
+	}
+
+	public UUID getToServerUUID() {
+		return toServerUUID;
+	}
+
+	/**
+	 * @return
+	 * 			size of storage directory of the project in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 			average number of repository accesses of the project per minute since 
+	 * 			its storage server started
+	 */
+	public double getAccessRate() {
+		return accessRate;
+	}
+	
+}
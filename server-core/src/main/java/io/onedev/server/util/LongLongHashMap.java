@@ -0,0 +1,149 @@
+package io.onedev.server.util;
+
+import java.util.Arrays;
+
+/**
+ * Compact open addressing hash map from primitive long to primitive long. It takes a 
+ * fraction of memory of a HashMap<Long, Long> with same entries, as keys and values are 
+ * neither boxed nor wrapped into map entries. 
+ * 
+ * This class is not thread safe.
+ */
+public class LongLongHashMap {
+
+	private static final float LOAD_FACTOR = 0.75f;
+	
+	private static final int MIN_CAPACITY = 8;
+	
+	private long[] keys;
+	
+	private long[] values;
+	
+	private boolean[] used;
+	
+	private int size;
+	
+	public LongLongHashMap() {
+		this(MIN_CAPACITY);
+	}
+	
+	public LongLongHashMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+	
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize)
+			capacity <<= 1;
+		return capacity;
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		used = new boolean[capacity];
+	}
+	
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+	}
+	
+	private int find(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slotOf(key); used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key)
+				return slot;
+		}
+		return -1;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean containsKey(long key) {
+		return find(key) != -1;
+	}
+	
+	/**
+	 * @return
+	 * 			value of specified key, or specified default value if key does not exist
+	 */
+	public long get(long key, long defaultValue) {
+		int slot = find(key);
+		return slot != -1? values[slot]: defaultValue;
+	}
+	
+	/**
+	 * @return
+	 * 			<tt>true</tt> if a new entry is added, <tt>false</tt> if value of an existing 
+	 * 			entry is replaced
+	 */
+	public boolean put(long key, long value) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key);
+		for (; used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return false;
+			}
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length * LOAD_FACTOR)
+			rehash(keys.length << 1);
+		return true;
+	}
+	
+	/**
+	 * @return
+	 * 			<tt>true</tt> if specified key exists and is removed
+	 */
+	public boolean remove(long key) {
+		int slot = find(key);
+		if (slot == -1)
+			return false;
+		
+		// Shift following entries of the probe sequence back so that lookup does not need tombstones
+		int mask = keys.length - 1;
+		int next = (slot + 1) & mask;
+		while (used[next]) {
+			int home = slotOf(keys[next]);
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[slot] = false;
+		size--;
+		return true;
+	}
+	
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = slotOf(oldKeys[i]);
+				while (used[slot])
+					slot = (slot + 1) & mask;
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+}
@@ -1,10 +1,26 @@
 package io.onedev.server.util;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 import org.xml.sax.SAXException;
 
 public class XmlUtils {
-	
+
 	// Prevent XXE attack as the xml might be provided by malicious users
 	public static void disallowDocTypeDecl(SAXReader reader) {
 		try {
@@ -13,9 +29,78 @@ public class XmlUtils {
 			throw new RuntimeException(e);
 		}
 	}
-	
+
 	public static String stripDoctype(String xml) {
 		return xml.replaceFirst("<!DOCTYPE\\s.*?>", "");
 	}
 
+	/**
+	 * Read specified xml file in a streaming manner. Child elements of root element with
+	 * specified names are built one at a time and passed to specified consumer in document
+	 * order, so that memory usage is bounded by the largest matching element instead of
+	 * the whole document. Namespaces are dropped from built elements, and doctype
+	 * declaration is ignored. Elements passed before a parse error are not rolled back, 
+	 * so collect them and only use them after this method returns if partial result of 
+	 * malformed document is not desired
+	 */
+	public static void readElements(File file, Collection<String> elementNames,
+			Consumer<Element> consumer) throws DocumentException, IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+			XMLStreamReader reader = factory.createXMLStreamReader(is);
+			try {
+				int depth = 0;
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						if (depth == 1 && elementNames.contains(reader.getLocalName()))
+							consumer.accept(readElement(reader));
+						else
+							depth++;
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new DocumentException(e.getMessage(), e);
+		}
+	}
+
+	// Build element at current position of the reader, and advance reader to its end tag
+	private static Element readElement(XMLStreamReader reader) throws XMLStreamException {
+		Element element = newElement(reader);
+		Element current = element;
+		while (current != null) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element child = newElement(reader);
+				current.add(child);
+				current = child;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				current = current.getParent();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				current.addText(reader.getText());
+				break;
+			}
+		}
+		return element;
+	}
+
+	private static Element newElement(XMLStreamReader reader) {
+		Element element = DocumentHelper.createElement(reader.getLocalName());
+		for (int i=0; i<reader.getAttributeCount(); i++)
+			element.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		return element;
+	}
+
 }
@@ -11,17 +11,21 @@ import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
-import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.StringUtils;
-import io.onedev.server.util.diff.DiffMatchPatch.Diff;
 import io.onedev.server.util.diff.DiffMatchPatch.Operation;
 
 public class DiffUtils {
 
-	public static final int MAX_DIFF_SIZE = 65535;
+	/*
+	 * The diff algorithm itself does not limit input size. This limit is to avoid loading 
+	 * excessively large files into memory
+	 */
+	public static final int MAX_DIFF_SIZE = 1000000;
+	
+	private static final long DIFF_TIMEOUT = 1000;
 	
 	private static final Pattern WORD_PATTERN = Pattern.compile("\\w+");
 	
@@ -55,51 +59,65 @@ public class DiffUtils {
 	}
 	
 	public static <T> List<DiffBlock<T>> diff(List<T> oldElements, List<T> newElements, Function<T, T> processor) {
-		Preconditions.checkArgument(oldElements.size() + newElements.size() <= MAX_DIFF_SIZE, 
-				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
-		
-		List<T> processedOldElements = new ArrayList<>();
-		for (T element: oldElements) 
-			processedOldElements.add(processor.apply(element));
-		
-		List<T> processedNewElements = new ArrayList<>();
-		for (T element: newElements) 
-			processedNewElements.add(processor.apply(element));
-		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		TokensToCharsResult<T> result1 = tokensToChars(processedOldElements, processedNewElements);
+		Map<T, Integer> elementIds = new HashMap<>();
+		int[] oldElementIds = toElementIds(oldElements, processor, elementIds);
+		int[] newElementIds = toElementIds(newElements, processor, elementIds);
 		
-		List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result1.chars1, result1.chars2, false);
+		MyersDiff.Edits edits = MyersDiff.diff(oldElementIds, newElementIds, 
+				System.currentTimeMillis() + DIFF_TIMEOUT);
 
 		List<DiffBlock<T>> diffBlocks = new ArrayList<>();
 		int oldElementIndex = 0;
 		int newElementIndex = 0;
-		for (Diff diff: diffs) {
-			List<T> elements = new ArrayList<>();
-			if (diff.operation == Operation.EQUAL) {
-				for (int i = 0; i < diff.text.length(); i++) {
-					elements.add(newElements.get(newElementIndex));
-					oldElementIndex++;
-					newElementIndex++;
+		int deletions = 0;
+		int insertions = 0;
+		for (int i=0; i<=edits.size(); i++) {
+			if (i == edits.size() || edits.getOperation(i) == Operation.EQUAL) {
+				// Deletions always go before insertions between two equal blocks
+				if (deletions != 0) {
+					List<T> elements = new ArrayList<>(oldElements.subList(oldElementIndex, oldElementIndex+deletions));
+					diffBlocks.add(new DiffBlock<>(Operation.DELETE, elements, oldElementIndex, newElementIndex));
+					oldElementIndex += deletions;
+					deletions = 0;
 				}
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
-						oldElementIndex-elements.size(), newElementIndex-elements.size()));
-			} else if (diff.operation == Operation.INSERT) {
-				for (int i = 0; i < diff.text.length(); i++)
-					elements.add(newElements.get(newElementIndex++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
-						oldElementIndex, newElementIndex-elements.size()));
+				if (insertions != 0) {
+					List<T> elements = new ArrayList<>(newElements.subList(newElementIndex, newElementIndex+insertions));
+					diffBlocks.add(new DiffBlock<>(Operation.INSERT, elements, oldElementIndex, newElementIndex));
+					newElementIndex += insertions;
+					insertions = 0;
+				}
+				if (i != edits.size()) {
+					int count = edits.getCount(i);
+					List<T> elements = new ArrayList<>(newElements.subList(newElementIndex, newElementIndex+count));
+					diffBlocks.add(new DiffBlock<>(Operation.EQUAL, elements, oldElementIndex, newElementIndex));
+					oldElementIndex += count;
+					newElementIndex += count;
+				}
+			} else if (edits.getOperation(i) == Operation.DELETE) {
+				deletions += edits.getCount(i);
 			} else {
-				for (int i = 0; i < diff.text.length(); i++)
-					elements.add(oldElements.get(oldElementIndex++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
-						oldElementIndex-elements.size(), newElementIndex));
+				insertions += edits.getCount(i);
 			}
 		}
 		
 		return diffBlocks;
 	}
 	
+	private static <T> int[] toElementIds(List<T> elements, Function<T, T> processor, Map<T, Integer> elementIds) {
+		int[] ids = new int[elements.size()];
+		int index = 0;
+		for (T element: elements) {
+			T processed = processor.apply(element);
+			Integer id = elementIds.get(processed);
+			if (id == null) {
+				id = elementIds.size();
+				elementIds.put(processed, id);
+			}
+			ids[index++] = id;
+		}
+		return ids;
+	}
+	
 	public static <T> List<DiffBlock<T>> diff(List<T> oldLines, List<T> newLines) {
 		return diff(oldLines, newLines, new Function<T, T>() {
 
@@ -114,8 +132,6 @@ public class DiffUtils {
 	public static LinkedHashMap<Integer, List<DiffBlock<String>>> diffLines(List<String> deleteLines, List<String> insertLines) {
 		LinkedHashMap<Integer, List<DiffBlock<String>>> lineDiffs = new LinkedHashMap<>();
 		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		
 		for (int i=0; i<deleteLines.size(); i++) {
 			String deleteLine = deleteLines.get(i);
 			List<String> deleteTokens = getTokens(deleteLine);
@@ -123,48 +139,19 @@ public class DiffUtils {
 				String insertLine = insertLines.get(i);
 				List<String> insertTokens = getTokens(insertLine);
 				
-				TokensToCharsResult<String> result = DiffUtils.tokensToChars(deleteTokens, insertTokens);						
-				List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result.chars1, result.chars2, false);
+				List<DiffBlock<String>> diffBlocks = diff(deleteTokens, insertTokens);
 				int equal = 0;
 				int total = 0;
-				for (DiffMatchPatch.Diff diff: diffs) {
-					for (int k=0; k<diff.text.length(); k++) {
-						int pos = diff.text.charAt(k);
-						String token = result.tokenArray.get(pos);
+				for (DiffBlock<String> diffBlock: diffBlocks) {
+					for (String token: diffBlock.getElements()) {
 						if (StringUtils.isNotBlank(token)) {
 							total += token.length();
-							if (diff.operation == Operation.EQUAL)
+							if (diffBlock.getOperation() == Operation.EQUAL)
 								equal += token.length();
 						}
 					}
 				}
 				if (equal*3 >= total) {
-					List<DiffBlock<String>> diffBlocks = new ArrayList<>();
-					int oldLineNo = 0;
-					int newLineNo = 0;
-					for (Diff diff : diffs) {
-						List<String> tokens = new ArrayList<>();
-						if (diff.operation == Operation.EQUAL) {
-							for (int k = 0; k < diff.text.length(); k++) {
-								tokens.add(insertTokens.get(newLineNo));
-								oldLineNo++;
-								newLineNo++;
-							}
-							diffBlocks.add(new DiffBlock<String>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo-tokens.size()));
-						} else if (diff.operation == Operation.INSERT) {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(insertTokens.get(newLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo, newLineNo-tokens.size()));
-						} else {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(deleteTokens.get(oldLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo));
-						}
-					}
-
 					lineDiffs.put(i, diffBlocks);
 				}
 			}
@@ -246,46 +233,5 @@ public class DiffUtils {
 		}
 		return lineMapping;
 	}
-	
-	public static <T> TokensToCharsResult<T> tokensToChars(List<T> tokens1, List<T> tokens2) {
-		List<T> tokenArray = new ArrayList<>();
-		Map<T, Integer> tokenHash = new HashMap<>();
-		// e.g. linearray[4] == "Hello\n"
-		// e.g. linehash.get("Hello\n") == 4
-
-		// "\x00" is a valid character, but various debuggers don't like it.
-		// So we'll insert a junk entry to avoid generating a null character.
-		tokenArray.add(null);
-
-		String chars1 = tokensToCharsMunge(tokens1, tokenArray, tokenHash);
-		String chars2 = tokensToCharsMunge(tokens2, tokenArray, tokenHash);
-		return new TokensToCharsResult<T>(chars1, chars2, tokenArray);
-	}
-
-	private static <T> String tokensToCharsMunge(List<T> tokens, List<T> tokenArray, Map<T, Integer> tokenHash) {
-		StringBuilder chars = new StringBuilder();
-		for (T token: tokens) {
-			if (tokenHash.containsKey(token)) {
-				chars.append(String.valueOf((char) (int) tokenHash.get(token)));
-			} else {
-				tokenArray.add(token);
-				tokenHash.put(token, tokenArray.size() - 1);
-				chars.append(String.valueOf((char) (tokenArray.size() - 1)));
-			}
-		}
-		return chars.toString();
-	}
-	
-	private static class TokensToCharsResult<T> {
-		private String chars1;
-		private String chars2;
-		private List<T> tokenArray;
-
-		private TokensToCharsResult(String chars1, String chars2, List<T> tokenArray) {
-			this.chars1 = chars1;
-			this.chars2 = chars2;
-			this.tokenArray = tokenArray;
-		}
-	}
 
 }
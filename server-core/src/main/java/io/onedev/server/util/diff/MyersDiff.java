@@ -0,0 +1,204 @@
+package io.onedev.server.util.diff;
+
+import java.util.Arrays;
+
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
+/**
+ * Myers diff working on int arrays. Each distinct element should be mapped to a distinct
+ * int by caller. Middle snakes are searched with forward and reverse paths at the same time,
+ * and the problem is split around them recursively, so that space used is linear to input
+ * size. If deadline is reached, the unresolved range is reported as deletion of old
+ * elements followed by insertion of new elements.
+ */
+class MyersDiff {
+
+	private final int[] a;
+
+	private final int[] b;
+
+	private final long deadline;
+
+	private final int[] v1;
+
+	private final int[] v2;
+
+	private final Edits edits = new Edits();
+
+	private MyersDiff(int[] a, int[] b, long deadline) {
+		this.a = a;
+		this.b = b;
+		this.deadline = deadline;
+		int vLength = (a.length + b.length + 1) / 2 * 2 + 2;
+		v1 = new int[vLength];
+		v2 = new int[vLength];
+	}
+
+	public static Edits diff(int[] a, int[] b, long deadline) {
+		MyersDiff myersDiff = new MyersDiff(a, b, deadline);
+		myersDiff.diff(0, a.length, 0, b.length);
+		return myersDiff.edits;
+	}
+
+	private void diff(int aStart, int aEnd, int bStart, int bEnd) {
+		int prefix = 0;
+		while (aStart + prefix < aEnd && bStart + prefix < bEnd && a[aStart + prefix] == b[bStart + prefix])
+			prefix++;
+		edits.add(Operation.EQUAL, prefix);
+		aStart += prefix;
+		bStart += prefix;
+
+		int suffix = 0;
+		while (aStart < aEnd - suffix && bStart < bEnd - suffix && a[aEnd - suffix - 1] == b[bEnd - suffix - 1])
+			suffix++;
+		aEnd -= suffix;
+		bEnd -= suffix;
+
+		if (aStart == aEnd) {
+			edits.add(Operation.INSERT, bEnd - bStart);
+		} else if (bStart == bEnd) {
+			edits.add(Operation.DELETE, aEnd - aStart);
+		} else {
+			int[] split = bisect(aStart, aEnd, bStart, bEnd);
+			if (split != null) {
+				diff(aStart, split[0], bStart, split[1]);
+				diff(split[0], aEnd, split[1], bEnd);
+			} else {
+				edits.add(Operation.DELETE, aEnd - aStart);
+				edits.add(Operation.INSERT, bEnd - bStart);
+			}
+		}
+
+		edits.add(Operation.EQUAL, suffix);
+	}
+
+	/*
+	 * Ported from DiffMatchPatch.diff_bisect, working on ranges of int arrays instead of
+	 * strings. Returns split point in the middle snake, or null if deadline is reached or
+	 * there is no commonality at all
+	 */
+	private int[] bisect(int aStart, int aEnd, int bStart, int bEnd) {
+		int aLength = aEnd - aStart;
+		int bLength = bEnd - bStart;
+		int maxD = (aLength + bLength + 1) / 2;
+		int vOffset = maxD;
+		int vLength = 2 * maxD;
+		Arrays.fill(v1, 0, vLength + 2, -1);
+		Arrays.fill(v2, 0, vLength + 2, -1);
+		v1[vOffset + 1] = 0;
+		v2[vOffset + 1] = 0;
+		int delta = aLength - bLength;
+
+		// If total number of elements is odd, front path will collide with reverse path
+		boolean front = (delta % 2 != 0);
+
+		// Offsets for start and end of k loop to prevent mapping of space beyond the grid
+		int k1start = 0;
+		int k1end = 0;
+		int k2start = 0;
+		int k2end = 0;
+		for (int d = 0; d < maxD; d++) {
+			if (System.currentTimeMillis() > deadline)
+				break;
+
+			for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+				int k1Offset = vOffset + k1;
+				int x1;
+				if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1]))
+					x1 = v1[k1Offset + 1];
+				else
+					x1 = v1[k1Offset - 1] + 1;
+				int y1 = x1 - k1;
+				while (x1 < aLength && y1 < bLength && a[aStart + x1] == b[bStart + y1]) {
+					x1++;
+					y1++;
+				}
+				v1[k1Offset] = x1;
+				if (x1 > aLength) {
+					k1end += 2;
+				} else if (y1 > bLength) {
+					k1start += 2;
+				} else if (front) {
+					int k2Offset = vOffset + delta - k1;
+					if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+						int x2 = aLength - v2[k2Offset];
+						if (x1 >= x2)
+							return new int[] {aStart + x1, bStart + y1};
+					}
+				}
+			}
+
+			for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+				int k2Offset = vOffset + k2;
+				int x2;
+				if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1]))
+					x2 = v2[k2Offset + 1];
+				else
+					x2 = v2[k2Offset - 1] + 1;
+				int y2 = x2 - k2;
+				while (x2 < aLength && y2 < bLength && a[aEnd - x2 - 1] == b[bEnd - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				v2[k2Offset] = x2;
+				if (x2 > aLength) {
+					k2end += 2;
+				} else if (y2 > bLength) {
+					k2start += 2;
+				} else if (!front) {
+					int k1Offset = vOffset + delta - k2;
+					if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+						int x1 = v1[k1Offset];
+						int y1 = vOffset + x1 - k1Offset;
+						x2 = aLength - x2;
+						if (x1 >= x2)
+							return new int[] {aStart + x1, bStart + y1};
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Edit script as runs of operations. Adjacent runs of same operation are merged.
+	 */
+	static class Edits {
+
+		private Operation[] operations = new Operation[16];
+
+		private int[] counts = new int[16];
+
+		private int size;
+
+		void add(Operation operation, int count) {
+			if (count != 0) {
+				if (size != 0 && operations[size-1] == operation) {
+					counts[size-1] += count;
+				} else {
+					if (size == operations.length) {
+						operations = Arrays.copyOf(operations, size * 2);
+						counts = Arrays.copyOf(counts, size * 2);
+					}
+					operations[size] = operation;
+					counts[size] = count;
+					size++;
+				}
+			}
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Operation getOperation(int index) {
+			return operations[index];
+		}
+
+		public int getCount(int index) {
+			return counts[index];
+		}
+
+	}
+
+}
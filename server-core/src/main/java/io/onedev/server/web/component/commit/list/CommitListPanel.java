@@ -59,6 +59,7 @@ import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.RevListOptions;
 import io.onedev.server.git.service.GitService;
+import io.onedev.server.git.service.RevListCursor;
 import io.onedev.server.git.service.RefFacade;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
@@ -145,55 +146,78 @@ public abstract class CommitListPanel extends Panel {
 		protected Commits load() {
 			CommitQuery query = queryModel.getObject();
 			Commits commits = new Commits();
-			List<String> commitHashes;
 			if (query != null) {
 				try {
-					RevListOptions options = new RevListOptions();
-					options.ignoreCase(true);
-					
 					if (page > MAX_PAGES)
 						throw new ExplicitException("Page should be no more than " + MAX_PAGES);
 					
-					options.count(page * COMMITS_PER_PAGE);
-					
-					query.fill(getProject(), options);
-					
-					if (options.revisions().isEmpty() && getCompareWith() != null)
-						options.revisions(Lists.newArrayList(getCompareWith()));
+					if (cursor == null) {
+						RevListOptions options = new RevListOptions();
+						options.ignoreCase(true);
+						
+						query.fill(getProject(), options);
+						
+						if (options.revisions().isEmpty() && getCompareWith() != null)
+							options.revisions(Lists.newArrayList(getCompareWith()));
+						
+						cursor = getGitService().newRevListCursor(getProject(), options);
+						commitHashes.clear();
+						loadedPages = 0;
+					}
 					
-					commitHashes = getGitService().revList(getProject(), options);
+					// Only walk pages not loaded yet
+					while (loadedPages < page) {
+						List<String> pageHashes = getGitService().revList(getProject(), cursor, COMMITS_PER_PAGE);
+						commitHashes.addAll(pageHashes);
+						loadedPages++;
+						if (pageHashes.size() < COMMITS_PER_PAGE) {
+							loadedPages = page;
+							break;
+						}
+					}
 				} catch (Exception e) {
 					if (e.getMessage() != null)
 						error(e.getMessage());
 					else
 						error("Error calculating commits: check log for details");
-					commitHashes = new ArrayList<>();
+					resetCommits();
 					logger.error("Error calculating commits: ", e);
 				}
 			} else {
-				commitHashes = new ArrayList<>();
+				resetCommits();
 			}
 			
 			commits.hasMore = (commitHashes.size() == page * COMMITS_PER_PAGE);
 			
 			int lastMaxCount = Math.min((page - 1) * COMMITS_PER_PAGE, commitHashes.size());
 			
+			// Commits parsed in previous requests are reused if this panel is not serialized in the meantime 
+			if (parsedCommits == null)
+				parsedCommits = new HashMap<>();
 			List<ObjectId> commitIds = new ArrayList<>();
-			for (int i=0; i<lastMaxCount; i++) 
-				commitIds.add(ObjectId.fromString(commitHashes.get(i)));
+			for (String commitHash: commitHashes) {
+				if (!parsedCommits.containsKey(commitHash))
+					commitIds.add(ObjectId.fromString(commitHash));
+			}
+			for (RevCommit commit: getGitService().getCommits(getProject(), commitIds))
+				parsedCommits.put(commit.name(), commit);
 			
-			commits.last = getGitService().getCommits(getProject(), commitIds);
+			commits.last = new ArrayList<>();
+			for (int i=0; i<lastMaxCount; i++) {
+				RevCommit commit = parsedCommits.get(commitHashes.get(i));
+				if (commit != null)
+					commits.last.add(commit);
+			}
 			sort(commits.last, 0);
 			commits.current = new ArrayList<>(commits.last);
 			
-			commitIds.clear();
-			for (int i=lastMaxCount; i<commitHashes.size(); i++)
-				commitIds.add(ObjectId.fromString(commitHashes.get(i)));
-			
-			for (RevCommit commit: getGitService().getCommits(getProject(), commitIds))
-				commits.current.add(commit);
+			for (int i=lastMaxCount; i<commitHashes.size(); i++) {
+				RevCommit commit = parsedCommits.get(commitHashes.get(i));
+				if (commit != null)
+					commits.current.add(commit);
+			}
 			
-			sort(commits.current, lastMaxCount);
+			sort(commits.current, commits.last.size());
 			commits.last = separateByDate(commits.last);
 			commits.current = separateByDate(commits.current);
 			
@@ -230,6 +254,14 @@ public abstract class CommitListPanel extends Panel {
 	
 	private int page = 1;
 	
+	private RevListCursor cursor;
+	
+	private final List<String> commitHashes = new ArrayList<>();
+	
+	private int loadedPages;
+	
+	private transient Map<String, RevCommit> parsedCommits;
+	
 	private transient Collection<ObjectId> commitIdsToQueryStatus;
 	
 	private WebMarkupContainer body;
@@ -272,8 +304,16 @@ public abstract class CommitListPanel extends Panel {
 		return null;
 	}
 	
-	private void doQuery(AjaxRequestTarget target) {
+	private void resetCommits() {
 		page = 1;
+		cursor = null;
+		commitHashes.clear();
+		loadedPages = 0;
+		parsedCommits = null;
+	}
+	
+	private void doQuery(AjaxRequestTarget target) {
+		resetCommits();
 		target.add(body);
 		target.add(tooMany);
 		querySubmitted = true;
@@ -683,7 +723,7 @@ public abstract class CommitListPanel extends Panel {
 	
 	@Override
 	protected void onBeforeRender() {
-		page = 1;
+		resetCommits();
 		super.onBeforeRender();
 	}
 
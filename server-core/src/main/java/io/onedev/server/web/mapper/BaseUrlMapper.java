@@ -36,6 +36,7 @@ import io.onedev.server.web.page.admin.notificationtemplatesetting.IssueNotifica
 import io.onedev.server.web.page.admin.notificationtemplatesetting.PullRequestNotificationTemplatePage;
 import io.onedev.server.web.page.admin.performancesetting.PerformanceSettingPage;
 import io.onedev.server.web.page.admin.pluginsettings.ContributedAdministrationSettingPage;
+import io.onedev.server.web.page.admin.querystats.QueryStatsPage;
 import io.onedev.server.web.page.admin.rolemanagement.NewRolePage;
 import io.onedev.server.web.page.admin.rolemanagement.RoleDetailPage;
 import io.onedev.server.web.page.admin.rolemanagement.RoleListPage;
@@ -46,6 +47,7 @@ import io.onedev.server.web.page.admin.servicedesk.ServiceDeskSettingPage;
 import io.onedev.server.web.page.admin.sshserverkey.SshServerKeyPage;
 import io.onedev.server.web.page.admin.ssosetting.SsoConnectorListPage;
 import io.onedev.server.web.page.admin.ssosetting.SsoProcessPage;
+import io.onedev.server.web.page.admin.storagebalance.StorageBalancePage;
 import io.onedev.server.web.page.admin.systemsetting.SystemSettingPage;
 import io.onedev.server.web.page.admin.usermanagement.InvitationListPage;
 import io.onedev.server.web.page.admin.usermanagement.NewInvitationPage;
@@ -299,6 +301,8 @@ public class BaseUrlMapper extends CompoundRequestMapper {
 		
 		add(new BasePageMapper("administration/server-log", ServerLogPage.class));
 		add(new BasePageMapper("administration/server-information", ServerInformationPage.class));
+		add(new BasePageMapper("administration/query-stats", QueryStatsPage.class));
+		add(new BasePageMapper("administration/storage-balance", StorageBalancePage.class));
 	}
 	
 	private void addProjectPages() {
@@ -0,0 +1,101 @@
+package io.onedev.server.web.page.admin.querystats;
+
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.persistence.QueryStats;
+import io.onedev.server.persistence.QueryStatsManager;
+import io.onedev.server.web.page.admin.AdministrationPage;
+
+@SuppressWarnings("serial")
+public class QueryStatsPage extends AdministrationPage {
+
+	private static final int MAX_QUERIES = 100;
+	
+	private final IModel<List<QueryStats>> queriesModel = new LoadableDetachableModel<List<QueryStats>>() {
+
+		@Override
+		protected List<QueryStats> load() {
+			return getQueryStatsManager().getTopQueries(MAX_QUERIES);
+		}
+		
+	};
+	
+	public QueryStatsPage(PageParameters params) {
+		super(params);
+	}
+
+	@Override
+	protected void onInitialize() {
+		super.onInitialize();
+		
+		add(new Link<Void>("reset") {
+
+			@Override
+			public void onClick() {
+				getQueryStatsManager().resetStats();
+			}
+			
+		});
+		
+		add(new ListView<QueryStats>("queries", queriesModel) {
+
+			@Override
+			protected void populateItem(ListItem<QueryStats> item) {
+				QueryStats stats = item.getModelObject();
+				item.add(new Label("sql", stats.getSql()));
+				item.add(new Label("count", stats.getCount()));
+				item.add(new Label("totalTime", stats.getTotalTime() + " ms"));
+				item.add(new Label("averageTime", stats.getTotalTime() / stats.getCount() + " ms"));
+				item.add(new Label("maxTime", stats.getMaxTime() + " ms"));
+				if (stats.getSlowestOrigin() != null)
+					item.add(new Label("slowestOrigin", stats.getSlowestOrigin()));
+				else
+					item.add(new Label("slowestOrigin", "<i>Unknown</i>").setEscapeModelStrings(false));
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(!queriesModel.getObject().isEmpty());
+			}
+			
+		});
+		
+		add(new WebMarkupContainer("noQueries") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(queriesModel.getObject().isEmpty());
+			}
+			
+		});
+	}
+
+	@Override
+	protected void onDetach() {
+		queriesModel.detach();
+		super.onDetach();
+	}
+	
+	private QueryStatsManager getQueryStatsManager() {
+		return OneDev.getInstance(QueryStatsManager.class);
+	}
+
+	@Override
+	protected Component newTopbarTitle(String componentId) {
+		return new Label(componentId, "Database Query Statistics");
+	}
+	
+}
@@ -9,6 +9,12 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
+import com.google.common.cache.CacheStats;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.search.code.CodeSearchManager;
+import io.onedev.server.security.AuthorizationManager;
 import io.onedev.server.util.DateUtils;
 import io.onedev.server.web.page.admin.AdministrationPage;
 
@@ -65,6 +71,35 @@ public class ServerInformationPage extends AdministrationPage {
 			
 		});
 		
+		add(new Label("repositoryCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				return OneDev.getInstance(ProjectManager.class).getRepositoryCacheStats().toString();
+			}
+			
+		}));
+		
+		add(new Label("authorizationCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				CacheStats stats = OneDev.getInstance(AuthorizationManager.class).getCacheStats();
+				return String.format("hits: %d, misses: %d, evictions: %d, hit ratio: %.1f%%", 
+						stats.hitCount(), stats.missCount(), stats.evictionCount(), stats.hitRate()*100);
+			}
+			
+		}));
+		
+		add(new Label("codeSearchers", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				return OneDev.getInstance(CodeSearchManager.class).getSearcherStats().toString();
+			}
+			
+		}));
+		
 		add(new Label("osUserName", System.getProperty("user.name")));
 		
 		add(new Link<Void>("gc") {
@@ -0,0 +1,176 @@
+package io.onedev.server.web.page.admin.storagebalance;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.server.OneDev;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageMigration;
+import io.onedev.server.storage.StorageMigrationManager;
+import io.onedev.server.storage.StorageMove;
+import io.onedev.server.util.DateUtils;
+import io.onedev.server.web.page.admin.AdministrationPage;
+
+@SuppressWarnings("serial")
+public class StorageBalancePage extends AdministrationPage {
+
+	private final IModel<List<StorageMigration>> migrationsModel = new LoadableDetachableModel<List<StorageMigration>>() {
+
+		@Override
+		protected List<StorageMigration> load() {
+			return new ArrayList<>(getStorageMigrationManager().getMigrations());
+		}
+		
+	};
+	
+	private final IModel<ArrayList<StorageMove>> movesModel = Model.of(new ArrayList<>());
+	
+	private boolean proposed;
+	
+	public StorageBalancePage(PageParameters params) {
+		super(params);
+	}
+
+	@Override
+	protected void onInitialize() {
+		super.onInitialize();
+		
+		add(new ListView<StorageMigration>("migrations", migrationsModel) {
+
+			@Override
+			protected void populateItem(ListItem<StorageMigration> item) {
+				StorageMigration migration = item.getModelObject();
+				item.add(new Label("project", getProjectPath(migration.getProjectId())));
+				item.add(new Label("from", getServerName(migration.getFromServerUUID())));
+				item.add(new Label("to", getServerName(migration.getToServerUUID())));
+				item.add(new Label("beginTime", DateUtils.formatDateTime(new Date(migration.getBeginTime()))));
+				item.add(new Label("status", migration.getStatus().name().toLowerCase()));
+				item.add(new Label("passes", migration.getPasses()));
+				item.add(new Label("copied", FileUtils.byteCountToDisplaySize(migration.getCopiedBytes())));
+				item.add(new Label("error", migration.getErrorMessage()));
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(!migrationsModel.getObject().isEmpty());
+			}
+			
+		});
+		
+		add(new WebMarkupContainer("noMigrations") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(migrationsModel.getObject().isEmpty());
+			}
+			
+		});
+		
+		add(new Link<Void>("propose") {
+
+			@Override
+			public void onClick() {
+				movesModel.setObject(new ArrayList<>(getStorageMigrationManager().proposeMoves()));
+				proposed = true;
+			}
+			
+		});
+		
+		WebMarkupContainer proposals = new WebMarkupContainer("proposals") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(!movesModel.getObject().isEmpty());
+			}
+			
+		};
+		add(proposals);
+		
+		proposals.add(new ListView<StorageMove>("moves", movesModel) {
+
+			@Override
+			protected void populateItem(ListItem<StorageMove> item) {
+				StorageMove move = item.getModelObject();
+				item.add(new Label("project", getProjectPath(move.getProjectId())));
+				item.add(new Label("from", getServerName(move.getFromServerUUID())));
+				item.add(new Label("to", getServerName(move.getToServerUUID())));
+				item.add(new Label("size", FileUtils.byteCountToDisplaySize(move.getSize())));
+				item.add(new Label("accessRate", String.format("%.1f/min", move.getAccessRate())));
+				item.add(new Link<Void>("migrate") {
+
+					@Override
+					public void onClick() {
+						try {
+							getStorageMigrationManager().migrate(move.getProjectId(), move.getToServerUUID());
+							movesModel.getObject().remove(move);
+							getSession().success("Storage migration started");
+						} catch (ExplicitException e) {
+							getSession().error(e.getMessage());
+						}
+					}
+					
+				});
+			}
+
+		});
+		
+		add(new WebMarkupContainer("noMoves") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(proposed && movesModel.getObject().isEmpty());
+			}
+			
+		});
+	}
+	
+	private String getProjectPath(Long projectId) {
+		Project project = OneDev.getInstance(ProjectManager.class).get(projectId);
+		return project != null? project.getPath(): "#" + projectId;
+	}
+	
+	private String getServerName(UUID serverUUID) {
+		ClusterManager clusterManager = OneDev.getInstance(ClusterManager.class);
+		if (clusterManager.getServer(serverUUID, false) != null)
+			return clusterManager.getServerAddress(serverUUID);
+		else
+			return "<offline server>";
+	}
+
+	@Override
+	protected void onDetach() {
+		migrationsModel.detach();
+		super.onDetach();
+	}
+	
+	private StorageMigrationManager getStorageMigrationManager() {
+		return OneDev.getInstance(StorageMigrationManager.class);
+	}
+
+	@Override
+	protected Component newTopbarTitle(String componentId) {
+		return new Label(componentId, "Storage Balance");
+	}
+	
+}
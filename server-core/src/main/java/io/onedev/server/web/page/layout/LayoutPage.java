@@ -75,6 +75,7 @@ import io.onedev.server.web.page.admin.notificationtemplatesetting.IssueNotifica
 import io.onedev.server.web.page.admin.notificationtemplatesetting.PullRequestNotificationTemplatePage;
 import io.onedev.server.web.page.admin.performancesetting.PerformanceSettingPage;
 import io.onedev.server.web.page.admin.pluginsettings.ContributedAdministrationSettingPage;
+import io.onedev.server.web.page.admin.querystats.QueryStatsPage;
 import io.onedev.server.web.page.admin.rolemanagement.NewRolePage;
 import io.onedev.server.web.page.admin.rolemanagement.RoleDetailPage;
 import io.onedev.server.web.page.admin.rolemanagement.RoleListPage;
@@ -84,6 +85,7 @@ import io.onedev.server.web.page.admin.serverlog.ServerLogPage;
 import io.onedev.server.web.page.admin.servicedesk.ServiceDeskSettingPage;
 import io.onedev.server.web.page.admin.sshserverkey.SshServerKeyPage;
 import io.onedev.server.web.page.admin.ssosetting.SsoConnectorListPage;
+import io.onedev.server.web.page.admin.storagebalance.StorageBalancePage;
 import io.onedev.server.web.page.admin.systemsetting.SystemSettingPage;
 import io.onedev.server.web.page.admin.usermanagement.InvitationListPage;
 import io.onedev.server.web.page.admin.usermanagement.NewInvitationPage;
@@ -253,6 +255,10 @@ public abstract class LayoutPage extends BasePage {
 							ServerLogPage.class, new PageParameters()));
 					maintenanceMenuItems.add(new SidebarMenuItem.Page(null, "Server Information", 
 							ServerInformationPage.class, new PageParameters()));
+					maintenanceMenuItems.add(new SidebarMenuItem.Page(null, "Query Statistics", 
+							QueryStatsPage.class, new PageParameters()));
+					maintenanceMenuItems.add(new SidebarMenuItem.Page(null, "Storage Balance", 
+							StorageBalancePage.class, new PageParameters()));
 					
 					administrationMenuItems.add(new SidebarMenuItem.SubMenu(null, "System Maintenance", maintenanceMenuItems));
 					
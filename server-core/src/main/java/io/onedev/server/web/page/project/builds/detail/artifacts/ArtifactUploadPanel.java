@@ -4,8 +4,6 @@ import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -37,7 +35,6 @@ import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.util.lang.Bytes;
 import org.glassfish.jersey.client.ClientProperties;
 
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.k8shelper.KubernetesHelper;
 import io.onedev.server.OneDev;
@@ -45,7 +42,7 @@ import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.model.Build;
-import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.ArtifactStoreManager;
 import io.onedev.server.util.FilenameUtils;
 import io.onedev.server.web.component.dropzonefield.DropzoneField;
 import io.onedev.server.web.util.FileUpload;
@@ -121,16 +118,12 @@ public abstract class ArtifactUploadPanel extends Panel {
 
 							@Override
 							public Void call() throws Exception {
-								File artifactsDir = getBuild().getArtifactsDir();
-								StorageManager storageManager = OneDev.getInstance(StorageManager.class);
-								storageManager.initArtifactsDir(getBuild().getProject().getId(), getBuild().getNumber());
+								ArtifactStoreManager artifactStoreManager = OneDev.getInstance(ArtifactStoreManager.class);
 								for (FileUpload upload: uploads) {
 									String filePath = getArtifactPath(upload);
-									File file = new File(artifactsDir, filePath);
-									FileUtils.createDir(file.getParentFile());
-									try (	InputStream is = upload.getInputStream();
-											OutputStream os = new FileOutputStream(file)) {
-										IOUtils.copy(is, os);
+									try (InputStream is = upload.getInputStream()) {
+										artifactStoreManager.storeArtifact(getBuild().getProject().getId(), 
+												getBuild().getNumber(), filePath, is);
 									} finally {
 										upload.release();
 									}
@@ -330,6 +330,9 @@ public abstract class PullRequestDetailPage extends ProjectPage implements PullR
 	protected void onInitialize() {
 		super.onInitialize();
 
+		if (getPullRequest().isOpen() && getPullRequest().getMergePreview() == null)
+			getPullRequestManager().expediteCheck(getPullRequest());
+		
 		add(newRequestHead());
 		add(newStatusBarContainer());
 		WebMarkupContainer summaryContainer = new WebMarkupContainer("requestSummary") {
@@ -2,22 +2,25 @@ package io.onedev.server.web.resource;
 
 import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Invocation;
@@ -29,12 +32,22 @@ import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.tika.io.IOUtils;
 import org.apache.tika.mime.MimeTypes;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.ContentRangeType;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.server.HttpOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.ExplicitException;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
@@ -47,25 +60,33 @@ import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.FileInfo;
 
 public class ArtifactResource extends AbstractResource {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final Logger logger = LoggerFactory.getLogger(ArtifactResource.class);
+
 	private static final String PARAM_PROJECT = "project";
 
 	private static final String PARAM_BUILD = "build";
 
+	private static final long MAP_SIZE = 16*1024*1024;
+
+	// Jersey client is thread safe and expensive to create, share it for forwarding requests
+	private static final Client client = ClientBuilder.newClient();
+
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
 		PageParameters params = attributes.getParameters();
 
 		Long projectId = params.get(PARAM_PROJECT).toLong();
 		Long buildNumber = params.get(PARAM_BUILD).toOptionalLong();
-		
+
 		if (buildNumber == null)
 			throw new IllegalArgumentException("build number has to be specified");
-		
+
 		List<String> pathSegments = new ArrayList<>();
 
 		for (int i = 0; i < params.getIndexedCount(); i++) {
@@ -73,34 +94,40 @@ public class ArtifactResource extends AbstractResource {
 			if (pathSegment.length() != 0)
 				pathSegments.add(pathSegment);
 		}
-		
+
 		if (pathSegments.isEmpty())
 			throw new ExplicitException("Artifact path has to be specified");
-		
+
 		String artifactPath = Joiner.on("/").join(pathSegments);
-		
-		long artifactSize = -1;
-		if (!SecurityUtils.getUserId().equals(User.SYSTEM_ID)) {
-			Project project = OneDev.getInstance(ProjectManager.class).load(projectId);
-			
-			Build build = OneDev.getInstance(BuildManager.class).find(project, buildNumber);
-
-			if (build == null) {
-				String message = String.format("Unable to find build (project: %s, build number: %d)", 
-						project.getPath(), buildNumber);
-				throw new EntityNotFoundException(message);
-			}
-			
-			if (!SecurityUtils.canAccess(build))
-				throw new UnauthorizedException();
-			
-			artifactSize = getBuildManager().getArtifactSize(build, artifactPath);
+
+		Project project = OneDev.getInstance(ProjectManager.class).load(projectId);
+
+		Build build = OneDev.getInstance(BuildManager.class).find(project, buildNumber);
+
+		if (build == null) {
+			String message = String.format("Unable to find build (project: %s, build number: %d)",
+					project.getPath(), buildNumber);
+			throw new EntityNotFoundException(message);
 		}
-		
+
+		if (!SecurityUtils.getUserId().equals(User.SYSTEM_ID) && !SecurityUtils.canAccess(build))
+			throw new UnauthorizedException();
+
+		FileInfo artifactInfo = getBuildManager().getArtifactInfo(build, artifactPath);
+		String etag = "\"" + Long.toHexString(artifactInfo.getLength())
+				+ "-" + Long.toHexString(artifactInfo.getLastModified()) + "\"";
+
 		ResourceResponse response = new ResourceResponse();
 		response.getHeaders().addHeader("X-Content-Type-Options", "nosniff");
+		response.getHeaders().addHeader("ETag", etag);
 		response.setContentType(MimeTypes.OCTET_STREAM);
-		response.disableCaching();
+		response.setAcceptRange(ContentRangeType.BYTES);
+		response.setLastModified(Time.millis(artifactInfo.getLastModified()));
+
+		// Cache privately and revalidate almost immediately, as artifacts of running
+		// builds may still change
+		response.setCacheScope(WebResponse.CacheScope.PRIVATE);
+		response.setCacheDuration(Duration.ONE_SECOND);
 
 		String fileName = artifactPath;
 		if (fileName.contains("/"))
@@ -110,75 +137,138 @@ public class ArtifactResource extends AbstractResource {
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
-		
-		if (artifactSize != -1)
-			response.setContentLength(artifactSize);
-		
+
+		WebRequest request = (WebRequest) attributes.getRequest();
+		if (matches(request.getHeader("If-None-Match"), etag)) {
+			response.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setWriteCallback(new WriteCallback() {
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+				}
+
+			});
+			return response;
+		}
+
+		// Range of a changed artifact should not be resumed
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange != null && !ifRange.equals(etag)) {
+			RequestCycle.get().setMetaData(CONTENT_RANGE_STARTBYTE, null);
+			RequestCycle.get().setMetaData(CONTENT_RANGE_ENDBYTE, null);
+		}
+
+		response.setContentLength(artifactInfo.getLength());
+
 		response.setWriteCallback(new WriteCallback() {
 
 			@Override
 			public void writeData(Attributes attributes) throws IOException {
-				ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
-				UUID storageServerUUID = projectManager.getStorageServerUUID(projectId, true);
-				ClusterManager clusterManager = OneDev.getInstance(ClusterManager.class);
-				if (storageServerUUID.equals(clusterManager.getLocalServerUUID())) {
-					LockUtils.read(Build.getArtifactsLockName(projectId, buildNumber), new Callable<Void>() {
-
-						@Override
-						public Void call() throws Exception {
-							File artifactFile = new File(Build.getArtifactsDir(projectId, buildNumber), artifactPath);
-							try (
-									InputStream is = new BufferedInputStream(
-											new FileInputStream(artifactFile), BUFFER_SIZE);
-									OutputStream os = new BufferedOutputStream(
-											attributes.getResponse().getOutputStream(), BUFFER_SIZE);) {
-								IOUtils.copy(is, os);
+				Long startByte = RequestCycle.get().getMetaData(CONTENT_RANGE_STARTBYTE);
+				Long endByte = RequestCycle.get().getMetaData(CONTENT_RANGE_ENDBYTE);
+				boolean ranged = startByte != null;
+				if (startByte == null)
+					startByte = 0L;
+				if (endByte == null || endByte == -1)
+					endByte = artifactInfo.getLength() - 1;
+				long start = startByte;
+				long count = endByte - startByte + 1;
+
+				HttpServletResponse containerResponse = (HttpServletResponse) attributes.getResponse().getContainerResponse();
+				try {
+					ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
+					UUID storageServerUUID = projectManager.getStorageServerUUID(projectId, true);
+					ClusterManager clusterManager = OneDev.getInstance(ClusterManager.class);
+					if (storageServerUUID.equals(clusterManager.getLocalServerUUID())) {
+						/*
+						 * Only open the file while holding the read lock. Content is transferred
+						 * from the opened channel afterwards, so that slow downloads do not block
+						 * artifact writers
+						 */
+						try (FileChannel channel = LockUtils.read(Build.getArtifactsLockName(projectId, buildNumber), new Callable<FileChannel>() {
+
+							@Override
+							public FileChannel call() throws Exception {
+								File artifactFile = new File(Build.getArtifactsDir(projectId, buildNumber), artifactPath);
+								return FileChannel.open(artifactFile.toPath(), StandardOpenOption.READ);
 							}
-							return null;
+
+						})) {
+							transfer(channel, start, count, containerResponse.getOutputStream());
 						}
-						
-					});
-				} else {
-	    			Client client = ClientBuilder.newClient();
-	    			try {
-	    				CharSequence path = RequestCycle.get().urlFor(
-	    						new ArtifactResourceReference(), 
-	    						ArtifactResource.paramsOf(projectId, buildNumber, artifactPath));
-	    				String storageServerUrl = clusterManager.getServerUrl(storageServerUUID);
-	    				
-	    				WebTarget target = client.target(storageServerUrl).path(path.toString());
-	    				Invocation.Builder builder =  target.request();
-	    				builder.header(HttpHeaders.AUTHORIZATION, 
-	    						KubernetesHelper.BEARER + " " + clusterManager.getCredentialValue());
-	    				
-	    				try (Response response = builder.get()) {
-	    					KubernetesHelper.checkStatus(response);
-	    					try (
-	    							InputStream is = new BufferedInputStream(response.readEntity(InputStream.class), BUFFER_SIZE);
-	    							OutputStream os = new BufferedOutputStream(attributes.getResponse().getOutputStream(), BUFFER_SIZE)) {
-	    						IOUtils.copy(is, os);
-	    					} 
-	    				} 
-	    			} finally {
-	    				client.close();
-	    			}
+					} else {
+						CharSequence path = RequestCycle.get().urlFor(
+								new ArtifactResourceReference(),
+								ArtifactResource.paramsOf(projectId, buildNumber, artifactPath));
+						String storageServerUrl = clusterManager.getServerUrl(storageServerUUID);
+
+						WebTarget target = client.target(storageServerUrl).path(path.toString());
+						Invocation.Builder builder =  target.request();
+						builder.header(HttpHeaders.AUTHORIZATION,
+								KubernetesHelper.BEARER + " " + clusterManager.getCredentialValue());
+						if (ranged)
+							builder.header("Range", "bytes=" + start + "-" + (start+count-1));
+
+						try (Response response = builder.get()) {
+							if (response.getStatus() != HttpServletResponse.SC_PARTIAL_CONTENT)
+								KubernetesHelper.checkStatus(response);
+							try (InputStream is = response.readEntity(InputStream.class)) {
+								IOUtils.copy(is, containerResponse.getOutputStream());
+							}
+						}
+					}
+				} catch (Exception e) {
+					EofException eofException = ExceptionUtils.find(e, EofException.class);
+					if (eofException != null)
+						logger.trace("EOF while writing data", eofException);
+					else
+						throw ExceptionUtils.unchecked(e);
 				}
-			}			
-			
+			}
+
 		});
 
 		return response;
 	}
-	
+
+	private void transfer(FileChannel channel, long start, long count, OutputStream os) throws IOException {
+		long end = start + count;
+		if (os instanceof HttpOutput) {
+			// Memory mapped regions are written to socket directly without being copied into heap
+			HttpOutput httpOutput = (HttpOutput) os;
+			for (long position = start; position < end; position += MAP_SIZE)
+				httpOutput.write(channel.map(MapMode.READ_ONLY, position, Math.min(MAP_SIZE, end-position)));
+		} else {
+			WritableByteChannel target = Channels.newChannel(os);
+			long position = start;
+			while (position < end) {
+				long transferred = channel.transferTo(position, Math.min(BUFFER_SIZE, end-position), target);
+				if (transferred <= 0)
+					throw new IOException("Unexpected end of artifact file");
+				position += transferred;
+			}
+		}
+	}
+
+	private boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch != null) {
+			for (String each: Splitter.on(",").trimResults().split(ifNoneMatch)) {
+				if (each.equals("*") || each.equals(etag) || each.equals("W/" + etag))
+					return true;
+			}
+		}
+		return false;
+	}
+
 	private BuildManager getBuildManager() {
 		return OneDev.getInstance(BuildManager.class);
 	}
-	
+
 	public static PageParameters paramsOf(Long projectId, Long buildNumber, String path) {
 		PageParameters params = new PageParameters();
 		params.set(PARAM_PROJECT, projectId);
 		params.set(PARAM_BUILD, buildNumber);
-		
+
 		int index = 0;
 		for (String segment: Splitter.on("/").split(path)) {
 			params.set(index, segment);
@@ -14,6 +14,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.eclipse.jgit.lib.FileMode;
@@ -41,10 +43,12 @@ import io.onedev.server.git.exception.NotTreeException;
 import io.onedev.server.git.exception.ObjectAlreadyExistsException;
 import io.onedev.server.git.exception.ObjectNotFoundException;
 import io.onedev.server.git.exception.ObsoleteCommitException;
+import io.onedev.server.infomanager.CompareInfoManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.administration.GpgSetting;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.storage.StorageMigrationManager;
 
 public class DefaultGitServiceCommitTest extends AbstractGitTest {
 
@@ -80,9 +84,21 @@ public class DefaultGitServiceCommitTest extends AbstractGitTest {
 		var clusterManager = mock(ClusterManager.class);
 		var storageManager = mock(StorageManager.class);
 		var listenerRegistry = mock(ListenerRegistry.class);
+		var compareInfoManager = mock(CompareInfoManager.class);
+		var executorService = mock(ExecutorService.class);
+		var storageMigrationManager = mock(StorageMigrationManager.class);
+		when(storageMigrationManager.writeStorage(any(), any())).thenAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return invocation.getArgument(1, Callable.class).call();
+			}
+			
+		});
 		
 		gitService = new DefaultGitService(projectManager, settingManager, 
-				sessionManager, clusterManager, storageManager, listenerRegistry);
+				sessionManager, clusterManager, storageManager, listenerRegistry, 
+				compareInfoManager, executorService, storageMigrationManager);
 	}
 	
 	@Test
@@ -0,0 +1,106 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultCompareInfoManagerTest {
+
+	private static final Long PROJECT_ID = 1L;
+
+	private File tempDir;
+
+	private DefaultCompareInfoManager manager;
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+		manager = new DefaultCompareInfoManager(mock(StorageManager.class), mock(ProjectManager.class),
+				mock(ClusterManager.class)) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected File getEnvDir(String envKey) {
+				File envDir = new File(tempDir, envKey);
+				FileUtils.createDir(envDir);
+				return envDir;
+			}
+
+			@Override
+			protected long getMaxCachedBytes() {
+				// Room for three merge bases with 40 bytes key and 20 bytes value
+				return 180;
+			}
+
+		};
+	}
+
+	@After
+	public void after() {
+		manager.removeEnv(PROJECT_ID.toString());
+		FileUtils.deleteDir(tempDir);
+	}
+
+	@Test
+	public void shouldDecodeEncodedChangedFiles() {
+		Collection<String> changedFiles = Sets.newHashSet("a.txt", "dir/中文.java", "dir/sub/b c");
+		assertEquals(changedFiles, DefaultCompareInfoManager.decodeChangedFiles(
+				DefaultCompareInfoManager.encodeChangedFiles(changedFiles)));
+		assertEquals(new HashSet<>(), DefaultCompareInfoManager.decodeChangedFiles(
+				DefaultCompareInfoManager.encodeChangedFiles(new HashSet<>())));
+	}
+
+	@Test
+	public void shouldIgnoreOrderOfCommitsForMergeBase() {
+		ObjectId commit1 = newCommitId(1);
+		ObjectId commit2 = newCommitId(2);
+		assertArrayEquals(DefaultCompareInfoManager.getMergeBaseKey(commit1, commit2),
+				DefaultCompareInfoManager.getMergeBaseKey(commit2, commit1));
+
+		manager.cacheMergeBase(PROJECT_ID, commit2, commit1, newCommitId(3));
+		assertEquals(newCommitId(3), manager.getMergeBase(PROJECT_ID, commit1, commit2));
+		assertNull(manager.getMergeBase(PROJECT_ID, commit1, newCommitId(3)));
+	}
+
+	@Test
+	public void shouldEvictEarliestPairsWhenExceedingBytes() {
+		for (int i=0; i<4; i++)
+			manager.cacheMergeBase(PROJECT_ID, newCommitId(i), newCommitId(100+i), newCommitId(200+i));
+
+		assertNull(manager.getMergeBase(PROJECT_ID, newCommitId(0), newCommitId(100)));
+		for (int i=1; i<4; i++)
+			assertEquals(newCommitId(200+i), manager.getMergeBase(PROJECT_ID, newCommitId(i), newCommitId(100+i)));
+
+		Collection<String> changedFiles = Sets.newHashSet("a.txt");
+		manager.cacheChangedFiles(PROJECT_ID, newCommitId(1), newCommitId(2), changedFiles);
+		assertEquals(changedFiles, manager.getChangedFiles(PROJECT_ID, newCommitId(1), newCommitId(2)));
+		assertNull(manager.getMergeBase(PROJECT_ID, newCommitId(1), newCommitId(101)));
+		assertNotNull(manager.getMergeBase(PROJECT_ID, newCommitId(3), newCommitId(103)));
+	}
+
+	private ObjectId newCommitId(int value) {
+		byte[] bytes = new byte[20];
+		bytes[19] = (byte) value;
+		return ObjectId.fromRaw(bytes);
+	}
+
+}
@@ -0,0 +1,72 @@
+package io.onedev.server.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.ExplicitException;
+
+public class JobLogBatchTest {
+
+	@Test
+	public void shouldDecodeEncodedBatch() {
+		JobLogBatch batch = new JobLogBatch("token", Lists.newArrayList(
+				new JobLogLine(new Date(1000), null, "hello"), 
+				new JobLogLine(new Date(2000), "session", "\u001b[31m世界\u001b[0m")));
+		byte[] bytes = batch.encode();
+		byte[] padded = new byte[bytes.length + 4];
+		System.arraycopy(bytes, 0, padded, 2, bytes.length);
+		
+		assertTrue(JobLogBatch.isBatch(padded, 2, bytes.length));
+		JobLogBatch decoded = JobLogBatch.decode(padded, 2, bytes.length);
+		assertEquals("token", decoded.getJobToken());
+		assertEquals(2, decoded.getLines().size());
+		assertEquals(1000, decoded.getLines().get(0).getDate().getTime());
+		assertNull(decoded.getLines().get(0).getSessionId());
+		assertEquals("hello", decoded.getLines().get(0).getMessage());
+		assertEquals("session", decoded.getLines().get(1).getSessionId());
+		assertEquals("\u001b[31m世界\u001b[0m", decoded.getLines().get(1).getMessage());
+	}
+	
+	@Test
+	public void shouldRejectMalformedBatch() {
+		byte[] bytes = new JobLogBatch("token", Lists.newArrayList(
+				new JobLogLine(new Date(1000), null, "hello"))).encode();
+		
+		byte[] hugeLineCount = bytes.clone();
+		int lineCountOffset = 5 + 1 + Integer.BYTES + "token".length();
+		hugeLineCount[lineCountOffset] = 0x7F;
+		assertRejected(hugeLineCount, hugeLineCount.length);
+		
+		byte[] hugeMessageLength = bytes.clone();
+		hugeMessageLength[bytes.length - "hello".length() - Integer.BYTES] = 0x7F;
+		assertRejected(hugeMessageLength, hugeMessageLength.length);
+		
+		assertRejected(bytes, bytes.length - 1);
+	}
+	
+	private void assertRejected(byte[] bytes, int count) {
+		try {
+			JobLogBatch.decode(bytes, 0, count);
+			fail("Malformed batch should be rejected");
+		} catch (ExplicitException e) {
+		}
+	}
+	
+	@Test
+	public void shouldNotTreatRegularMessageAsBatch() {
+		byte[] bytes = "JOB_LOG:token::message".getBytes(StandardCharsets.UTF_8);
+		assertFalse(JobLogBatch.isBatch(bytes, 0, bytes.length));
+		assertFalse(JobLogBatch.isBatch(new byte[] {(byte)0xFF}, 0, 1));
+	}
+	
+}
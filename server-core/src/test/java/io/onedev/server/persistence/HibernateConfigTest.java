@@ -0,0 +1,28 @@
+package io.onedev.server.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Properties;
+
+import org.hibernate.cfg.Environment;
+import org.junit.Test;
+
+public class HibernateConfigTest {
+
+	@Test
+	public void shouldEnableBatchingByDefault() {
+		HibernateConfig config = new HibernateConfig(new Properties());
+		assertEquals("50", config.getProperty(Environment.STATEMENT_BATCH_SIZE));
+		assertEquals("true", config.getProperty(Environment.ORDER_INSERTS));
+		assertEquals("true", config.getProperty(Environment.ORDER_UPDATES));
+	}
+
+	@Test
+	public void shouldKeepSpecifiedBatchSize() {
+		Properties props = new Properties();
+		props.setProperty(Environment.STATEMENT_BATCH_SIZE, "0");
+		HibernateConfig config = new HibernateConfig(props);
+		assertEquals("0", config.getProperty(Environment.STATEMENT_BATCH_SIZE));
+	}
+	
+}
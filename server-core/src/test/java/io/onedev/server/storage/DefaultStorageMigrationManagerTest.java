@@ -0,0 +1,163 @@
+package io.onedev.server.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.pubsub.ListenerRegistry;
+import io.onedev.server.storage.DefaultStorageMigrationManager.ProjectLoad;
+
+public class DefaultStorageMigrationManagerTest {
+
+	private static final Long PROJECT_ID = 1L;
+
+	private static final UUID SERVER1 = new UUID(0, 1);
+
+	private static final UUID SERVER2 = new UUID(0, 2);
+
+	private File tempDir;
+
+	private DefaultStorageMigrationManager manager;
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+		StorageManager storageManager = mock(StorageManager.class);
+		when(storageManager.getProjectDir(PROJECT_ID)).thenReturn(tempDir);
+		manager = new DefaultStorageMigrationManager(mock(ProjectManager.class), storageManager,
+				mock(SettingManager.class), mock(ClusterManager.class), mock(ListenerRegistry.class),
+				mock(ExecutorService.class), mock(BuildManager.class));
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(tempDir);
+	}
+
+	@Test
+	public void shouldNotProposeMovesWithinBalanceThreshold() {
+		Map<UUID, List<ProjectLoad>> loads = new HashMap<>();
+		loads.put(SERVER1, Lists.newArrayList(new ProjectLoad(1L, 52, 0)));
+		loads.put(SERVER2, Lists.newArrayList(new ProjectLoad(2L, 48, 0)));
+		assertTrue(DefaultStorageMigrationManager.proposeMoves(loads, new HashSet<>()).isEmpty());
+	}
+
+	@Test
+	public void shouldMoveProjectsClosestToHalfOfGap() {
+		List<StorageMove> moves = DefaultStorageMigrationManager.proposeMoves(newLoads(), new HashSet<>());
+		assertEquals(2, moves.size());
+		assertEquals(Long.valueOf(2L), moves.get(0).getProjectId());
+		assertEquals(SERVER1, moves.get(0).getFromServerUUID());
+		assertEquals(SERVER2, moves.get(0).getToServerUUID());
+		assertEquals(Long.valueOf(3L), moves.get(1).getProjectId());
+	}
+
+	@Test
+	public void shouldNotMoveExcludedProjects() {
+		List<StorageMove> moves = DefaultStorageMigrationManager.proposeMoves(newLoads(), Sets.newHashSet(2L));
+		assertEquals(2, moves.size());
+		assertEquals(Long.valueOf(1L), moves.get(0).getProjectId());
+		
+		// Moved project is not moved back
+		assertEquals(Long.valueOf(4L), moves.get(1).getProjectId());
+		assertEquals(SERVER2, moves.get(1).getFromServerUUID());
+		
+		assertTrue(DefaultStorageMigrationManager.proposeMoves(newLoads(), Sets.newHashSet(1L, 2L, 3L)).isEmpty());
+	}
+
+	@Test
+	public void shouldCapNumberOfProposals() {
+		Map<UUID, List<ProjectLoad>> loads = new HashMap<>();
+		List<ProjectLoad> loadsOfServer1 = new ArrayList<>();
+		for (long i=1; i<=100; i++)
+			loadsOfServer1.add(new ProjectLoad(i, 1, 1));
+		loads.put(SERVER1, loadsOfServer1);
+		loads.put(SERVER2, new ArrayList<>());
+
+		List<StorageMove> moves = DefaultStorageMigrationManager.proposeMoves(loads, new HashSet<>());
+		assertEquals(DefaultStorageMigrationManager.MAX_PROPOSALS, moves.size());
+		Set<Long> movedProjectIds = new HashSet<>();
+		for (StorageMove move: moves) {
+			assertEquals(SERVER1, move.getFromServerUUID());
+			assertTrue(movedProjectIds.add(move.getProjectId()));
+		}
+	}
+
+	@Test
+	public void shouldFrameSentFiles() throws IOException {
+		FileUtils.createDir(new File(tempDir, "git"));
+		FileUtils.createDir(new File(tempDir, "info"));
+		FileUtils.writeFile(new File(tempDir, "git/packed-refs"), "packed");
+		FileUtils.writeFile(new File(tempDir, "info/empty"), "");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		manager.sendFiles(PROJECT_ID, Lists.newArrayList("git/packed-refs", "git/missing", "info/empty"), baos);
+
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			assertEquals("git/packed-refs", is.readUTF());
+			assertEquals(6, is.readLong());
+			assertEquals(new File(tempDir, "git/packed-refs").lastModified(), is.readLong());
+			byte[] content = new byte[6];
+			is.readFully(content);
+			assertArrayEquals("packed".getBytes(UTF_8), content);
+
+			assertEquals("git/missing", is.readUTF());
+			assertEquals(-1, is.readLong());
+
+			assertEquals("info/empty", is.readUTF());
+			assertEquals(0, is.readLong());
+			is.readLong();
+			assertEquals(-1, is.read());
+		}
+	}
+
+	@Test
+	public void shouldRejectPathsOutsideProject() {
+		try {
+			manager.sendFiles(PROJECT_ID, Lists.newArrayList("git/../../secret"), new ByteArrayOutputStream());
+			fail();
+		} catch (ExplicitException e) {
+		}
+	}
+
+	// Weights of projects are 0.6, 0.25, 0.05 on server1 and 0.1 on server2
+	private Map<UUID, List<ProjectLoad>> newLoads() {
+		Map<UUID, List<ProjectLoad>> loads = new HashMap<>();
+		loads.put(SERVER1, Lists.newArrayList(
+				new ProjectLoad(1L, 60, 0), new ProjectLoad(2L, 25, 0), new ProjectLoad(3L, 5, 0)));
+		loads.put(SERVER2, Lists.newArrayList(new ProjectLoad(4L, 10, 0)));
+		return loads;
+	}
+
+}
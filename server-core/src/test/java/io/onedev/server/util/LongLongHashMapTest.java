@@ -0,0 +1,42 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongLongHashMapTest {
+
+	@Test
+	public void test() {
+		LongLongHashMap map = new LongLongHashMap();
+		assertTrue(map.put(1, 100));
+		assertFalse(map.put(1, 101));
+		assertEquals(101, map.get(1, -1));
+		assertEquals(-1, map.get(2, -1));
+		assertTrue(map.remove(1));
+		assertFalse(map.remove(1));
+		assertEquals(0, map.size());
+		
+		Random random = new Random(1);
+		Map<Long, Long> expected = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			long key = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key) != null, map.remove(key));
+			} else {
+				assertEquals(expected.put(key, (long)i) == null, map.put(key, i));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (long key = 0; key < 5000; key++) {
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+			if (expected.containsKey(key))
+				assertEquals((long)expected.get(key), map.get(key, -1));
+		}
+	}
+	
+}
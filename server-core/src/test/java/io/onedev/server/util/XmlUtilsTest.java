@@ -0,0 +1,59 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.dom4j.DocumentException;
+import org.dom4j.Element;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class XmlUtilsTest {
+
+	@Test
+	public void testReadElements() throws IOException, DocumentException {
+		File file = File.createTempFile("report", ".xml");
+		try {
+			FileUtils.writeStringToFile(file, ""
+					+ "<?xml version=\"1.0\"?>\n"
+					+ "<!DOCTYPE pmd SYSTEM \"http://localhost/pmd.dtd\">\n"
+					+ "<pmd xmlns=\"http://pmd.sourceforge.net/report/2.0.0\">\n"
+					+ "  <file name=\"a.java\">\n"
+					+ "    <violation beginline=\"1\">unused &amp; <![CDATA[<private>]]></violation>\n"
+					+ "  </file>\n"
+					+ "  <error filename=\"b.java\"><file name=\"nested.java\"/></error>\n"
+					+ "  <file name=\"c.java\"/>\n"
+					+ "</pmd>", StandardCharsets.UTF_8);
+
+			List<Element> elements = new ArrayList<>();
+			XmlUtils.readElements(file, Sets.newHashSet("file"), elements::add);
+			assertEquals(2, elements.size());
+			assertEquals("a.java", elements.get(0).attributeValue("name"));
+			Element violationElement = elements.get(0).element("violation");
+			assertEquals("1", violationElement.attributeValue("beginline"));
+			assertEquals("unused & <private>", violationElement.getText());
+			assertEquals("c.java", elements.get(1).attributeValue("name"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected=DocumentException.class)
+	public void testReadInvalidElements() throws IOException, DocumentException {
+		File file = File.createTempFile("report", ".xml");
+		try {
+			FileUtils.writeStringToFile(file, "<pmd><file name=\"a.java\"></pmd>", StandardCharsets.UTF_8);
+			XmlUtils.readElements(file, Sets.newHashSet("file"), it -> {});
+		} finally {
+			file.delete();
+		}
+	}
+
+}
@@ -2,12 +2,16 @@ package io.onedev.server.util.diff;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
 
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
 public class DiffUtilsTest extends DiffUtils {
 
 	@Test
@@ -53,5 +57,45 @@ public class DiffUtilsTest extends DiffUtils {
 		assertTrue(DiffUtils.isVisible(diffBlocks, false, 17, 3));
 		assertFalse(DiffUtils.isVisible(diffBlocks, false, 18, 3));
 	}
+	
+	@Test
+	public void testDiff() {
+		List<String> oldLines = Lists.newArrayList("a", "b", "c", "d", "e", "f");
+		List<String> newLines = Lists.newArrayList("a", "x", "c", "d", "f", "g");
+		
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		assertEquals(7, diffBlocks.size());
+		assertEquals(Operation.EQUAL, diffBlocks.get(0).getOperation());
+		assertEquals(Operation.DELETE, diffBlocks.get(1).getOperation());
+		assertEquals(Lists.newArrayList("b"), diffBlocks.get(1).getElements());
+		assertEquals(Operation.INSERT, diffBlocks.get(2).getOperation());
+		assertEquals(Lists.newArrayList("x"), diffBlocks.get(2).getElements());
+		assertEquals(1, diffBlocks.get(2).getOldStart());
+		assertEquals(1, diffBlocks.get(2).getNewStart());
+		assertEquals(Lists.newArrayList("c", "d"), diffBlocks.get(3).getElements());
+		assertEquals(Lists.newArrayList("e"), diffBlocks.get(4).getElements());
+		assertEquals(Operation.INSERT, diffBlocks.get(6).getOperation());
+		assertEquals(Lists.newArrayList("g"), diffBlocks.get(6).getElements());
+		assertEquals(6, diffBlocks.get(6).getOldStart());
+		assertEquals(5, diffBlocks.get(6).getNewStart());
+	}
+	
+	@Test
+	public void testDiffLargeInput() {
+		List<String> oldLines = new ArrayList<>();
+		List<String> newLines = new ArrayList<>();
+		for (int i=0; i<100000; i++) {
+			oldLines.add("line " + i);
+			if (i % 1000 == 0)
+				newLines.add("changed line " + i);
+			else
+				newLines.add("line " + i);
+		}
+		
+		Map<Integer, Integer> lineMapping = DiffUtils.mapLines(oldLines, newLines);
+		assertEquals(99900, lineMapping.size());
+		assertEquals(Integer.valueOf(99999), lineMapping.get(99999));
+		assertNull(lineMapping.get(1000));
+	}
 
 }
@@ -10,9 +10,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.lang.SerializationUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.onedev.server.model.Build;
 
 public class CoverageReport implements Serializable {
@@ -25,6 +30,12 @@ public class CoverageReport implements Serializable {
 	
 	private static final String FILE_NAME = "report.ser";
 	
+	private static final int CACHE_SIZE = 20;
+	
+	private static final Cache<String, CoverageReport> cache = CacheBuilder.newBuilder()
+			.maximumSize(CACHE_SIZE)
+			.build();
+	
 	private final CoverageInfo coverages;
 	
 	private final List<PackageCoverageInfo> packageCoverages;
@@ -42,11 +53,25 @@ public class CoverageReport implements Serializable {
 		return packageCoverages;
 	}
 	
+	/**
+	 * Read report from specified directory. Recently read reports are cached until report 
+	 * file is modified, so returned report should not be modified
+	 */
 	public static CoverageReport readFrom(File reportDir) {
 		File reportFile = new File(reportDir, FILE_NAME);
-		try (InputStream is = new BufferedInputStream(new FileInputStream(reportFile))) {
-			return (CoverageReport) SerializationUtils.deserialize(is);
-		} catch (IOException e) {
+		String cacheKey = reportFile.getAbsolutePath() + ":" + reportFile.lastModified() + ":" + reportFile.length();
+		try {
+			return cache.get(cacheKey, new Callable<CoverageReport>() {
+
+				@Override
+				public CoverageReport call() throws Exception {
+					try (InputStream is = new BufferedInputStream(new FileInputStream(reportFile))) {
+						return (CoverageReport) SerializationUtils.deserialize(is);
+					}
+				}
+				
+			});
+		} catch (ExecutionException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -283,7 +283,6 @@ public class CoverageReportPage extends BuildReportPage {
 		PageableListView<NamedCoverageInfo> itemsView = 
 				new PageableListView<NamedCoverageInfo>("items", new LoadableDetachableModel<List<NamedCoverageInfo>>() {
 
-			@SuppressWarnings("unchecked")
 			@Override
 			protected List<NamedCoverageInfo> load() {
 				if (filterPatterns != null) {
@@ -304,7 +303,9 @@ public class CoverageReportPage extends BuildReportPage {
 								.filter(it->filterPatterns.get().matches(matcher, it.getName()))
 								.collect(Collectors.toList());
 					}
-					coverages.sort(new Comparator<CoverageInfo>() {
+					// Sort a copy as report data is shared via cache
+					List<NamedCoverageInfo> sortedCoverages = new ArrayList<>(coverages);
+					sortedCoverages.sort(new Comparator<CoverageInfo>() {
 
 						@Override
 						public int compare(CoverageInfo o1, CoverageInfo o2) {
@@ -312,7 +313,7 @@ public class CoverageReportPage extends BuildReportPage {
 						}
 						
 					});
-					return (List<NamedCoverageInfo>) coverages;
+					return sortedCoverages;
 				} else {
 					return new ArrayList<>();
 				}
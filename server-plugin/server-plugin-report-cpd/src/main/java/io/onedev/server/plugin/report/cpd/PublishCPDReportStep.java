@@ -2,33 +2,34 @@ package io.onedev.server.plugin.report.cpd;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import javax.validation.constraints.NotEmpty;
 import org.unbescape.html.HtmlEscape;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
 
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.TaskLogger;
+import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.buildspec.step.StepGroup;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.codequality.CodeProblem.Severity;
 import io.onedev.server.git.BlobIdent;
+import io.onedev.server.git.service.GitService;
 import io.onedev.server.model.Build;
 import io.onedev.server.plugin.report.problem.ProblemReport;
 import io.onedev.server.plugin.report.problem.PublishProblemReportStep;
@@ -67,85 +68,96 @@ public class PublishCPDReportStep extends PublishProblemReportStep {
 	@Override
 	protected ProblemReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
 
-		List<CodeProblem> problems = new ArrayList<>();
-		Map<String, List<CodeProblem>> problemsByFile = new HashMap<>();
+		List<List<CodeDuplication>> duplicationGroups = new ArrayList<>();
+		Set<String> blobPaths = new HashSet<>();
 		for (File file: getPatternSet().listFiles(inputDir)) {
 			String relativePath = file.getAbsolutePath().substring(baseLen);
 			logger.log("Processing CPD report '" + relativePath + "'...");
 			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				Document doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-
-				for (Element duplicationElement: doc.getRootElement().elements("duplication")) {
+				List<Element> elements = new ArrayList<>();
+				XmlUtils.readElements(file, Sets.newHashSet("duplication"), elements::add);
+				for (Element duplicationElement: elements) {
 					List<CodeDuplication> duplications = new ArrayList<>();
 					for (Element fileElement: duplicationElement.elements("file")) {
 						String filePath = fileElement.attributeValue("path");
 						if (build.getJobWorkspace() != null && filePath.startsWith(build.getJobWorkspace())) {
 							String blobPath = filePath.substring(build.getJobWorkspace().length()+1);
-							BlobIdent blobIdent = new BlobIdent(build.getCommitHash(), blobPath);
-							if (build.getProject().getBlob(blobIdent, false) != null) {
-								int beginLine = Integer.parseInt(fileElement.attributeValue("line"));
-								int endLine = Integer.parseInt(fileElement.attributeValue("endline"));
-								int beginColumn = Integer.parseInt(fileElement.attributeValue("column"));
-								int endColumn = Integer.parseInt(fileElement.attributeValue("endcolumn"));
-								PlanarRange range = new PlanarRange(beginLine-1, beginColumn-1, endLine-1, endColumn);
-								CodeDuplication duplication = new CodeDuplication();
-								duplication.blobPath = blobPath;
-								duplication.range = range;
-								duplications.add(duplication);
-							}
+							int beginLine = Integer.parseInt(fileElement.attributeValue("line"));
+							int endLine = Integer.parseInt(fileElement.attributeValue("endline"));
+							int beginColumn = Integer.parseInt(fileElement.attributeValue("column"));
+							int endColumn = Integer.parseInt(fileElement.attributeValue("endcolumn"));
+							PlanarRange range = new PlanarRange(beginLine-1, beginColumn-1, endLine-1, endColumn);
+							CodeDuplication duplication = new CodeDuplication();
+							duplication.blobPath = blobPath;
+							duplication.range = range;
+							duplications.add(duplication);
 						}
 					}
 					if (duplications.size() >= 2) {
-						for (int i=0; i<duplications.size(); i++) {
-							CodeDuplication duplication = duplications.get(i);
-							CodeDuplication duplicateWith;
-							if (i == duplications.size()-1)
-								duplicateWith = duplications.get(0);
-							else
-								duplicateWith = duplications.get(i+1);
-							
-							PageParameters params = new PageParameters();
-							ProjectBlobPage.State state = new ProjectBlobPage.State();
-							state.blobIdent = new BlobIdent();
-							state.problemReport = getReportName();
-							state.position = BlobRenderer.getSourcePosition(duplicateWith.range); 
-							
-							params.set(0, build.getCommitHash());
-							List<String> pathSegments = Splitter.on("/").splitToList(duplicateWith.blobPath);
-							for (int j=0; j<pathSegments.size(); j++) 
-								params.set(j+1, pathSegments.get(j));
-							
-							ProjectBlobPage.fillParams(params, state);
-							
-							PageParametersEncoder paramsEncoder = new PageParametersEncoder();
-							String url  = "/projects/" + build.getProject().getId() + "/blob/" + paramsEncoder.encodePageParameters(params);
-							String message = String.format(""
-									+ "Duplicated with '%s' at <a href='%s'>line %s - %s</a>", 
-									HtmlEscape.escapeHtml5(duplicateWith.blobPath), url, duplicateWith.range.getFromRow()+1, 
-									duplicateWith.range.getToRow()+1);
-							CodeProblem problem = new CodeProblem(Severity.LOW, "Code Duplication", duplication.blobPath, 
-									duplication.range, message);
-							problems.add(problem);
-							List<CodeProblem> problemsOfFile = problemsByFile.get(problem.getBlobPath());
-							if (problemsOfFile == null) {
-								problemsOfFile = new ArrayList<>();
-								problemsByFile.put(problem.getBlobPath(), problemsOfFile);
-							}
-							problemsOfFile.add(problem);
-						}
+						duplicationGroups.add(duplications);
+						for (CodeDuplication duplication: duplications)
+							blobPaths.add(duplication.blobPath);
 					}
 				}
 			} catch (DocumentException e) {
-				logger.warning("Ignored SpotBugs report '" + relativePath + "' as it is not a valid XML");
+				logger.warning("Ignored CPD report '" + relativePath + "' as it is not a valid XML");
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
 		
+		// Check existence of all involved files in one go before pairing duplications
+		Set<String> existingBlobPaths = OneDev.getInstance(GitService.class)
+				.filterFiles(build.getProject(), build.getCommitId(), blobPaths);
+		
+		List<CodeProblem> problems = new ArrayList<>();
+		Map<String, List<CodeProblem>> problemsByFile = new HashMap<>();
+		for (List<CodeDuplication> duplicationGroup: duplicationGroups) {
+			List<CodeDuplication> duplications = duplicationGroup.stream()
+					.filter(it -> existingBlobPaths.contains(it.blobPath))
+					.collect(Collectors.toList());
+			if (duplications.size() >= 2) {
+				for (int i=0; i<duplications.size(); i++) {
+					CodeDuplication duplication = duplications.get(i);
+					CodeDuplication duplicateWith;
+					if (i == duplications.size()-1)
+						duplicateWith = duplications.get(0);
+					else
+						duplicateWith = duplications.get(i+1);
+					
+					PageParameters params = new PageParameters();
+					ProjectBlobPage.State state = new ProjectBlobPage.State();
+					state.blobIdent = new BlobIdent();
+					state.problemReport = getReportName();
+					state.position = BlobRenderer.getSourcePosition(duplicateWith.range); 
+					
+					params.set(0, build.getCommitHash());
+					List<String> pathSegments = Splitter.on("/").splitToList(duplicateWith.blobPath);
+					for (int j=0; j<pathSegments.size(); j++) 
+						params.set(j+1, pathSegments.get(j));
+					
+					ProjectBlobPage.fillParams(params, state);
+					
+					PageParametersEncoder paramsEncoder = new PageParametersEncoder();
+					String url  = "/projects/" + build.getProject().getId() + "/blob/" + paramsEncoder.encodePageParameters(params);
+					String message = String.format(""
+							+ "Duplicated with '%s' at <a href='%s'>line %s - %s</a>", 
+							HtmlEscape.escapeHtml5(duplicateWith.blobPath), url, duplicateWith.range.getFromRow()+1, 
+							duplicateWith.range.getToRow()+1);
+					CodeProblem problem = new CodeProblem(Severity.LOW, "Code Duplication", duplication.blobPath, 
+							duplication.range, message);
+					problems.add(problem);
+					List<CodeProblem> problemsOfFile = problemsByFile.get(problem.getBlobPath());
+					if (problemsOfFile == null) {
+						problemsOfFile = new ArrayList<>();
+						problemsByFile.put(problem.getBlobPath(), problemsOfFile);
+					}
+					problemsOfFile.add(problem);
+				}
+			}
+		}
+		
 		for (Map.Entry<String, List<CodeProblem>> entry: problemsByFile.entrySet())
 			writeFileProblems(build, entry.getKey(), entry.getValue());
 
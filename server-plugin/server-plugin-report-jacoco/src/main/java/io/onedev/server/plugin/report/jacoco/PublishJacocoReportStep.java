@@ -2,21 +2,19 @@ package io.onedev.server.plugin.report.jacoco;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import javax.validation.constraints.NotEmpty;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
@@ -63,8 +61,6 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 	@Override
 	protected CoverageReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
 
 		List<PackageCoverageInfo> packageCoverages = new ArrayList<>();
 		CoverageInfo coverageInfo = new CoverageInfo(new Coverage(0, 0), new Coverage(0, 0), 
@@ -75,11 +71,16 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 		for (File file: getPatternSet().listFiles(inputDir)) {
 			String relativePath = file.getAbsolutePath().substring(baseLen);
 			logger.log("Processing JaCoCo report '" + relativePath + "'...");
-			Document doc;
 			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-				for (Element packageElement: doc.getRootElement().elements("package")) {
+				Element reportElement = DocumentHelper.createElement("report");
+				List<Element> elements = new ArrayList<>();
+				XmlUtils.readElements(file, Sets.newHashSet("package", "counter"), elements::add);
+				for (Element element: elements) {
+					if (element.getName().equals("counter")) {
+						reportElement.add(element);
+						continue;
+					}
+					Element packageElement = element;
 					String packageName = packageElement.attributeValue("name");
 					CoverageInfo packageCoverageInfo = getCoverageInfo(packageElement);
 					List<FileCoverageInfo> fileCoverages = new ArrayList<>();
@@ -116,9 +117,9 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 					
 					packageCoverages.add(new PackageCoverageInfo(packageName, packageCoverageInfo, fileCoverages));
 				}
-				coverageInfo = coverageInfo.mergeWith(getCoverageInfo(doc.getRootElement()));
+				coverageInfo = coverageInfo.mergeWith(getCoverageInfo(reportElement));
 			} catch (DocumentException e) {
-				logger.warning("Ignored clover report '" + relativePath + "' as it is not a valid XML");
+				logger.warning("Ignored JaCoCo report '" + relativePath + "' as it is not a valid XML");
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
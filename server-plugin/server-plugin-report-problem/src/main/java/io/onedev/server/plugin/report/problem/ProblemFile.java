@@ -1,10 +1,6 @@
 package io.onedev.server.plugin.report.problem;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-
-import io.onedev.server.codequality.CodeProblem;
 
 public class ProblemFile implements Serializable {
 
@@ -12,18 +8,19 @@ public class ProblemFile implements Serializable {
 
 	private final String blobPath;
 	
-	private final List<CodeProblem> problems = new ArrayList<>();
+	private final int numOfProblems;
 	
-	public ProblemFile(String blobPath) {
+	public ProblemFile(String blobPath, int numOfProblems) {
 		this.blobPath = blobPath;
+		this.numOfProblems = numOfProblems;
 	}
 
 	public String getBlobPath() {
 		return blobPath;
 	}
 
-	public List<CodeProblem> getProblems() {
-		return problems;
+	public int getNumOfProblems() {
+		return numOfProblems;
 	}
 	
-}
\ No newline at end of file
+}
@@ -10,13 +10,23 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang.SerializationUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.model.Build;
 
@@ -26,41 +36,73 @@ public class ProblemReport implements Serializable {
 	
 	public static final String CATEGORY = "problem";
 	
+	// Legacy format storing all problems in a single file
 	private static final String FILE_NAME = "report.ser";
+	
+	private static final String INDEX_FILE_NAME = "index.ser";
 
 	public static final String FILES_DIR = "files";
 	
+	private static final int FILE_PROBLEMS_CACHE_SIZE = 1000;
+	
+	private static final Cache<String, List<CodeProblem>> fileProblemsCache = CacheBuilder.newBuilder()
+			.maximumSize(FILE_PROBLEMS_CACHE_SIZE)
+			.build();
+	
+	// Null if report is read from index
 	private final List<CodeProblem> problems;
 	
 	private transient List<ProblemFile> problemFiles;
 	
+	private transient File reportDir;
+	
 	public ProblemReport(List<CodeProblem> problems) {
 		this.problems = problems;
 	}
+	
+	private ProblemReport(List<ProblemFile> problemFiles, File reportDir) {
+		problems = null;
+		this.problemFiles = problemFiles;
+		this.reportDir = reportDir;
+	}
 
 	public List<CodeProblem> getProblems() {
-		return problems;
+		if (problems != null) {
+			return problems;
+		} else {
+			List<CodeProblem> problems = new ArrayList<>();
+			for (ProblemFile file: getProblemFiles())
+				problems.addAll(getProblems(file.getBlobPath()));
+			return problems;
+		}
 	} 
+	
+	public List<CodeProblem> getProblems(String blobPath) {
+		if (problems != null) {
+			return problems.stream()
+					.filter(it->it.getBlobPath().equals(blobPath))
+					.collect(Collectors.toList());
+		} else {
+			List<CodeProblem> problemsOfFile = readFileProblems(reportDir, blobPath);
+			return problemsOfFile != null? problemsOfFile: new ArrayList<>();
+		}
+	}
 
 	public List<ProblemFile> getProblemFiles() {
 		if (problemFiles == null) {
-			Map<String, ProblemFile> map = new LinkedHashMap<>();
-			for (CodeProblem problem: problems) {
-				ProblemFile file = map.get(problem.getBlobPath());
-				if (file == null) {
-					file = new ProblemFile(problem.getBlobPath());
-					map.put(problem.getBlobPath(), file);
-				}
-				file.getProblems().add(problem);
-			}
+			Map<String, Integer> numOfProblemsMap = new LinkedHashMap<>();
+			for (CodeProblem problem: problems) 
+				numOfProblemsMap.merge(problem.getBlobPath(), 1, Integer::sum);
 			
-			problemFiles = new ArrayList<>(map.values());
+			problemFiles = new ArrayList<>();
+			for (Map.Entry<String, Integer> entry: numOfProblemsMap.entrySet())
+				problemFiles.add(new ProblemFile(entry.getKey(), entry.getValue()));
 			
 			problemFiles.sort(new Comparator<ProblemFile>() {
 	
 				@Override
 				public int compare(ProblemFile o1, ProblemFile o2) {
-					return o2.getProblems().size() - o1.getProblems().size();
+					return o2.getNumOfProblems() - o1.getNumOfProblems();
 				}
 				
 			});
@@ -68,22 +110,72 @@ public class ProblemReport implements Serializable {
 		return problemFiles;
 	}
 	
+	/**
+	 * Read problems of specified file written by {@link PublishProblemReportStep}. Read 
+	 * result is cached until the file is modified, as this is called on every blob view
+	 * 
+	 * @return
+	 * 			problems of specified file, or <tt>null</tt> if there is no problem file
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public static List<CodeProblem> readFileProblems(File reportDir, String blobPath) {
+		File file = new File(reportDir, FILES_DIR + "/" + blobPath);
+		if (file.exists()) {
+			String cacheKey = file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+			try {
+				return fileProblemsCache.get(cacheKey, new Callable<List<CodeProblem>>() {
+
+					@Override
+					public List<CodeProblem> call() throws Exception {
+						try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+							return Collections.unmodifiableList((List<CodeProblem>) SerializationUtils.deserialize(is));
+						}
+					}
+					
+				});
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return null;
+		}
+	}
+	
 	public static ProblemReport readFrom(File reportDir) {
-		File dataFile = new File(reportDir, FILE_NAME);
-		try (InputStream is = new BufferedInputStream(new FileInputStream(dataFile))) {
-			return (ProblemReport) SerializationUtils.deserialize(is);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		File indexFile = new File(reportDir, INDEX_FILE_NAME);
+		if (indexFile.exists()) {
+			try (InputStream is = new BufferedInputStream(new FileInputStream(indexFile))) {
+				@SuppressWarnings("unchecked")
+				List<ProblemFile> problemFiles = (List<ProblemFile>) SerializationUtils.deserialize(is);
+				return new ProblemReport(problemFiles, reportDir);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			File dataFile = new File(reportDir, FILE_NAME);
+			try (InputStream is = new BufferedInputStream(new FileInputStream(dataFile))) {
+				return (ProblemReport) SerializationUtils.deserialize(is);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 	
+	/**
+	 * Write index of problem files. Problems of each file are written separately via 
+	 * {@link PublishProblemReportStep#writeFileProblems(Build, String, List)}
+	 */
 	public void writeTo(File reportDir) {
-		File dataFile = new File(reportDir, FILE_NAME);
-		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(dataFile))) {
-			SerializationUtils.serialize(this, os);
+		File indexFile = new File(reportDir, INDEX_FILE_NAME);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+			SerializationUtils.serialize(new ArrayList<>(getProblemFiles()), os);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		};
+		File legacyFile = new File(reportDir, FILE_NAME);
+		if (legacyFile.exists())
+			FileUtils.deleteFile(legacyFile);
 	}
 	
 	public static String getReportLockName(Build build) {
@@ -1,9 +1,6 @@
 package io.onedev.server.plugin.report.problem;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,7 +12,6 @@ import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
@@ -148,7 +144,6 @@ public class ProblemReportModule extends AbstractPluginModule {
 		public Map<String, List<CodeProblem>> call() throws Exception {
 			return LockUtils.read(ProblemReport.getReportLockName(projectId, buildNumber), new Callable<Map<String, List<CodeProblem>>>() {
 
-				@SuppressWarnings("unchecked")
 				@Override
 				public Map<String, List<CodeProblem>> call() throws Exception {
 					Map<String, List<CodeProblem>> problems = new HashMap<>();
@@ -156,12 +151,9 @@ public class ProblemReportModule extends AbstractPluginModule {
 					if (categoryDir.exists()) {
 						for (File reportDir: categoryDir.listFiles()) {
 							if (reportName == null || reportName.equals(reportDir.getName())) { 
-								File file = new File(reportDir, ProblemReport.FILES_DIR + "/" + blobPath);
-								if (file.exists()) {
-									try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
-										problems.put(reportDir.getName(), (List<CodeProblem>) SerializationUtils.deserialize(is));
-									}
-								}
+								List<CodeProblem> problemsOfFile = ProblemReport.readFileProblems(reportDir, blobPath);
+								if (problemsOfFile != null) 
+									problems.put(reportDir.getName(), problemsOfFile);
 							}
 						}
 					}
@@ -234,7 +234,7 @@ public class ProblemReportPage extends BuildReportPage {
 				PageParameters params = ProjectBlobPage.paramsOf(getProject(), state);
 				item.add(new BookmarkablePageLink<Void>("view", ProjectBlobPage.class, params));
 
-				item.add(new Label("numOfProblems", file.getProblems().size() + " problems"));
+				item.add(new Label("numOfProblems", file.getNumOfProblems() + " problems"));
 				
 				item.add(new Label("tooManyProblems", 
 						"Too many problems, displaying first " + MAX_PROBLEMS_TO_DISPLAY) {
@@ -243,7 +243,7 @@ public class ProblemReportPage extends BuildReportPage {
 					protected void onConfigure() {
 						super.onConfigure();
 						setVisible(expandedFiles.contains(filePath) 
-								&& item.getModelObject().getProblems().size() > MAX_PROBLEMS_TO_DISPLAY);
+								&& item.getModelObject().getNumOfProblems() > MAX_PROBLEMS_TO_DISPLAY);
 					}
 					
 				});
@@ -252,7 +252,7 @@ public class ProblemReportPage extends BuildReportPage {
 
 					@Override
 					protected List<CodeProblem> load() {
-						List<CodeProblem> problems = item.getModelObject().getProblems();
+						List<CodeProblem> problems = getReport().getProblems(filePath);
 						if (problems.size() > MAX_PROBLEMS_TO_DISPLAY)
 							return problems.subList(0, MAX_PROBLEMS_TO_DISPLAY);
 						else
@@ -5,10 +5,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang3.SerializationUtils;
 
 import io.onedev.commons.utils.ExceptionUtils;
@@ -19,6 +23,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.step.PublishReportStep;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.codequality.CodeProblem.Severity;
+import io.onedev.server.git.service.GitService;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.ProblemMetric;
 import io.onedev.server.persistence.dao.Dao;
@@ -59,16 +64,18 @@ public abstract class PublishProblemReportStep extends PublishReportStep {
 			FileUtils.createDir(reportDir);
 			report.writeTo(reportDir);
 			
+			// Problems may be read back from report files, so only get them once
+			List<CodeProblem> problems = report.getProblems();
 			ProblemMetric metric = new ProblemMetric();
 			metric.setBuild(build);
 			metric.setReportName(getReportName());
-			metric.setHighSeverities((int) report.getProblems().stream()
+			metric.setHighSeverities((int) problems.stream()
 					.filter(it->it.getSeverity()==Severity.HIGH)
 					.count());
-			metric.setMediumSeverities((int) report.getProblems().stream()
+			metric.setMediumSeverities((int) problems.stream()
 					.filter(it->it.getSeverity()==Severity.MEDIUM)
 					.count());
-			metric.setLowSeverities((int) report.getProblems().stream()
+			metric.setLowSeverities((int) problems.stream()
 					.filter(it->it.getSeverity()==Severity.LOW)
 					.count());
 						
@@ -89,6 +96,27 @@ public abstract class PublishProblemReportStep extends PublishReportStep {
 		}
 	}
 
+	/**
+	 * Write problems of files existing in build commit and create report from them. Existence 
+	 * of all files is checked with a single tree walk instead of loading blobs one by one
+	 */
+	@Nullable
+	protected ProblemReport createReport(Build build, Map<String, List<CodeProblem>> problemsByFile) {
+		Set<String> existingFiles = OneDev.getInstance(GitService.class)
+				.filterFiles(build.getProject(), build.getCommitId(), problemsByFile.keySet());
+		List<CodeProblem> problems = new ArrayList<>();
+		for (Map.Entry<String, List<CodeProblem>> entry: problemsByFile.entrySet()) {
+			if (existingFiles.contains(entry.getKey())) {
+				writeFileProblems(build, entry.getKey(), entry.getValue());
+				problems.addAll(entry.getValue());
+			}
+		}
+		if (!problems.isEmpty())
+			return new ProblemReport(problems);
+		else
+			return null;
+	}
+	
 	protected abstract ProblemReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger);
 	
 }
@@ -2,32 +2,28 @@ package io.onedev.server.plugin.report.spotbugs;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.StringUtils;
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import javax.validation.constraints.NotEmpty;
 import org.unbescape.html.HtmlEscape;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.buildspec.step.StepGroup;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.codequality.CodeProblem.Severity;
-import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Build;
 import io.onedev.server.plugin.report.problem.ProblemReport;
 import io.onedev.server.plugin.report.problem.PublishProblemReportStep;
@@ -64,66 +60,58 @@ public class PublishSpotBugsReportStep extends PublishProblemReportStep {
 	@Override
 	protected ProblemReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
 
-		List<CodeProblem> problems = new ArrayList<>();
-		Map<String, List<CodeProblem>> problemsByFile = new HashMap<>();
+		Map<String, List<CodeProblem>> problemsByFile = new LinkedHashMap<>();
 		for (File file: getPatternSet().listFiles(inputDir)) {
 			String relativePath = file.getAbsolutePath().substring(baseLen);
 			logger.log("Processing SpotBugs report '" + relativePath + "'...");
 			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				Document doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-				
-				Element projectElement = doc.getRootElement().element("Project");
-				String srcPath = projectElement.elementText("SrcDir");
-				if (build.getJobWorkspace() != null && srcPath.startsWith(build.getJobWorkspace())) {
-					srcPath = srcPath.substring(build.getJobWorkspace().length()+1);
-					if (srcPath.startsWith("/"))
-						srcPath = srcPath.substring(1);
-					for (Element bugElement: doc.getRootElement().elements("BugInstance")) {
-						Element sourceElement = bugElement.element("SourceLine");
-						String blobPath = srcPath + "/" + sourceElement.attributeValue("sourcepath");
-						BlobIdent blobIdent = new BlobIdent(build.getCommitHash(), blobPath);
-						if (build.getProject().getBlob(blobIdent, false) != null) {
-							String type = bugElement.attributeValue("type");
-							
-							Severity severity;
-							String priority = bugElement.attributeValue("priority");
-							if (priority.equals("1"))
-								severity = Severity.HIGH;
-							else if (priority.equals("2"))
-								severity = Severity.MEDIUM;
-							else
-								severity = Severity.LOW;
-							
-							String message = bugElement.elementText("LongMessage");
-							if (StringUtils.isBlank(message))
-								message = bugElement.elementText("ShortMessage");
-							
-							message = HtmlEscape.escapeHtml5(message);
-							
-							PlanarRange range = getRange(bugElement, true);
+				// Project element comes before bug instances in SpotBugs report 
+				String projectSrcPath = null;
+				List<Element> elements = new ArrayList<>();
+				XmlUtils.readElements(file, Sets.newHashSet("Project", "BugInstance"), elements::add);
+				for (Element element: elements) {
+					if (element.getName().equals("Project")) {
+						String srcPath = element.elementText("SrcDir");
+						if (build.getJobWorkspace() != null && srcPath.startsWith(build.getJobWorkspace())) {
+							srcPath = srcPath.substring(build.getJobWorkspace().length()+1);
+							if (srcPath.startsWith("/"))
+								srcPath = srcPath.substring(1);
+							projectSrcPath = srcPath;
+						}
+					} else if (projectSrcPath != null) {
+						Element sourceElement = element.element("SourceLine");
+						String blobPath = projectSrcPath + "/" + sourceElement.attributeValue("sourcepath");
+						String type = element.attributeValue("type");
+						
+						Severity severity;
+						String priority = element.attributeValue("priority");
+						if (priority.equals("1"))
+							severity = Severity.HIGH;
+						else if (priority.equals("2"))
+							severity = Severity.MEDIUM;
+						else
+							severity = Severity.LOW;
+						
+						String message = element.elementText("LongMessage");
+						if (StringUtils.isBlank(message))
+							message = element.elementText("ShortMessage");
+						
+						message = HtmlEscape.escapeHtml5(message);
+						
+						PlanarRange range = getRange(element, true);
 
-							if (range == null)
-								range = getRange(bugElement.element("Field"), false);
-							if (range == null)
-								range = getRange(bugElement.element("Method"), false);
-							if (range == null)
-								range = getRange(bugElement.element("Class"), false);
-							if (range == null) 
-								range = new PlanarRange(0, -1, 0, -1);
+						if (range == null)
+							range = getRange(element.element("Field"), false);
+						if (range == null)
+							range = getRange(element.element("Method"), false);
+						if (range == null)
+							range = getRange(element.element("Class"), false);
+						if (range == null) 
+							range = new PlanarRange(0, -1, 0, -1);
 
-							CodeProblem problem = new CodeProblem(severity, type, blobPath, range, message); 
-							problems.add(problem);
-							List<CodeProblem> problemsOfFile = problemsByFile.get(blobPath);
-							if (problemsOfFile == null) {
-								problemsOfFile = new ArrayList<>();
-								problemsByFile.put(blobPath, problemsOfFile);
-							}
-							problemsOfFile.add(problem);
-						}
+						CodeProblem problem = new CodeProblem(severity, type, blobPath, range, message); 
+						problemsByFile.computeIfAbsent(blobPath, it -> new ArrayList<>()).add(problem);
 					}
 				}
 			} catch (DocumentException e) {
@@ -133,13 +121,7 @@ public class PublishSpotBugsReportStep extends PublishProblemReportStep {
 			}
 		}
 
-		for (Map.Entry<String, List<CodeProblem>> entry: problemsByFile.entrySet()) 
-			writeFileProblems(build, entry.getKey(), entry.getValue());
-		
-		if (!problems.isEmpty())
-			return new ProblemReport(problems);
-		else
-			return null;
+		return createReport(build, problemsByFile);
 	}
 
 	@Nullable
@@ -47,7 +47,7 @@ public abstract class PublishUnitTestReportStep extends PublishReportStep {
 			metric.setReportName(getReportName());
 			metric.setTestCaseSuccessRate(report.getTestCaseSuccessRate());
 			metric.setTestSuiteSuccessRate(report.getTestSuiteSuccessRate());
-			metric.setNumOfTestCases(report.getTestCases().size());
+			metric.setNumOfTestCases(report.getNumOfTestCases());
 			metric.setNumOfTestSuites(report.getTestSuites().size());
 			metric.setTotalTestDuration(report.getTestDuration());
 			OneDev.getInstance(Dao.class).persist(metric);
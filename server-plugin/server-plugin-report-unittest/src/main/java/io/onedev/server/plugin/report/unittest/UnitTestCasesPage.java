@@ -223,9 +223,7 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 			
 			@Override
 			protected List<InputSuggestion> suggest(String matchWith) {
-				return SuggestionUtils.suggest(
-						getReport().getTestCases(null, null, null).stream().map(it->it.getName()).distinct().collect(Collectors.toList()), 
-						matchWith);
+				return SuggestionUtils.suggest(new ArrayList<>(getReport().getTestCaseNames()), matchWith);
 			}
 			
 			@Override
@@ -287,7 +285,7 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 				if (testSuitePatterns != null && namePatterns != null) {
 					List<PieSlice> slices = new ArrayList<>();
 					for (Status status: Status.values()) {
-						int numOfTestCases = getReport().getTestCases(
+						int numOfTestCases = getReport().getTestCaseIndexes(
 								testSuitePatterns.orNull(), namePatterns.orNull(), Sets.newHashSet(status)).size();
 						slices.add(new PieSlice(status.name().toLowerCase(), numOfTestCases, 
 								status.getColor(), state.statuses.contains(status)));
@@ -349,25 +347,29 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 		detail.setOutputMarkupId(true);
 		add(detail);
 		
-		PageableListView<TestCase> testCasesView;
-		detail.add(testCasesView = new PageableListView<TestCase>("testCases", 
-				new LoadableDetachableModel<List<TestCase>>() {
+		// Page through test case indexes so that only test cases being displayed are loaded 
+		PageableListView<Integer> testCasesView;
+		detail.add(testCasesView = new PageableListView<Integer>("testCases", 
+				new LoadableDetachableModel<List<Integer>>() {
 
 			@Override
-			protected List<TestCase> load() {
-				List<TestCase> testCases;
+			protected List<Integer> load() {
+				List<Integer> testCaseIndexes;
 				if (testSuitePatterns != null && namePatterns != null)
-					testCases = getReport().getTestCases(testSuitePatterns.orNull(), namePatterns.orNull(), state.statuses);
+					testCaseIndexes = getReport().getTestCaseIndexes(testSuitePatterns.orNull(), namePatterns.orNull(), state.statuses);
 				else
-					testCases = new ArrayList<>();
+					testCaseIndexes = new ArrayList<>();
 				if (state.longestDurationFirst) {
-					testCases.sort(new Comparator<TestCase>() {
+					UnitTestReport report = getReport();
+					testCaseIndexes.sort(new Comparator<Integer>() {
 
 						@Override
-						public int compare(TestCase o1, TestCase o2) {
-							if (o1.getDuration() < o2.getDuration())
+						public int compare(Integer o1, Integer o2) {
+							long duration1 = report.getTestCaseDuration(o1);
+							long duration2 = report.getTestCaseDuration(o2);
+							if (duration1 < duration2)
 								return 1;
-							else if (o1.getDuration() > o2.getDuration())
+							else if (duration1 > duration2)
 								return -1;
 							else 
 								return 0;
@@ -375,14 +377,14 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 						
 					});
 				}
-				return testCases;
+				return testCaseIndexes;
 			}
 			
 		}, WebConstants.PAGE_SIZE) {
 
 			@Override
-			protected void populateItem(ListItem<TestCase> item) {
-				TestCase testCase = item.getModelObject();
+			protected void populateItem(ListItem<Integer> item) {
+				TestCase testCase = getReport().getTestCase(item.getModelObject());
 				item.add(new TestStatusBadge("status", testCase.getStatus()));
 				item.add(new Label("name", testCase.getName() + " (" + testCase.getTestSuite().getName() + ")"));
 				if (getReport().hasTestCaseDuration())
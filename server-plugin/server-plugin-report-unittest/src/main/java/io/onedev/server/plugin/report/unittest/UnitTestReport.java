@@ -9,8 +9,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -19,6 +25,7 @@ import org.apache.commons.lang.SerializationUtils;
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.basic.Label;
 
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.model.Build;
 import io.onedev.server.util.match.Matcher;
 import io.onedev.server.util.match.PathMatcher;
@@ -30,8 +37,15 @@ public class UnitTestReport implements Serializable {
 	
 	public static final String CATEGORY = "unit-test";
 	
+	// Legacy format storing whole report in a single file
 	private static final String FILE_NAME = "report.ser";
 	
+	private static final String INDEX_FILE_NAME = "index.ser";
+	
+	private static final String TEST_CASES_DIR = "test-cases";
+	
+	private static final int TEST_CASES_PAGE_SIZE = 100;
+	
 	public static enum Status {
 		
 		PASSED("#1BC5BD"), FAILED("#F64E60"), SKIPPED("#8950FC"), TODO("#3699FF");
@@ -48,17 +62,35 @@ public class UnitTestReport implements Serializable {
 		
 	};
 	
+	// Null if report is read from paged storage
 	private final List<TestCase> testCases;
 	
 	private final boolean hasTestCaseDuration;
 	
-	private transient List<TestSuite> testSuites;
+	private transient Index index;
+	
+	private transient File reportDir;
+	
+	private transient Map<Integer, List<TestCase>> testCasePages;
 	
 	public UnitTestReport(List<TestCase> testCases, boolean hasTestCaseDuration) {
 		this.testCases = testCases;
 		this.hasTestCaseDuration = hasTestCaseDuration;
 	}
 	
+	private UnitTestReport(Index index, File reportDir) {
+		testCases = null;
+		hasTestCaseDuration = index.hasTestCaseDuration;
+		this.index = index;
+		this.reportDir = reportDir;
+	}
+	
+	private Index getIndex() {
+		if (index == null)
+			index = new Index(testCases, hasTestCaseDuration);
+		return index;
+	}
+	
 	public List<TestSuite> getTestSuites(@Nullable PatternSet filePatterns, Collection<Status> statuses) {
 		Matcher matcher = new PathMatcher();
 		return getTestSuites().stream().filter(it-> {
@@ -67,48 +99,148 @@ public class UnitTestReport implements Serializable {
 		}).collect(Collectors.toList());
 	}
 	
-	public List<TestCase> getTestCases(@Nullable PatternSet testSuitePatterns, 
-			@Nullable PatternSet testCasePatterns, Collection<Status> statuses) {
+	/**
+	 * Get indexes of test cases matching specified criterias. Matching is done against 
+	 * report index, and no test cases will be loaded
+	 */
+	public List<Integer> getTestCaseIndexes(@Nullable PatternSet testSuitePatterns, 
+			@Nullable PatternSet testCasePatterns, @Nullable Collection<Status> statuses) {
+		Index index = getIndex();
 		Matcher matcher = new PathMatcher();
 		
-		return testCases.stream().filter(it->{
-			return (testSuitePatterns == null || testSuitePatterns.matches(matcher, it.getTestSuite().getName()))
-					&& (testCasePatterns == null || testCasePatterns.matches(matcher, it.getName()))
-					&& (statuses == null || statuses.contains(it.getStatus()));
-		}).collect(Collectors.toList());
+		boolean[] testSuiteMatches = new boolean[index.testSuites.size()];
+		for (int i=0; i<testSuiteMatches.length; i++) {
+			testSuiteMatches[i] = testSuitePatterns == null 
+					|| testSuitePatterns.matches(matcher, index.testSuites.get(i).getName());
+		}
+		
+		List<Integer> testCaseIndexes = new ArrayList<>();
+		for (int i=0; i<index.names.length; i++) {
+			if (testSuiteMatches[index.testSuiteIndexes[i]]
+					&& (statuses == null || statuses.contains(index.statuses[i]))
+					&& (testCasePatterns == null || testCasePatterns.matches(matcher, index.names[i]))) {
+				testCaseIndexes.add(i);
+			}
+		}
+		return testCaseIndexes;
+	}
+	
+	public List<TestCase> getTestCases(@Nullable PatternSet testSuitePatterns, 
+			@Nullable PatternSet testCasePatterns, Collection<Status> statuses) {
+		return getTestCaseIndexes(testSuitePatterns, testCasePatterns, statuses).stream()
+				.map(it->getTestCase(it))
+				.collect(Collectors.toList());
 	}
 	
 	public List<TestSuite> getTestSuites() {
-		if (testSuites == null) 
-			testSuites = testCases.stream().map(it->it.getTestSuite()).distinct().collect(Collectors.toList());
-		return testSuites;
+		return getIndex().testSuites;
 	}
 
 	public List<TestCase> getTestCases() {
-		return testCases;
+		if (testCases != null)
+			return testCases;
+		else
+			return getTestCases(null, null, null);
+	}
+	
+	public int getNumOfTestCases() {
+		return getIndex().names.length;
+	}
+	
+	public String getTestCaseName(int testCaseIndex) {
+		return getIndex().names[testCaseIndex];
+	}
+	
+	public long getTestCaseDuration(int testCaseIndex) {
+		return getIndex().durations[testCaseIndex];
+	}
+	
+	public Collection<String> getTestCaseNames() {
+		return new LinkedHashSet<>(Arrays.asList(getIndex().names));
+	}
+	
+	/**
+	 * Get test case of specified index. For report read from paged storage, only the 
+	 * page containing the test case will be loaded
+	 */
+	public TestCase getTestCase(int testCaseIndex) {
+		if (testCases != null) {
+			return testCases.get(testCaseIndex);
+		} else {
+			if (testCasePages == null)
+				testCasePages = new HashMap<>();
+			int page = testCaseIndex / TEST_CASES_PAGE_SIZE;
+			List<TestCase> testCasesOfPage = testCasePages.get(page);
+			if (testCasesOfPage == null) {
+				testCasesOfPage = readTestCasePage(reportDir, page);
+				testCasePages.put(page, testCasesOfPage);
+			}
+			return testCasesOfPage.get(testCaseIndex % TEST_CASES_PAGE_SIZE);
+		}
 	}
 	
 	public boolean hasTestCaseDuration() {
 		return hasTestCaseDuration;
 	}
 
-	@Nullable
-	public static UnitTestReport readFrom(File reportDir) {
-		File reportFile = new File(reportDir, FILE_NAME);
-		try (InputStream is = new BufferedInputStream(new FileInputStream(reportFile))) {
-			return (UnitTestReport) SerializationUtils.deserialize(is);
+	@SuppressWarnings("unchecked")
+	private static List<TestCase> readTestCasePage(File reportDir, int page) {
+		File pageFile = new File(reportDir, TEST_CASES_DIR + "/" + page + ".ser");
+		try (InputStream is = new BufferedInputStream(new FileInputStream(pageFile))) {
+			return (List<TestCase>) SerializationUtils.deserialize(is);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	@Nullable
+	public static UnitTestReport readFrom(File reportDir) {
+		File indexFile = new File(reportDir, INDEX_FILE_NAME);
+		if (indexFile.exists()) {
+			try (InputStream is = new BufferedInputStream(new FileInputStream(indexFile))) {
+				return new UnitTestReport((Index) SerializationUtils.deserialize(is), reportDir);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			File reportFile = new File(reportDir, FILE_NAME);
+			try (InputStream is = new BufferedInputStream(new FileInputStream(reportFile))) {
+				return (UnitTestReport) SerializationUtils.deserialize(is);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Write report as an index plus pages of test cases, so that report page only needs 
+	 * to load the index and pages of displayed test cases
+	 */
 	public void writeTo(File reportDir) {
-		File reportFile = new File(reportDir, FILE_NAME);
-		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(reportFile))) {
-			SerializationUtils.serialize(this, os);
+		File indexFile = new File(reportDir, INDEX_FILE_NAME);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+			SerializationUtils.serialize(getIndex(), os);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		
+		File testCasesDir = new File(reportDir, TEST_CASES_DIR);
+		FileUtils.createDir(testCasesDir);
+		FileUtils.cleanDir(testCasesDir);
+		List<TestCase> testCases = getTestCases();
+		for (int page=0; page*TEST_CASES_PAGE_SIZE<testCases.size(); page++) {
+			int fromIndex = page*TEST_CASES_PAGE_SIZE;
+			int toIndex = Math.min(fromIndex+TEST_CASES_PAGE_SIZE, testCases.size());
+			File pageFile = new File(testCasesDir, page + ".ser");
+			try (OutputStream os = new BufferedOutputStream(new FileOutputStream(pageFile))) {
+				SerializationUtils.serialize(new ArrayList<>(testCases.subList(fromIndex, toIndex)), os);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		File legacyFile = new File(reportDir, FILE_NAME);
+		if (legacyFile.exists())
+			FileUtils.deleteFile(legacyFile);
 	}
 	
 	public int getTestDuration() {
@@ -133,10 +265,10 @@ public class UnitTestReport implements Serializable {
 	public int getTestCaseSuccessRate() {
 		int numOfFailed = 0;
 		int numOfPassed = 0;
-		for (TestCase testCase: getTestCases()) {
-			if (testCase.getStatus() == Status.FAILED) 
+		for (Status status: getIndex().statuses) {
+			if (status == Status.FAILED) 
 				numOfFailed++;
-			else if (testCase.getStatus() == Status.PASSED)
+			else if (status == Status.PASSED)
 				numOfPassed++;
 		}
 		return numOfPassed*100/(numOfPassed+numOfFailed);
@@ -250,6 +382,51 @@ public class UnitTestReport implements Serializable {
 		
 	}
 	
+	/*
+	 * Columns of test case attributes used for filtering and sorting, together with 
+	 * test suites. Test cases are referenced by their index in the report
+	 */
+	private static class Index implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		final boolean hasTestCaseDuration;
+		
+		final List<TestSuite> testSuites = new ArrayList<>();
+		
+		final int[] testSuiteIndexes;
+		
+		final String[] names;
+		
+		final Status[] statuses;
+		
+		final long[] durations;
+		
+		Index(List<TestCase> testCases, boolean hasTestCaseDuration) {
+			this.hasTestCaseDuration = hasTestCaseDuration;
+			testSuiteIndexes = new int[testCases.size()];
+			names = new String[testCases.size()];
+			statuses = new Status[testCases.size()];
+			durations = new long[testCases.size()];
+			
+			Map<TestSuite, Integer> testSuiteIndexMap = new IdentityHashMap<>();
+			for (int i=0; i<testCases.size(); i++) {
+				TestCase testCase = testCases.get(i);
+				Integer testSuiteIndex = testSuiteIndexMap.get(testCase.getTestSuite());
+				if (testSuiteIndex == null) {
+					testSuiteIndex = testSuites.size();
+					testSuites.add(testCase.getTestSuite());
+					testSuiteIndexMap.put(testCase.getTestSuite(), testSuiteIndex);
+				}
+				testSuiteIndexes[i] = testSuiteIndex;
+				names[i] = testCase.getName();
+				statuses[i] = testCase.getStatus();
+				durations[i] = testCase.getDuration();
+			}
+		}
+		
+	}
+	
 	public static String getReportLockName(Build build) {
 		return getReportLockName(build.getProject().getId(), build.getNumber());
 	}
@@ -23,7 +23,7 @@ public class ProductModule extends AbstractPluginModule {
 			DIALECT, DRIVER, URL, USER, PASS, "hibernate.hikari.leakDetectionThreshold", 
 			"hibernate.hikari.maxLifetime", "hibernate.hikari.connectionTimeout", 
 			"hibernate.hikari.maximumPoolSize", "hibernate.hikari.validationTimeout",
-			"hibernate.show_sql"
+			"hibernate.show_sql", "hibernate.jdbc.batch_size"
 	};
 	
     @Override
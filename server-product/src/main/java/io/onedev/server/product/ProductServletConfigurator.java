@@ -30,6 +30,7 @@ import io.onedev.server.git.hook.GitPreReceiveCallback;
 import io.onedev.server.jetty.ClasspathAssetServlet;
 import io.onedev.server.jetty.FileAssetServlet;
 import io.onedev.server.jetty.ServletConfigurator;
+import io.onedev.server.persistence.QueryStatsFilter;
 import io.onedev.server.security.DefaultWebEnvironment;
 import io.onedev.server.web.asset.icon.IconScope;
 import io.onedev.server.web.img.ImageScope;
@@ -59,12 +60,15 @@ public class ProductServletConfigurator implements ServletConfigurator {
 	
 	private final ServerSocketServlet serverServlet;
 	
+	private final QueryStatsFilter queryStatsFilter;
+	
 	@Inject
 	public ProductServletConfigurator(ShiroFilter shiroFilter, 
 			GitFilter gitFilter, GitLfsFilter gitLfsFilter, GitPreReceiveCallback preReceiveServlet, 
 			GitPostReceiveCallback postReceiveServlet, WicketServlet wicketServlet, 
 			WebSocketManager webSocketManager, ServletContainer jerseyServlet, 
-			ServerSocketServlet serverServlet, GoGetFilter goGetFilter) {
+			ServerSocketServlet serverServlet, GoGetFilter goGetFilter, 
+			QueryStatsFilter queryStatsFilter) {
 		this.shiroFilter = shiroFilter;
         this.gitFilter = gitFilter;
         this.gitLfsFilter = gitLfsFilter;
@@ -75,6 +79,7 @@ public class ProductServletConfigurator implements ServletConfigurator {
 		this.jerseyServlet = jerseyServlet;
 		this.serverServlet = serverServlet;
 		this.goGetFilter = goGetFilter;
+		this.queryStatsFilter = queryStatsFilter;
 	}
 	
 	@Override
@@ -85,6 +90,7 @@ public class ProductServletConfigurator implements ServletConfigurator {
 		
 		context.setInitParameter(EnvironmentLoader.ENVIRONMENT_CLASS_PARAM, DefaultWebEnvironment.class.getName());
 		context.addEventListener(new EnvironmentLoaderListener());
+		context.addFilter(new FilterHolder(queryStatsFilter), "/*", EnumSet.of(DispatcherType.REQUEST));
 		context.addFilter(new FilterHolder(shiroFilter), "/*", EnumSet.allOf(DispatcherType.class));
 		
         context.addFilter(new FilterHolder(gitFilter), "/*", EnumSet.allOf(DispatcherType.class));